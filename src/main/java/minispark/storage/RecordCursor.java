@@ -0,0 +1,123 @@
+package minispark.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Forward-only cursor over the records of a key range, in key order.
+ *
+ * Unlike scan(), a cursor does not collect the range up front: records are
+ * produced as the caller asks for them, so a range of any size is processed
+ * in constant memory and the caller can stop early. A cursor may hold
+ * storage resources (e.g. a pinned page) until it is closed, so always close
+ * it, preferably with try-with-resources.
+ */
+public interface RecordCursor extends Closeable {
+    /**
+     * Checks whether another record is available.
+     *
+     * @return true if next() will return a record
+     * @throws IOException If an I/O error occurs
+     */
+    boolean hasNext() throws IOException;
+
+    /**
+     * Returns the next record of the range.
+     *
+     * @return The next record
+     * @throws NoSuchElementException If the cursor is exhausted
+     * @throws IOException If an I/O error occurs
+     */
+    Record next() throws IOException;
+
+    /**
+     * Repositions the cursor at the first record whose key is at least the given
+     * key. The end of the range is unchanged; seeking backwards is allowed.
+     *
+     * @param key The key to seek to
+     * @throws IOException If an I/O error occurs
+     */
+    void seek(byte[] key) throws IOException;
+
+    /**
+     * Wraps this cursor so it stops after the given number of records. Closing
+     * the returned cursor closes this one.
+     *
+     * @param maxRecords The maximum number of records to return
+     * @return The limited cursor
+     */
+    default RecordCursor limit(long maxRecords) {
+        if (maxRecords < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative: " + maxRecords);
+        }
+        RecordCursor source = this;
+        return new RecordCursor() {
+            private long returned;
+
+            @Override
+            public boolean hasNext() throws IOException {
+                return returned < maxRecords && source.hasNext();
+            }
+
+            @Override
+            public Record next() throws IOException {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("Cursor limit of " + maxRecords + " records reached");
+                }
+                returned++;
+                return source.next();
+            }
+
+            @Override
+            public void seek(byte[] key) throws IOException {
+                source.seek(key);
+            }
+
+            @Override
+            public void close() throws IOException {
+                source.close();
+            }
+        };
+    }
+
+    /**
+     * Creates a cursor over records that are already in memory, sorted by key.
+     * Storage engines without a native cursor use it to serve openCursor() from scan().
+     *
+     * @param records The records in key order
+     * @return A cursor over the records
+     */
+    static RecordCursor of(List<Record> records) {
+        return new RecordCursor() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < records.size();
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("Cursor is exhausted");
+                }
+                return records.get(position++);
+            }
+
+            @Override
+            public void seek(byte[] key) {
+                position = 0;
+                while (position < records.size() && Arrays.compare(records.get(position).getKey(), key) < 0) {
+                    position++;
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
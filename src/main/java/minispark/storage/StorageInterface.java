@@ -1,6 +1,7 @@
 package minispark.storage;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -36,6 +37,23 @@ public interface StorageInterface {
      */
     Optional<Map<String, Object>> read(byte[] key) throws IOException;
 
+    /**
+     * Reads several records by key in one call. Engines can use the whole
+     * batch to share work between the keys (e.g. visit every page once);
+     * the default reads the keys one by one.
+     *
+     * @param keys The record keys, in any order, duplicates allowed
+     * @return One result per key, in the order of the keys, empty where the key is not found
+     * @throws IOException If an I/O error occurs
+     */
+    default List<Optional<Map<String, Object>>> multiGet(List<byte[]> keys) throws IOException {
+        List<Optional<Map<String, Object>>> results = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            results.add(read(key));
+        }
+        return results;
+    }
+
     /**
      * Scans records within a key range.
      *
@@ -47,6 +65,35 @@ public interface StorageInterface {
      */
     List<Record> scan(byte[] startKey, byte[] endKey, List<String> columns) throws IOException;
 
+    /**
+     * Opens a cursor over records within a key range. Records are produced on
+     * demand, so the range is never held in memory as a whole; the caller must
+     * close the cursor. Engines without a native cursor fall back to scan().
+     *
+     * @param startKey Start of the key range (inclusive)
+     * @param endKey End of the key range (exclusive), or null for open-ended
+     * @param columns Specific columns to read, or null for all columns
+     * @return A cursor positioned before the first matching record
+     * @throws IOException If an I/O error occurs
+     */
+    default RecordCursor openCursor(byte[] startKey, byte[] endKey, List<String> columns) throws IOException {
+        return RecordCursor.of(scan(startKey, endKey, columns));
+    }
+
+    /**
+     * Suggests keys that split the key space into up to the given number of
+     * ranges of similar size, so the ranges can be scanned in parallel. Any
+     * sorted keys are correct boundaries; these only aim for balance. Engines
+     * without a cheap way to tell return no keys (one range).
+     *
+     * @param partitions The number of ranges wanted
+     * @return Up to partitions - 1 keys in ascending order
+     * @throws IOException If an I/O error occurs
+     */
+    default List<byte[]> splitKeys(int partitions) throws IOException {
+        return List.of();
+    }
+
     /**
      * Deletes a record by its key.
      *
@@ -1,26 +1,34 @@
 package minispark.storage.btree;
 
 import minispark.storage.Record;
+import minispark.storage.RecordCursor;
 import minispark.storage.StorageInterface;
+import minispark.storage.btree.page.BufferPool;
 import minispark.storage.btree.page.Page;
 import minispark.storage.btree.page.PageManager;
 import minispark.storage.btree.page.Element;
+import minispark.storage.btree.page.MappedPageManager;
+import minispark.storage.btree.page.PageFramePool;
+import minispark.storage.wal.WriteAheadLog;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * B+Tree storage implementation.
  * Optimized for OLTP workloads with efficient point queries
  * and range scans. Maintains data in sorted order.
  * 
- * CURRENT STATUS: Basic functionality implemented (5/8 tests passing)
+ * CURRENT STATUS: Core functionality implemented; all B+Tree tests pass
  * 
  * ✅ IMPLEMENTED FEATURES:
  * - Basic write/read operations
@@ -30,6 +38,20 @@ import java.util.*;
  * - Value serialization/deserialization
  * - Page management and disk I/O
  * - Tree initialization and root page management
+ * - Buffer pool page cache with CLOCK eviction (see BTreeConfig)
+ * - Optional write-ahead log with group commit and crash recovery
+ * - Slotted pages with binary search; older page formats are migrated on open
+ * - Bottom-up bulk loading from sorted input (bulkLoad)
+ * - Optional memory-mapped file access (BTreeConfig.memoryMapped)
+ * - Concurrent readers and writers with latch crabbing (lock coupling)
+ * - Optimistic latch-free point reads validated with page versions
+ * - Overflow page chains for large values, read only when the value is needed
+ * - Delete with sibling merge/redistribution and root collapse
+ * - Persistent free list: pages freed by merges and overflow deletes are reused
+ * - Streaming cursors with background read-ahead along the leaf chain
+ * - Key prefix truncation in pages and shortest separators in branch pages
+ * - Per-file Bloom filter so point reads of absent keys read no pages
+ * - Point-in-time snapshots backed by copy-on-write page images (snapshot)
  * 
  * TODO: FEATURES TO IMPLEMENT:
  * 
@@ -38,58 +60,136 @@ import java.util.*;
  *    - Proper navigation to correct starting leaf page
  *    - Handle cases where range spans multiple pages
  * 
- * 2. TODO: Implement Overflow Pages for Large Values
- *    - createOverflowPages() method implementation
- *    - readFromOverflowPages() method implementation  
- *    - freeOverflowPages() method implementation
- *    - Support for values larger than page size
+ * 2. TODO: Transaction Isolation
+ *    - Page latches make single operations safe under concurrency
+ *    - Snapshots give readers one point in time across many reads
+ *    - Multi-operation write transactions still see each other's writes
  * 
- * 3. TODO: Add Thread Safety and Concurrent Access
- *    - Add synchronization mechanisms (ReadWriteLock)
- *    - Implement page-level locking
- *    - Handle concurrent reads and writes safely
- *    - Add proper transaction isolation
- * 
- * 4. TODO: Implement Delete Operations
- *    - delete() method implementation
- *    - Handle key removal from leaf pages
- *    - Implement page merging when underutilized
- *    - Update parent nodes after deletions
- * 
- * 5. TODO: Implement B+Tree Splitting and Merging
- *    - Page splitting when pages become full
- *    - Page merging when pages become underutilized
- *    - Parent node updates during splits/merges
- *    - Maintain B+Tree invariants
- * 
- * 6. TODO: Performance Optimizations
- *    - Page caching mechanism
- *    - Bulk loading for better initial tree structure
- *    - Compression for keys and values
+ * 3. TODO: Performance Optimizations
+ *    - Compression for values
  *    - Statistics collection for query optimization
  * 
- * 7. TODO: Robustness and Error Handling
+ * 4. TODO: Robustness and Error Handling
  *    - Better error recovery mechanisms
  *    - Corruption detection and repair
  *    - Proper resource cleanup on failures
  *    - Comprehensive logging and monitoring
+ * 
+ * CONCURRENCY (latch crabbing)
+ * ----------------------------
+ * Readers descend with shared page latches and release the parent as soon as
+ * the child is latched, so a reader holds at most two latches and readers
+ * never block each other. Range scans couple latches the same way along the
+ * leaf chain.
+ * 
+ * Writers are serialized by a writer lock and descend with exclusive latches.
+ * Ancestors stay latched only while a split can still reach them: once a page
+ * has room for whatever the operation may push into it (the record in a leaf,
+ * one maximum-size separator in a branch), every latch above it is released.
+ * Deletes do the same with merges: a page that stays a quarter full after
+ * losing its largest possible element releases its ancestors. Siblings are
+ * latched while the child is held, the right one first; a left sibling is
+ * only taken if its latch is free, so the left-to-right order holds.
+ * Readers therefore only wait for a writer on the pages it is changing. When
+ * the root splits, the new root ID is published while the old root is still
+ * latched; readers re-check the root ID after latching it and start again.
+ * 
+ * Point reads go one step further and take no latches at all (optimistic lock
+ * coupling): the reader notes each page's version, reads it, and validates the
+ * version before trusting what it read - a parent is re-validated after the
+ * child's version is taken, so the child pointer is known to be current. Any
+ * failed validation restarts the lookup from the root; after a few restarts
+ * the reader falls back to shared latches so it cannot starve.
+ * 
+ * A snapshot (snapshot()) pins the tree as it was between two write
+ * operations. Pages stay updated in place - only the write-ahead log, which
+ * is off by default, makes that crash safe - but while a snapshot is open, a
+ * writer copies each page under its exclusive latch before its first change
+ * (PageVersions), and snapshot readers read that copy instead of the live
+ * page. Pages nobody changed are read in place under their shared latch.
+ * 
+ * Latches are always taken top-down and left-to-right, so they cannot deadlock.
+ * The log fsync happens after the writer lock is released, which lets writers
+ * on different threads share one fsync (group commit).
  */
 public class BTree implements StorageInterface {
-    // Page size in bytes (default 4KB)
-    private static final int DEFAULT_PAGE_SIZE = 4096;
-    
     // B+Tree degree (max children per node)
     private final int degree;
     
     // Page manager for disk storage
     private final PageManager pageManager;
     
-    // Root page ID
-    private long rootPageId;
+    // Page cache in front of the page manager; every page access goes through it
+    private final BufferPool bufferPool;
+    
+    // Write-ahead log, or null when every page write forces the data file
+    private final WriteAheadLog writeAheadLog;
+    private final long checkpointThresholdBytes;
+    
+    // Bytes of each page that bulkLoad() fills before starting the next page
+    private final int bulkLoadFillBytes;
+    
+    // With a write-ahead log, bulkLoad() commits after this many finished pages
+    private static final int BULK_LOAD_COMMIT_INTERVAL = 64;
+    
+    // Root page ID; changes only while the old root is exclusively latched
+    private volatile long rootPageId;
+    
+    // Serializes writers; readers never take it
+    private final ReentrantLock writerLock = new ReentrantLock();
+    
+    // Longest key accepted, so a branch page can always tell whether a separator still fits
+    private final int maxKeySize;
+    
+    // Point reads validate page versions instead of latching (see BTreeConfig.optimisticReads)
+    private final boolean optimisticReads;
+    private final AtomicLong optimisticRestarts = new AtomicLong();
+    
+    // Optimistic attempts before a point read falls back to latch crabbing
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 8;
+    
+    // Returned by an optimistic lookup that saw a concurrent change and must start over
+    private static final byte[] RESTART = new byte[0];
+    
+    // Background prefetching for sequential scans; null when disabled
+    private final LeafReadAhead readAhead;
+    
+    // Leaves a cursor must step through along the chain before it is treated as sequential
+    private static final int READ_AHEAD_TRIGGER_STEPS = 2;
+    
+    // Largest element (slot included) kept inside a leaf; bigger values go to overflow pages
+    private final int maxInlineElementSize;
+    
+    // Bytes a non-root page keeps in use; a page below this after a delete is merged or refilled
+    private final int minFillBytes;
+    
+    // An overflowed element's value: |first overflow page ID long|value length int|
+    private static final int OVERFLOW_POINTER_SIZE = Long.BYTES + Integer.BYTES;
     
     // Serializer/deserializer for values
     private final ValueSerializer valueSerializer;
     
+    // Bloom filter over the keys written, or null when disabled; a rebuild replaces it whole
+    private volatile BloomFilter keyFilter;
+    private final int bloomFilterBitsPerKey;
+    private final Path keyFilterPath;
+    private final AtomicLong keyFilterNegatives = new AtomicLong();
+    
+    // Fewest keys a Bloom filter is sized for, so a small tree is not rebuilt on every few writes
+    private static final long MIN_KEY_FILTER_KEYS = 1024;
+    
+    // First page of the free list (0 if empty); changed only under the writer lock
+    private long freeListHead;
+    
+    // Page images preserved for open snapshots, and whether scans run on a snapshot of their own
+    private final PageVersions pageVersions = new PageVersions();
+    private final boolean snapshotScans;
+    
+    // Metadata keys stored in page 0
+    private static final byte[] ROOT_ID_KEY = "BTREE_ROOT_ID".getBytes();
+    private static final byte[] FORMAT_VERSION_KEY = "BTREE_FORMAT_VERSION".getBytes();
+    private static final byte[] FREE_LIST_HEAD_KEY = "BTREE_FREE_LIST_HEAD".getBytes();
+    
     /**
      * Creates a new B+Tree with a default configuration
      *
@@ -97,7 +197,7 @@ public class BTree implements StorageInterface {
      * @throws IOException If an I/O error occurs
      */
     public BTree(Path filePath) throws IOException {
-        this(filePath, DEFAULT_PAGE_SIZE);
+        this(filePath, BTreeConfig.defaults());
     }
     
     /**
@@ -108,15 +208,65 @@ public class BTree implements StorageInterface {
      * @throws IOException If an I/O error occurs
      */
     public BTree(Path filePath, int pageSize) throws IOException {
-        this.pageManager = new PageManager(filePath, pageSize);
-        this.valueSerializer = new ValueSerializer();
+        this(filePath, BTreeConfig.builder().pageSize(pageSize).build());
+    }
+    
+    /**
+     * Creates a new B+Tree with the given configuration
+     *
+     * @param filePath Path to the database file
+     * @param config Page size, buffer pool size and other tuning options
+     * @throws IOException If an I/O error occurs
+     */
+    public BTree(Path filePath, BTreeConfig config) throws IOException {
+        int pageSize = config.getPageSize();
+        boolean walEnabled = config.isWriteAheadLogEnabled();
+        
+        // Files written with an older page layout are rewritten before use
+        PageFormatMigrator.migrateIfNeeded(filePath, pageSize);
+        
+        // With a WAL the log provides durability, so data pages are not forced one by one
+        this.pageManager = config.isMemoryMapped()
+            ? new MappedPageManager(filePath, pageSize, !walEnabled)
+            : new PageManager(filePath, pageSize, !walEnabled, PageManager.DEFAULT_EXTENT_SIZE,
+                config.isDirectPageFramesEnabled() ? new PageFramePool(pageSize) : null);
+        this.writeAheadLog = walEnabled
+            ? new WriteAheadLog(filePath.resolveSibling(filePath.getFileName() + ".wal"))
+            : null;
+        this.checkpointThresholdBytes = config.getCheckpointThresholdBytes();
+        this.bulkLoadFillBytes = (int) ((pageSize - Page.PAGE_HEADER_SIZE) * config.getBulkLoadFillFactor());
+        this.bufferPool = new BufferPool(pageManager, config.getBufferPoolPages(), writeAheadLog);
+        this.valueSerializer = config.getRowSchema() != null
+            ? new ValueSerializer(config.getRowSchema()) : new ValueSerializer();
+        this.optimisticReads = config.isOptimisticReadsEnabled();
+        this.snapshotScans = config.isSnapshotScansEnabled();
+        this.bloomFilterBitsPerKey = config.getBloomFilterBitsPerKey();
+        this.keyFilterPath = filePath.resolveSibling(filePath.getFileName() + ".bloom");
+        
+        // Prefetched pages need a pool to land in and must leave room for the pages in use;
+        // a memory-mapped file already gets read-ahead from the OS
+        int readAheadPages = Math.min(config.getReadAheadPages(), config.getBufferPoolPages() / 2);
+        this.readAhead = readAheadPages > 0 && !config.isMemoryMapped()
+            ? new LeafReadAhead(bufferPool, readAheadPages)
+            : null;
         
         // Calculate degree based on page size
         this.degree = (pageSize - Page.PAGE_HEADER_SIZE) / (Page.ELEM_SIZE * 2);
         
+        // At least eight maximum-size separators fit in a branch page
+        this.maxKeySize = (pageSize - Page.PAGE_HEADER_SIZE) / 8 - Page.SLOT_SIZE - Page.ELEM_HEADER_SIZE - Long.BYTES;
+        
+        // At least four elements fit in a leaf page
+        this.maxInlineElementSize = (pageSize - Page.PAGE_HEADER_SIZE) / 4;
+        this.minFillBytes = (pageSize - Page.PAGE_HEADER_SIZE) / 4;
+        
         // Initialize the tree if it doesn't exist
         try {
+            // Replay committed writes that never reached the data file before a crash
+            bufferPool.recover();
             initializeTree();
+            openKeyFilter();
+            commit();
         } catch (Exception e) {
             throw new IOException("Failed to initialize B+Tree", e);
         }
@@ -131,14 +281,18 @@ public class BTree implements StorageInterface {
             if (pageManager.getFileSize() == 0) {
                 createRootPage();
             } else {
-                // File exists, load the root page ID from metadata
+                // File exists, load the root page ID and the free list from metadata
                 rootPageId = loadRootPageId();
-                Page rootPage = pageManager.readPage(rootPageId);
-                int flags = rootPage.flags();
-                if (flags == 0) {
-                    // Root page is uninitialized, initialize it
-                    rootPage.setFlags(Page.FLAG_LEAF);
-                    pageManager.writePage(rootPage);
+                freeListHead = loadFreeListHead();
+                Page rootPage = bufferPool.pin(rootPageId);
+                try {
+                    if (rootPage.flags() == 0) {
+                        // Root page is uninitialized, initialize it
+                        rootPage.setFlags(Page.FLAG_LEAF);
+                        bufferPool.markDirty(rootPage);
+                    }
+                } finally {
+                    bufferPool.unpin(rootPage);
                 }
             }
         } catch (IOException e) {
@@ -153,16 +307,21 @@ public class BTree implements StorageInterface {
      */
     private long loadRootPageId() throws IOException {
         try {
-            Page metadataPage = pageManager.readPage(0);
-            
-            // Check if this is a metadata page or an old-style root page
-            if (metadataPage.count() == 0 || isMetadataPage(metadataPage)) {
-                // This is a metadata page, read the root page ID from it
-                return readRootPageIdFromMetadata(metadataPage);
-            } else {
-                // This is an old-style file where page 0 is the actual root
-                // For backward compatibility, return 0
-                return 0;
+            Page metadataPage = bufferPool.pin(0);
+            try {
+                checkFormatVersion(metadataPage);
+                
+                // Check if this is a metadata page or an old-style root page
+                if (metadataPage.count() == 0 || isMetadataPage(metadataPage)) {
+                    // This is a metadata page, read the root page ID from it
+                    return readRootPageIdFromMetadata(metadataPage);
+                } else {
+                    // This is an old-style file where page 0 is the actual root
+                    // For backward compatibility, return 0
+                    return 0;
+                }
+            } finally {
+                bufferPool.unpin(metadataPage);
             }
         } catch (IOException e) {
             // If we can't read metadata, assume page 0 is the root (backward compatibility)
@@ -170,22 +329,39 @@ public class BTree implements StorageInterface {
         }
     }
     
+    /**
+     * Loads the first page of the free list from the metadata page; files
+     * written before the free list existed have none.
+     */
+    private long loadFreeListHead() throws IOException {
+        Page metadataPage = bufferPool.pin(0);
+        try {
+            int index = metadataPage.search(FREE_LIST_HEAD_KEY);
+            return index >= 0 ? ByteBuffer.wrap(metadataPage.element(index).value()).getLong() : 0;
+        } finally {
+            bufferPool.unpin(metadataPage);
+        }
+    }
+    
     /**
      * Checks if a page is a metadata page by looking for a special marker.
      */
     private boolean isMetadataPage(Page page) {
-        // A metadata page has a special flag or marker
-        // For simplicity, we'll check if it has exactly one element with a special key
-        if (page.count() != 1) {
-            return false;
+        return (page.flags() & Page.FLAG_META) != 0;
+    }
+    
+    /**
+     * Refuses files written with a newer page format than this code understands.
+     * Older formats never get here: PageFormatMigrator rewrites them on open.
+     */
+    private void checkFormatVersion(Page metadataPage) throws IOException {
+        int index = metadataPage.search(FORMAT_VERSION_KEY);
+        if (index < 0) {
+            return;
         }
-        
-        try {
-            Element element = page.element(0);
-            byte[] key = element.key();
-            return Arrays.equals(key, "BTREE_ROOT_ID".getBytes());
-        } catch (Exception e) {
-            return false;
+        int version = ByteBuffer.wrap(metadataPage.element(index).value()).getInt();
+        if (version > Page.FORMAT_VERSION) {
+            throw new IOException("Page format version " + version + " is newer than supported version " + Page.FORMAT_VERSION);
         }
     }
     
@@ -199,9 +375,9 @@ public class BTree implements StorageInterface {
         }
         
         try {
-            Element element = metadataPage.element(0);
-            if (Arrays.equals(element.key(), "BTREE_ROOT_ID".getBytes())) {
-                ByteBuffer buffer = ByteBuffer.wrap(element.value());
+            int index = metadataPage.search(ROOT_ID_KEY);
+            if (index >= 0) {
+                ByteBuffer buffer = ByteBuffer.wrap(metadataPage.element(index).value());
                 return buffer.getLong();
             }
         } catch (Exception e) {
@@ -212,20 +388,99 @@ public class BTree implements StorageInterface {
     }
     
     /**
-     * Saves the root page ID to the metadata page (page 0).
+     * Saves the root page ID and the free list head to the metadata page (page 0).
      */
-    private void saveRootPageId() throws IOException {
-        Page metadataPage = pageManager.readPage(0);
-        
-        // Clear existing metadata
-        metadataPage.setCount(0);
+    private void saveMetadata() throws IOException {
+        Page metadataPage = bufferPool.pin(0);
+        metadataPage.latchExclusive();
+        try {
+            // Clear existing metadata
+            metadataPage.clear();
+            metadataPage.setFlags(Page.FLAG_META);
+            
+            // Store the page format version, the root page ID and the free list head
+            metadataPage.insert(FORMAT_VERSION_KEY, ByteBuffer.allocate(4).putInt(Page.FORMAT_VERSION).array());
+            metadataPage.insert(ROOT_ID_KEY, ByteBuffer.allocate(8).putLong(rootPageId).array());
+            metadataPage.insert(FREE_LIST_HEAD_KEY, ByteBuffer.allocate(8).putLong(freeListHead).array());
+            bufferPool.markDirty(metadataPage);
+        } finally {
+            releaseExclusive(metadataPage);
+        }
+    }
+    
+    /**
+     * Loads the Bloom filter saved by the last close(), or rebuilds it from
+     * the leaves if there is none. The saved file is deleted once it is
+     * loaded: writes from now on only reach the copy in memory, so after a
+     * crash the file would miss keys and must not be trusted.
+     */
+    private void openKeyFilter() throws IOException {
+        if (bloomFilterBitsPerKey == 0) {
+            // A filter left by an earlier run would miss whatever is written without it
+            Files.deleteIfExists(keyFilterPath);
+            return;
+        }
         
-        // Store the root page ID
-        byte[] key = "BTREE_ROOT_ID".getBytes();
-        byte[] value = ByteBuffer.allocate(8).putLong(rootPageId).array();
+        BloomFilter saved = BloomFilter.load(keyFilterPath);
+        Files.deleteIfExists(keyFilterPath);
+        if (saved != null) {
+            keyFilter = saved;
+            System.out.println("🌸 BLOOM FILTER - loaded " + keyFilterPath.getFileName() + " ("
+                + saved.sizeInBytes() + " bytes, sized for " + saved.getExpectedKeys() + " keys)");
+        } else {
+            rebuildKeyFilter();
+        }
+    }
+    
+    /**
+     * Builds a new Bloom filter from the keys in the leaf chain, sized for
+     * twice as many keys so the tree can grow before the next rebuild. Reads
+     * every leaf, so it only runs on open when no saved filter is usable and
+     * when writers have filled the filter. The caller must hold the writer
+     * lock (or be the constructor), so no key is added while it runs.
+     */
+    private void rebuildKeyFilter() throws IOException {
+        KeyHashes hashes = new KeyHashes();
+        int leaves = 1;
+        Page leaf = findLeafPage(new byte[0]);
+        try {
+            while (true) {
+                for (int i = 0; i < leaf.count(); i++) {
+                    hashes.add(BloomFilter.hash(leaf.keyAt(i)));
+                }
+                long nextPageId = leaf.nextPageId();
+                if (nextPageId == 0) {
+                    break;
+                }
+                Page next = bufferPool.pin(nextPageId);
+                next.latchShared();
+                releaseShared(leaf);
+                leaf = next;
+                leaves++;
+            }
+        } finally {
+            releaseShared(leaf);
+        }
         
-        metadataPage.insert(key, value);
-        pageManager.writePage(metadataPage);
+        keyFilter = hashes.toFilter(bloomFilterBitsPerKey);
+        System.out.println("🌸 BLOOM FILTER - rebuilt from " + hashes.size() + " keys in " + leaves
+            + " leaf pages (" + keyFilter.sizeInBytes() + " bytes)");
+    }
+    
+    /**
+     * Adds a key to the Bloom filter before it goes into the tree, so a
+     * reader can never find the key in the tree yet be told by the filter
+     * that it is absent. A filter holding more keys than it was sized for
+     * is rebuilt first. The caller must hold the writer lock.
+     */
+    private void addToKeyFilter(byte[] key) throws IOException {
+        if (keyFilter == null) {
+            return;
+        }
+        if (keyFilter.isSaturated()) {
+            rebuildKeyFilter();
+        }
+        keyFilter.add(key);
     }
     
     /**
@@ -233,33 +488,75 @@ public class BTree implements StorageInterface {
      */
     private void createRootPage() throws IOException {
         // First, allocate metadata page (page 0)
-        long metadataPageId = pageManager.allocatePage(); // Should be page 0
+        Page metadataPage = bufferPool.newPage(); // Should be page 0
+        bufferPool.unpin(metadataPage);
         
         // Then allocate the actual root page (page 1)
-        rootPageId = pageManager.allocatePage(); // Should be page 1
-        Page rootPage = pageManager.readPage(rootPageId);
-        rootPage.setFlags(Page.FLAG_LEAF); // Start with a leaf node as root
-        pageManager.writePage(rootPage);
+        Page rootPage = bufferPool.newPage(); // Should be page 1
+        try {
+            rootPageId = rootPage.getPageId();
+            rootPage.setFlags(Page.FLAG_LEAF); // Start with a leaf node as root
+            bufferPool.markDirty(rootPage);
+        } finally {
+            bufferPool.unpin(rootPage);
+        }
         
         // Save the root page ID to metadata
-        saveRootPageId();
+        saveMetadata();
     }
-
+    
     //insert into customers (id, name, email, age, city) values (1, 'John Doe', 'gXo3H@example.com', 25, 'New York');
     @Override
     public void write(byte[] key, Map<String, Object> value) throws IOException {
+        long commitLsn;
+        writerLock.lock();
+        try {
+            insert(key, value);
+            commitLsn = logCommit();
+        } finally {
+            writerLock.unlock();
+        }
+        awaitCommit(commitLsn);
+    }
+    
+    /**
+     * Inserts a key-value pair without committing it to the write-ahead log.
+     * The caller must hold the writer lock.
+     */
+    private void insert(byte[] key, Map<String, Object> value) throws IOException {
+        checkKeySize(key);
         explainInsertionProcess(key, value);
-
+        addToKeyFilter(key);
+        
         //|keybytes|valuebytes|keybytes|valuebytes|keybytes|valuebytes|...
         // Serialize the value to bytes
         byte[] valueBytes = valueSerializer.serialize(value);
         
-        // Insert into the tree, handling splits as needed
-        SplitResult splitResult = insertIntoTree(rootPageId, key, valueBytes, true);
+        // A large value is written to overflow pages first; they are unreachable until the leaf points at them
+        Element element = storeValue(key, valueBytes);
         
-        // If root split, create new root
-        if (splitResult != null) {
-            createNewRoot(splitResult);
+        // Latch the pages a split could reach, from the highest unsafe ancestor down to the leaf
+        List<Page> path = latchPath(key, page -> isSafeForInsert(page, key, element.value()));
+        try {
+            int level = path.size() - 1;
+            SplitResult splitResult = insertIntoLeafPage(path.get(level), element);
+            
+            // Propagate splits upwards through the latched ancestors
+            while (splitResult != null && level > 0) {
+                level--;
+                splitResult = insertIntoBranchPage(path.get(level), splitResult);
+            }
+            
+            // If root split, create new root
+            if (splitResult != null) {
+                if (path.get(0).getPageId() != rootPageId) {
+                    throw new IllegalStateException("Split of page " + path.get(0).getPageId()
+                        + " reached a parent that was no longer latched");
+                }
+                createNewRoot(splitResult);
+            }
+        } finally {
+            releaseExclusive(path);
         }
         
         demonstrateBTreeInvariants("insertion");
@@ -283,60 +580,103 @@ public class BTree implements StorageInterface {
     }
     
     /**
-     * Inserts a key-value pair into the tree, handling splits recursively
+     * Descends from the root with exclusive latches (latch crabbing). Whenever
+     * the newly latched child is safe - the operation cannot split or merge
+     * it - the latches on all its ancestors are released, because no
+     * structural change can propagate past it.
+     *
+     * @param key The key being inserted or deleted
+     * @param isSafe Whether a page can absorb the operation without changing its parent
+     * @return The latched, pinned pages from the highest unsafe ancestor down to the leaf
      */
-    private SplitResult insertIntoTree(long pageId, byte[] key, byte[] value, boolean isLeaf) throws IOException {
-        Page page = pageManager.readPage(pageId);
+    private List<Page> latchPath(byte[] key, Predicate<Page> isSafe) throws IOException {
+        List<Page> path = new ArrayList<>();
         
-        if (page.isLeaf()) {
-            return insertIntoLeafPage(page, key, value);
-        } else {
-            return insertIntoBranchPage(page, key, value);
+        // Writers are serialized, so the root cannot move while we descend
+        Page page = bufferPool.pin(rootPageId);
+        latchForWrite(page);
+        path.add(page);
+        try {
+            while (page.isBranch()) {
+                Page child = bufferPool.pin(childPageId(page, key));
+                latchForWrite(child);
+                if (isSafe.test(child)) {
+                    releaseExclusive(path);
+                    path.clear();
+                }
+                path.add(child);
+                page = child;
+            }
+        } catch (IOException | RuntimeException e) {
+            releaseExclusive(path);
+            throw e;
+        }
+        return path;
+    }
+    
+    /**
+     * A leaf is safe if the record fits; a branch is safe if a separator of the
+     * maximum key size fits, since a child split pushes up one of its own keys.
+     */
+    private boolean isSafeForInsert(Page page, byte[] key, byte[] value) {
+        int needed = page.isLeaf()
+            ? Page.SLOT_SIZE + Page.ELEM_HEADER_SIZE + key.length + value.length
+            : Page.SLOT_SIZE + Page.ELEM_HEADER_SIZE + maxKeySize + Long.BYTES;
+        return page.freeSpace() >= needed;
+    }
+    
+    private void checkKeySize(byte[] key) {
+        if (key.length > maxKeySize) {
+            throw new IllegalArgumentException("Key of " + key.length + " bytes exceeds the maximum of "
+                + maxKeySize + " bytes for this page size");
         }
     }
     
     /**
      * Inserts into a leaf page, splitting if necessary
      */
-    private SplitResult insertIntoLeafPage(Page leafPage, byte[] key, byte[] value) throws IOException {
+    private SplitResult insertIntoLeafPage(Page leafPage, Element element) throws IOException {
+        // A replaced value's overflow chain is freed once the new value is in place
+        long replacedOverflowPageId = overflowPageIdOf(leafPage, element.key());
+        
+        SplitResult splitResult = null;
         // Try to insert directly
-        if (leafPage.insert(key, value)) {
+        if (leafPage.insert(element.key(), element.value(), element.hasOverflow())) {
             // Success - no split needed
-            pageManager.writePage(leafPage);
-            return null;
+            bufferPool.markDirty(leafPage);
+        } else {
+            // Page is full - need to split
+            explainPageSplitReason(leafPage, "leaf");
+            splitResult = splitLeafPage(leafPage, element);
         }
         
-        // Page is full - need to split
-        explainPageSplitReason(leafPage, "leaf");
-        return splitLeafPage(leafPage, key, value);
+        // Optimistic readers of the old chain fail validation, because the leaf is latched
+        if (replacedOverflowPageId != 0) {
+            freeOverflowPages(replacedOverflowPageId);
+        }
+        return splitResult;
+    }
+    
+    private long overflowPageIdOf(Page leafPage, byte[] key) {
+        int index = leafPage.search(key);
+        if (index < 0) {
+            return 0;
+        }
+        Element existing = leafPage.element(index);
+        return existing.hasOverflow() ? existing.overflowPageId() : 0;
     }
     
     /**
-     * Inserts into a branch page, handling child splits
+     * Inserts the separator of a child split into a branch page, splitting it if necessary
      */
-    private SplitResult insertIntoBranchPage(Page branchPage, byte[] key, byte[] value) throws IOException {
-        // Find the child page to insert into
-        int childIndex = findChildIndex(branchPage, key);
-        Element childElement = branchPage.element(Math.min(childIndex, branchPage.count() - 1));
-        
-        ByteBuffer buffer = ByteBuffer.wrap(childElement.value());
-        long childPageId = buffer.getLong();
-        
-        // Recursively insert into child
-        SplitResult childSplit = insertIntoTree(childPageId, key, value, false);
-        
-        if (childSplit == null) {
-            // No split occurred in child
-            return null;
-        }
-        
+    private SplitResult insertIntoBranchPage(Page branchPage, SplitResult childSplit) throws IOException {
         // Child split - need to insert separator key into this branch page
         byte[] separatorKey = childSplit.separatorKey;
         byte[] rightPageIdBytes = ByteBuffer.allocate(8).putLong(childSplit.rightPageId).array();
         
         if (branchPage.insert(separatorKey, rightPageIdBytes)) {
             // Successfully inserted separator - no split needed
-            pageManager.writePage(branchPage);
+            bufferPool.markDirty(branchPage);
             return null;
         }
         
@@ -349,42 +689,48 @@ public class BTree implements StorageInterface {
      * Splits a full leaf page using clear educational steps.
      * This demonstrates the core B+Tree splitting algorithm used in production databases.
      */
-    private SplitResult splitLeafPage(Page leftPage, byte[] newKey, byte[] newValue) throws IOException {
+    private SplitResult splitLeafPage(Page leftPage, Element newElement) throws IOException {
         logEducational("STEP 1: Collecting all elements for redistribution");
-        List<Element> allElements = collectAllElements(leftPage, newKey, newValue);
+        List<Element> allElements = collectAllElements(leftPage, newElement);
         
         logEducational("STEP 2: Redistributing elements using 50/50 split (production algorithm)");
         int midPoint = allElements.size() / 2;
         
         logEducational("STEP 3: Creating new right page");
-        long rightPageId = pageManager.allocatePage();
-        Page rightPage = pageManager.readPage(rightPageId);
-        rightPage.setFlags(Page.FLAG_LEAF);
-        
-        logEducational("STEP 4: Distributing elements between left and right pages");
-        // Clear left page and add first half of elements
-        leftPage.setCount(0);
-        for (int i = 0; i < midPoint; i++) {
-            Element elem = allElements.get(i);
-            leftPage.insert(elem.key(), elem.value(), elem.hasOverflow());
-        }
-        
-        // Add second half to right page
-        for (int i = midPoint; i < allElements.size(); i++) {
-            Element elem = allElements.get(i);
-            rightPage.insert(elem.key(), elem.value(), elem.hasOverflow());
+        Page rightPage = allocatePage();
+        long rightPageId = rightPage.getPageId();
+        try {
+            rightPage.setFlags(Page.FLAG_LEAF);
+            
+            logEducational("STEP 4: Distributing elements between left and right pages");
+            // Clear left page and add first half of elements
+            leftPage.clear();
+            for (int i = 0; i < midPoint; i++) {
+                Element elem = allElements.get(i);
+                leftPage.insert(elem.key(), elem.value(), elem.hasOverflow());
+            }
+            
+            // Add second half to right page
+            for (int i = midPoint; i < allElements.size(); i++) {
+                Element elem = allElements.get(i);
+                rightPage.insert(elem.key(), elem.value(), elem.hasOverflow());
+            }
+            
+            logEducational("STEP 5: Linking leaf pages for range scanning");
+            rightPage.setNextPageId(leftPage.nextPageId());
+            leftPage.setNextPageId(rightPageId);
+            
+            logEducational("STEP 6: Truncating the keys both halves share and marking them dirty");
+            leftPage.compressKeys();
+            rightPage.compressKeys();
+            bufferPool.markDirty(leftPage);
+            bufferPool.markDirty(rightPage);
+        } finally {
+            bufferPool.unpin(rightPage);
         }
         
-        logEducational("STEP 5: Linking leaf pages for range scanning");
-        rightPage.setNextPageId(leftPage.nextPageId());
-        leftPage.setNextPageId(rightPageId);
-        
-        logEducational("STEP 6: Persisting pages to disk");
-        pageManager.writePage(leftPage);
-        pageManager.writePage(rightPage);
-        
-        // Return split result with first key of right page as separator
-        byte[] separatorKey = allElements.get(midPoint).key();
+        // The separator only has to tell the two halves apart, so the parent gets the shortest such key
+        byte[] separatorKey = shortestSeparator(allElements.get(midPoint - 1).key(), allElements.get(midPoint).key());
         logSplitCompletion("leaf", leftPage.getPageId(), rightPageId, separatorKey);
         
         return new SplitResult(leftPage.getPageId(), rightPageId, separatorKey);
@@ -396,35 +742,43 @@ public class BTree implements StorageInterface {
      */
     private SplitResult splitBranchPage(Page leftPage, byte[] newKey, byte[] newValue) throws IOException {
         logEducational("STEP 1: Collecting all elements for redistribution");
-        List<Element> allElements = collectAllElements(leftPage, newKey, newValue);
+        List<Element> allElements = collectAllElements(leftPage, new Element(newKey, newValue, false));
         
         logEducational("STEP 2: Finding split point and separator element");
         int midPoint = allElements.size() / 2;
         Element separatorElement = allElements.get(midPoint);
         
         logEducational("STEP 3: Creating new right branch page");
-        long rightPageId = pageManager.allocatePage();
-        Page rightPage = pageManager.readPage(rightPageId);
-        rightPage.setFlags(Page.FLAG_BRANCH);
-        
-        logEducational("STEP 4: Distributing elements (middle element promoted to parent)");
-        // Clear left page and add first half of elements
-        leftPage.setCount(0);
-        for (int i = 0; i < midPoint; i++) {
-            Element elem = allElements.get(i);
-            leftPage.insert(elem.key(), elem.value(), elem.hasOverflow());
-        }
-        
-        // Add second half to right page (excluding separator which goes to parent)
-        for (int i = midPoint + 1; i < allElements.size(); i++) {
-            Element elem = allElements.get(i);
-            rightPage.insert(elem.key(), elem.value(), elem.hasOverflow());
+        Page rightPage = allocatePage();
+        long rightPageId = rightPage.getPageId();
+        try {
+            rightPage.setFlags(Page.FLAG_BRANCH);
+            
+            logEducational("STEP 4: Distributing elements (middle element promoted to parent)");
+            // Clear left page and add first half of elements
+            leftPage.clear();
+            for (int i = 0; i < midPoint; i++) {
+                Element elem = allElements.get(i);
+                leftPage.insert(elem.key(), elem.value(), elem.hasOverflow());
+            }
+            
+            // The separator key goes to the parent; its child becomes the leftmost
+            // entry (empty key) of the right page, like the first entry of any branch
+            rightPage.insert(new byte[0], separatorElement.value());
+            for (int i = midPoint + 1; i < allElements.size(); i++) {
+                Element elem = allElements.get(i);
+                rightPage.insert(elem.key(), elem.value(), elem.hasOverflow());
+            }
+            
+            logEducational("STEP 5: Truncating shared key prefixes and marking branch pages dirty");
+            leftPage.compressKeys();
+            rightPage.compressKeys();
+            bufferPool.markDirty(leftPage);
+            bufferPool.markDirty(rightPage);
+        } finally {
+            bufferPool.unpin(rightPage);
         }
         
-        logEducational("STEP 5: Persisting branch pages to disk");
-        pageManager.writePage(leftPage);
-        pageManager.writePage(rightPage);
-        
         logSplitCompletion("branch", leftPage.getPageId(), rightPageId, separatorElement.key());
         return new SplitResult(leftPage.getPageId(), rightPageId, separatorElement.key());
     }
@@ -435,26 +789,30 @@ public class BTree implements StorageInterface {
     private void createNewRoot(SplitResult splitResult) throws IOException {
         System.out.println("   Creating new root page due to root split");
         
-        long newRootId = pageManager.allocatePage();
-        Page newRoot = pageManager.readPage(newRootId);
-        newRoot.setFlags(Page.FLAG_BRANCH);
-        
-        // Insert pointers to left and right pages
-        // First entry points to left page (no key needed for first entry in branch)
-        byte[] leftPageIdBytes = ByteBuffer.allocate(8).putLong(splitResult.leftPageId).array();
-        newRoot.insert(new byte[0], leftPageIdBytes); // Empty key for first entry
-        
-        // Second entry has separator key and points to right page
-        byte[] rightPageIdBytes = ByteBuffer.allocate(8).putLong(splitResult.rightPageId).array();
-        newRoot.insert(splitResult.separatorKey, rightPageIdBytes);
-        
-        pageManager.writePage(newRoot);
+        Page newRoot = allocatePage();
+        long newRootId = newRoot.getPageId();
+        try {
+            newRoot.setFlags(Page.FLAG_BRANCH);
+            
+            // Insert pointers to left and right pages
+            // First entry points to left page (no key needed for first entry in branch)
+            byte[] leftPageIdBytes = ByteBuffer.allocate(8).putLong(splitResult.leftPageId).array();
+            newRoot.insert(new byte[0], leftPageIdBytes); // Empty key for first entry
+            
+            // Second entry has separator key and points to right page
+            byte[] rightPageIdBytes = ByteBuffer.allocate(8).putLong(splitResult.rightPageId).array();
+            newRoot.insert(splitResult.separatorKey, rightPageIdBytes);
+            
+            bufferPool.markDirty(newRoot);
+        } finally {
+            bufferPool.unpin(newRoot);
+        }
         
         // Update root page ID
         rootPageId = newRootId;
         
         // Persist the new root page ID to metadata
-        saveRootPageId();
+        saveMetadata();
         
         System.out.println("   SUCCESS: New root page created: " + newRootId);
     }
@@ -463,35 +821,22 @@ public class BTree implements StorageInterface {
     public Optional<Map<String, Object>> read(byte[] key) throws IOException {
         System.out.println("BTree.read() - Reading key: " + new String(key));
         
-        // Start at the root page
-        long currentPageId = rootPageId;
-        Page currentPage = pageManager.readPage(currentPageId);
+        // Most lookups of absent keys end here, without reading a single page
+        BloomFilter filter = keyFilter;
+        if (filter != null && !filter.mightContain(key)) {
+            keyFilterNegatives.incrementAndGet();
+            System.out.println("   🌸 BLOOM FILTER: key is definitely absent, no pages read");
+            System.out.println("   NOT FOUND: Key not found: " + new String(key));
+            System.out.println();
+            return Optional.empty();
+        }
         
-        // Navigate to the leaf node
-        while (currentPage.isBranch()) {
-            int index = findChildIndex(currentPage, key);
-            Element element = currentPage.element(index);
-            
-            ByteBuffer buffer = ByteBuffer.wrap(element.value());
-            currentPageId = buffer.getLong();
-            currentPage = pageManager.readPage(currentPageId);
-        }
-        
-        // Search for the key in the leaf node
-        int count = currentPage.count();
-        for (int i = 0; i < count; i++) {
-            Element element = currentPage.element(i);
-            if (Arrays.equals(key, element.key())) {
-                byte[] valueBytes;
-                if (element.hasOverflow()) {
-                    valueBytes = readFromOverflowPages(element.overflowPageId());
-                } else {
-                    valueBytes = element.value();
-                }
-                System.out.println("   SUCCESS: Found key: " + new String(key));
-                System.out.println();
-                return Optional.of(valueSerializer.deserialize(valueBytes));
-            }
+        // Navigate from the root to the leaf node
+        byte[] valueBytes = findValue(key);
+        if (valueBytes != null) {
+            System.out.println("   SUCCESS: Found key: " + new String(key));
+            System.out.println();
+            return Optional.of(valueSerializer.deserialize(valueBytes));
         }
         
         System.out.println("   NOT FOUND: Key not found: " + new String(key));
@@ -499,78 +844,103 @@ public class BTree implements StorageInterface {
         return Optional.empty();
     }
     
+    /**
+     * Reads a batch of keys in one sweep down the tree. The keys are sorted
+     * and descend together: at each branch page they are split into the runs
+     * that fall under each child, so every page on the way - branch or leaf -
+     * is visited once per batch, however many keys it serves. Keys the Bloom
+     * filter rules out never take part. Latches are held top-down along the
+     * current path only, the same order writers take them in.
+     */
     @Override
-    public List<Record> scan(byte[] startKey, byte[] endKey, List<String> columns) throws IOException {
-        System.out.println("BTree.scan() - Scanning from '" + new String(startKey) + "' to '" + 
-                          (endKey != null ? new String(endKey) : "END") + "'");
-        
-        List<Record> results = new ArrayList<>();
+    public List<Optional<Map<String, Object>>> multiGet(List<byte[]> keys) throws IOException {
+        System.out.println("BTree.multiGet() - Reading " + keys.size() + " keys in one sweep");
         
-        // Start at the root page
-        long currentPageId = rootPageId;
-        Page currentPage = pageManager.readPage(currentPageId);
+        List<Integer> order = new ArrayList<>(keys.size());
+        BloomFilter filter = keyFilter;
+        for (int i = 0; i < keys.size(); i++) {
+            if (filter == null || filter.mightContain(keys.get(i))) {
+                order.add(i);
+            } else {
+                keyFilterNegatives.incrementAndGet();
+            }
+        }
+        order.sort((a, b) -> compareKeys(keys.get(a), keys.get(b)));
         
-        // Navigate to the first leaf node that might contain startKey
-        while (currentPage.isBranch()) {
-            int index = findChildIndex(currentPage, startKey);
-            Element element = currentPage.element(index);
-            
-            ByteBuffer buffer = ByteBuffer.wrap(element.value());
-            currentPageId = buffer.getLong();
-            currentPage = pageManager.readPage(currentPageId);
+        byte[][] values = new byte[keys.size()][];
+        if (!order.isEmpty()) {
+            Page root = latchRootShared();
+            try {
+                collectValues(root, keys, order, 0, order.size(), values);
+            } finally {
+                releaseShared(root);
+            }
         }
         
-        // Scan through leaf nodes
-        while (currentPage != null) {
-            int count = currentPage.count();
-            
-            for (int i = 0; i < count; i++) {
-                Element element = currentPage.element(i);
-                byte[] key = element.key();
-                
-                // Check if we're past the end of the range
-                if (endKey != null && compareKeys(key, endKey) >= 0) {
-                    System.out.println("   SUCCESS: Scan completed. Found " + results.size() + " records");
-                    System.out.println();
-                    return results;
-                }
-                
-                // Check if we're within the range (key >= startKey)
-                if (compareKeys(key, startKey) >= 0) {
-                    byte[] valueBytes;
-                    if (element.hasOverflow()) {
-                        valueBytes = readFromOverflowPages(element.overflowPageId());
-                    } else {
-                        valueBytes = element.value();
-                    }
-                    
-                    Map<String, Object> value = valueSerializer.deserialize(valueBytes);
-                    if (columns != null && !columns.isEmpty()) {
-                        // Filter columns if specified
-                        Map<String, Object> filteredValue = new HashMap<>();
-                        for (String column : columns) {
-                            if (value.containsKey(column)) {
-                                filteredValue.put(column, value.get(column));
-                            }
-                        }
-                        value = filteredValue;
-                    }
-                    
-                    results.add(new Record(key, value));
-                    System.out.println("   FOUND: Found record: " + new String(key));
+        List<Optional<Map<String, Object>>> results = new ArrayList<>(keys.size());
+        int found = 0;
+        for (byte[] value : values) {
+            if (value != null) {
+                found++;
+                results.add(Optional.of(valueSerializer.deserialize(value)));
+            } else {
+                results.add(Optional.empty());
+            }
+        }
+        System.out.println("   SUCCESS: Found " + found + " of " + keys.size() + " keys");
+        System.out.println();
+        return results;
+    }
+    
+    /**
+     * Looks up the sorted keys order[from, to) below a share-latched page,
+     * storing each value found at the key's position in values.
+     */
+    private void collectValues(Page page, List<byte[]> keys, List<Integer> order, int from, int to,
+                               byte[][] values) throws IOException {
+        if (!page.isBranch()) {
+            for (int i = from; i < to; i++) {
+                int index = page.search(keys.get(order.get(i)));
+                if (index >= 0) {
+                    Element element = page.element(index);
+                    values[order.get(i)] = element.hasOverflow() ? readFromOverflowPages(element) : element.value();
                 }
             }
-            
-            // Move to the next leaf node
-            long nextPageId = currentPage.nextPageId();
-            if (nextPageId == 0) {
-                break;
+            return;
+        }
+        
+        int start = from;
+        while (start < to) {
+            // The keys below this child run up to the next separator
+            int child = findChildIndex(page, keys.get(order.get(start)));
+            byte[] upperBound = child + 1 < page.count() ? page.element(child + 1).key() : null;
+            int end = start + 1;
+            while (end < to && (upperBound == null || compareKeys(keys.get(order.get(end)), upperBound) < 0)) {
+                end++;
             }
+            
+            Page childPage = bufferPool.pin(childPageIdAt(page, child));
+            childPage.latchShared();
             try {
-                currentPage = pageManager.readPage(nextPageId);
-            } catch (IOException e) {
-                // No more pages
-                break;
+                collectValues(childPage, keys, order, start, end, values);
+            } finally {
+                releaseShared(childPage);
+            }
+            start = end;
+        }
+    }
+    
+    @Override
+    public List<Record> scan(byte[] startKey, byte[] endKey, List<String> columns) throws IOException {
+        System.out.println("BTree.scan() - Scanning from '" + new String(startKey) + "' to '" + 
+                          (endKey != null ? new String(endKey) : "END") + "'");
+        
+        List<Record> results = new ArrayList<>();
+        try (RecordCursor cursor = openCursor(startKey, endKey, columns)) {
+            while (cursor.hasNext()) {
+                Record record = cursor.next();
+                results.add(record);
+                System.out.println("   FOUND: Found record: " + new String(record.getKey()));
             }
         }
         
@@ -579,66 +949,1421 @@ public class BTree implements StorageInterface {
         return results;
     }
     
+    /**
+     * Opens a cursor that walks the leaf chain lazily, one leaf at a time.
+     * See LeafCursor for how it stays consistent without holding latches
+     * between calls. With BTreeConfig.snapshotScans the cursor reads a
+     * snapshot of its own instead, released when the cursor is closed.
+     */
     @Override
-    public void delete(byte[] key) throws IOException {
-        // TODO: Implement delete operation
-        // This method should:
-        // 1. Navigate to the leaf page containing the key
-        // 2. Remove the key-value pair from the leaf page
-        // 3. Handle overflow pages if the value had them
-        // 4. Implement page merging if the page becomes underutilized
-        // 5. Update parent nodes if necessary
-        // 6. Maintain B+Tree invariants
-        throw new UnsupportedOperationException("Delete not implemented yet");
+    public RecordCursor openCursor(byte[] startKey, byte[] endKey, List<String> columns) throws IOException {
+        if (snapshotScans) {
+            return new SnapshotCursor(snapshot(), true, startKey, endKey, columns);
+        }
+        return new LeafCursor(startKey, endKey, columns);
     }
     
-    @Override
-    public void writeBatch(List<Record> records) throws IOException {
-        for (Record record : records) {
-            write(record.getKey(), record.getValue());
+    /**
+     * Scans a key range without building a Record or a map per row: the
+     * visitor is handed the same ProjectedRow, positioned on each row in turn.
+     * With a row schema (BTreeConfig.rowSchema) the requested columns are read
+     * straight from the row bytes, so a narrow projection over wide rows
+     * allocates next to nothing per row. Rows are copied out of each leaf
+     * before the visitor sees them, so the visitor holds no latch and may
+     * itself use the tree.
+     *
+     * @param startKey Start of the key range (inclusive)
+     * @param endKey End of the key range (exclusive), or null for open-ended
+     * @param columns The columns to project, or null for all schema columns
+     * @param visitor Receives each row; returning false stops the scan
+     * @return The number of rows visited
+     * @throws IOException If an I/O error occurs
+     */
+    public long scan(byte[] startKey, byte[] endKey, List<String> columns, ProjectedRow.Visitor visitor) throws IOException {
+        ProjectedRow row = new ProjectedRow(valueSerializer, columns);
+        long visited = 0;
+        try (LeafCursor cursor = new LeafCursor(startKey, endKey, columns)) {
+            while (cursor.hasNext()) {
+                cursor.nextInto(row);
+                visited++;
+                if (!visitor.visit(row)) {
+                    break;
+                }
+            }
         }
+        return visited;
     }
     
+    /**
+     * Picks split keys from the branch levels alone: starting at the root,
+     * each level's separators are collected, and the walk goes one level
+     * deeper only while there are fewer separators than needed. Leaves are
+     * never read, so this costs a few page reads even on a large tree. Pages
+     * are latched one at a time; a concurrent split only makes the split
+     * less even.
+     */
     @Override
-    public void close() throws IOException {
-        pageManager.close();
-    }
-    
-    // Helper methods...
-    
-    private int findChildIndex(Page page, byte[] key) {
-        int count = page.count();
-        
-        // For branch pages, first entry might have empty key (points to leftmost child)
-        for (int i = 0; i < count; i++) {
-            Element element = page.element(i);
-            byte[] elementKey = element.key();
-            
-            // Skip empty keys (first entry in branch page)
-            if (elementKey.length == 0) {
-                continue;
-            }
-            
-            // If key is less than element key, go to previous child
-            if (compareKeys(key, elementKey) < 0) {
-                return Math.max(0, i - 1);
+    public List<byte[]> splitKeys(int partitions) throws IOException {
+        List<byte[]> separators = new ArrayList<>();
+        List<Long> level = List.of(rootPageId);
+        while (partitions > 1 && separators.size() < partitions - 1 && !level.isEmpty()) {
+            List<Long> children = new ArrayList<>();
+            for (long pageId : level) {
+                Page page = bufferPool.pin(pageId);
+                page.latchShared();
+                try {
+                    if (page.isBranch()) {
+                        for (int i = 0; i < page.count(); i++) {
+                            // The first entry's empty key only marks the leftmost child
+                            if (i > 0) {
+                                separators.add(page.element(i).key());
+                            }
+                            children.add(childPageIdAt(page, i));
+                        }
+                    }
+                } finally {
+                    releaseShared(page);
+                }
             }
+            level = children.size() > 1 && separators.size() < partitions - 1 ? children : List.of();
         }
         
-        // Key is greater than all keys, go to last child
-        return Math.max(0, count - 1);
-    }
-    
-    private int compareKeys(byte[] a, byte[] b) {
-        return Arrays.compare(a, b);
+        // Every separator is a valid boundary; keep evenly spaced ones
+        separators.sort(Arrays::compare);
+        List<byte[]> splitKeys = new ArrayList<>();
+        int wanted = Math.min(partitions - 1, separators.size());
+        for (int i = 1; i <= wanted; i++) {
+            byte[] key = separators.get(i * separators.size() / (wanted + 1));
+            if (splitKeys.isEmpty() || compareKeys(splitKeys.get(splitKeys.size() - 1), key) < 0) {
+                splitKeys.add(key);
+            }
+        }
+        return splitKeys;
     }
     
     // ========================================
-    // EDUCATIONAL HELPER METHODS FOR STEP 1.1
+    // SNAPSHOTS
     // ========================================
     
     /**
-     * Educational logging for workshop demonstrations.
+     * Takes a snapshot of the tree. Reads through it see the tree exactly as
+     * it is now, however long they run, and writers carry on meanwhile: a
+     * page a writer changes from now on is copied first (copy-on-write, see
+     * PageVersions), so the snapshot keeps reading the old image. The images
+     * are kept in memory without a bound, so close the snapshot promptly to
+     * stop the copying and free them. Snapshots add no crash safety: pages
+     * are still updated in place, which only the write-ahead log protects.
+     *
+     * @return A snapshot of every write completed so far
+     */
+    public Snapshot snapshot() {
+        // Taken between write operations, so a snapshot never sees half of a split or merge
+        writerLock.lock();
+        try {
+            Snapshot snapshot = new Snapshot(pageVersions.open(), rootPageId);
+            System.out.println("📸 SNAPSHOT - epoch " + snapshot.epoch + " at root page " + snapshot.rootPageId);
+            return snapshot;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+    
+    /**
+     * A consistent, read-only view of the tree at one point in time.
+     * Snapshot reads ignore the Bloom filter, which only describes the live tree.
+     */
+    public final class Snapshot implements AutoCloseable {
+        private final long epoch;
+        private final long rootPageId;
+        private volatile boolean closed;
+        
+        private Snapshot(long epoch, long rootPageId) {
+            this.epoch = epoch;
+            this.rootPageId = rootPageId;
+        }
+        
+        /**
+         * Gets the epoch of this snapshot; writes of later epochs are invisible to it.
+         */
+        public long getEpoch() {
+            return epoch;
+        }
+        
+        /**
+         * Reads a record as it was when the snapshot was taken.
+         *
+         * @param key The record key
+         * @return The record, or empty if the key did not exist then
+         * @throws IOException If an I/O error occurs
+         */
+        public Optional<Map<String, Object>> read(byte[] key) throws IOException {
+            checkOpen();
+            Element element = readSnapshotPage(this, snapshotLeafId(this, key), leaf -> {
+                int index = leaf.search(key);
+                return index < 0 ? null : leaf.element(index);
+            });
+            if (element == null) {
+                return Optional.empty();
+            }
+            return Optional.of(valueSerializer.deserialize(snapshotValue(this, element)));
+        }
+        
+        /**
+         * Scans records within a key range as they were when the snapshot was taken.
+         *
+         * @param startKey Start of the key range (inclusive)
+         * @param endKey End of the key range (exclusive), or null for open-ended
+         * @param columns Specific columns to read, or null for all columns
+         * @return The matching records
+         * @throws IOException If an I/O error occurs
+         */
+        public List<Record> scan(byte[] startKey, byte[] endKey, List<String> columns) throws IOException {
+            List<Record> results = new ArrayList<>();
+            try (RecordCursor cursor = openCursor(startKey, endKey, columns)) {
+                while (cursor.hasNext()) {
+                    results.add(cursor.next());
+                }
+            }
+            return results;
+        }
+        
+        /**
+         * Opens a cursor over the snapshot. Closing the cursor leaves the snapshot open.
+         */
+        public RecordCursor openCursor(byte[] startKey, byte[] endKey, List<String> columns) {
+            checkOpen();
+            return new SnapshotCursor(this, false, startKey, endKey, columns);
+        }
+        
+        /**
+         * Releases the snapshot, so writers stop preserving page images for it.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pageVersions.close(epoch);
+            }
+        }
+        
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Snapshot is closed");
+            }
+        }
+    }
+    
+    /**
+     * Cursor over a snapshot. The leaf it is on is a preserved image or a
+     * private copy of the live page, so it holds no latches and no pins
+     * between calls, and the leaf chain it follows is the one of the snapshot.
+     */
+    private final class SnapshotCursor implements RecordCursor {
+        private final Snapshot snapshot;
+        private final boolean ownsSnapshot;
+        private final byte[] endKey;
+        private final List<String> columns;
+        private byte[] startKey;
+        
+        // Image or copy of the current leaf, or null until the cursor descends to startKey
+        private Page leaf;
+        private int index;
+        private boolean exhausted;
+        
+        SnapshotCursor(Snapshot snapshot, boolean ownsSnapshot, byte[] startKey, byte[] endKey, List<String> columns) {
+            this.snapshot = snapshot;
+            this.ownsSnapshot = ownsSnapshot;
+            this.startKey = startKey;
+            this.endKey = endKey;
+            this.columns = columns;
+        }
+        
+        @Override
+        public boolean hasNext() throws IOException {
+            snapshot.checkOpen();
+            while (!exhausted) {
+                if (leaf == null) {
+                    leaf = keepSnapshotPage(snapshot, snapshotLeafId(snapshot, startKey));
+                    int found = leaf.search(startKey);
+                    index = found >= 0 ? found : -found - 1;
+                }
+                if (index < leaf.count()) {
+                    if (endKey != null && leaf.compareKey(index, endKey) >= 0) {
+                        exhausted = true;
+                        break;
+                    }
+                    return true;
+                }
+                long nextPageId = leaf.nextPageId();
+                if (nextPageId == 0) {
+                    exhausted = true;
+                    break;
+                }
+                leaf = keepSnapshotPage(snapshot, nextPageId);
+                index = 0;
+            }
+            return false;
+        }
+        
+        @Override
+        public Record next() throws IOException {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Cursor is exhausted");
+            }
+            Element element = leaf.element(index++);
+            return new Record(element.key(), valueSerializer.deserialize(snapshotValue(snapshot, element), columns));
+        }
+        
+        @Override
+        public void seek(byte[] key) {
+            snapshot.checkOpen();
+            startKey = key;
+            leaf = null;
+            exhausted = false;
+        }
+        
+        @Override
+        public void close() {
+            if (ownsSnapshot) {
+                snapshot.close();
+            }
+        }
+    }
+    
+    /**
+     * Runs a reader on a page as the snapshot sees it, without copying it.
+     * The live page's shared latch is held while the reader runs, so a
+     * writer either preserved the image already or cannot start changing
+     * the page. Overflow pages are latched the same way whenever they are freed.
+     */
+    private <T> T readSnapshotPage(Snapshot snapshot, long pageId, Function<Page, T> reader) throws IOException {
+        Page live = bufferPool.pin(pageId);
+        live.latchShared();
+        try {
+            return reader.apply(snapshotView(snapshot, live));
+        } finally {
+            releaseShared(live);
+        }
+    }
+    
+    /**
+     * Gets a page as the snapshot sees it, for a cursor that keeps it once
+     * the latch is released. A preserved image never changes, so only a
+     * live page is copied.
+     */
+    private Page keepSnapshotPage(Snapshot snapshot, long pageId) throws IOException {
+        Page live = bufferPool.pin(pageId);
+        live.latchShared();
+        try {
+            Page page = snapshotView(snapshot, live);
+            return page != live ? page : new Page(ByteBuffer.wrap(live.copyData()).asReadOnlyBuffer(), pageId);
+        } finally {
+            releaseShared(live);
+        }
+    }
+    
+    // The image preserved for a latched live page if the snapshot needs one, otherwise the live page
+    private Page snapshotView(Snapshot snapshot, Page live) {
+        byte[] image = pageVersions.imageAt(live.getPageId(), snapshot.epoch);
+        return image == null ? live : new Page(ByteBuffer.wrap(image).asReadOnlyBuffer(), live.getPageId());
+    }
+    
+    // Descends through the branches as the snapshot sees them; only the child ID leaves each latch
+    private long snapshotLeafId(Snapshot snapshot, byte[] key) throws IOException {
+        long pageId = snapshot.rootPageId;
+        long childId;
+        while ((childId = readSnapshotPage(snapshot, pageId, page -> page.isBranch() ? childPageId(page, key) : 0L)) != 0) {
+            pageId = childId;
+        }
+        return pageId;
+    }
+    
+    // The value of a snapshot leaf element, following its overflow chain as the snapshot sees it
+    private byte[] snapshotValue(Snapshot snapshot, Element element) throws IOException {
+        if (!element.hasOverflow()) {
+            return element.value();
+        }
+        byte[] value = new byte[element.overflowLength()];
+        long pageId = element.overflowPageId();
+        int offset = 0;
+        while (offset < value.length) {
+            if (pageId == 0) {
+                throw new IOException("Overflow chain ends after " + offset + " of " + value.length + " bytes");
+            }
+            Page live = bufferPool.pin(pageId);
+            live.latchShared();
+            try {
+                // Copied straight into the value, whichever image the page is read from
+                Page page = snapshotView(snapshot, live);
+                offset += page.readOverflowData(value, offset);
+                pageId = page.nextPageId();
+            } finally {
+                releaseShared(live);
+            }
+        }
+        return value;
+    }
+    
+    @Override
+    public void delete(byte[] key) throws IOException {
+        long commitLsn;
+        writerLock.lock();
+        try {
+            remove(key);
+            commitLsn = logCommit();
+        } finally {
+            writerLock.unlock();
+        }
+        awaitCommit(commitLsn);
+    }
+    
+    /**
+     * Removes a key without committing it to the write-ahead log. A page left
+     * less than a quarter full is merged with a sibling, or refilled from it
+     * when both do not fit in one page; a merge removes a separator from the
+     * parent, which can underflow in turn. A root branch left with a single
+     * child is replaced by that child, so the tree shrinks from the top.
+     * The caller must hold the writer lock.
+     */
+    private void remove(byte[] key) throws IOException {
+        System.out.println("B+Tree Delete Operation Starting");
+        System.out.println("   Key: " + new String(key));
+        
+        // Latch the pages a merge could reach, from the highest unsafe ancestor down to the leaf
+        List<Page> path = latchPath(key, this::isSafeForDelete);
+        try {
+            int level = path.size() - 1;
+            Page leafPage = path.get(level);
+            int index = leafPage.search(key);
+            if (index < 0) {
+                System.out.println("   NOT FOUND: Key not found: " + new String(key));
+                System.out.println();
+                return;
+            }
+            
+            Element removed = leafPage.element(index);
+            leafPage.remove(index);
+            bufferPool.markDirty(leafPage);
+            if (removed.hasOverflow()) {
+                freeOverflowPages(removed.overflowPageId());
+            }
+            
+            // Rebalance upwards while pages underflow; a refill leaves the parent's size (almost) unchanged
+            while (level > 0 && isUnderflowing(path.get(level))) {
+                if (!rebalance(path.get(level - 1), path.get(level), key)) {
+                    break;
+                }
+                level--;
+            }
+            
+            Page top = path.get(0);
+            if (top.getPageId() == rootPageId && top.isBranch() && top.count() == 1) {
+                collapseRoot(top);
+            }
+        } finally {
+            releaseExclusive(path);
+        }
+        
+        demonstrateBTreeInvariants("deletion");
+        System.out.println("   SUCCESS: Successfully deleted key: " + new String(key));
+        System.out.println();
+    }
+    
+    /**
+     * A page is safe for a delete if it stays at least minimally filled after
+     * losing its largest possible element, so it never needs its parent.
+     */
+    private boolean isSafeForDelete(Page page) {
+        int largestElement = page.isLeaf()
+            ? maxInlineElementSize
+            : Page.SLOT_SIZE + Page.ELEM_HEADER_SIZE + maxKeySize + Long.BYTES;
+        return usedBytes(page) - largestElement >= minFillBytes && (page.isLeaf() || page.count() > 2);
+    }
+    
+    private boolean isUnderflowing(Page page) {
+        return usedBytes(page) < minFillBytes || (page.isBranch() && page.count() < 2);
+    }
+    
+    private int usedBytes(Page page) {
+        return pageManager.getPageSize() - Page.PAGE_HEADER_SIZE - page.freeSpace();
+    }
+    
+    /**
+     * Merges an underflowing child with a sibling, or moves elements over from
+     * the sibling. The right sibling is preferred. The left sibling is only
+     * used if its latch is free right away: scans latch pages left to right,
+     * so waiting for it while holding the child could deadlock. Otherwise the
+     * child is simply left underfull, which is still a valid tree.
+     *
+     * @param parent The exclusively latched parent
+     * @param child The exclusively latched, underflowing child
+     * @param key The deleted key, used to find the child in its parent
+     * @return true if the pages were merged, so the parent lost an element
+     */
+    private boolean rebalance(Page parent, Page child, byte[] key) throws IOException {
+        int childIndex = findChildIndex(parent, key);
+        if (childIndex + 1 < parent.count()) {
+            Page right = bufferPool.pin(childPageIdAt(parent, childIndex + 1));
+            latchForWrite(right);
+            try {
+                return mergeOrRedistribute(parent, childIndex + 1, child, right);
+            } finally {
+                releaseExclusive(right);
+            }
+        }
+        
+        if (childIndex > 0) {
+            Page left = bufferPool.pin(childPageIdAt(parent, childIndex - 1));
+            if (!left.tryLatchExclusive()) {
+                bufferPool.unpin(left);
+                System.out.println("   ⏭️  REBALANCE - left sibling of page " + child.getPageId()
+                    + " is busy, leaving it underfull");
+                return false;
+            }
+            pageVersions.beforeWrite(left);
+            try {
+                return mergeOrRedistribute(parent, childIndex, left, child);
+            } finally {
+                releaseExclusive(left);
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Rebalances two adjacent siblings: if their elements fit in one page the
+     * right page is merged into the left and freed, otherwise the elements
+     * are split evenly (by bytes) between them and the parent's separator is
+     * replaced.
+     *
+     * @param parent The parent of both pages
+     * @param rightIndex Index of the right page's entry in the parent
+     * @return true if the pages were merged
+     */
+    private boolean mergeOrRedistribute(Page parent, int rightIndex, Page left, Page right) throws IOException {
+        byte[] separatorKey = parent.keyAt(rightIndex);
+        
+        // In a branch, the parent's separator takes the place of the right page's empty first key
+        List<Element> elements = new ArrayList<>();
+        for (int i = 0; i < left.count(); i++) {
+            elements.add(left.element(i));
+        }
+        for (int i = 0; i < right.count(); i++) {
+            Element element = right.element(i);
+            elements.add(i == 0 && right.isBranch() ? new Element(separatorKey, element.value(), false) : element);
+        }
+        
+        int totalBytes = 0;
+        for (Element element : elements) {
+            totalBytes += elementSize(element);
+        }
+        
+        if (totalBytes <= pageManager.getPageSize() - Page.PAGE_HEADER_SIZE) {
+            fillPage(left, elements, 0, elements.size());
+            if (left.isLeaf()) {
+                left.setNextPageId(right.nextPageId());
+            }
+            parent.remove(rightIndex);
+            bufferPool.markDirty(left);
+            bufferPool.markDirty(parent);
+            freePage(right);
+            System.out.println("   🔗 MERGE - page " + right.getPageId() + " merged into page " + left.getPageId());
+            return true;
+        }
+        
+        // Split point: the first element that takes the left half past the middle
+        int splitIndex = 0;
+        int leftBytes = 0;
+        while (splitIndex < elements.size() - 1 && leftBytes + elementSize(elements.get(splitIndex)) <= totalBytes / 2) {
+            leftBytes += elementSize(elements.get(splitIndex));
+            splitIndex++;
+        }
+        splitIndex = Math.max(1, splitIndex);
+        
+        // Leaf separators can be shortened; a branch separator is pushed up as it is
+        byte[] newSeparatorKey = left.isLeaf()
+            ? shortestSeparator(elements.get(splitIndex - 1).key(), elements.get(splitIndex).key())
+            : elements.get(splitIndex).key();
+        if (newSeparatorKey.length - separatorKey.length > parent.freeSpace()) {
+            // The parent cannot take a longer separator without splitting; leave the pages as they are
+            return false;
+        }
+        
+        fillPage(left, elements, 0, splitIndex);
+        if (right.isBranch()) {
+            // The new separator moves up; its child becomes the right page's leftmost entry
+            elements.set(splitIndex, new Element(new byte[0], elements.get(splitIndex).value(), false));
+        }
+        fillPage(right, elements, splitIndex, elements.size());
+        
+        byte[] rightPageIdBytes = parent.element(rightIndex).value();
+        parent.remove(rightIndex);
+        parent.insert(newSeparatorKey, rightPageIdBytes);
+        
+        bufferPool.markDirty(left);
+        bufferPool.markDirty(right);
+        bufferPool.markDirty(parent);
+        System.out.println("   ⚖️  REDISTRIBUTE - pages " + left.getPageId() + " and " + right.getPageId()
+            + " now split at " + new String(newSeparatorKey));
+        return false;
+    }
+    
+    /**
+     * Replaces the contents of a page with a range of elements, keeping its
+     * flags and leaf link.
+     */
+    private void fillPage(Page page, List<Element> elements, int from, int to) {
+        page.clear();
+        for (int i = from; i < to; i++) {
+            Element element = elements.get(i);
+            if (!page.insert(element.key(), element.value(), element.hasOverflow())) {
+                throw new IllegalStateException("Rebalanced elements do not fit in page " + page.getPageId());
+            }
+        }
+    }
+    
+    /**
+     * Finds the shortest key that separates two adjacent leaf keys: greater
+     * than the last key of the left page and no greater than the first key of
+     * the right page. It is a prefix of the right key one byte longer than
+     * what both keys share, so customer_000199 | customer_000200 is separated
+     * by customer_0002. Shorter separators mean more children per branch page
+     * and a flatter tree.
+     *
+     * Only leaf separators are shortened. A branch split pushes up a separator
+     * that already is one, since the left branch may hold keys up to it.
+     */
+    static byte[] shortestSeparator(byte[] leftKey, byte[] rightKey) {
+        int mismatch = Arrays.mismatch(leftKey, rightKey);
+        return Arrays.copyOf(rightKey, Math.min(rightKey.length, mismatch + 1));
+    }
+    
+    private static int elementSize(Element element) {
+        return Page.SLOT_SIZE + Page.ELEM_HEADER_SIZE + element.key().length + element.value().length;
+    }
+    
+    /**
+     * Makes the only child of the root the new root. The old root stays
+     * latched until the new root ID is published, so readers that reach it
+     * start again from the new root.
+     */
+    private void collapseRoot(Page oldRoot) throws IOException {
+        rootPageId = childPageIdAt(oldRoot, 0);
+        saveMetadata();
+        freePage(oldRoot);
+        System.out.println("   🌳 ROOT COLLAPSE - root page " + oldRoot.getPageId() + " replaced by its only child "
+            + rootPageId);
+    }
+    
+    @Override
+    public void writeBatch(List<Record> records) throws IOException {
+        long commitLsn;
+        writerLock.lock();
+        try {
+            for (Record record : records) {
+                insert(record.getKey(), record.getValue());
+            }
+            // One log record group and one fsync for the whole batch
+            commitLsn = logCommit();
+        } finally {
+            writerLock.unlock();
+        }
+        awaitCommit(commitLsn);
+    }
+    
+    /**
+     * Builds the tree bottom-up from records sorted by key, instead of
+     * inserting them one at a time.
+     *
+     * Leaves are filled left to right up to the configured fill factor and
+     * linked as they are written, then each branch level is built from the
+     * first keys of the level below, until a single root remains. Pages are
+     * allocated (and therefore written) in ascending order, nothing is ever
+     * split, and the metadata page is updated once at the end. The Bloom
+     * filter is rebuilt from the loaded keys, sized for the final count.
+     *
+     * @param sortedRecords Records in strictly ascending key order
+     * @throws IllegalStateException If the tree already contains data
+     * @throws IllegalArgumentException If the input is not sorted or has duplicate keys
+     * @throws IOException If an I/O error occurs
+     */
+    public void bulkLoad(Iterator<Record> sortedRecords) throws IOException {
+        writerLock.lock();
+        try {
+            if (!isEmpty()) {
+                throw new IllegalStateException("Bulk load requires an empty tree");
+            }
+            
+            // The empty root becomes the first leaf; readers wait on it until the new root is published
+            Page oldRoot = bufferPool.pin(rootPageId);
+            latchForWrite(oldRoot);
+            int leafPages;
+            int height = 1;
+            try {
+                System.out.println("📚 BULK LOAD - building leaves left to right (" + bulkLoadFillBytes + " bytes per page)");
+                KeyHashes keyHashes = keyFilter != null ? new KeyHashes() : null;
+                List<ChildPointer> level = buildLeafLevel(sortedRecords, keyHashes);
+                leafPages = level.size();
+                
+                while (level.size() > 1) {
+                    level = buildBranchLevel(level);
+                    height++;
+                }
+                
+                // The filter must know every key before readers can reach the new root
+                if (keyHashes != null) {
+                    keyFilter = keyHashes.toFilter(bloomFilterBitsPerKey);
+                }
+                
+                // Publish the new tree with a single metadata update
+                rootPageId = level.get(0).pageId;
+                saveMetadata();
+            } finally {
+                releaseExclusive(oldRoot);
+            }
+            commit();
+            
+            System.out.println("   SUCCESS: Bulk loaded " + leafPages + " leaf pages, tree height " + height
+                + ", root page " + rootPageId);
+            System.out.println();
+        } finally {
+            writerLock.unlock();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        writerLock.lock();
+        try {
+            if (readAhead != null) {
+                readAhead.close();
+            }
+            bufferPool.checkpoint();
+            if (keyFilter != null) {
+                // Only after the pages it describes are on disk
+                keyFilter.save(keyFilterPath);
+            }
+            printBufferPoolStatistics();
+            if (writeAheadLog != null) {
+                writeAheadLog.close();
+            }
+            pageManager.close();
+        } finally {
+            writerLock.unlock();
+        }
+    }
+    
+    /**
+     * Makes all pages modified since the last commit durable in the write-ahead
+     * log. The caller must hold the writer lock.
+     */
+    private void commit() throws IOException {
+        awaitCommit(logCommit());
+    }
+    
+    /**
+     * Appends the pages modified since the last commit to the write-ahead log.
+     * Must be called with the writer lock held, so no other insert is halfway
+     * through changing those pages.
+     *
+     * @return The commit LSN to pass to awaitCommit(), or 0 if there is nothing to wait for
+     */
+    private long logCommit() throws IOException {
+        return writeAheadLog == null ? 0 : bufferPool.commit();
+    }
+    
+    /**
+     * Waits until the log is durable up to the given commit. Called without
+     * the writer lock, so commits from concurrent writers share a single log
+     * fsync (group commit). Once the log grows past the checkpoint threshold,
+     * dirty pages are written back and the log is truncated.
+     */
+    private void awaitCommit(long lsn) throws IOException {
+        if (writeAheadLog == null) {
+            return;
+        }
+        
+        if (lsn > 0) {
+            writeAheadLog.sync(lsn);
+            bufferPool.releaseCommitted();
+        }
+        
+        if (writeAheadLog.size() >= checkpointThresholdBytes) {
+            writerLock.lock();
+            try {
+                // Another writer may have checkpointed while we waited for the lock
+                if (writeAheadLog.size() >= checkpointThresholdBytes) {
+                    bufferPool.checkpoint();
+                }
+            } finally {
+                writerLock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Cursor over a key range that walks the leaf chain lazily.
+     *
+     * The matching elements of one leaf are copied while the leaf is share
+     * latched; then the latch is released, so a slow consumer never blocks
+     * writers, and only one leaf's worth of records is held in memory. The
+     * leaf stays pinned together with its version. When the copy is used up,
+     * the cursor latches the leaf again: if no writer latched it in between,
+     * its nextPageId is still right and the cursor steps to the next leaf with
+     * latch coupling. Otherwise the leaf may have been split, merged or freed,
+     * and the cursor descends from the root to the first key after the last
+     * one it returned.
+     */
+    private class LeafCursor implements RecordCursor {
+        private final byte[] endKey;
+        private final List<String> columns;
+        
+        // Rows copied from the current leaf; overflowed values are already resolved
+        private final LeafRows rows = new LeafRows(pageManager.getPageSize());
+        
+        // The pinned, unlatched leaf the buffer came from, and its version at that time
+        private Page leaf;
+        private long leafVersion;
+        
+        // Keys below the bound (or equal to it, once it has been returned) are skipped
+        private byte[] lowerBound;
+        private boolean lowerBoundInclusive = true;
+        
+        private boolean exhausted;
+        private boolean closed;
+        
+        // Leaves reached in a row through nextPageId, and the read-ahead started for them
+        private int sequentialSteps;
+        private Future<?> readAheadTask;
+        
+        LeafCursor(byte[] startKey, byte[] endKey, List<String> columns) {
+            this.lowerBound = startKey;
+            this.endKey = endKey;
+            this.columns = columns;
+        }
+        
+        @Override
+        public boolean hasNext() throws IOException {
+            checkOpen();
+            while (!rows.hasRemaining() && !exhausted) {
+                // The rows are about to be replaced; remember where the cursor stands
+                if (rows.position() > 0) {
+                    lowerBound = rows.key(rows.position() - 1);
+                    lowerBoundInclusive = false;
+                }
+                rows.clear();
+                
+                Page page = leaf != null ? stepToNextLeaf() : null;
+                if (exhausted) {
+                    break;
+                }
+                if (page == null) {
+                    page = findLeafPage(lowerBound);
+                }
+                copyLeaf(page);
+            }
+            return rows.hasRemaining();
+        }
+        
+        @Override
+        public Record next() throws IOException {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Cursor is exhausted");
+            }
+            int row = rows.advance();
+            return new Record(rows.key(row),
+                valueSerializer.deserialize(rows.data, rows.valueOffset(row), rows.valueLength(row), columns));
+        }
+        
+        /**
+         * Positions a projected row view on the next row, without allocating.
+         *
+         * @throws NoSuchElementException If the cursor is exhausted
+         */
+        void nextInto(ProjectedRow view) throws IOException {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Cursor is exhausted");
+            }
+            int row = rows.advance();
+            view.reset(rows.data, rows.keyOffset(row), rows.keyLength(row), rows.valueOffset(row), rows.valueLength(row));
+        }
+        
+        @Override
+        public void seek(byte[] key) throws IOException {
+            checkOpen();
+            releaseLeaf();
+            rows.clear();
+            sequentialSteps = 0;
+            lowerBound = key;
+            lowerBoundInclusive = true;
+            exhausted = false;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                releaseLeaf();
+                rows.clear();
+            }
+        }
+        
+        /**
+         * Follows the current leaf's nextPageId if the leaf is unchanged.
+         *
+         * @return The next leaf, share latched, or null if the cursor must descend from the root
+         */
+        private Page stepToNextLeaf() throws IOException {
+            Page current = leaf;
+            leaf = null;
+            current.latchShared();
+            try {
+                if (!current.validate(leafVersion)) {
+                    sequentialSteps = 0;
+                    return null;
+                }
+                long nextPageId = current.nextPageId();
+                if (nextPageId == 0) {
+                    exhausted = true;
+                    return null;
+                }
+                Page next = bufferPool.pin(nextPageId);
+                next.latchShared();
+                sequentialSteps++;
+                readAheadFrom(next);
+                return next;
+            } finally {
+                releaseShared(current);
+            }
+        }
+        
+        /**
+         * Copies the elements of a share-latched leaf that lie within the
+         * range, then unlatches it but keeps it pinned.
+         */
+        private void copyLeaf(Page page) throws IOException {
+            try {
+                int index = page.search(lowerBound);
+                int first = index >= 0 ? (lowerBoundInclusive ? index : index + 1) : -index - 1;
+                for (int i = first; i < page.count(); i++) {
+                    if (endKey != null && page.compareKey(i, endKey) >= 0) {
+                        exhausted = true;
+                        break;
+                    }
+                    if (page.hasOverflowAt(i)) {
+                        // The leaf is latched, so an overflow chain cannot be freed while it is read
+                        Element element = page.element(i);
+                        rows.add(element.key(), readFromOverflowPages(element));
+                    } else {
+                        rows.add(page, i);
+                    }
+                }
+                if (page.nextPageId() == 0) {
+                    exhausted = true;
+                }
+                leafVersion = page.optimisticVersion();
+            } catch (IOException | RuntimeException e) {
+                releaseShared(page);
+                throw e;
+            }
+            
+            if (exhausted) {
+                releaseShared(page);
+            } else {
+                page.unlatchShared();
+                leaf = page;
+            }
+        }
+        
+        /**
+         * Once the scan is sequential, keeps the read-ahead window filled past
+         * the given (latched) leaf. A new request is only made when the last
+         * one has finished, so requests never pile up.
+         */
+        private void readAheadFrom(Page page) {
+            if (readAhead == null || sequentialSteps < READ_AHEAD_TRIGGER_STEPS || page.nextPageId() == 0) {
+                return;
+            }
+            if (readAheadTask != null && !readAheadTask.isDone()) {
+                return;
+            }
+            if (sequentialSteps == READ_AHEAD_TRIGGER_STEPS) {
+                System.out.println("   🔮 READ-AHEAD - sequential scan detected, prefetching up to "
+                    + readAhead.getWindowPages() + " leaves ahead");
+            }
+            try {
+                readAheadTask = readAhead.prefetchChain(page.nextPageId());
+            } catch (RejectedExecutionException e) {
+                // The tree is closing; the scan reads its pages itself
+            }
+        }
+        
+        private void releaseLeaf() throws IOException {
+            if (leaf != null) {
+                bufferPool.unpin(leaf);
+                leaf = null;
+            }
+        }
+        
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Cursor is closed");
+            }
+        }
+    }
+    
+    /**
+     * Keys and values of the rows a cursor copied out of one leaf, packed into
+     * one array that is reused for every leaf, so stepping through a range
+     * allocates nothing per row.
+     */
+    private static final class LeafRows {
+        byte[] data;
+        // keyOffset, keyLength, valueOffset and valueLength of each row
+        private int[] bounds = new int[4 * 64];
+        private int count;
+        private int position;
+        private int used;
+        
+        /**
+         * @param pageSize A leaf's rows take about a page, so the array rarely has to grow
+         */
+        LeafRows(int pageSize) {
+            this.data = new byte[pageSize];
+        }
+        
+        void add(Page page, int index) {
+            int keyLength = page.keyLengthAt(index);
+            int valueLength = page.valueLengthAt(index);
+            int keyOffset = reserve(keyLength + valueLength);
+            page.copyKeyAt(index, data, keyOffset);
+            page.copyValueAt(index, data, keyOffset + keyLength);
+            addBounds(keyOffset, keyLength, valueLength);
+        }
+        
+        void add(byte[] key, byte[] value) {
+            int keyOffset = reserve(key.length + value.length);
+            System.arraycopy(key, 0, data, keyOffset, key.length);
+            System.arraycopy(value, 0, data, keyOffset + key.length, value.length);
+            addBounds(keyOffset, key.length, value.length);
+        }
+        
+        boolean hasRemaining() {
+            return position < count;
+        }
+        
+        /**
+         * Gets the number of rows already returned.
+         */
+        int position() {
+            return position;
+        }
+        
+        int advance() {
+            return position++;
+        }
+        
+        void clear() {
+            count = 0;
+            position = 0;
+            used = 0;
+        }
+        
+        byte[] key(int row) {
+            return Arrays.copyOfRange(data, keyOffset(row), keyOffset(row) + keyLength(row));
+        }
+        
+        int keyOffset(int row) {
+            return bounds[row * 4];
+        }
+        
+        int keyLength(int row) {
+            return bounds[row * 4 + 1];
+        }
+        
+        int valueOffset(int row) {
+            return bounds[row * 4 + 2];
+        }
+        
+        int valueLength(int row) {
+            return bounds[row * 4 + 3];
+        }
+        
+        private int reserve(int length) {
+            if (used + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, used + length));
+            }
+            int offset = used;
+            used += length;
+            return offset;
+        }
+        
+        private void addBounds(int keyOffset, int keyLength, int valueLength) {
+            if ((count + 1) * 4 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[count * 4] = keyOffset;
+            bounds[count * 4 + 1] = keyLength;
+            bounds[count * 4 + 2] = keyOffset + keyLength;
+            bounds[count * 4 + 3] = valueLength;
+            count++;
+        }
+    }
+    
+    // Helper methods...
+    
+    /**
+     * Separator of a page (a key no greater than its first key and greater than
+     * every key of the page before it) and the page ID; one entry per page of
+     * the level below.
+     */
+    private static class ChildPointer {
+        final byte[] firstKey;
+        final long pageId;
+        
+        ChildPointer(byte[] firstKey, long pageId) {
+            this.firstKey = firstKey;
+            this.pageId = pageId;
+        }
+    }
+    
+    /**
+     * Hashes of keys collected before the final key count is known, so a
+     * Bloom filter can be sized for all of them and built in one go.
+     */
+    private static final class KeyHashes {
+        private long[] hashes = new long[1024];
+        private int size;
+        
+        void add(long hash) {
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            hashes[size++] = hash;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        BloomFilter toFilter(int bitsPerKey) {
+            BloomFilter filter = BloomFilter.create(Math.max(MIN_KEY_FILTER_KEYS, 2L * size), bitsPerKey);
+            for (int i = 0; i < size; i++) {
+                filter.add(hashes[i]);
+            }
+            return filter;
+        }
+    }
+    
+    private boolean isEmpty() throws IOException {
+        Page root = bufferPool.pin(rootPageId);
+        try {
+            return root.count() == 0;
+        } finally {
+            bufferPool.unpin(root);
+        }
+    }
+    
+    /**
+     * Fills leaf pages left to right. The existing empty root leaf becomes the first leaf.
+     * The hash of every key is collected into keyHashes unless it is null.
+     */
+    private List<ChildPointer> buildLeafLevel(Iterator<Record> sortedRecords, KeyHashes keyHashes) throws IOException {
+        List<ChildPointer> leaves = new ArrayList<>();
+        byte[] previousKey = null;
+        int finishedPages = 0;
+        
+        Page leaf = bufferPool.pin(rootPageId);
+        try {
+            leaf.setFlags(Page.FLAG_LEAF);
+            leaves.add(new ChildPointer(new byte[0], leaf.getPageId()));
+            
+            while (sortedRecords.hasNext()) {
+                Record record = sortedRecords.next();
+                byte[] key = record.getKey();
+                checkKeySize(key);
+                if (previousKey != null && compareKeys(previousKey, key) >= 0) {
+                    throw new IllegalArgumentException("Bulk load input must be sorted with unique keys: '"
+                        + new String(key) + "' follows '" + new String(previousKey) + "'");
+                }
+                Element element = storeValue(key, valueSerializer.serialize(record.getValue()));
+                
+                if (leaf.count() > 0 && !fitsWithinFillFactor(leaf, key, element.value())
+                        && !(leaf.compressKeys() && fitsWithinFillFactor(leaf, key, element.value()))) {
+                    Page next = bufferPool.newPage();
+                    next.setFlags(Page.FLAG_LEAF);
+                    leaf.setNextPageId(next.getPageId());
+                    
+                    Page finished = leaf;
+                    leaf = next;
+                    finishBulkLoadPage(finished, ++finishedPages);
+                    leaves.add(new ChildPointer(shortestSeparator(previousKey, key), leaf.getPageId()));
+                }
+                
+                if (!leaf.insert(key, element.value(), element.hasOverflow())) {
+                    throw new IOException("Record '" + new String(key) + "' does not fit in an empty page");
+                }
+                if (keyHashes != null) {
+                    keyHashes.add(BloomFilter.hash(key));
+                }
+                previousKey = key;
+            }
+            bufferPool.markDirty(leaf);
+        } finally {
+            bufferPool.unpin(leaf);
+        }
+        return leaves;
+    }
+    
+    /**
+     * Builds one branch level on top of the given pages. The first entry of
+     * each branch page has an empty key, like the root created by a split.
+     */
+    private List<ChildPointer> buildBranchLevel(List<ChildPointer> children) throws IOException {
+        List<ChildPointer> parents = new ArrayList<>();
+        int finishedPages = 0;
+        Page branch = null;
+        try {
+            for (ChildPointer child : children) {
+                byte[] pointer = ByteBuffer.allocate(8).putLong(child.pageId).array();
+                
+                // Every branch gets at least two children so each level is at most half the one below
+                if (branch != null && branch.count() >= 2 && !fitsWithinFillFactor(branch, child.firstKey, pointer)
+                        && !(branch.compressKeys() && fitsWithinFillFactor(branch, child.firstKey, pointer))) {
+                    Page finished = branch;
+                    branch = null;
+                    finishBulkLoadPage(finished, ++finishedPages);
+                }
+                
+                if (branch == null) {
+                    branch = bufferPool.newPage();
+                    branch.setFlags(Page.FLAG_BRANCH);
+                    branch.insert(new byte[0], pointer);
+                    parents.add(new ChildPointer(child.firstKey, branch.getPageId()));
+                } else if (!branch.insert(child.firstKey, pointer)) {
+                    throw new IOException("Separator key '" + new String(child.firstKey) + "' does not fit in a branch page");
+                }
+            }
+            bufferPool.markDirty(branch);
+        } finally {
+            if (branch != null) {
+                bufferPool.unpin(branch);
+            }
+        }
+        return parents;
+    }
+    
+    private boolean fitsWithinFillFactor(Page page, byte[] key, byte[] value) {
+        int used = pageManager.getPageSize() - Page.PAGE_HEADER_SIZE - page.freeSpace();
+        return used + Page.SLOT_SIZE + Page.ELEM_HEADER_SIZE + key.length + value.length <= bulkLoadFillBytes;
+    }
+    
+    private void finishBulkLoadPage(Page page, int finishedPages) throws IOException {
+        bufferPool.markDirty(page);
+        bufferPool.unpin(page);
+        if (finishedPages % BULK_LOAD_COMMIT_INTERVAL == 0) {
+            // Keep the no-steal pool from holding the whole load in memory
+            commit();
+        }
+    }
+    
+    /**
+     * Descends from the root to the leaf page that may contain the key.
+     * Each child is latched before its parent is released (lock coupling),
+     * so at most two pages are pinned at a time.
+     *
+     * @return The pinned, shared-latched leaf page; the caller must release it with releaseShared()
+     */
+    private Page findLeafPage(byte[] key) throws IOException {
+        Page currentPage = latchRootShared();
+        while (currentPage.isBranch()) {
+            Page childPage;
+            try {
+                childPage = bufferPool.pin(childPageId(currentPage, key));
+                childPage.latchShared();
+            } finally {
+                releaseShared(currentPage);
+            }
+            currentPage = childPage;
+        }
+        return currentPage;
+    }
+    
+    /**
+     * Looks up the value stored under a key, optimistically if enabled.
+     * Overflow pages are only read here, once the key has been found.
+     *
+     * @return The serialized value, or null if the key is not in the tree
+     */
+    private byte[] findValue(byte[] key) throws IOException {
+        if (optimisticReads) {
+            for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+                byte[] value = findValueOptimistic(key);
+                if (value != RESTART) {
+                    return value;
+                }
+                optimisticRestarts.incrementAndGet();
+            }
+            System.out.println("   🔒 Optimistic read restarted " + OPTIMISTIC_READ_ATTEMPTS
+                + " times, falling back to latches");
+        }
+        
+        Page leaf = findLeafPage(key);
+        try {
+            // Binary search for the key in the leaf node
+            int index = leaf.search(key);
+            if (index < 0) {
+                return null;
+            }
+            Element element = leaf.element(index);
+            return element.hasOverflow() ? readFromOverflowPages(element) : element.value();
+        } finally {
+            releaseShared(leaf);
+        }
+    }
+    
+    /**
+     * Descends without latches, validating every page version before acting
+     * on what was read from the page. Resident pages are read in place
+     * without even a pin (BufferPool.peek); only pages that have to be loaded
+     * are pinned, and only until the next page's version has been taken.
+     *
+     * @return The serialized value, null if the key is not in the tree, or RESTART if a writer interfered
+     */
+    private byte[] findValueOptimistic(byte[] key) throws IOException {
+        long rootId = rootPageId;
+        Page page = bufferPool.peek(rootId);
+        Page pinned = page == null ? bufferPool.pin(rootId) : null;
+        if (page == null) {
+            page = pinned;
+        }
+        long version = page.optimisticVersion();
+        try {
+            // A root split publishes the new root ID before releasing the old root
+            if (version == 0 || rootId != rootPageId) {
+                return RESTART;
+            }
+            while (page.isBranch()) {
+                long childId = childPageId(page, key);
+                if (!page.validate(version)) {
+                    return RESTART;
+                }
+                
+                Page child = bufferPool.peek(childId);
+                Page childPin = child == null ? bufferPool.pin(childId) : null;
+                if (child == null) {
+                    child = childPin;
+                }
+                long childVersion = child.optimisticVersion();
+                
+                // The parent must still be unchanged once the child's version is taken
+                boolean parentValid = page.validate(version);
+                Page parentPin = pinned;
+                pinned = childPin;
+                page = child;
+                version = childVersion;
+                if (parentPin != null) {
+                    bufferPool.unpin(parentPin);
+                }
+                if (version == 0 || !parentValid) {
+                    return RESTART;
+                }
+            }
+            
+            int index = page.search(key);
+            Element element = index >= 0 ? page.element(index) : null;
+            if (!page.validate(version)) {
+                return RESTART;
+            }
+            if (element == null || !element.hasOverflow()) {
+                return element == null ? null : element.value();
+            }
+            
+            // Replacing the value frees its chain under the leaf latch, so a still-valid leaf means an intact chain
+            byte[] value = readFromOverflowPages(element);
+            return page.validate(version) ? value : RESTART;
+        } catch (IOException | RuntimeException e) {
+            // A page changing under an optimistic reader can look corrupt; only a valid page is really broken
+            if (page.validate(version)) {
+                throw e;
+            }
+            return RESTART;
+        } finally {
+            if (pinned != null) {
+                bufferPool.unpin(pinned);
+            }
+        }
+    }
+    
+    /**
+     * Pins and share-latches the current root. A writer publishes a new root
+     * while it still holds the old one, so re-checking the root ID after the
+     * latch is granted detects a root split that happened in between.
+     */
+    private Page latchRootShared() throws IOException {
+        while (true) {
+            long rootId = rootPageId;
+            Page root = bufferPool.pin(rootId);
+            root.latchShared();
+            if (rootId == rootPageId) {
+                return root;
+            }
+            releaseShared(root);
+        }
+    }
+    
+    private long childPageId(Page branchPage, byte[] key) {
+        return childPageIdAt(branchPage, findChildIndex(branchPage, key));
+    }
+    
+    private long childPageIdAt(Page branchPage, int index) {
+        return ByteBuffer.wrap(branchPage.element(index).value()).getLong();
+    }
+    
+    /**
+     * Latches a page that is about to change, preserving its current image
+     * first if an open snapshot may still need it (see PageVersions).
+     */
+    private void latchForWrite(Page page) {
+        page.latchExclusive();
+        pageVersions.beforeWrite(page);
+    }
+    
+    private void releaseShared(Page page) throws IOException {
+        page.unlatchShared();
+        bufferPool.unpin(page);
+    }
+    
+    private void releaseExclusive(Page page) throws IOException {
+        page.unlatchExclusive();
+        bufferPool.unpin(page);
+    }
+    
+    private void releaseExclusive(List<Page> pages) throws IOException {
+        for (Page page : pages) {
+            page.unlatchExclusive();
+        }
+        for (Page page : pages) {
+            bufferPool.unpin(page);
+        }
+    }
+    
+    private int findChildIndex(Page page, byte[] key) {
+        // The first entry of a branch page has an empty key (points to leftmost child),
+        // so the child covering the key is the last entry whose key is <= key
+        return Math.max(0, page.floorIndex(key));
+    }
+    
+    private int compareKeys(byte[] a, byte[] b) {
+        return Arrays.compare(a, b);
+    }
+    
+    // ========================================
+    // EDUCATIONAL HELPER METHODS FOR STEP 1.1
+    // ========================================
+    
+    /**
+     * Educational logging for workshop demonstrations.
      */
     private void logEducational(String message) {
         System.out.println("   EDUCATIONAL: " + message);
@@ -655,6 +2380,13 @@ public class BTree implements StorageInterface {
         System.out.println("   Root Page ID: " + rootPageId);
     }
     
+    /**
+     * Gets the number of levels in the tree (1 for a single leaf).
+     */
+    int getTreeHeight() {
+        return calculateTreeHeight();
+    }
+    
     /**
      * Calculates and returns the current height of the B+Tree for educational purposes.
      */
@@ -663,20 +2395,20 @@ public class BTree implements StorageInterface {
             if (rootPageId == 0) return 0;
             
             int height = 1;
-            long currentPageId = rootPageId;
-            Page currentPage = pageManager.readPage(currentPageId);
+            Page currentPage = bufferPool.pin(rootPageId);
             
             // Navigate down to a leaf to count levels
-            while (currentPage.isBranch()) {
-                height++;
-                if (currentPage.count() > 0) {
+            try {
+                while (currentPage.isBranch() && currentPage.count() > 0) {
+                    height++;
                     Element firstElement = currentPage.element(0);
                     ByteBuffer buffer = ByteBuffer.wrap(firstElement.value());
-                    currentPageId = buffer.getLong();
-                    currentPage = pageManager.readPage(currentPageId);
-                } else {
-                    break;
+                    Page childPage = bufferPool.pin(buffer.getLong());
+                    bufferPool.unpin(currentPage);
+                    currentPage = childPage;
                 }
+            } finally {
+                bufferPool.unpin(currentPage);
             }
             
             return height;
@@ -721,7 +2453,7 @@ public class BTree implements StorageInterface {
      * STEP 1: Collects all elements from a page plus a new element for redistribution.
      * This is the first step in the B+Tree splitting algorithm.
      */
-    private List<Element> collectAllElements(Page page, byte[] newKey, byte[] newValue) {
+    private List<Element> collectAllElements(Page page, Element newElement) {
         List<Element> allElements = new ArrayList<>();
         
         // Add existing elements from the page
@@ -730,68 +2462,170 @@ public class BTree implements StorageInterface {
         }
         
         // Add new element in sorted position to maintain B+Tree ordering
-        Element newElement = new Element(newKey, newValue, false);
-        boolean inserted = false;
-        for (int i = 0; i < allElements.size(); i++) {
-            if (compareKeys(newKey, allElements.get(i).key()) < 0) {
-                allElements.add(i, newElement);
-                inserted = true;
-                break;
-            }
-        }
-        if (!inserted) {
-            allElements.add(newElement);
+        // (an existing element with the same key is replaced, as Page.insert does)
+        int position = page.search(newElement.key());
+        if (position >= 0) {
+            allElements.set(position, newElement);
+        } else {
+            allElements.add(-position - 1, newElement);
         }
         
         return allElements;
     }
     
-
     
-    private int calculateMaxInlineSize(Page leaf, byte[] key) {
-        int freeSpace = leaf.freeSpace();
-        int overhead = Page.ELEM_HEADER_SIZE + key.length;
-        return freeSpace - overhead;
+    
+    /**
+     * Decides where a value is stored. An element that would take more than
+     * a quarter of a leaf is moved to a chain of overflow pages, so leaves
+     * keep a high fan-out; the leaf then only holds a pointer to the chain.
+     */
+    private Element storeValue(byte[] key, byte[] value) throws IOException {
+        if (Page.SLOT_SIZE + Page.ELEM_HEADER_SIZE + key.length + value.length <= maxInlineElementSize) {
+            return new Element(key, value, false);
+        }
+        long firstPageId = createOverflowPages(value);
+        byte[] pointer = ByteBuffer.allocate(OVERFLOW_POINTER_SIZE).putLong(firstPageId).putInt(value.length).array();
+        return new Element(key, pointer, true);
     }
     
-    private boolean insertIntoLeaf(Page leaf, byte[] key, byte[] value) {
-        return leaf.insert(key, value);
+    /**
+     * Writes a value across newly allocated overflow pages, linked in order.
+     *
+     * @return The ID of the first overflow page
+     */
+    private long createOverflowPages(byte[] value) throws IOException {
+        int capacity = Page.overflowCapacity(pageManager.getPageSize());
+        long firstPageId = 0;
+        int pages = 0;
+        Page previous = null;
+        try {
+            for (int offset = 0; offset < value.length; offset += capacity) {
+                Page page = allocatePage();
+                page.setOverflowData(value, offset, Math.min(capacity, value.length - offset));
+                bufferPool.markDirty(page);
+                pages++;
+                
+                if (previous == null) {
+                    firstPageId = page.getPageId();
+                } else {
+                    previous.setNextPageId(page.getPageId());
+                    bufferPool.markDirty(previous);
+                    bufferPool.unpin(previous);
+                }
+                previous = page;
+            }
+        } finally {
+            if (previous != null) {
+                bufferPool.unpin(previous);
+            }
+        }
+        
+        System.out.println("   📎 OVERFLOW - " + value.length + " byte value stored in " + pages
+            + " overflow page(s) starting at page " + firstPageId);
+        return firstPageId;
     }
     
-    private boolean insertWithOverflow(Page leaf, byte[] key, byte[] value) throws IOException {
-        long overflowPageId = createOverflowPages(value);
-        return leaf.insert(key, ByteBuffer.allocate(8).putLong(overflowPageId).array(), true);
+    /**
+     * Puts a page that is no longer part of the tree on the free list, so the
+     * next allocation reuses it instead of growing the file. The list is
+     * linked through the free pages themselves and its head is kept in the
+     * metadata page, so it survives a restart and is logged like any other
+     * change. Optimistic readers that still hold the page's ID fail
+     * validation, because the page (or the page pointing at it) is
+     * exclusively latched while it is freed.
+     */
+    private void freePage(Page page) throws IOException {
+        page.zeroFill();
+        page.setFlags(Page.FLAG_FREE);
+        page.setNextPageId(freeListHead);
+        bufferPool.markDirty(page);
+        
+        freeListHead = page.getPageId();
+        saveMetadata();
     }
     
-    private long createOverflowPages(byte[] value) throws IOException {
-        // TODO: Implement overflow page creation
-        // This method should:
-        // 1. Calculate number of pages needed for the value
-        // 2. Allocate overflow pages sequentially
-        // 3. Split the value across multiple pages
-        // 4. Link pages together with next page IDs
-        // 5. Return the ID of the first overflow page
-        throw new UnsupportedOperationException("Overflow pages not implemented yet");
+    /**
+     * Allocates a page for the tree, taking the most recently freed page if
+     * there is one and appending a new page otherwise.
+     *
+     * @return The pinned, empty page
+     */
+    private Page allocatePage() throws IOException {
+        if (freeListHead == 0) {
+            return bufferPool.newPage();
+        }
+        
+        Page page = bufferPool.pin(freeListHead);
+        // The exclusive latch advances the version, so an optimistic reader holding a stale ID sees the change
+        latchForWrite(page);
+        try {
+            if (!page.isFree()) {
+                throw new IOException("Page " + page.getPageId() + " on the free list is not a free page");
+            }
+            freeListHead = page.nextPageId();
+            page.zeroFill();
+            bufferPool.markDirty(page);
+        } catch (IOException | RuntimeException e) {
+            releaseExclusive(page);
+            throw e;
+        }
+        page.unlatchExclusive();
+        saveMetadata();
+        
+        System.out.println("♻️  Reusing free page: " + page.getPageId());
+        return page;
     }
     
+    /**
+     * Frees every page of an overflow chain. The caller holds the exclusive
+     * latch on the leaf that pointed at the chain.
+     */
     private void freeOverflowPages(long pageId) throws IOException {
-        // TODO: Implement overflow page cleanup
-        // This method should:
-        // 1. Follow the chain of overflow pages
-        // 2. Mark each page as free/available
-        // 3. Clear page contents for security
-        // 4. Update free page tracking
-        throw new UnsupportedOperationException("Overflow page cleanup not implemented yet");
+        int pages = 0;
+        while (pageId != 0) {
+            Page page = bufferPool.pin(pageId);
+            // Only snapshot readers latch overflow pages; see readSnapshotPage()
+            latchForWrite(page);
+            try {
+                if (!page.isOverflow()) {
+                    throw new IOException("Page " + pageId + " in an overflow chain is not an overflow page");
+                }
+                pageId = page.nextPageId();
+                freePage(page);
+                pages++;
+            } finally {
+                releaseExclusive(page);
+            }
+        }
+        System.out.println("   🧹 OVERFLOW - freed " + pages + " overflow page(s)");
     }
     
-    private byte[] readFromOverflowPages(long startPageId) throws IOException {
-        // TODO: Implement overflow page reading
-        // This method should:
-        // 1. Follow the chain of overflow pages starting from startPageId
-        // 2. Read data from each page in sequence
-        // 3. Concatenate all data into a single byte array
-        // 4. Return the complete value
-        throw new UnsupportedOperationException("Overflow page reading not implemented yet");
+    /**
+     * Reassembles an overflowed value by following its chain. Overflow pages
+     * are never latched: they are only changed while the leaf pointing at
+     * them is exclusively latched.
+     *
+     * @param element The leaf element pointing at the chain
+     * @return The value bytes
+     */
+    private byte[] readFromOverflowPages(Element element) throws IOException {
+        byte[] value = new byte[element.overflowLength()];
+        long pageId = element.overflowPageId();
+        int offset = 0;
+        while (offset < value.length) {
+            if (pageId == 0) {
+                throw new IOException("Overflow chain ends after " + offset + " of " + value.length + " bytes");
+            }
+            Page page = bufferPool.pin(pageId);
+            try {
+                offset += page.readOverflowData(value, offset);
+                pageId = page.nextPageId();
+            } finally {
+                bufferPool.unpin(page);
+            }
+        }
+        return value;
     }
     
     /**
@@ -799,6 +2633,7 @@ public class BTree implements StorageInterface {
      */
     public void printPageAccessStatistics() {
         pageManager.printAccessStatistics();
+        printBufferPoolStatistics();
     }
     
     /**
@@ -806,6 +2641,7 @@ public class BTree implements StorageInterface {
      */
     public void resetPageAccessCounters() {
         pageManager.resetAccessCounters();
+        bufferPool.resetCounters();
     }
     
     /**
@@ -822,114 +2658,79 @@ public class BTree implements StorageInterface {
         return pageManager.getPageWritesCount();
     }
     
-    private static class ValueSerializer {
-        private static final byte TYPE_NULL = 0;
-        private static final byte TYPE_STRING = 1;
-        private static final byte TYPE_INTEGER = 2;
-        private static final byte TYPE_LONG = 3;
-        private static final byte TYPE_DOUBLE = 4;
-        private static final byte TYPE_BOOLEAN = 5;
-        
-        public byte[] serialize(Map<String, Object> value) {
-            try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                 DataOutputStream dos = new DataOutputStream(baos)) {
-                
-                // Write number of entries
-                dos.writeInt(value.size());
-                
-                // Write each entry
-                for (Map.Entry<String, Object> entry : value.entrySet()) {
-                    // Write key
-                    byte[] keyBytes = entry.getKey().getBytes("UTF-8");
-                    dos.writeInt(keyBytes.length);
-                    dos.write(keyBytes);
-                    
-                    // Write value
-                    Object val = entry.getValue();
-                    if (val == null) {
-                        dos.writeByte(TYPE_NULL);
-                    } else if (val instanceof String) {
-                        dos.writeByte(TYPE_STRING);
-                        byte[] valBytes = ((String) val).getBytes("UTF-8");
-                        dos.writeInt(valBytes.length);
-                        dos.write(valBytes);
-                    } else if (val instanceof Integer) {
-                        dos.writeByte(TYPE_INTEGER);
-                        dos.writeInt((Integer) val);
-                    } else if (val instanceof Long) {
-                        dos.writeByte(TYPE_LONG);
-                        dos.writeLong((Long) val);
-                    } else if (val instanceof Double) {
-                        dos.writeByte(TYPE_DOUBLE);
-                        dos.writeDouble((Double) val);
-                    } else if (val instanceof Boolean) {
-                        dos.writeByte(TYPE_BOOLEAN);
-                        dos.writeBoolean((Boolean) val);
-                    } else {
-                        throw new IllegalArgumentException("Unsupported value type: " + val.getClass());
-                    }
-                }
-                
-                return baos.toByteArray();
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to serialize value", e);
-            }
-        }
-        
-        public Map<String, Object> deserialize(byte[] bytes) {
-            try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-                 DataInputStream dis = new DataInputStream(bais)) {
-                
-                Map<String, Object> value = new HashMap<>();
-                
-                // Read number of entries
-                int numEntries = dis.readInt();
-                
-                // Read each entry
-                for (int i = 0; i < numEntries; i++) {
-                    // Read key
-                    int keyLength = dis.readInt();
-                    byte[] keyBytes = new byte[keyLength];
-                    dis.readFully(keyBytes);
-                    String key = new String(keyBytes, "UTF-8");
-                    
-                    // Read value
-                    byte type = dis.readByte();
-                    Object val;
-                    
-                    switch (type) {
-                        case TYPE_NULL:
-                            val = null;
-                            break;
-                        case TYPE_STRING:
-                            int valLength = dis.readInt();
-                            byte[] valBytes = new byte[valLength];
-                            dis.readFully(valBytes);
-                            val = new String(valBytes, "UTF-8");
-                            break;
-                        case TYPE_INTEGER:
-                            val = dis.readInt();
-                            break;
-                        case TYPE_LONG:
-                            val = dis.readLong();
-                            break;
-                        case TYPE_DOUBLE:
-                            val = dis.readDouble();
-                            break;
-                        case TYPE_BOOLEAN:
-                            val = dis.readBoolean();
-                            break;
-                        default:
-                            throw new IOException("Unknown value type: " + type);
-                    }
-                    
-                    value.put(key, val);
-                }
-                
-                return value;
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to deserialize value", e);
-            }
+    /**
+     * Gets the number of fsyncs issued on the data file.
+     */
+    public long getDataSyncCount() {
+        return pageManager.getSyncCount();
+    }
+    
+    /**
+     * Gets the number of fsyncs issued on the write-ahead log (0 when disabled).
+     */
+    public long getLogSyncCount() {
+        return writeAheadLog == null ? 0 : writeAheadLog.getSyncCount();
+    }
+    
+    /**
+     * Gets the number of leaf pages loaded by read-ahead.
+     */
+    public long getPrefetchCount() {
+        return bufferPool.getPrefetchCount();
+    }
+    
+    /**
+     * Gets the number of optimistic point reads that had to start over because a writer interfered.
+     */
+    public long getOptimisticRestartCount() {
+        return optimisticRestarts.get();
+    }
+    
+    /**
+     * Gets the number of page images kept for open snapshots.
+     */
+    public long getSnapshotPageImageCount() {
+        return pageVersions.getImageCount();
+    }
+    
+    /**
+     * Gets the number of snapshots not yet closed.
+     */
+    public int getOpenSnapshotCount() {
+        return pageVersions.getOpenSnapshotCount();
+    }
+    
+    /**
+     * Gets the number of point reads the Bloom filter answered without reading any page.
+     */
+    public long getBloomFilterNegativeCount() {
+        return keyFilterNegatives.get();
+    }
+    
+    /**
+     * Gets the number of page accesses served by the buffer pool.
+     */
+    public long getCacheHitCount() {
+        return bufferPool.getHitCount();
+    }
+    
+    /**
+     * Gets the number of page accesses that missed the buffer pool and went to disk.
+     */
+    public long getCacheMissCount() {
+        return bufferPool.getMissCount();
+    }
+    
+    /**
+     * Gets the number of pages evicted from the buffer pool.
+     */
+    public long getCacheEvictionCount() {
+        return bufferPool.getEvictionCount();
+    }
+    
+    private void printBufferPoolStatistics() {
+        if (bufferPool.getCapacity() > 0) {
+            bufferPool.printStatistics();
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,216 @@
+package minispark.storage.btree;
+
+import minispark.storage.btree.page.Page;
+import minispark.storage.table.TableSchema;
+
+/**
+ * Configuration for a B+Tree instance.
+ *
+ * Keeps the BTree constructors small as more tuning knobs are added.
+ * Defaults reproduce the classic behaviour used in the workshop demos:
+ * 4KB pages and no page cache, so every page access is visible as disk I/O.
+ */
+public class BTreeConfig {
+    static final int DEFAULT_PAGE_SIZE = 4096;
+    static final long DEFAULT_CHECKPOINT_THRESHOLD_BYTES = 4L * 1024 * 1024;
+    static final double DEFAULT_BULK_LOAD_FILL_FACTOR = 0.9;
+    static final int DEFAULT_READ_AHEAD_PAGES = 8;
+    static final int DEFAULT_BLOOM_FILTER_BITS_PER_KEY = 10;
+    
+    private final int pageSize;
+    private final int bufferPoolPages;
+    private final boolean writeAheadLog;
+    private final long checkpointThresholdBytes;
+    private final double bulkLoadFillFactor;
+    private final boolean memoryMapped;
+    private final boolean optimisticReads;
+    private final int readAheadPages;
+    private final TableSchema rowSchema;
+    private final int bloomFilterBitsPerKey;
+    private final boolean directPageFrames;
+    private final boolean snapshotScans;
+    
+    private BTreeConfig(Builder builder) {
+        this.pageSize = builder.pageSize;
+        this.bufferPoolPages = builder.bufferPoolPages;
+        this.writeAheadLog = builder.writeAheadLog;
+        this.checkpointThresholdBytes = builder.checkpointThresholdBytes;
+        this.bulkLoadFillFactor = builder.bulkLoadFillFactor;
+        this.memoryMapped = builder.memoryMapped;
+        this.optimisticReads = builder.optimisticReads;
+        this.readAheadPages = builder.readAheadPages;
+        this.rowSchema = builder.rowSchema;
+        this.bloomFilterBitsPerKey = builder.bloomFilterBitsPerKey;
+        this.directPageFrames = builder.directPageFrames;
+        this.snapshotScans = builder.snapshotScans;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static BTreeConfig defaults() {
+        return builder().build();
+    }
+    
+    public static class Builder {
+        private int pageSize = DEFAULT_PAGE_SIZE;
+        private int bufferPoolPages = 0;
+        private boolean writeAheadLog = false;
+        private long checkpointThresholdBytes = DEFAULT_CHECKPOINT_THRESHOLD_BYTES;
+        private double bulkLoadFillFactor = DEFAULT_BULK_LOAD_FILL_FACTOR;
+        private boolean memoryMapped = false;
+        private boolean optimisticReads = true;
+        private int readAheadPages = DEFAULT_READ_AHEAD_PAGES;
+        private TableSchema rowSchema = null;
+        private int bloomFilterBitsPerKey = DEFAULT_BLOOM_FILTER_BITS_PER_KEY;
+        private boolean directPageFrames = true;
+        private boolean snapshotScans = false;
+        
+        public Builder pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+        
+        /**
+         * Number of pages kept in the buffer pool. 0 disables caching.
+         */
+        public Builder bufferPoolPages(int bufferPoolPages) {
+            this.bufferPoolPages = bufferPoolPages;
+            return this;
+        }
+        
+        /**
+         * Log page images to a write-ahead log (file.db.wal) instead of forcing
+         * the data file on every page write. Commits are group-committed.
+         */
+        public Builder writeAheadLog(boolean writeAheadLog) {
+            this.writeAheadLog = writeAheadLog;
+            return this;
+        }
+        
+        /**
+         * Log size that triggers a checkpoint (write back dirty pages, truncate the log).
+         */
+        public Builder checkpointThresholdBytes(long checkpointThresholdBytes) {
+            this.checkpointThresholdBytes = checkpointThresholdBytes;
+            return this;
+        }
+        
+        /**
+         * Fraction of each page filled by bulkLoad(). Leaving some room avoids
+         * immediate splits when keys are later inserted between loaded ones.
+         */
+        public Builder bulkLoadFillFactor(double bulkLoadFillFactor) {
+            this.bulkLoadFillFactor = bulkLoadFillFactor;
+            return this;
+        }
+        
+        /**
+         * Access the file through memory-mapped regions (MappedPageManager)
+         * instead of FileChannel reads and writes.
+         */
+        public Builder memoryMapped(boolean memoryMapped) {
+            this.memoryMapped = memoryMapped;
+            return this;
+        }
+        
+        /**
+         * Serve point reads without page latches, validating page versions
+         * instead. Disable to always use latch crabbing.
+         */
+        public Builder optimisticReads(boolean optimisticReads) {
+            this.optimisticReads = optimisticReads;
+            return this;
+        }
+        
+        /**
+         * Leaf pages prefetched ahead of a sequential scan, in the background.
+         * Needs a buffer pool to prefetch into; 0 disables read-ahead.
+         */
+        public Builder readAheadPages(int readAheadPages) {
+            this.readAheadPages = readAheadPages;
+            return this;
+        }
+        
+        /**
+         * Store values in the compact row format of this schema (column
+         * ordinals instead of names; see ValueSerializer). Values that do not
+         * match the schema are still stored, in the self-describing format.
+         */
+        public Builder rowSchema(TableSchema rowSchema) {
+            this.rowSchema = rowSchema;
+            return this;
+        }
+        
+        /**
+         * Bits per key of the Bloom filter that lets point reads of absent
+         * keys skip the tree (kept in file.db.bloom). 10 bits give about 1%
+         * false positives; 0 disables the filter.
+         */
+        public Builder bloomFilterBitsPerKey(int bloomFilterBitsPerKey) {
+            this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+            return this;
+        }
+        
+        /**
+         * Keep pages in reusable direct memory frames (PageFramePool) that file
+         * reads and writes use without a copy. Disable for heap pages. Has no
+         * effect on a memory-mapped file, whose pages already wrap the mapping.
+         */
+        public Builder directPageFrames(boolean directPageFrames) {
+            this.directPageFrames = directPageFrames;
+            return this;
+        }
+        
+        /**
+         * Run every cursor and scan on a snapshot of its own (BTree.snapshot),
+         * so it sees one point in time even while writers change the tree.
+         * Writers then copy the pages they change while such a scan is open.
+         */
+        public Builder snapshotScans(boolean snapshotScans) {
+            this.snapshotScans = snapshotScans;
+            return this;
+        }
+        
+        public BTreeConfig build() {
+            if (pageSize <= Page.PAGE_HEADER_SIZE || pageSize > Page.MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("Page size must be between " + (Page.PAGE_HEADER_SIZE + 1)
+                    + " and " + Page.MAX_PAGE_SIZE + ": " + pageSize);
+            }
+            if (bufferPoolPages < 0) {
+                throw new IllegalArgumentException("Buffer pool size cannot be negative: " + bufferPoolPages);
+            }
+            if (checkpointThresholdBytes <= 0) {
+                throw new IllegalArgumentException("Checkpoint threshold must be positive: " + checkpointThresholdBytes);
+            }
+            if (!(bulkLoadFillFactor > 0 && bulkLoadFillFactor <= 1)) {
+                throw new IllegalArgumentException("Bulk load fill factor must be in (0, 1]: " + bulkLoadFillFactor);
+            }
+            if (readAheadPages < 0) {
+                throw new IllegalArgumentException("Read-ahead page count cannot be negative: " + readAheadPages);
+            }
+            if (bloomFilterBitsPerKey < 0) {
+                throw new IllegalArgumentException("Bloom filter bits per key cannot be negative: " + bloomFilterBitsPerKey);
+            }
+            if (memoryMapped && writeAheadLog) {
+                // The OS may write mapped pages back at any time, which breaks the no-steal rule of the log
+                throw new IllegalArgumentException("Memory-mapped mode cannot be combined with the write-ahead log");
+            }
+            return new BTreeConfig(this);
+        }
+    }
+    
+    public int getPageSize() { return pageSize; }
+    public int getBufferPoolPages() { return bufferPoolPages; }
+    public boolean isWriteAheadLogEnabled() { return writeAheadLog; }
+    public long getCheckpointThresholdBytes() { return checkpointThresholdBytes; }
+    public double getBulkLoadFillFactor() { return bulkLoadFillFactor; }
+    public boolean isMemoryMapped() { return memoryMapped; }
+    public boolean isOptimisticReadsEnabled() { return optimisticReads; }
+    public int getReadAheadPages() { return readAheadPages; }
+    public TableSchema getRowSchema() { return rowSchema; }
+    public int getBloomFilterBitsPerKey() { return bloomFilterBitsPerKey; }
+    public boolean isDirectPageFramesEnabled() { return directPageFrames; }
+    public boolean isSnapshotScansEnabled() { return snapshotScans; }
+}
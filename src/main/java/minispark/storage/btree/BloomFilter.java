@@ -0,0 +1,274 @@
+package minispark.storage.btree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Bloom filter over byte-array keys.
+ *
+ * A point lookup for a key that is not in the tree still walks from the
+ * root to a leaf before it can say so. The filter answers most of those
+ * lookups from memory: mightContain() returning false means the key was
+ * never added, so the tree does not need to be read at all. A true answer
+ * may be a false positive, in which case the lookup continues as before.
+ * With 10 bits per key about 1% of absent keys get through.
+ *
+ * Each key is hashed once to 64 bits; the k bit positions are derived from
+ * that hash by double hashing (Kirsch and Mitzenmacher), so adding or
+ * testing a key costs one pass over its bytes. Bits are set with
+ * compare-and-set, so readers may test the filter while a writer adds to it.
+ * Keys cannot be removed: a deleted key stays a (harmless) false positive
+ * until the filter is rebuilt.
+ */
+public final class BloomFilter {
+    // Written first in a saved filter: "BLOM"
+    private static final int MAGIC = 0x424C4F4D;
+    private static final int FORMAT_VERSION = 1;
+    
+    private static final int MAX_HASH_FUNCTIONS = 30;
+    
+    private final int hashFunctions;
+    private final long expectedKeys;
+    private final long bitCount;
+    private final AtomicLongArray words;
+    private final AtomicLong addedKeys;
+    
+    private BloomFilter(int hashFunctions, long expectedKeys, long[] words, long addedKeys) {
+        this.hashFunctions = hashFunctions;
+        this.expectedKeys = expectedKeys;
+        this.bitCount = (long) words.length * Long.SIZE;
+        this.words = new AtomicLongArray(words);
+        this.addedKeys = new AtomicLong(addedKeys);
+    }
+    
+    /**
+     * Creates an empty filter sized for the given number of keys.
+     *
+     * @param expectedKeys Keys the filter is sized for; more can be added at a higher false positive rate
+     * @param bitsPerKey Bits of filter per expected key
+     */
+    public static BloomFilter create(long expectedKeys, int bitsPerKey) {
+        if (bitsPerKey <= 0) {
+            throw new IllegalArgumentException("Bits per key must be positive: " + bitsPerKey);
+        }
+        expectedKeys = Math.max(1, expectedKeys);
+        long bits = Math.max(Long.SIZE, expectedKeys * bitsPerKey);
+        long wordCount = (bits + Long.SIZE - 1) / Long.SIZE;
+        if (wordCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bloom filter for " + expectedKeys + " keys is too large");
+        }
+        // k = ln 2 * m / n minimizes the false positive rate
+        int hashFunctions = (int) Math.max(1, Math.min(MAX_HASH_FUNCTIONS, Math.round(bitsPerKey * Math.log(2))));
+        return new BloomFilter(hashFunctions, expectedKeys, new long[(int) wordCount], 0);
+    }
+    
+    /**
+     * Hashes a key to the 64-bit value add(long) and mightContain(long) take.
+     * Lets a caller hash keys once and build the filter later, e.g. when the
+     * number of keys is only known at the end of a bulk load.
+     */
+    public static long hash(byte[] key) {
+        // FNV-1a over the bytes, then the MurmurHash3 finalizer to spread them over all 64 bits
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+    
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+    
+    /**
+     * Adds a key to the filter.
+     */
+    public void add(byte[] key) {
+        add(hash(key));
+    }
+    
+    /**
+     * Adds a key given its hash(key).
+     */
+    public void add(long hash) {
+        long second = secondHash(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            setBit(bitIndex(hash, second, i));
+        }
+        addedKeys.incrementAndGet();
+    }
+    
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @return false if the key was definitely never added
+     */
+    public boolean mightContain(byte[] key) {
+        return mightContain(hash(key));
+    }
+    
+    /**
+     * Checks whether a key, given its hash(key), may have been added.
+     *
+     * @return false if the key was definitely never added
+     */
+    public boolean mightContain(long hash) {
+        long second = secondHash(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = bitIndex(hash, second, i);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // An odd step, so the k positions never collapse onto one bit
+    private static long secondHash(long hash) {
+        return mix(hash + 0x9e3779b97f4a7c15L) | 1;
+    }
+    
+    private long bitIndex(long hash, long second, int i) {
+        return Long.remainderUnsigned(hash + i * second, bitCount);
+    }
+    
+    private void setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current = words.get(word);
+        while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+            current = words.get(word);
+        }
+    }
+    
+    /**
+     * Gets the number of keys the filter was sized for.
+     */
+    public long getExpectedKeys() {
+        return expectedKeys;
+    }
+    
+    /**
+     * Gets the number of add() calls, counting keys added more than once.
+     */
+    public long getAddedKeys() {
+        return addedKeys.get();
+    }
+    
+    /**
+     * Checks whether more keys were added than the filter was sized for, so
+     * its false positive rate is above the configured one.
+     */
+    public boolean isSaturated() {
+        return addedKeys.get() > expectedKeys;
+    }
+    
+    /**
+     * Gets the size of the bit array in bytes.
+     */
+    public long sizeInBytes() {
+        return bitCount / Byte.SIZE;
+    }
+    
+    /**
+     * Writes the filter to a stream.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream data = new DataOutputStream(new CheckedOutputStream(out, crc));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(hashFunctions);
+        data.writeLong(expectedKeys);
+        data.writeLong(addedKeys.get());
+        data.writeInt(words.length());
+        for (int i = 0; i < words.length(); i++) {
+            data.writeLong(words.get(i));
+        }
+        data.flush();
+        // The checksum itself is not part of the checked bytes
+        new DataOutputStream(out).writeLong(crc.getValue());
+        out.flush();
+    }
+    
+    /**
+     * Reads a filter written by writeTo().
+     *
+     * @throws IOException If the stream does not hold a valid filter
+     */
+    public static BloomFilter readFrom(InputStream in) throws IOException {
+        CRC32 crc = new CRC32();
+        DataInputStream data = new DataInputStream(new CheckedInputStream(in, crc));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a Bloom filter");
+        }
+        int version = data.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported Bloom filter version " + version);
+        }
+        int hashFunctions = data.readInt();
+        long expectedKeys = data.readLong();
+        long addedKeys = data.readLong();
+        int wordCount = data.readInt();
+        if (hashFunctions < 1 || hashFunctions > MAX_HASH_FUNCTIONS || wordCount < 1) {
+            throw new IOException("Corrupt Bloom filter header");
+        }
+        long[] words = new long[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = data.readLong();
+        }
+        long checksum = crc.getValue();
+        if (new DataInputStream(in).readLong() != checksum) {
+            throw new IOException("Bloom filter checksum mismatch");
+        }
+        return new BloomFilter(hashFunctions, expectedKeys, words, addedKeys);
+    }
+    
+    /**
+     * Saves the filter to a file, replacing it atomically so a crash never
+     * leaves a half-written filter behind.
+     */
+    public void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            writeTo(out);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Loads a filter saved with save().
+     *
+     * @return The filter, or null if the file does not exist or is not a valid filter
+     */
+    public static BloomFilter load(Path path) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return readFrom(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.out.println("⚠️  Ignoring unreadable Bloom filter " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
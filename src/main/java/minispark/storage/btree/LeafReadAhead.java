@@ -0,0 +1,98 @@
+package minispark.storage.btree;
+
+import minispark.storage.btree.page.BufferPool;
+import minispark.storage.btree.page.Page;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefetches leaf pages ahead of a sequential scan on a background thread.
+ *
+ * A scan that follows nextPageId() only learns the next leaf's ID after it
+ * has read the current leaf, so on a cold cache it stalls on every page
+ * boundary. Once a cursor is clearly scanning sequentially it asks this
+ * class to walk the leaf chain a few pages ahead: each page is loaded into
+ * the buffer pool (BufferPool.prefetch) and its nextPageId gives the page
+ * after it. The cursor then finds its next leaves already resident, and the
+ * disk reads overlap with deserializing the records it is returning.
+ *
+ * The walk takes no latches: the next-page IDs it follows are only hints.
+ * If a writer changes the chain meanwhile, the worst outcome is a page
+ * prefetched for nothing, since the cursor itself never trusts the prefetched
+ * pages beyond what its own latches and version checks confirm.
+ */
+final class LeafReadAhead implements AutoCloseable {
+    private final BufferPool bufferPool;
+    private final int windowPages;
+    private final ExecutorService executor;
+    private volatile boolean closed;
+    
+    /**
+     * Creates a read-ahead with its own background thread.
+     *
+     * @param bufferPool The pool pages are prefetched into
+     * @param windowPages How many leaves to keep loaded ahead of the cursor
+     */
+    LeafReadAhead(BufferPool bufferPool, int windowPages) {
+        this.bufferPool = bufferPool;
+        this.windowPages = windowPages;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "btree-read-ahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Gets the number of leaves kept loaded ahead of a sequential scan.
+     */
+    int getWindowPages() {
+        return windowPages;
+    }
+    
+    /**
+     * Starts prefetching the leaf chain from the given page.
+     *
+     * @param firstPageId The first leaf to prefetch
+     * @return The background task; a cursor does not ask again until it is done
+     */
+    Future<?> prefetchChain(long firstPageId) {
+        return executor.submit(() -> walkChain(firstPageId));
+    }
+    
+    private void walkChain(long pageId) {
+        for (int i = 0; i < windowPages && pageId != 0 && !closed; i++) {
+            Page page;
+            try {
+                page = bufferPool.prefetch(pageId);
+            } catch (IOException | RuntimeException e) {
+                // A stale hint can point past the end of the file; the scan reads its own pages anyway
+                return;
+            }
+            if (page == null || !page.isLeaf()) {
+                return;
+            }
+            pageId = page.nextPageId();
+        }
+    }
+    
+    /**
+     * Stops the background thread, waiting for a read in progress to finish.
+     * The thread is not interrupted: an interrupt during a FileChannel read
+     * would close the channel for every thread using the file.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
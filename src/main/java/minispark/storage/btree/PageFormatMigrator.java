@@ -0,0 +1,169 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import minispark.storage.btree.page.BufferPool;
+import minispark.storage.btree.page.Page;
+import minispark.storage.btree.page.PageManager;
+import minispark.storage.wal.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Upgrades B+Tree files written with an older page format.
+ *
+ * Format version 1 stored elements back to back after a 16-byte page header
+ * and had no version marker; its metadata page (page 0) carries no flags.
+ * Version 1 pages can be fuller than a slotted page allows, so pages are not
+ * converted one by one. Instead the leaf chain is read with the old layout and
+ * the records are loaded into a fresh file, which then replaces the old one.
+ *
+ * Version 2 pages need no migration: they read as version 3 pages whose key
+ * prefix is empty.
+ */
+final class PageFormatMigrator {
+    private static final int V1_HEADER_SIZE = 16;
+    private static final byte[] ROOT_ID_KEY = "BTREE_ROOT_ID".getBytes();
+    
+    private PageFormatMigrator() {
+    }
+    
+    /**
+     * Migrates the file in place if it uses an older page format.
+     *
+     * @param filePath Path to the database file
+     * @param pageSize Page size the file was written with
+     * @return true if the file was migrated
+     * @throws IOException If the file cannot be read or rewritten
+     */
+    static boolean migrateIfNeeded(Path filePath, int pageSize) throws IOException {
+        if (!Files.exists(filePath) || Files.size(filePath) < pageSize) {
+            return false;
+        }
+        
+        // A log left behind by a crash holds page images in the file's own format
+        replayWriteAheadLog(filePath, pageSize);
+        
+        List<Record> records;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            ByteBuffer metadata = readPage(channel, 0, pageSize);
+            if ((metadata.getInt(0) & Page.FLAG_META) != 0) {
+                return false;
+            }
+            System.out.println("🔄 Migrating " + filePath.getFileName() + " from page format v1 to v" + Page.FORMAT_VERSION);
+            records = readLeafChain(channel, findV1Root(metadata), pageSize);
+        }
+        
+        Path migratedPath = filePath.resolveSibling(filePath.getFileName() + ".migrating");
+        Files.deleteIfExists(migratedPath);
+        BTree migrated = new BTree(migratedPath, BTreeConfig.builder().pageSize(pageSize)
+            .bloomFilterBitsPerKey(0).build());
+        try {
+            migrated.writeBatch(records);
+        } finally {
+            migrated.close();
+        }
+        
+        Files.move(migratedPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("   ✅ Migrated " + records.size() + " records");
+        return true;
+    }
+    
+    private static void replayWriteAheadLog(Path filePath, int pageSize) throws IOException {
+        Path logPath = filePath.resolveSibling(filePath.getFileName() + ".wal");
+        if (!Files.exists(logPath) || Files.size(logPath) == 0) {
+            return;
+        }
+        try (PageManager pageManager = new PageManager(filePath, pageSize);
+             WriteAheadLog writeAheadLog = new WriteAheadLog(logPath)) {
+            new BufferPool(pageManager, 0, writeAheadLog).recover();
+        }
+    }
+    
+    private static long findV1Root(ByteBuffer metadata) {
+        int count = metadata.getInt(4);
+        if (count == 0) {
+            return 1;
+        }
+        List<byte[][]> elements = readV1Elements(metadata);
+        if (count == 1 && Arrays.equals(elements.get(0)[0], ROOT_ID_KEY)) {
+            return ByteBuffer.wrap(elements.get(0)[1]).getLong();
+        }
+        // Pre-metadata files used page 0 as the root
+        return 0;
+    }
+    
+    /**
+     * Descends to the leftmost leaf and collects every record along the leaf chain.
+     * Version 1 appended duplicate keys to the end of a page; the first copy wins,
+     * matching what read() returned.
+     */
+    private static List<Record> readLeafChain(FileChannel channel, long rootPageId, int pageSize) throws IOException {
+        ByteBuffer page = readPage(channel, rootPageId, pageSize);
+        while ((page.getInt(0) & Page.FLAG_BRANCH) != 0) {
+            long firstChild = ByteBuffer.wrap(readV1Elements(page).get(0)[1]).getLong();
+            page = readPage(channel, firstChild, pageSize);
+        }
+        
+        ValueSerializer valueSerializer = new ValueSerializer();
+        Map<byte[], Map<String, Object>> records = new TreeMap<>(Arrays::compare);
+        while (true) {
+            for (byte[][] element : readV1Elements(page)) {
+                records.putIfAbsent(element[0], valueSerializer.deserialize(element[1]));
+            }
+            long nextPageId = page.getLong(8);
+            if (nextPageId == 0) {
+                break;
+            }
+            page = readPage(channel, nextPageId, pageSize);
+        }
+        
+        List<Record> result = new ArrayList<>(records.size());
+        for (Map.Entry<byte[], Map<String, Object>> entry : records.entrySet()) {
+            result.add(new Record(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+    
+    /**
+     * Decodes the version 1 layout: |keyLen short|valueLen short|flags|pad(3)|key|value| repeated.
+     */
+    private static List<byte[][]> readV1Elements(ByteBuffer page) {
+        int count = page.getInt(4);
+        List<byte[][]> elements = new ArrayList<>(count);
+        int offset = V1_HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            int keyLength = page.getShort(offset);
+            int valueLength = page.getShort(offset + 2);
+            byte[] key = new byte[keyLength];
+            byte[] value = new byte[valueLength];
+            page.get(offset + Page.ELEM_HEADER_SIZE, key);
+            page.get(offset + Page.ELEM_HEADER_SIZE + keyLength, value);
+            elements.add(new byte[][] {key, value});
+            offset += Page.ELEM_HEADER_SIZE + keyLength + valueLength;
+        }
+        return elements;
+    }
+    
+    private static ByteBuffer readPage(FileChannel channel, long pageId, int pageSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        long position = pageId * pageSize;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Page " + pageId + " is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
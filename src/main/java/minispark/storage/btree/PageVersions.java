@@ -0,0 +1,153 @@
+package minispark.storage.btree;
+
+import minispark.storage.btree.page.Page;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copy-on-write page images that keep open snapshots of a BTree consistent.
+ *
+ * Time is divided into epochs. Taking a snapshot ends the current epoch: the
+ * snapshot sees everything written in its epoch or before, and writes from
+ * then on belong to the next epoch. A writer that is about to change a page
+ * first copies the page, unless the page has already been copied since the
+ * newest open snapshot was taken. Each copy is tagged with the epoch of
+ * the write that triggered it, so it shows the page as every snapshot
+ * between the previous copy and that write saw it. A snapshot reads a page
+ * from the oldest copy made after it, or from the live page if none was.
+ *
+ * Pages are only copied while snapshots are open, and a copy is dropped as
+ * soon as no open snapshot needs it any more. The copies live on the heap
+ * and are not bounded: a long-lived snapshot keeps one for every page
+ * changed since it was taken.
+ */
+final class PageVersions {
+    // Epoch of the writes being made now; guarded by this
+    private long currentEpoch = 1;
+    
+    // Open snapshots per epoch; guarded by this
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+    
+    // Newest copy of each page that has copies
+    private final Map<Long, Image> images = new ConcurrentHashMap<>();
+    
+    /**
+     * A copy of a page as it was before the first write of capturedEpoch.
+     */
+    private static final class Image {
+        final long capturedEpoch;
+        final byte[] data;
+        // Next older copy of the same page, or null
+        final Image older;
+        
+        Image(long capturedEpoch, byte[] data, Image older) {
+            this.capturedEpoch = capturedEpoch;
+            this.data = data;
+            this.older = older;
+        }
+    }
+    
+    /**
+     * Registers a snapshot. Must be called between write operations, so the
+     * snapshot never sees half of one.
+     *
+     * @return The snapshot's epoch
+     */
+    synchronized long open() {
+        long epoch = currentEpoch++;
+        openSnapshots.merge(epoch, 1, Integer::sum);
+        return epoch;
+    }
+    
+    /**
+     * Unregisters a snapshot and drops the copies only it needed.
+     */
+    void close(long epoch) {
+        synchronized (this) {
+            openSnapshots.computeIfPresent(epoch, (e, count) -> count == 1 ? null : count - 1);
+            if (openSnapshots.isEmpty()) {
+                images.clear();
+                return;
+            }
+        }
+        for (Long pageId : images.keySet()) {
+            images.computeIfPresent(pageId, (id, head) -> prune(head));
+        }
+    }
+    
+    /**
+     * Copies a page before its first change since the newest open snapshot.
+     * The caller holds the page's exclusive latch (or otherwise keeps
+     * snapshot readers away from the live page) and the writer lock.
+     */
+    void beforeWrite(Page page) {
+        long newestSnapshot;
+        long epoch;
+        synchronized (this) {
+            if (openSnapshots.isEmpty()) {
+                return;
+            }
+            newestSnapshot = openSnapshots.lastKey();
+            epoch = currentEpoch;
+        }
+        images.compute(page.getPageId(), (id, head) -> head != null && head.capturedEpoch > newestSnapshot
+            ? head
+            : new Image(epoch, page.copyData(), head));
+    }
+    
+    /**
+     * Gets a page as a snapshot sees it. The caller holds the live page's
+     * shared latch, so a writer cannot start changing it in between.
+     *
+     * @return The page bytes, or null if the page is unchanged since the snapshot
+     */
+    byte[] imageAt(long pageId, long snapshotEpoch) {
+        byte[] data = null;
+        for (Image image = images.get(pageId); image != null && image.capturedEpoch > snapshotEpoch; image = image.older) {
+            data = image.data;
+        }
+        return data;
+    }
+    
+    /**
+     * Gets the number of page copies currently kept.
+     */
+    long getImageCount() {
+        long count = 0;
+        for (Image head : images.values()) {
+            for (Image image = head; image != null; image = image.older) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    synchronized int getOpenSnapshotCount() {
+        int count = 0;
+        for (int snapshots : openSnapshots.values()) {
+            count += snapshots;
+        }
+        return count;
+    }
+    
+    // The chain without copies no open snapshot reads, or null if none is left
+    private Image prune(Image image) {
+        if (image == null) {
+            return null;
+        }
+        Image older = prune(image.older);
+        long from = image.older != null ? image.older.capturedEpoch : 0;
+        boolean needed;
+        synchronized (this) {
+            // Snapshots from the previous copy's epoch up to this copy's read this copy
+            Long snapshot = openSnapshots.ceilingKey(from);
+            needed = snapshot != null && snapshot < image.capturedEpoch;
+        }
+        if (!needed) {
+            return older;
+        }
+        return older == image.older ? image : new Image(image.capturedEpoch, image.data, older);
+    }
+}
@@ -0,0 +1,231 @@
+package minispark.storage.btree;
+
+import minispark.storage.table.TableSchema.ColumnType;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reusable view of one row of a projected scan.
+ *
+ * BTree.scan(startKey, endKey, columns, visitor) positions the same
+ * ProjectedRow on every row in turn instead of building a Record and a
+ * HashMap per row. For rows in the schema row format (BTreeConfig.rowSchema)
+ * the getters read the requested columns straight from the copied row
+ * bytes, so numbers are never boxed and only getString(), getKey() and
+ * toMap() allocate. Rows in the self-describing map format are decoded into a
+ * map on first access, which costs what scan() costs.
+ *
+ * The view is only valid inside the visitor call; copy out whatever has to
+ * outlive it. Columns are addressed by their index in the projection.
+ */
+public final class ProjectedRow {
+    /**
+     * Receives the rows of a projected scan.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * Called once per row, in key order.
+         *
+         * @param row The current row; valid only during this call
+         * @return true to continue the scan, false to stop it
+         * @throws IOException If the visitor fails
+         */
+        boolean visit(ProjectedRow row) throws IOException;
+    }
+    
+    private final ValueSerializer serializer;
+    private final List<String> columns;
+    // Schema ordinal of each projected column, -1 if the schema does not have it
+    private final int[] ordinals;
+    
+    // The row the view is positioned on
+    private byte[] data;
+    private int keyOffset;
+    private int keyLength;
+    private int valueOffset;
+    private int valueLength;
+    private boolean schemaRow;
+    private Map<String, Object> decoded;
+    
+    /**
+     * Creates a view for the given projection.
+     *
+     * @param serializer The serializer the rows were written with
+     * @param columns The projected columns, or null or empty for all schema columns
+     */
+    ProjectedRow(ValueSerializer serializer, List<String> columns) {
+        if (columns == null || columns.isEmpty()) {
+            columns = serializer.schemaColumns();
+            if (columns == null) {
+                throw new IllegalArgumentException("A projected scan needs explicit columns when the tree has no row schema");
+            }
+        }
+        this.serializer = serializer;
+        this.columns = List.copyOf(columns);
+        this.ordinals = new int[this.columns.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = serializer.ordinalOf(this.columns.get(i));
+        }
+    }
+    
+    /**
+     * Positions the view on a row stored in the given array.
+     */
+    void reset(byte[] data, int keyOffset, int keyLength, int valueOffset, int valueLength) {
+        this.data = data;
+        this.keyOffset = keyOffset;
+        this.keyLength = keyLength;
+        this.valueOffset = valueOffset;
+        this.valueLength = valueLength;
+        this.schemaRow = ValueSerializer.isRow(data, valueOffset, valueLength);
+        this.decoded = null;
+    }
+    
+    /**
+     * Gets the number of projected columns.
+     */
+    public int columnCount() {
+        return columns.size();
+    }
+    
+    /**
+     * Gets the name of a projected column.
+     *
+     * @param column The column index in the projection
+     */
+    public String columnName(int column) {
+        return columns.get(column);
+    }
+    
+    /**
+     * Gets a copy of the row's key.
+     */
+    public byte[] getKey() {
+        return Arrays.copyOfRange(data, keyOffset, keyOffset + keyLength);
+    }
+    
+    /**
+     * Checks whether the row has no value for a column.
+     *
+     * @param column The column index in the projection
+     * @return true if the column is absent or null
+     */
+    public boolean isNull(int column) {
+        if (schemaRow) {
+            return ordinals[column] < 0 || !serializer.isPresent(data, valueOffset, ordinals[column]);
+        }
+        return decoded().get(columns.get(column)) == null;
+    }
+    
+    /**
+     * Gets the value of an INTEGER column.
+     *
+     * @param column The column index in the projection
+     * @throws IllegalStateException If the row has no value for the column
+     */
+    public int getInt(int column) {
+        if (schemaRow && present(column, ColumnType.INTEGER)) {
+            return serializer.readInt(data, valueOffset, ordinals[column]);
+        }
+        return ((Number) decodedValue(column)).intValue();
+    }
+    
+    /**
+     * Gets the value of a LONG column.
+     *
+     * @param column The column index in the projection
+     * @throws IllegalStateException If the row has no value for the column
+     */
+    public long getLong(int column) {
+        if (schemaRow && present(column, ColumnType.LONG)) {
+            return serializer.readLong(data, valueOffset, ordinals[column]);
+        }
+        return ((Number) decodedValue(column)).longValue();
+    }
+    
+    /**
+     * Gets the value of a DOUBLE column.
+     *
+     * @param column The column index in the projection
+     * @throws IllegalStateException If the row has no value for the column
+     */
+    public double getDouble(int column) {
+        if (schemaRow && present(column, ColumnType.DOUBLE)) {
+            return serializer.readDouble(data, valueOffset, ordinals[column]);
+        }
+        return ((Number) decodedValue(column)).doubleValue();
+    }
+    
+    /**
+     * Gets the value of a BOOLEAN column.
+     *
+     * @param column The column index in the projection
+     * @throws IllegalStateException If the row has no value for the column
+     */
+    public boolean getBoolean(int column) {
+        if (schemaRow && present(column, ColumnType.BOOLEAN)) {
+            return serializer.readBoolean(data, valueOffset, ordinals[column]);
+        }
+        return (Boolean) decodedValue(column);
+    }
+    
+    /**
+     * Gets the value of a STRING column.
+     *
+     * @param column The column index in the projection
+     * @throws IllegalStateException If the row has no value for the column
+     */
+    public String getString(int column) {
+        if (schemaRow && present(column, ColumnType.STRING)) {
+            return serializer.readString(data, valueOffset, ordinals[column]);
+        }
+        return (String) decodedValue(column);
+    }
+    
+    /**
+     * Gets a column value as an object, boxing numbers.
+     *
+     * @param column The column index in the projection
+     * @return The value, or null if the row has none
+     */
+    public Object get(int column) {
+        return decoded().get(columns.get(column));
+    }
+    
+    /**
+     * Copies the projected columns into a new map, as scan() would return them.
+     */
+    public Map<String, Object> toMap() {
+        return new HashMap<>(decoded());
+    }
+    
+    /**
+     * Checks that a schema column of the expected type has a value; the
+     * typed getters fall back to the decoded map otherwise, which reports
+     * missing values and type mismatches.
+     */
+    private boolean present(int column, ColumnType type) {
+        int ordinal = ordinals[column];
+        return ordinal >= 0 && serializer.columnType(ordinal) == type && serializer.isPresent(data, valueOffset, ordinal);
+    }
+    
+    private Object decodedValue(int column) {
+        Object value = decoded().get(columns.get(column));
+        if (value == null) {
+            throw new IllegalStateException("Column '" + columns.get(column) + "' has no value in this row");
+        }
+        return value;
+    }
+    
+    private Map<String, Object> decoded() {
+        if (decoded == null) {
+            decoded = serializer.deserialize(data, valueOffset, valueLength, columns);
+        }
+        return decoded;
+    }
+}
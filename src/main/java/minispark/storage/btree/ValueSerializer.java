@@ -1,11 +1,52 @@
 package minispark.storage.btree;
 
+import minispark.storage.table.TableSchema;
+import minispark.storage.table.TableSchema.ColumnType;
+
 import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Handles serialization and deserialization of values.
+ *
+ * MAP FORMAT
+ * ----------
+ * Without a schema every entry is written as |nameLen|name|type|value|, so
+ * each row repeats all of its column names. Besides the column types, the
+ * map format also stores raw byte[] values (as |length|bytes|), which
+ * indexes use for their own encodings.
+ *
+ * SCHEMA ROW FORMAT
+ * -----------------
+ * With a TableSchema, rows are written by column ordinal instead:
+ *
+ *   | format | columnCount | null bitmap | fixed slots ...     | string bytes ... |
+ *     1 byte   2 bytes       1 bit/column  one slot per column
+ *
+ * INTEGER, LONG, DOUBLE and BOOLEAN columns take a 4, 8, 8 and 1 byte slot;
+ * a STRING column's slot holds the end offset of its bytes in the string
+ * area, and it starts where the previous string column ends. Every slot is
+ * at a position known from the schema alone, so a projection jumps straight
+ * to the columns it needs and never looks at the others. A set null-bitmap
+ * bit means the row has no value for that column.
+ *
+ * A map-encoded value starts with the high byte of its entry count, which is
+ * always 0, while a schema row starts with ROW_FORMAT - so both formats can
+ * live in one file and deserialize() tells them apart. Rows the schema cannot
+ * express (unknown columns, values of another type, explicit nulls) are
+ * written in the map format. columnCount lets a schema gain columns at the
+ * end: older rows simply have no value for them.
+ *
+ * The column accessors (isPresent, readInt, ...) read a schema row in place,
+ * anywhere inside a larger array, without allocating; ProjectedRow is built
+ * on them.
  */
 public class ValueSerializer {
     private static final byte TYPE_NULL = 0;
@@ -14,6 +55,66 @@ public class ValueSerializer {
     private static final byte TYPE_LONG = 3;
     private static final byte TYPE_DOUBLE = 4;
     private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_BYTES = 6;
+    
+    // First byte of a schema row
+    private static final byte ROW_FORMAT = 1;
+    private static final int ROW_HEADER_SIZE = 3;
+    
+    // Big-endian views of a byte array, matching ByteBuffer's default order
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+    
+    // Schema row layout; null when rows are written in the map format
+    private final String[] columnNames;
+    private final ColumnType[] columnTypes;
+    private final Map<String, Integer> ordinals;
+    // Offset of each column's slot in the fixed area; slotOffsets[n] is the size of the area
+    private final int[] slotOffsets;
+    // Ordinal of the string column before each column, or -1
+    private final int[] previousStringColumn;
+    
+    /**
+     * Creates a serializer that writes the self-describing map format.
+     */
+    public ValueSerializer() {
+        this.columnNames = null;
+        this.columnTypes = null;
+        this.ordinals = null;
+        this.slotOffsets = null;
+        this.previousStringColumn = null;
+    }
+    
+    /**
+     * Creates a serializer that writes rows in the compact format of the given schema.
+     *
+     * @param schema The table schema; its column order defines the ordinals
+     */
+    public ValueSerializer(TableSchema schema) {
+        List<String> names = schema.getColumnNames();
+        int columnCount = names.size();
+        if (columnCount > 0xFFFF) {
+            throw new IllegalArgumentException("Schema has too many columns for the row format: " + columnCount);
+        }
+        this.columnNames = names.toArray(new String[0]);
+        this.columnTypes = new ColumnType[columnCount];
+        this.ordinals = new HashMap<>();
+        this.slotOffsets = new int[columnCount + 1];
+        this.previousStringColumn = new int[columnCount];
+        
+        int lastString = -1;
+        for (int i = 0; i < columnCount; i++) {
+            columnTypes[i] = schema.getColumn(columnNames[i]).getType();
+            ordinals.put(columnNames[i], i);
+            slotOffsets[i + 1] = slotOffsets[i] + slotSize(columnTypes[i]);
+            previousStringColumn[i] = lastString;
+            if (columnTypes[i] == ColumnType.STRING) {
+                lastString = i;
+            }
+        }
+    }
     
     /**
      * Serializes a value map to bytes.
@@ -22,6 +123,10 @@ public class ValueSerializer {
      * @return The serialized bytes
      */
     public byte[] serialize(Map<String, Object> value) {
+        if (columnNames != null && fitsSchema(value)) {
+            return serializeRow(value);
+        }
+        
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
              DataOutputStream dos = new DataOutputStream(baos)) {
             
@@ -56,6 +161,10 @@ public class ValueSerializer {
                 } else if (val instanceof Boolean) {
                     dos.writeByte(TYPE_BOOLEAN);
                     dos.writeBoolean((Boolean) val);
+                } else if (val instanceof byte[]) {
+                    dos.writeByte(TYPE_BYTES);
+                    dos.writeInt(((byte[]) val).length);
+                    dos.write((byte[]) val);
                 } else {
                     throw new IllegalArgumentException("Unsupported value type: " + val.getClass());
                 }
@@ -74,7 +183,37 @@ public class ValueSerializer {
      * @return The deserialized value map
      */
     public Map<String, Object> deserialize(byte[] bytes) {
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+        return deserialize(bytes, null);
+    }
+    
+    /**
+     * Deserializes only the given columns. Schema rows decode nothing else;
+     * map-encoded values skip the other entries.
+     *
+     * @param bytes The bytes to deserialize
+     * @param columns The columns to return, or null or empty for all columns
+     * @return The requested columns the value has
+     */
+    public Map<String, Object> deserialize(byte[] bytes, List<String> columns) {
+        return deserialize(bytes, 0, bytes.length, columns);
+    }
+    
+    /**
+     * Deserializes the given columns of a value stored inside a larger array.
+     *
+     * @param bytes The array holding the value
+     * @param offset Where the value starts
+     * @param length The value length in bytes
+     * @param columns The columns to return, or null or empty for all columns
+     * @return The requested columns the value has
+     */
+    public Map<String, Object> deserialize(byte[] bytes, int offset, int length, List<String> columns) {
+        boolean allColumns = columns == null || columns.isEmpty();
+        if (isRow(bytes, offset, length)) {
+            return deserializeRow(bytes, offset, allColumns ? null : columns);
+        }
+        
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes, offset, length);
              DataInputStream dis = new DataInputStream(bais)) {
             
             Map<String, Object> value = new HashMap<>();
@@ -89,6 +228,7 @@ public class ValueSerializer {
                 byte[] keyBytes = new byte[keyLength];
                 dis.readFully(keyBytes);
                 String key = new String(keyBytes, "UTF-8");
+                boolean wanted = allColumns || columns.contains(key);
                 
                 // Read value
                 byte type = dis.readByte();
@@ -100,6 +240,10 @@ public class ValueSerializer {
                         break;
                     case TYPE_STRING:
                         int valLength = dis.readInt();
+                        if (!wanted) {
+                            dis.skipBytes(valLength);
+                            continue;
+                        }
                         byte[] valBytes = new byte[valLength];
                         dis.readFully(valBytes);
                         val = new String(valBytes, "UTF-8");
@@ -116,11 +260,23 @@ public class ValueSerializer {
                     case TYPE_BOOLEAN:
                         val = dis.readBoolean();
                         break;
+                    case TYPE_BYTES:
+                        int bytesLength = dis.readInt();
+                        if (!wanted) {
+                            dis.skipBytes(bytesLength);
+                            continue;
+                        }
+                        byte[] rawBytes = new byte[bytesLength];
+                        dis.readFully(rawBytes);
+                        val = rawBytes;
+                        break;
                     default:
                         throw new IOException("Unknown value type: " + type);
                 }
                 
-                value.put(key, val);
+                if (wanted) {
+                    value.put(key, val);
+                }
             }
             
             return value;
@@ -128,4 +284,210 @@ public class ValueSerializer {
             throw new RuntimeException("Failed to deserialize value", e);
         }
     }
-} 
\ No newline at end of file
+    
+    private boolean fitsSchema(Map<String, Object> value) {
+        for (Map.Entry<String, Object> entry : value.entrySet()) {
+            Integer ordinal = ordinals.get(entry.getKey());
+            if (ordinal == null || !columnTypes[ordinal].isValidValue(entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private byte[] serializeRow(Map<String, Object> value) {
+        int columnCount = columnNames.length;
+        int fixedStart = ROW_HEADER_SIZE + nullBitmapSize(columnCount);
+        int stringStart = fixedStart + slotOffsets[columnCount];
+        
+        byte[][] strings = new byte[columnCount][];
+        int stringBytes = 0;
+        for (int i = 0; i < columnCount; i++) {
+            if (columnTypes[i] == ColumnType.STRING && value.get(columnNames[i]) != null) {
+                strings[i] = ((String) value.get(columnNames[i])).getBytes(StandardCharsets.UTF_8);
+                stringBytes += strings[i].length;
+            }
+        }
+        
+        ByteBuffer row = ByteBuffer.allocate(stringStart + stringBytes);
+        row.put(ROW_FORMAT);
+        row.putShort((short) columnCount);
+        int stringEnd = 0;
+        for (int i = 0; i < columnCount; i++) {
+            Object val = value.get(columnNames[i]);
+            int slot = fixedStart + slotOffsets[i];
+            if (val == null) {
+                int bitmapByte = ROW_HEADER_SIZE + i / 8;
+                row.put(bitmapByte, (byte) (row.get(bitmapByte) | (1 << (i % 8))));
+            }
+            switch (columnTypes[i]) {
+                case STRING:
+                    if (strings[i] != null) {
+                        row.put(stringStart + stringEnd, strings[i]);
+                        stringEnd += strings[i].length;
+                    }
+                    // An absent string still records where the next one starts
+                    row.putInt(slot, stringEnd);
+                    break;
+                case INTEGER:
+                    row.putInt(slot, val == null ? 0 : (Integer) val);
+                    break;
+                case LONG:
+                    row.putLong(slot, val == null ? 0 : (Long) val);
+                    break;
+                case DOUBLE:
+                    row.putDouble(slot, val == null ? 0 : (Double) val);
+                    break;
+                case BOOLEAN:
+                    row.put(slot, (byte) (Boolean.TRUE.equals(val) ? 1 : 0));
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported column type: " + columnTypes[i]);
+            }
+        }
+        return row.array();
+    }
+    
+    private Map<String, Object> deserializeRow(byte[] bytes, int offset, List<String> columns) {
+        int columnCount = rowColumnCount(bytes, offset);
+        Map<String, Object> value = new HashMap<>();
+        if (columns == null) {
+            for (int i = 0; i < columnCount; i++) {
+                readColumn(bytes, offset, i, value);
+            }
+        } else {
+            for (String column : columns) {
+                int ordinal = ordinalOf(column);
+                if (ordinal >= 0) {
+                    readColumn(bytes, offset, ordinal, value);
+                }
+            }
+        }
+        return value;
+    }
+    
+    private void readColumn(byte[] bytes, int offset, int ordinal, Map<String, Object> value) {
+        if (!isPresent(bytes, offset, ordinal)) {
+            return;
+        }
+        Object val;
+        switch (columnTypes[ordinal]) {
+            case STRING:
+                val = readString(bytes, offset, ordinal);
+                break;
+            case INTEGER:
+                val = readInt(bytes, offset, ordinal);
+                break;
+            case LONG:
+                val = readLong(bytes, offset, ordinal);
+                break;
+            case DOUBLE:
+                val = readDouble(bytes, offset, ordinal);
+                break;
+            case BOOLEAN:
+                val = readBoolean(bytes, offset, ordinal);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported column type: " + columnTypes[ordinal]);
+        }
+        value.put(columnNames[ordinal], val);
+    }
+    
+    // In-place column access for schema rows
+    
+    /**
+     * Gets the schema column names in ordinal order, or null without a schema.
+     */
+    List<String> schemaColumns() {
+        return columnNames == null ? null : List.of(columnNames);
+    }
+    
+    /**
+     * Gets the ordinal of a schema column.
+     *
+     * @return The ordinal, or -1 if there is no schema or no such column
+     */
+    int ordinalOf(String column) {
+        Integer ordinal = ordinals == null ? null : ordinals.get(column);
+        return ordinal == null ? -1 : ordinal;
+    }
+    
+    ColumnType columnType(int ordinal) {
+        return columnTypes[ordinal];
+    }
+    
+    /**
+     * Checks whether the value at the given position is a schema row.
+     */
+    static boolean isRow(byte[] bytes, int offset, int length) {
+        return length > 0 && bytes[offset] == ROW_FORMAT;
+    }
+    
+    /**
+     * Checks whether a schema row has a value for the column.
+     */
+    boolean isPresent(byte[] bytes, int offset, int ordinal) {
+        return ordinal < rowColumnCount(bytes, offset)
+            && (bytes[offset + ROW_HEADER_SIZE + ordinal / 8] & (1 << (ordinal % 8))) == 0;
+    }
+    
+    int readInt(byte[] bytes, int offset, int ordinal) {
+        return (int) INT.get(bytes, slotPosition(bytes, offset, ordinal));
+    }
+    
+    long readLong(byte[] bytes, int offset, int ordinal) {
+        return (long) LONG.get(bytes, slotPosition(bytes, offset, ordinal));
+    }
+    
+    double readDouble(byte[] bytes, int offset, int ordinal) {
+        return (double) DOUBLE.get(bytes, slotPosition(bytes, offset, ordinal));
+    }
+    
+    boolean readBoolean(byte[] bytes, int offset, int ordinal) {
+        return bytes[slotPosition(bytes, offset, ordinal)] != 0;
+    }
+    
+    String readString(byte[] bytes, int offset, int ordinal) {
+        int columnCount = rowColumnCount(bytes, offset);
+        int fixedStart = offset + ROW_HEADER_SIZE + nullBitmapSize(columnCount);
+        int previous = previousStringColumn[ordinal];
+        int start = previous < 0 ? 0 : (int) INT.get(bytes, fixedStart + slotOffsets[previous]);
+        int end = (int) INT.get(bytes, fixedStart + slotOffsets[ordinal]);
+        return new String(bytes, fixedStart + slotOffsets[columnCount] + start, end - start, StandardCharsets.UTF_8);
+    }
+    
+    private int rowColumnCount(byte[] bytes, int offset) {
+        if (columnNames == null) {
+            throw new IllegalStateException("Value is stored in the schema row format but no schema was given");
+        }
+        int columnCount = (short) SHORT.get(bytes, offset + 1) & 0xFFFF;
+        if (columnCount > columnNames.length) {
+            throw new IllegalStateException("Row has " + columnCount + " columns but the schema only " + columnNames.length);
+        }
+        return columnCount;
+    }
+    
+    private int slotPosition(byte[] bytes, int offset, int ordinal) {
+        int columnCount = rowColumnCount(bytes, offset);
+        return offset + ROW_HEADER_SIZE + nullBitmapSize(columnCount) + slotOffsets[ordinal];
+    }
+    
+    private static int nullBitmapSize(int columnCount) {
+        return (columnCount + 7) / 8;
+    }
+    
+    private static int slotSize(ColumnType type) {
+        switch (type) {
+            case INTEGER:
+            case STRING:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            case BOOLEAN:
+                return 1;
+            default:
+                throw new IllegalArgumentException("Unsupported column type: " + type);
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package minispark.storage.btree.page;
+
+import minispark.storage.wal.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache of pages sitting in front of the PageManager.
+ *
+ * Callers pin a page before using it and unpin it when done. Pinned pages are
+ * never evicted, so a Page object stays valid for as long as it is pinned.
+ * Modified pages are marked dirty and written back when they are evicted or
+ * when the pool is flushed.
+ *
+ * Eviction uses the CLOCK algorithm: every resident frame has a reference bit
+ * that is set on access. The clock hand sweeps the frames, clearing reference
+ * bits, and evicts the first unpinned frame whose bit is already clear. Hot
+ * pages such as the root and inner branch pages keep getting their bit set and
+ * therefore stay resident.
+ *
+ * If every frame is pinned (or the capacity is 0) a page is still handed out,
+ * but it is not cached: it is written back, if dirty, as soon as its last pin
+ * is released. A capacity of 0 therefore behaves exactly like going straight
+ * to the PageManager.
+ *
+ * WRITE-AHEAD LOGGING
+ * -------------------
+ * When a WriteAheadLog is attached, dirty pages are first recorded as
+ * uncommitted. commit() appends their after-images plus a commit record to the
+ * log; only then may the pages reach the data file. Two rules follow:
+ * uncommitted pages are never evicted (no-steal), and a committed page is only
+ * written back once the log is durable up to its commit LSN (the WAL rule).
+ * The data file is therefore only forced at checkpoints.
+ *
+ * OPTIMISTIC ACCESS
+ * -----------------
+ * peek() hands out a resident page without pinning it and without taking the
+ * pool's lock, for readers that validate page versions instead of latching.
+ * Whenever a frame leaves the pool its page is retired, which fails every
+ * later validation, so such a reader can never trust a page that was evicted
+ * and reloaded behind its back. Only then is the page's memory handed back
+ * to the PageManager (see PageFramePool), since it may soon hold another page.
+ *
+ * PREFETCHING
+ * -----------
+ * prefetch() loads a page ahead of need, e.g. from a read-ahead thread. The
+ * disk read happens outside the pool's lock so it overlaps with other
+ * threads' work. A page that is not in the pool has its current contents on
+ * disk, since every change reaches the file through the pool; if any page
+ * was written back while the read was in flight the result is discarded
+ * rather than risk installing a stale image.
+ */
+public class BufferPool {
+    private static final byte RECORD_PAGE_IMAGE = 1;
+    private static final byte RECORD_COMMIT = 2;
+    
+    private final PageManager pageManager;
+    private final int capacity;
+    
+    // Optional log; null means pages are written straight to the data file
+    private final WriteAheadLog writeAheadLog;
+    
+    // Pages dirtied since the last commit(), in first-dirtied order
+    private final Map<Long, Frame> uncommitted = new LinkedHashMap<>();
+    
+    // Resident frames indexed by clock position
+    private final Frame[] slots;
+    
+    // All frames currently known to the pool (resident and transient); changed
+    // only under the pool's lock, but read without it by peek()
+    private final Map<Long, Frame> pageTable = new ConcurrentHashMap<>();
+    
+    private int clockHand;
+    
+    // Counters for tracking cache effectiveness
+    private final AtomicLong hitCount = new AtomicLong();
+    private long missCount;
+    private long evictionCount;
+    private long prefetchCount;
+    
+    // Pages written to the data file so far; lets prefetch() detect a write racing its read
+    private long writeBackCount;
+    
+    /**
+     * Creates a new buffer pool.
+     *
+     * @param pageManager The page manager used for disk I/O
+     * @param capacity Maximum number of pages kept resident (0 disables caching)
+     */
+    public BufferPool(PageManager pageManager, int capacity) {
+        this(pageManager, capacity, null);
+    }
+    
+    /**
+     * Creates a new buffer pool whose writes are protected by a write-ahead log.
+     *
+     * @param pageManager The page manager used for disk I/O
+     * @param capacity Maximum number of pages kept resident (0 disables caching)
+     * @param writeAheadLog The log that must hold a page image before the page is written, or null
+     */
+    public BufferPool(PageManager pageManager, int capacity, WriteAheadLog writeAheadLog) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Buffer pool capacity cannot be negative: " + capacity);
+        }
+        this.pageManager = pageManager;
+        this.capacity = capacity;
+        this.slots = new Frame[capacity];
+        this.writeAheadLog = writeAheadLog;
+    }
+    
+    /**
+     * Gets the maximum number of resident pages.
+     *
+     * @return The capacity in pages
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Pins a page, reading it from disk if it is not already in the pool.
+     *
+     * @param pageId The page ID
+     * @return The pinned page
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized Page pin(long pageId) throws IOException {
+        Frame frame = pageTable.get(pageId);
+        if (frame != null) {
+            hitCount.incrementAndGet();
+            frame.pinCount++;
+            frame.referenced = true;
+            if (capacity > 0) {
+                System.out.println("📦 BUFFER POOL HIT - page " + pageId + " (pin count " + frame.pinCount + ")");
+            }
+            return frame.page;
+        }
+        
+        missCount++;
+        Page page = pageManager.readPage(pageId);
+        return install(page).page;
+    }
+    
+    /**
+     * Returns a page that is already in the pool without pinning it.
+     * The page can be evicted at any moment, so it may only be read
+     * optimistically and every read must be validated against the page
+     * version (see Page.optimisticVersion()).
+     *
+     * @param pageId The page ID
+     * @return The page, or null if it is not in the pool
+     */
+    public Page peek(long pageId) {
+        Frame frame = pageTable.get(pageId);
+        if (frame == null) {
+            return null;
+        }
+        hitCount.incrementAndGet();
+        frame.referenced = true;
+        return frame.page;
+    }
+    
+    /**
+     * Loads a page into the pool without pinning it, unless it is already
+     * resident. Meant for read-ahead: the page is read from disk without
+     * holding the pool's lock, and it is only installed if a slot can be had.
+     *
+     * @param pageId The page ID
+     * @return The page now in the pool, to be read optimistically only (see peek()),
+     *         or null if it could not be loaded
+     * @throws IOException If the page cannot be read
+     */
+    public Page prefetch(long pageId) throws IOException {
+        long writeBacksBefore;
+        synchronized (this) {
+            Frame frame = pageTable.get(pageId);
+            if (frame != null || capacity == 0) {
+                return frame == null ? null : frame.page;
+            }
+            writeBacksBefore = writeBackCount;
+        }
+        
+        Page page = pageManager.readPage(pageId);
+        
+        synchronized (this) {
+            Frame frame = pageTable.get(pageId);
+            if (frame != null) {
+                // Somebody else loaded it meanwhile
+                pageManager.releasePage(page);
+                return frame.page;
+            }
+            int slot = writeBackCount == writeBacksBefore ? findVictimSlot() : -1;
+            if (slot < 0) {
+                pageManager.releasePage(page);
+                return null;
+            }
+            frame = new Frame(page);
+            frame.pinCount = 0;
+            frame.slot = slot;
+            slots[slot] = frame;
+            pageTable.put(pageId, frame);
+            prefetchCount++;
+            return page;
+        }
+    }
+    
+    /**
+     * Allocates a new page on disk and pins it without reading it back.
+     *
+     * @return The pinned, empty page
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized Page newPage() throws IOException {
+        long pageId = pageManager.allocatePage();
+        Page page = pageManager.emptyPage(pageId);
+        return install(page).page;
+    }
+    
+    /**
+     * Marks a pinned page as modified so it is written back before it leaves the pool.
+     *
+     * @param page The pinned page
+     */
+    public synchronized void markDirty(Page page) {
+        Frame frame = pinnedFrame(page);
+        frame.dirty = true;
+        if (writeAheadLog != null) {
+            uncommitted.put(page.getPageId(), frame);
+        }
+    }
+    
+    /**
+     * Releases one pin on a page.
+     *
+     * @param page The pinned page
+     * @throws IOException If writing back a transient dirty page fails
+     */
+    public synchronized void unpin(Page page) throws IOException {
+        Frame frame = pinnedFrame(page);
+        frame.pinCount--;
+        
+        if (frame.pinCount == 0 && frame.slot < 0 && !uncommitted.containsKey(page.getPageId())) {
+            // Page never made it into a slot - write back now and forget it
+            writeBack(frame);
+            drop(frame);
+        }
+    }
+    
+    /**
+     * Writes all dirty pages back to disk. Pages stay resident. With a
+     * write-ahead log only committed pages are written.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized void flush() throws IOException {
+        for (Frame frame : pageTable.values()) {
+            if (!uncommitted.containsKey(frame.page.getPageId())) {
+                writeBack(frame);
+            }
+        }
+    }
+    
+    /**
+     * Logs the after-image of every page dirtied since the last commit,
+     * followed by a commit record. The caller makes the commit durable with
+     * WriteAheadLog.sync(lsn), which lets concurrent committers share one fsync.
+     *
+     * @return The LSN of the commit record, or 0 if there was nothing to commit
+     * @throws IOException If the log cannot be appended to
+     */
+    public synchronized long commit() throws IOException {
+        if (writeAheadLog == null || uncommitted.isEmpty()) {
+            return 0;
+        }
+        
+        for (Frame frame : uncommitted.values()) {
+            byte[] data = frame.page.getData();
+            ByteBuffer record = ByteBuffer.allocate(1 + Long.BYTES + data.length);
+            record.put(RECORD_PAGE_IMAGE);
+            record.putLong(frame.page.getPageId());
+            record.put(data);
+            writeAheadLog.append(record.array());
+        }
+        long commitLsn = writeAheadLog.append(new byte[] {RECORD_COMMIT});
+        
+        for (Frame frame : uncommitted.values()) {
+            frame.commitLsn = commitLsn;
+        }
+        uncommitted.clear();
+        return commitLsn;
+    }
+    
+    /**
+     * Writes back committed pages that were kept only because they were not
+     * yet committed (transient frames with no remaining pins).
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized void releaseCommitted() throws IOException {
+        List<Frame> released = new ArrayList<>();
+        for (Frame frame : pageTable.values()) {
+            if (frame.slot < 0 && frame.pinCount == 0 && !uncommitted.containsKey(frame.page.getPageId())) {
+                released.add(frame);
+            }
+        }
+        for (Frame frame : released) {
+            writeBack(frame);
+            drop(frame);
+        }
+    }
+    
+    /**
+     * Writes every committed page to the data file, forces it, and discards the
+     * log. Afterwards recovery has nothing left to replay.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (writeAheadLog == null) {
+            flush();
+            return;
+        }
+        if (!uncommitted.isEmpty()) {
+            throw new IllegalStateException("Cannot checkpoint with " + uncommitted.size() + " uncommitted pages");
+        }
+        
+        System.out.println("🧷 CHECKPOINT - writing back dirty pages and truncating "
+            + writeAheadLog.getLogPath().getFileName() + " (" + writeAheadLog.size() + " bytes)");
+        flush();
+        releaseCommitted();
+        pageManager.sync();
+        writeAheadLog.truncate();
+    }
+    
+    /**
+     * Replays committed page images from the log into the data file. Images not
+     * followed by a commit record belong to an interrupted write and are ignored.
+     * Must run before any page is pinned.
+     *
+     * @return The number of pages restored
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized int recover() throws IOException {
+        if (writeAheadLog == null) {
+            return 0;
+        }
+        
+        Map<Long, byte[]> committedImages = new LinkedHashMap<>();
+        Map<Long, byte[]> pendingImages = new LinkedHashMap<>();
+        for (byte[] record : writeAheadLog.readRecords()) {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            byte type = buffer.get();
+            if (type == RECORD_PAGE_IMAGE) {
+                long pageId = buffer.getLong();
+                byte[] data = new byte[buffer.remaining()];
+                buffer.get(data);
+                pendingImages.put(pageId, data);
+            } else if (type == RECORD_COMMIT) {
+                committedImages.putAll(pendingImages);
+                pendingImages.clear();
+            }
+        }
+        
+        if (committedImages.isEmpty()) {
+            writeAheadLog.truncate();
+            return 0;
+        }
+        
+        System.out.println("🔁 WAL RECOVERY - restoring " + committedImages.size() + " pages from "
+            + writeAheadLog.getLogPath().getFileName());
+        for (Map.Entry<Long, byte[]> image : committedImages.entrySet()) {
+            Page page = pageManager.emptyPage(image.getKey());
+            page.setData(image.getValue());
+            pageManager.writePage(page);
+            pageManager.releasePage(page);
+        }
+        pageManager.sync();
+        writeAheadLog.truncate();
+        return committedImages.size();
+    }
+    
+    /**
+     * Gets the number of pins served from memory.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    /**
+     * Gets the number of pins that had to read the page from disk.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+    
+    /**
+     * Gets the number of pages loaded by prefetch().
+     */
+    public synchronized long getPrefetchCount() {
+        return prefetchCount;
+    }
+    
+    /**
+     * Gets the number of pages evicted to make room for other pages.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+    
+    /**
+     * Gets the number of pages currently resident in the pool.
+     */
+    public synchronized int getResidentCount() {
+        int resident = 0;
+        for (Frame frame : slots) {
+            if (frame != null) {
+                resident++;
+            }
+        }
+        return resident;
+    }
+    
+    /**
+     * Prints buffer pool statistics.
+     */
+    public synchronized void printStatistics() {
+        long pins = hitCount.get() + missCount;
+        System.out.println("📦 BUFFER POOL STATISTICS:");
+        System.out.println("   Capacity:   " + capacity + " pages");
+        System.out.println("   Hits:       " + hitCount.get());
+        System.out.println("   Misses:     " + missCount);
+        System.out.println("   Evictions:  " + evictionCount);
+        System.out.println("   Prefetched: " + prefetchCount);
+        System.out.println("   Hit ratio:  " + (pins == 0 ? "n/a" : String.format("%.1f%%", 100.0 * hitCount.get() / pins)));
+        System.out.println();
+    }
+    
+    /**
+     * Resets the hit/miss/eviction counters.
+     */
+    public synchronized void resetCounters() {
+        hitCount.set(0);
+        missCount = 0;
+        evictionCount = 0;
+        prefetchCount = 0;
+    }
+    
+    private Frame install(Page page) throws IOException {
+        Frame frame = new Frame(page);
+        frame.slot = findVictimSlot();
+        if (frame.slot >= 0) {
+            slots[frame.slot] = frame;
+        }
+        pageTable.put(page.getPageId(), frame);
+        return frame;
+    }
+    
+    /**
+     * Runs the clock hand until it finds a free slot or an evictable frame.
+     * Two full sweeps are enough: the first clears reference bits, the second
+     * finds a victim unless everything is pinned.
+     *
+     * @return The slot index, or -1 if no slot can be freed
+     */
+    private int findVictimSlot() throws IOException {
+        for (int scanned = 0; scanned < 2 * capacity; scanned++) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) % capacity;
+            
+            Frame frame = slots[slot];
+            if (frame == null) {
+                return slot;
+            }
+            if (frame.pinCount > 0 || uncommitted.containsKey(frame.page.getPageId())) {
+                continue;
+            }
+            if (frame.referenced) {
+                frame.referenced = false;
+                continue;
+            }
+            
+            evict(frame);
+            return slot;
+        }
+        return -1;
+    }
+    
+    private void evict(Frame frame) throws IOException {
+        writeBack(frame);
+        slots[frame.slot] = null;
+        drop(frame);
+        evictionCount++;
+        System.out.println("♻️  BUFFER POOL EVICT - page " + frame.page.getPageId());
+    }
+    
+    private void writeBack(Frame frame) throws IOException {
+        if (frame.dirty) {
+            if (writeAheadLog != null) {
+                // WAL rule: the log must cover this page before the page hits the data file
+                writeAheadLog.sync(frame.commitLsn);
+            }
+            pageManager.writePage(frame.page);
+            frame.dirty = false;
+            writeBackCount++;
+        }
+    }
+    
+    private void drop(Frame frame) {
+        pageTable.remove(frame.page.getPageId());
+        // Nobody holds a latch on an unpinned page, so this never blocks
+        frame.page.retire();
+        pageManager.releasePage(frame.page);
+    }
+    
+    private Frame pinnedFrame(Page page) {
+        Frame frame = pageTable.get(page.getPageId());
+        if (frame == null || frame.page != page || frame.pinCount == 0) {
+            throw new IllegalStateException("Page " + page.getPageId() + " is not pinned");
+        }
+        return frame;
+    }
+    
+    /**
+     * A page held by the pool together with its bookkeeping.
+     */
+    private static class Frame {
+        final Page page;
+        int pinCount = 1;
+        boolean dirty;
+        // Set by peek() without the pool's lock
+        volatile boolean referenced = true;
+        int slot = -1;
+        long commitLsn;
+        
+        Frame(Page page) {
+            this.page = page;
+        }
+    }
+}
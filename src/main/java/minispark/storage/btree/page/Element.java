@@ -59,4 +59,16 @@ public class Element {
         }
         return java.nio.ByteBuffer.wrap(value).getLong();
     }
+    
+    /**
+     * Gets the total length of an overflowed value, stored after the first overflow page ID.
+     *
+     * @return The value length in bytes
+     */
+    public int overflowLength() {
+        if (!hasOverflow) {
+            throw new IllegalStateException("Element does not have overflow pages");
+        }
+        return java.nio.ByteBuffer.wrap(value).getInt(Long.BYTES);
+    }
 } 
\ No newline at end of file
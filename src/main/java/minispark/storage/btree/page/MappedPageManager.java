@@ -0,0 +1,211 @@
+package minispark.storage.btree.page;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Page manager that maps the database file into memory instead of copying
+ * pages in and out with read()/write() calls.
+ *
+ * The file is mapped in fixed-size regions (chunks) that are added as the
+ * file grows. readPage() returns a Page that wraps a slice of the mapping, so
+ * a read is just a pointer into the OS page cache: no system call and no copy
+ * into a heap array. Changes made to such a page land directly in the mapping
+ * and reach the file when the OS writes the page back or sync() forces it.
+ *
+ * Because modified pages can reach the file at any time, this mode cannot be
+ * combined with a write-ahead log (which requires that uncommitted pages stay
+ * in memory).
+ *
+ * The file always grows by a whole chunk, so its length is not the number of
+ * pages in use. The page count is recovered on open by skipping trailing
+ * all-zero pages; an all-zero page holds no data, so nothing is lost.
+ */
+public class MappedPageManager extends PageManager {
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    
+    private final int chunkPages;
+    private final long chunkSize;
+    
+    // Mapped regions in file order; region i covers pages [i * chunkPages, (i + 1) * chunkPages)
+    private final List<MappedByteBuffer> regions = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Creates a memory-mapped page manager with the default chunk size.
+     *
+     * @param filePath Path to the database file
+     * @param pageSize Size of each page in bytes
+     * @param forceEachWrite Whether each page write is forced to disk
+     * @throws IOException If an I/O error occurs
+     */
+    public MappedPageManager(Path filePath, int pageSize, boolean forceEachWrite) throws IOException {
+        this(filePath, pageSize, forceEachWrite, DEFAULT_CHUNK_SIZE);
+    }
+    
+    /**
+     * Creates a memory-mapped page manager.
+     *
+     * @param filePath Path to the database file
+     * @param pageSize Size of each page in bytes
+     * @param forceEachWrite Whether each page write is forced to disk
+     * @param chunkSize Bytes mapped at a time as the file grows (rounded to whole pages)
+     * @throws IOException If an I/O error occurs
+     */
+    public MappedPageManager(Path filePath, int pageSize, boolean forceEachWrite, int chunkSize) throws IOException {
+        super(filePath, pageSize, forceEachWrite);
+        this.chunkPages = Math.max(1, chunkSize / pageSize);
+        this.chunkSize = (long) chunkPages * pageSize;
+        
+        long filePages = (file.length() + pageSize - 1) / pageSize;
+        if (filePages > 0) {
+            ensureMapped(filePages - 1);
+        }
+        long pageCount = filePages;
+        while (pageCount > 0 && isZeroPage(pageCount - 1)) {
+            pageCount--;
+        }
+        nextPageId.set(pageCount);
+        
+        System.out.println("🗺️  MappedPageManager: " + regions.size() + " region(s) of " + this.chunkSize
+            + " bytes, " + pageCount + " pages in use");
+        System.out.println();
+    }
+    
+    @Override
+    public long allocatePage() throws IOException {
+        long pageId = nextPageId.getAndIncrement();
+        ensureMapped(pageId);
+        
+        // Space beyond the old end of data can hold leftovers of an abandoned allocation
+        ByteBuffer slice = slice(pageId);
+        slice.put(new byte[pageSize]);
+        
+        System.out.println("🆕 Allocated new page: " + pageId + " (mapped)");
+        return pageId;
+    }
+    
+    @Override
+    public Page emptyPage(long pageId) {
+        return new Page(slice(pageId), pageId);
+    }
+    
+    /**
+     * Returns a page that wraps the mapped file region - no copy is made.
+     */
+    @Override
+    public Page readPage(long pageId) throws IOException {
+        long readCount = pageReadsCount.incrementAndGet();
+        System.out.println("📖 PAGE READ #" + readCount + " - Mapping page " + pageId + " (no copy)");
+        
+        if (pageId >= nextPageId.get()) {
+            throw new IOException("Page " + pageId + " does not exist (page count " + nextPageId.get() + ")");
+        }
+        return new Page(slice(pageId), pageId);
+    }
+    
+    /**
+     * Pages handed out by this manager already live in the mapping; other
+     * pages (e.g. rebuilt from a log) are copied in.
+     */
+    @Override
+    public void writePage(Page page) throws IOException {
+        long writeCount = pageWritesCount.incrementAndGet();
+        long pageId = page.getPageId();
+        System.out.println("💾 PAGE WRITE #" + writeCount + " - Page " + pageId + " in mapped region");
+        
+        ensureMapped(pageId);
+        nextPageId.accumulateAndGet(pageId + 1, Math::max);
+        if (!page.isView()) {
+            slice(pageId).put(page.getData());
+        }
+        
+        if (forceEachWrite) {
+            regions.get(regionIndex(pageId)).force(regionOffset(pageId), pageSize);
+            syncCount.incrementAndGet();
+        }
+    }
+    
+    @Override
+    public void sync() throws IOException {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        syncCount.incrementAndGet();
+    }
+    
+    /**
+     * Gets the number of regions currently mapped.
+     */
+    public int getMappedRegionCount() {
+        return regions.size();
+    }
+    
+    /**
+     * Forces the mapping to disk and closes the file. The mapping itself is
+     * released when the buffers are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        sync();
+        super.close();
+    }
+    
+    /**
+     * The file keeps its whole chunks: shrinking it under a live mapping would
+     * fault any access to the cut-off part.
+     */
+    @Override
+    protected void trimToPagesInUse() {
+    }
+    
+    /**
+     * Maps regions (growing the file) until the given page is covered.
+     */
+    private synchronized void ensureMapped(long pageId) throws IOException {
+        int region = regionIndex(pageId);
+        while (regions.size() <= region) {
+            long position = regions.size() * chunkSize;
+            if (file.length() < position + chunkSize) {
+                file.setLength(position + chunkSize);
+            }
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, position, chunkSize));
+            System.out.println("🗺️  Mapped region " + (regions.size() - 1) + " at offset " + position);
+        }
+    }
+    
+    private ByteBuffer slice(long pageId) {
+        ByteBuffer region = regions.get(regionIndex(pageId)).duplicate();
+        int offset = regionOffset(pageId);
+        region.position(offset);
+        region.limit(offset + pageSize);
+        return region.slice();
+    }
+    
+    private boolean isZeroPage(long pageId) {
+        ByteBuffer slice = slice(pageId);
+        while (slice.remaining() >= Long.BYTES) {
+            if (slice.getLong() != 0) {
+                return false;
+            }
+        }
+        while (slice.hasRemaining()) {
+            if (slice.get() != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int regionIndex(long pageId) {
+        return (int) (pageId / chunkPages);
+    }
+    
+    private int regionOffset(long pageId) {
+        return (int) (pageId % chunkPages) * pageSize;
+    }
+}
@@ -2,19 +2,104 @@ package minispark.storage.btree.page;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * Represents a page in the B+Tree.
  * A page can be either a leaf node or a branch node.
+ *
+ * SLOTTED PAGE LAYOUT (format version 3)
+ * --------------------------------------
+ *
+ *   0        4        8                16            20             22              24
+ *   | flags  | count  | nextPageId     | cellStart   | prefixLength | fragmentedBytes |
+ *   +--------+--------+----------------+-------------+--------------+-----------------+
+ *   | slot 0 | slot 1 | ... slot N-1 ->        free        <- cell | cell | prefix |
+ *
+ * The slot directory grows forward from the header; slot i holds the 2-byte
+ * offset of element i's cell, and slots are kept in key order. Cells
+ * (|keyLen|valueLen|flags|pad|key|value|) are packed backwards from the end
+ * of the page in arrival order. Element i is therefore one array lookup away
+ * and key search is a binary search over the slots - inserting only moves
+ * 2-byte slot entries instead of whole elements.
+ *
+ * Space freed by replacing a cell is counted in fragmentedBytes and
+ * reclaimed by compacting the cell area when an insert needs it.
+ *
+ * KEY PREFIX TRUNCATION
+ * ---------------------
+ * Keys in one page usually share a long prefix (customer_000120,
+ * customer_000121, ...). The page stores that prefix once, at the very end of
+ * the page, and a cell holds only the rest of its key. A cell whose key does
+ * not start with the prefix - such as the empty first key of a branch page -
+ * is marked CELL_FULL_KEY and stores its key in full, so an insert never has
+ * to rewrite other cells and never needs more space than the full key.
+ *
+ * The prefix is chosen when the cell area is compacted, i.e. when a page
+ * runs out of space or is rebuilt by a split: compaction picks the prefix
+ * shared by all non-empty keys if that makes the page smaller. Searching
+ * compares the probe key with the prefix once; after that only suffixes are
+ * compared.
+ *
+ * Version 2 had no prefix; its header stored fragmentedBytes as a 4-byte int
+ * whose upper half is always zero, so a version 2 page reads as a version 3
+ * page with an empty prefix and needs no migration.
+ *
+ * An all-zero page is a valid empty page (cellStart 0 means "end of page").
+ *
+ * OVERFLOW PAGES
+ * --------------
+ * Values too large to keep inline are stored in a chain of overflow pages.
+ * An overflow page (FLAG_OVERFLOW) has no slots: count holds the number of
+ * value bytes stored right after the header, and nextPageId links to the
+ * next page of the chain (0 ends it).
+ *
+ * FREE PAGES
+ * ----------
+ * A page no longer used by the tree is marked FLAG_FREE and linked into the
+ * free list through nextPageId, so later allocations can reuse it.
+ *
+ * A page normally owns a heap buffer, but it can also wrap memory owned by
+ * someone else - e.g. a slice of a memory-mapped file - so reading it needs
+ * no copy at all, or a direct frame leased from a PageFramePool, which goes
+ * back to the pool once the buffer pool is done with the page.
+ *
+ * LATCHES
+ * -------
+ * Every page carries a short-term read/write latch. Threads sharing a page
+ * hold the shared latch while reading it and the exclusive latch while
+ * changing it. Latches protect the page bytes only; the buffer pool hands
+ * every thread pinning a page the same Page object, so the latch is only
+ * meaningful while the page is pinned. Latches are not reentrant.
+ *
+ * The latch doubles as the page's version word: every exclusive latch
+ * advances it. A reader can skip latching entirely by taking
+ * optimisticVersion(), reading the page, and checking validate() afterwards.
+ * If a writer got in between, validation fails and whatever was read must be
+ * thrown away - it may be torn, so such reads must also tolerate exceptions.
+ * A page leaving the buffer pool is retired: it stays exclusively latched for
+ * good, so readers still holding the old object can never validate it.
  */
 public class Page {
     // Page flags
     public static final int FLAG_LEAF = 0x01;
     public static final int FLAG_BRANCH = 0x02;
     public static final int FLAG_OVERFLOW = 0x04;
+    public static final int FLAG_META = 0x08;
+    public static final int FLAG_FREE = 0x10;
+    
+    // On-disk page layout version; version 1 stored elements back to back after a 16-byte header,
+    // version 2 had no key prefix
+    public static final int FORMAT_VERSION = 3;
+    
+    // Largest page the 2-byte slot offsets can address
+    public static final int MAX_PAGE_SIZE = 65536;
     
     // Page header size in bytes
-    public static final int PAGE_HEADER_SIZE = 16;
+    public static final int PAGE_HEADER_SIZE = 24;
+    
+    // Slot directory entry size in bytes
+    public static final int SLOT_SIZE = 2;
     
     // Element header size in bytes
     public static final int ELEM_HEADER_SIZE = 8;
@@ -22,11 +107,37 @@ public class Page {
     // Element size in bytes (header + key + value)
     public static final int ELEM_SIZE = 32;
     
+    // Header field offsets
+    private static final int FLAGS_OFFSET = 0;
+    private static final int COUNT_OFFSET = 4;
+    private static final int NEXT_PAGE_OFFSET = 8;
+    private static final int CELL_START_OFFSET = 16;
+    private static final int PREFIX_LENGTH_OFFSET = 20;
+    private static final int FRAGMENTED_OFFSET = 22;
+    
+    // Cell flags
+    private static final int CELL_OVERFLOW = 0x01;
+    private static final int CELL_FULL_KEY = 0x02;
+    
+    // Source for zeroFill(); shared by all pages, never written
+    private static final byte[] ZEROS = new byte[MAX_PAGE_SIZE];
+    
     // Page data
     private final ByteBuffer buffer;
     private final int pageSize;
     private final long pageId;
     
+    // True when the buffer is memory handed in by the caller rather than our own heap array
+    private final boolean view;
+    
+    // Pool the buffer was leased from, or null; the frame is returned at most once
+    private final PageFramePool framePool;
+    private boolean frameReleased;
+    
+    // Short-term latch guarding the page bytes while the page is shared between
+    // threads; its stamp is the version word checked by optimistic readers
+    private final StampedLock latch = new StampedLock();
+    
     /**
      * Creates a new page with the given size and ID.
      *
@@ -34,15 +145,46 @@ public class Page {
      * @param pageId The page ID
      */
     public Page(int pageSize, long pageId) {
+        if (pageSize <= PAGE_HEADER_SIZE || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between " + (PAGE_HEADER_SIZE + 1)
+                + " and " + MAX_PAGE_SIZE + ": " + pageSize);
+        }
         this.pageSize = pageSize;
         this.pageId = pageId;
+        // ByteBuffer.allocate zero-fills, which is an empty page
         this.buffer = ByteBuffer.allocate(pageSize);
-        // Initialize with zeros
-        buffer.clear();
-        for (int i = 0; i < pageSize; i++) {
-            buffer.put((byte) 0);
+        this.view = false;
+        this.framePool = null;
+    }
+    
+    /**
+     * Creates a page that reads and writes the given buffer in place.
+     * The page covers the buffer's capacity; its contents are not copied.
+     *
+     * @param buffer The page memory, e.g. a slice of a mapped file
+     * @param pageId The page ID
+     */
+    public Page(ByteBuffer buffer, long pageId) {
+        this(buffer, pageId, null);
+    }
+    
+    /**
+     * Creates a page over a frame leased from a pool; releaseFrame() gives it back.
+     *
+     * @param buffer The leased frame
+     * @param pageId The page ID
+     * @param framePool The pool the frame came from, or null for memory owned elsewhere
+     */
+    Page(ByteBuffer buffer, long pageId, PageFramePool framePool) {
+        if (buffer.capacity() <= PAGE_HEADER_SIZE || buffer.capacity() > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between " + (PAGE_HEADER_SIZE + 1)
+                + " and " + MAX_PAGE_SIZE + ": " + buffer.capacity());
         }
-        buffer.rewind();
+        this.pageSize = buffer.capacity();
+        this.pageId = pageId;
+        this.buffer = buffer;
+        this.view = true;
+        this.framePool = framePool;
     }
     
     /**
@@ -54,13 +196,78 @@ public class Page {
         return pageId;
     }
     
+    /**
+     * Acquires the latch in shared mode; any number of readers can hold it at once.
+     */
+    public void latchShared() {
+        latch.asReadLock().lock();
+    }
+    
+    /**
+     * Releases a shared latch taken with latchShared().
+     */
+    public void unlatchShared() {
+        latch.asReadLock().unlock();
+    }
+    
+    /**
+     * Acquires the latch in exclusive mode, waiting for readers to leave.
+     */
+    public void latchExclusive() {
+        latch.asWriteLock().lock();
+    }
+    
+    /**
+     * Acquires the latch in exclusive mode only if that is possible without waiting.
+     *
+     * @return true if the latch was acquired
+     */
+    public boolean tryLatchExclusive() {
+        return latch.asWriteLock().tryLock();
+    }
+    
+    /**
+     * Releases an exclusive latch taken with latchExclusive().
+     */
+    public void unlatchExclusive() {
+        latch.asWriteLock().unlock();
+    }
+    
+    /**
+     * Starts an optimistic read without taking the latch.
+     *
+     * @return The current version, or 0 if a writer holds the page right now
+     */
+    public long optimisticVersion() {
+        return latch.tryOptimisticRead();
+    }
+    
+    /**
+     * Checks that no writer latched the page since optimisticVersion() returned the given version.
+     *
+     * @param version A version returned by optimisticVersion()
+     * @return true if everything read since then is consistent
+     */
+    public boolean validate(long version) {
+        return version != 0 && latch.validate(version);
+    }
+    
+    /**
+     * Invalidates every optimistic read of this object, now and in the future.
+     * Called by the buffer pool when the page is dropped; later accesses to
+     * the page get a fresh Page object.
+     */
+    void retire() {
+        latch.writeLock();
+    }
+    
     /**
      * Gets the page flags.
      *
      * @return The page flags
      */
     public int flags() {
-        return buffer.getInt(0);
+        return buffer.getInt(FLAGS_OFFSET);
     }
     
     /**
@@ -69,7 +276,7 @@ public class Page {
      * @param flags The page flags
      */
     public void setFlags(int flags) {
-        buffer.putInt(0, flags);
+        buffer.putInt(FLAGS_OFFSET, flags);
     }
     
     /**
@@ -90,33 +297,60 @@ public class Page {
         return (flags() & FLAG_BRANCH) != 0;
     }
     
+    /**
+     * Checks if this page holds part of an overflowed value.
+     *
+     * @return true if this is an overflow page
+     */
+    public boolean isOverflow() {
+        return (flags() & FLAG_OVERFLOW) != 0;
+    }
+    
+    /**
+     * Checks if this page is on the free list.
+     *
+     * @return true if this is a free page
+     */
+    public boolean isFree() {
+        return (flags() & FLAG_FREE) != 0;
+    }
+    
     /**
      * Gets the number of elements in the page.
      *
      * @return The number of elements
      */
     public int count() {
-        return buffer.getInt(4);
+        return buffer.getInt(COUNT_OFFSET);
     }
     
     /**
-     * Sets the number of elements in the page.
+     * Truncates the page to its first count elements.
      *
-     * @param count The number of elements
+     * @param count The number of elements to keep
      */
     public void setCount(int count) {
-        buffer.putInt(4, count);
+        if (count < 0 || count > count()) {
+            throw new IllegalArgumentException("Cannot set count to " + count + " (page has " + count() + " elements)");
+        }
+        if (count == 0) {
+            clear();
+            return;
+        }
+        buffer.putInt(COUNT_OFFSET, count);
+        compact(null);
     }
     
     /**
-     * Clears all elements from the page.
+     * Clears all elements from the page. Flags and the next page link are kept.
      */
     public void clear() {
-        setCount(0);
+        buffer.putInt(COUNT_OFFSET, 0);
+        setCellStart(pageSize);
+        setPrefixLength(0);
+        setFragmentedBytes(0);
         // Clear the data area (optional, for security)
-        for (int i = PAGE_HEADER_SIZE; i < pageSize; i++) {
-            buffer.put(i, (byte) 0);
-        }
+        zero(PAGE_HEADER_SIZE, pageSize);
     }
     
     /**
@@ -125,7 +359,7 @@ public class Page {
      * @return The next page ID
      */
     public long nextPageId() {
-        return buffer.getLong(8);
+        return buffer.getLong(NEXT_PAGE_OFFSET);
     }
     
     /**
@@ -134,111 +368,40 @@ public class Page {
      * @param pageId The next page ID
      */
     public void setNextPageId(long pageId) {
-        buffer.putLong(8, pageId);
+        buffer.putLong(NEXT_PAGE_OFFSET, pageId);
     }
     
     /**
-     * Gets the free space in the page.
+     * Gets the free space in the page, including fragmented space that a
+     * compaction would reclaim. Each new element also needs a slot.
      *
      * @return The free space in bytes
      */
     public int freeSpace() {
-        int usedSpace = PAGE_HEADER_SIZE;
-        int count = count();
-        
-        // Calculate actual used space by examining each element
-        // Use safe element access to avoid BufferUnderflowException
-        for (int i = 0; i < count; i++) {
-            try {
-                Element element = elementSafe(i);
-                if (element != null) {
-                    usedSpace += ELEM_HEADER_SIZE + element.key().length + element.value().length;
-                } else {
-                    // If we can't read an element safely, assume page is corrupted
-                    // Return minimal free space to prevent further insertions
-                    return 0;
-                }
-            } catch (Exception e) {
-                // If we encounter any error reading elements, assume page is full
-                return 0;
-            }
-        }
-        
-        return pageSize - usedSpace;
+        return contiguousFreeSpace() + fragmentedBytes();
     }
     
     /**
      * Gets an element at the given index with bounds checking.
      *
      * @param index The element index
-     * @return The element, or null if bounds are exceeded
+     * @return The element, or null if the index or the cell is out of bounds
      */
     public Element elementSafe(int index) {
         if (index >= count() || index < 0) {
             return null;
         }
         
-        try {
-            // Find the actual offset of this element
-            int offset = PAGE_HEADER_SIZE;
-            for (int i = 0; i < index; i++) {
-                // Validate we have enough space for element header
-                if (offset + ELEM_HEADER_SIZE > pageSize) {
-                    return null;
-                }
-                
-                int keyLength = buffer.getShort(offset);
-                int valueLength = buffer.getShort(offset + 2);
-                
-                // Validate lengths are reasonable (more lenient bounds)
-                if (keyLength < 0 || valueLength < 0 || 
-                    keyLength > pageSize - ELEM_HEADER_SIZE || valueLength > pageSize - ELEM_HEADER_SIZE) {
-                    return null;
-                }
-                
-                // Validate the complete element fits in the page
-                if (offset + ELEM_HEADER_SIZE + keyLength + valueLength > pageSize) {
-                    return null;
-                }
-                
-                offset += ELEM_HEADER_SIZE + keyLength + valueLength;
-            }
-            
-            // Validate we have enough space for the target element header
-            if (offset + ELEM_HEADER_SIZE > pageSize) {
-                return null;
-            }
-            
-            int keyLength = buffer.getShort(offset);
-            int valueLength = buffer.getShort(offset + 2);
-            
-            // Validate lengths are reasonable (more lenient bounds)
-            if (keyLength < 0 || valueLength < 0 || 
-                keyLength > pageSize - ELEM_HEADER_SIZE || valueLength > pageSize - ELEM_HEADER_SIZE) {
-                return null;
-            }
-            
-            // Validate the complete element fits in the page
-            if (offset + ELEM_HEADER_SIZE + keyLength + valueLength > pageSize) {
-                return null;
-            }
-            
-            boolean hasOverflow = (buffer.get(offset + 4) & 0x01) != 0;
-            
-            byte[] key = new byte[keyLength];
-            buffer.position(offset + 8);
-            buffer.get(key);
-            
-            byte[] value = new byte[valueLength];
-            buffer.get(value);
-            
-            return new Element(key, value, hasOverflow);
-        } catch (Exception e) {
-            // Any buffer operation failed - return null
+        int offset = cellOffset(index);
+        if (offset < PAGE_HEADER_SIZE || offset + ELEM_HEADER_SIZE > pageSize || prefixLength() > pageSize - PAGE_HEADER_SIZE) {
+            return null;
+        }
+        if (offset + ELEM_HEADER_SIZE + keyLength(offset) + valueLength(offset) > pageSize) {
             return null;
         }
+        return readElement(offset);
     }
-
+    
     /**
      * Gets an element at the given index.
      *
@@ -246,68 +409,140 @@ public class Page {
      * @return The element
      */
     public Element element(int index) {
-        if (index >= count()) {
+        if (index >= count() || index < 0) {
             throw new IndexOutOfBoundsException("Element index " + index + " >= count " + count());
         }
         
-        try {
-            // Find the actual offset of this element
-            int offset = PAGE_HEADER_SIZE;
-            for (int i = 0; i < index; i++) {
-                // Add bounds checking to prevent BufferUnderflowException
-                if (offset + ELEM_HEADER_SIZE > pageSize) {
-                    throw new IndexOutOfBoundsException("Element offset " + offset + " exceeds page size " + pageSize);
-                }
-                
-                int keyLength = buffer.getShort(offset);
-                int valueLength = buffer.getShort(offset + 2);
-                
-                // Validate element size is reasonable
-                if (keyLength < 0 || valueLength < 0) {
-                    throw new IndexOutOfBoundsException("Invalid element lengths: key=" + keyLength + ", value=" + valueLength);
-                }
-                
-                offset += ELEM_HEADER_SIZE + keyLength + valueLength;
-                
-                // Ensure we don't go beyond page bounds
-                if (offset > pageSize) {
-                    throw new IndexOutOfBoundsException("Element extends beyond page bounds");
-                }
-            }
-            
-            // Validate target element header fits
-            if (offset + ELEM_HEADER_SIZE > pageSize) {
-                throw new IndexOutOfBoundsException("Target element header exceeds page size");
-            }
-            
-            int keyLength = buffer.getShort(offset);
-            int valueLength = buffer.getShort(offset + 2);
-            
-            // Validate target element lengths
-            if (keyLength < 0 || valueLength < 0) {
-                throw new IndexOutOfBoundsException("Invalid target element lengths: key=" + keyLength + ", value=" + valueLength);
-            }
-            
-            // Validate target element data fits
-            if (offset + ELEM_HEADER_SIZE + keyLength + valueLength > pageSize) {
-                throw new IndexOutOfBoundsException("Target element data exceeds page size");
+        Element element = elementSafe(index);
+        if (element == null) {
+            throw new IndexOutOfBoundsException("Element " + index + " lies outside the page: page data may be corrupted. "
+                + "Page size: " + pageSize + ", count: " + count());
+        }
+        return element;
+    }
+    
+    /**
+     * Gets the key at the given index without copying the value.
+     *
+     * @param index The element index
+     * @return The key
+     */
+    public byte[] keyAt(int index) {
+        return fullKey(cellOffset(index));
+    }
+    
+    /**
+     * Gets the length of the full key at the given index.
+     *
+     * @param index The element index
+     * @return The key length in bytes
+     */
+    public int keyLengthAt(int index) {
+        int offset = cellOffset(index);
+        return (isTruncated(offset) ? prefixLength() : 0) + keyLength(offset);
+    }
+    
+    /**
+     * Gets the length of the value stored in the page at the given index.
+     *
+     * @param index The element index
+     * @return The value length in bytes
+     */
+    public int valueLengthAt(int index) {
+        return valueLength(cellOffset(index));
+    }
+    
+    /**
+     * Checks whether the value at the given index is stored in overflow pages.
+     *
+     * @param index The element index
+     * @return true if the stored value is an overflow pointer
+     */
+    public boolean hasOverflowAt(int index) {
+        return (buffer.get(cellOffset(index) + 4) & CELL_OVERFLOW) != 0;
+    }
+    
+    /**
+     * Copies the full key at the given index into an array, without allocating.
+     *
+     * @param index The element index
+     * @param target The array receiving keyLengthAt(index) bytes
+     * @param targetOffset Where the key starts in the array
+     */
+    public void copyKeyAt(int index, byte[] target, int targetOffset) {
+        int offset = cellOffset(index);
+        int prefixLength = isTruncated(offset) ? prefixLength() : 0;
+        readBytes(pageSize - prefixLength(), target, targetOffset, prefixLength);
+        readBytes(offset + ELEM_HEADER_SIZE, target, targetOffset + prefixLength, keyLength(offset));
+    }
+    
+    /**
+     * Copies the value at the given index into an array, without allocating.
+     *
+     * @param index The element index
+     * @param target The array receiving valueLengthAt(index) bytes
+     * @param targetOffset Where the value starts in the array
+     */
+    public void copyValueAt(int index, byte[] target, int targetOffset) {
+        int offset = cellOffset(index);
+        readBytes(offset + ELEM_HEADER_SIZE + keyLength(offset), target, targetOffset, valueLength(offset));
+    }
+    
+    /**
+     * Compares the key at the given index with a key, in place.
+     *
+     * @param index The element index
+     * @param key The key to compare with
+     * @return Negative, zero or positive as the page's key is less than, equal to or greater than the key
+     */
+    public int compareKey(int index, byte[] key) {
+        return compareKeyAt(cellOffset(index), key, comparePrefix(key));
+    }
+    
+    /**
+     * Gets the length of the key prefix shared by the page's truncated cells.
+     *
+     * @return The prefix length in bytes, 0 if keys are stored in full
+     */
+    public int keyPrefixLength() {
+        return prefixLength();
+    }
+    
+    /**
+     * Binary search for a key, comparing in place without copying keys.
+     *
+     * @param key The key to look for
+     * @return The element index if found, otherwise (-(insertion point) - 1) as in Arrays.binarySearch
+     */
+    public int search(byte[] key) {
+        int low = 0;
+        int high = count() - 1;
+        int prefixOrder = comparePrefix(key);
+        
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKeyAt(cellOffset(mid), key, prefixOrder);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
             }
-            
-            boolean hasOverflow = (buffer.get(offset + 4) & 0x01) != 0;
-            
-            byte[] key = new byte[keyLength];
-            buffer.position(offset + 8);
-            buffer.get(key);
-            
-            byte[] value = new byte[valueLength];
-            buffer.get(value);
-            
-            return new Element(key, value, hasOverflow);
-            
-        } catch (java.nio.BufferUnderflowException e) {
-            throw new IndexOutOfBoundsException("BufferUnderflowException reading element " + index + 
-                ": page data may be corrupted. Page size: " + pageSize + ", count: " + count());
         }
+        return -(low + 1);
+    }
+    
+    /**
+     * Finds the last element whose key is less than or equal to the given key.
+     * In a branch page this is the child that covers the key.
+     *
+     * @param key The key
+     * @return The element index, or -1 if every key is greater
+     */
+    public int floorIndex(byte[] key) {
+        int index = search(key);
+        return index >= 0 ? index : -index - 2;
     }
     
     /**
@@ -322,115 +557,186 @@ public class Page {
     }
     
     /**
-     * Inserts a key-value pair into the page.
+     * Inserts a key-value pair into the page, keeping keys sorted. An existing
+     * element with the same key is replaced.
      *
      * @param key The key
      * @param value The value
      * @param hasOverflow Whether the value has overflow pages
-     * @return true if the insertion was successful
+     * @return true if the insertion was successful, false if the page is full
      */
     public boolean insert(byte[] key, byte[] value, boolean hasOverflow) {
         // Validate input parameters
-        if (key == null || value == null) {
+        if (key == null || value == null || key.length > 0xFFFF || value.length > 0xFFFF) {
             return false;
         }
         
-        // Check if there's enough space
-        int requiredSpace = ELEM_HEADER_SIZE + key.length + value.length;
-        if (requiredSpace > freeSpace()) {
-            return false;
-        }
+        int position = search(key);
+        boolean replacing = position >= 0;
         
-        // Find insertion position (keep keys sorted)
-        int insertPos = 0;
-        int count = count();
-        for (int i = 0; i < count; i++) {
-            Element element = elementSafe(i);
-            if (element == null) {
-                // Page appears corrupted, cannot safely insert
+        // Check if there's enough space (a replaced cell's space becomes reusable)
+        if (shortfall(key, value, position) > 0) {
+            // Truncating keys by a longer shared prefix may make room; compaction keeps the slot order
+            if (sharedPrefixLength(key) <= prefixLength()) {
                 return false;
             }
-            
-            int cmp = Arrays.compare(key, element.key());
-            if (cmp < 0) {
-                insertPos = i;
-                break;
-            } else if (cmp == 0) {
-                // Key already exists, update it
-                // For simplicity, we'll just append for now
-                insertPos = count;
-                break;
-            }
-            insertPos = i + 1;
-        }
-        
-        // Calculate where to insert
-        int insertOffset = PAGE_HEADER_SIZE;
-        for (int i = 0; i < insertPos; i++) {
-            Element element = elementSafe(i);
-            if (element == null) {
-                // Page appears corrupted, cannot safely insert
+            compact(key);
+            if (shortfall(key, value, position) > 0) {
                 return false;
             }
-            insertOffset += ELEM_HEADER_SIZE + element.key().length + element.value().length;
         }
+        int cellSize = storedCellSize(key, value);
         
-        // Validate insertion offset is within bounds
-        if (insertOffset + requiredSpace > pageSize) {
-            return false;
+        if (replacing) {
+            // Key already exists, update it: drop the old cell and reuse its slot
+            setFragmentedBytes(fragmentedBytes() + cellSize(cellOffset(position)));
+            removeSlot(position);
+        } else {
+            position = -position - 1;
         }
         
-        // Shift existing elements if needed
-        if (insertPos < count) {
-            int shiftStart = insertOffset;
-            int shiftEnd = insertOffset;
-            
-            // Find the end of used space
-            for (int i = insertPos; i < count; i++) {
-                Element element = elementSafe(i);
-                if (element == null) {
-                    // Page appears corrupted, cannot safely insert
-                    return false;
-                }
-                shiftEnd += ELEM_HEADER_SIZE + element.key().length + element.value().length;
-            }
-            
-            // Validate shift operation is safe
-            if (shiftEnd - shiftStart < 0 || shiftStart + requiredSpace + (shiftEnd - shiftStart) > pageSize) {
-                return false;
-            }
-            
-            // Shift data
-            byte[] temp = new byte[shiftEnd - shiftStart];
-            buffer.position(shiftStart);
-            buffer.get(temp);
-            buffer.position(shiftStart + requiredSpace);
-            buffer.put(temp);
+        if (contiguousFreeSpace() < cellSize + SLOT_SIZE) {
+            // Compaction may pick a longer prefix, which never makes the new cell bigger
+            compact(key);
         }
         
-        // Insert new element
-        buffer.putShort(insertOffset, (short) key.length);
-        buffer.putShort(insertOffset + 2, (short) value.length);
-        buffer.put(insertOffset + 4, (byte) (hasOverflow ? 0x01 : 0x00));
-        buffer.put(insertOffset + 5, (byte) 0); // padding
-        buffer.putShort(insertOffset + 6, (short) 0); // padding
-        buffer.position(insertOffset + 8);
-        buffer.put(key);
-        buffer.put(value);
+        // Write the cell at the low end of the cell area
+        int cellOffset = writeCell(cellStart(), key, value, hasOverflow);
+        setCellStart(cellOffset);
         
-        // Update count
-        setCount(count + 1);
+        // Open a slot at the insertion position
+        int count = count();
+        int slotPosition = slotOffset(position);
+        moveBytes(slotPosition, slotPosition + SLOT_SIZE, (count - position) * SLOT_SIZE);
+        buffer.putShort(slotPosition, (short) cellOffset);
+        buffer.putInt(COUNT_OFFSET, count + 1);
         
         return true;
     }
     
     /**
-     * Gets the raw page data.
+     * Gets how many bytes are missing to insert a key-value pair at the given
+     * search position, with keys truncated by the current prefix.
+     */
+    private int shortfall(byte[] key, byte[] value, int position) {
+        boolean replacing = position >= 0;
+        int available = freeSpace() + (replacing ? cellSize(cellOffset(position)) : 0);
+        int required = storedCellSize(key, value) + (replacing ? 0 : SLOT_SIZE);
+        return required - available;
+    }
+    
+    private int storedCellSize(byte[] key, byte[] value) {
+        return ELEM_HEADER_SIZE + (sharesPrefix(key) ? key.length - prefixLength() : key.length) + value.length;
+    }
+    
+    /**
+     * Gets the length of the prefix a compaction could share between the
+     * page's non-empty keys and the given key. Keys are sorted, so only the
+     * first non-empty key and the last key need to be looked at.
+     */
+    private int sharedPrefixLength(byte[] key) {
+        int count = count();
+        int first = count > 0 && keyLength(cellOffset(0)) == 0 && !isTruncated(cellOffset(0)) ? 1 : 0;
+        byte[][] bounds = first < count ? new byte[][] {keyAt(first), keyAt(count - 1)} : new byte[0][];
+        return sharedPrefix(bounds, key).length;
+    }
+    
+    /**
+     * Removes the element at the given index. Its cell space becomes reusable
+     * by later inserts.
+     *
+     * @param index The element index
+     */
+    public void remove(int index) {
+        if (index < 0 || index >= count()) {
+            throw new IndexOutOfBoundsException("Element index " + index + " out of bounds for count " + count());
+        }
+        setFragmentedBytes(fragmentedBytes() + cellSize(cellOffset(index)));
+        removeSlot(index);
+    }
+    
+    /**
+     * Rewrites the page so every key is truncated by the longest prefix worth
+     * sharing. Inserts only truncate keys by the current prefix, so a page that
+     * was just filled - by a split or a bulk load - calls this to get the space
+     * back before it fills up on its own.
+     *
+     * @return true if the page has more free space than before
+     */
+    public boolean compressKeys() {
+        int before = freeSpace();
+        compact(null);
+        return freeSpace() > before;
+    }
+    
+    /**
+     * Gets the number of value bytes an overflow page of the given size holds.
+     *
+     * @param pageSize The page size in bytes
+     * @return The payload capacity in bytes
+     */
+    public static int overflowCapacity(int pageSize) {
+        return pageSize - PAGE_HEADER_SIZE;
+    }
+    
+    /**
+     * Turns this page into an overflow page holding part of a value.
+     *
+     * @param value The whole value
+     * @param offset Start of the part stored in this page
+     * @param length Number of bytes to store, at most overflowCapacity()
+     */
+    public void setOverflowData(byte[] value, int offset, int length) {
+        if (length < 0 || length > overflowCapacity(pageSize)) {
+            throw new IllegalArgumentException("Overflow page holds at most " + overflowCapacity(pageSize)
+                + " bytes: " + length);
+        }
+        setFlags(FLAG_OVERFLOW);
+        buffer.putInt(COUNT_OFFSET, length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(PAGE_HEADER_SIZE);
+        target.put(value, offset, length);
+    }
+    
+    /**
+     * Copies the value bytes stored in this overflow page.
+     *
+     * @param target Array receiving the whole value
+     * @param targetOffset Where this page's part starts
+     * @return The number of bytes copied
+     * @throws IllegalStateException If this is not an overflow page or its part does not fit
+     */
+    public int readOverflowData(byte[] target, int targetOffset) {
+        int length = buffer.getInt(COUNT_OFFSET);
+        if (!isOverflow() || length < 0 || length > overflowCapacity(pageSize)
+                || length > target.length - targetOffset) {
+            throw new IllegalStateException("Page " + pageId + " is not a valid overflow page for this value");
+        }
+        ByteBuffer source = buffer.duplicate();
+        source.position(PAGE_HEADER_SIZE);
+        source.get(target, targetOffset, length);
+        return length;
+    }
+    
+    /**
+     * Gets the raw page data. For a page that wraps external memory this is a copy.
      *
      * @return The page data
      */
     public byte[] getData() {
-        return buffer.array();
+        if (!view) {
+            return buffer.array();
+        }
+        return readBytes(0, pageSize);
+    }
+    
+    /**
+     * Copies the raw page data into a new array, whatever memory the page lives in.
+     *
+     * @return A copy of the page data
+     */
+    public byte[] copyData() {
+        return readBytes(0, pageSize);
     }
     
     /**
@@ -439,8 +745,320 @@ public class Page {
      * @param data The page data
      */
     public void setData(byte[] data) {
-        buffer.clear();
-        buffer.put(data);
-        buffer.rewind();
+        writeBytes(0, data);
+    }
+    
+    /**
+     * Resets every byte of the page to zero, which makes it an empty page.
+     */
+    public void zeroFill() {
+        buffer.put(0, ZEROS, 0, pageSize);
+    }
+    
+    /**
+     * Checks whether this page wraps memory it does not own (see Page(ByteBuffer, long)).
+     */
+    boolean isView() {
+        return view;
+    }
+    
+    /**
+     * Gets the whole page as a buffer for channel I/O, without copying it.
+     * The returned buffer has its own position and limit.
+     */
+    ByteBuffer contents() {
+        return buffer.duplicate().clear();
+    }
+    
+    /**
+     * Returns a leased frame to its pool. The page must be retired first:
+     * the frame will hold another page's bytes, which an optimistic reader
+     * of this object must never validate.
+     */
+    void releaseFrame() {
+        if (framePool != null && !frameReleased) {
+            frameReleased = true;
+            framePool.release(buffer);
+        }
+    }
+    
+    /**
+     * Rewrites the cell area so all live cells are contiguous at the end of
+     * the page, reclaiming fragmented space. Slot order is unchanged.
+     *
+     * The key prefix is chosen again: either the current one or the prefix
+     * shared by all non-empty keys, whichever stores fewer key bytes. Neither
+     * takes more space than the page used before, so compaction always fits.
+     *
+     * @param incomingKey A key about to be inserted, counted when choosing the prefix; may be null
+     */
+    private void compact(byte[] incomingKey) {
+        int count = count();
+        byte[][] keys = new byte[count][];
+        byte[][] values = new byte[count][];
+        boolean[] overflows = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int offset = cellOffset(i);
+            keys[i] = fullKey(offset);
+            values[i] = readBytes(offset + ELEM_HEADER_SIZE + keyLength(offset), valueLength(offset));
+            overflows[i] = (buffer.get(offset + 4) & CELL_OVERFLOW) != 0;
+        }
+        
+        byte[] currentPrefix = readBytes(pageSize - prefixLength(), prefixLength());
+        byte[] sharedPrefix = sharedPrefix(keys, incomingKey);
+        byte[] prefix = storedKeyBytes(sharedPrefix, keys, incomingKey) < storedKeyBytes(currentPrefix, keys, incomingKey)
+            ? sharedPrefix : currentPrefix;
+        
+        int writeOffset = pageSize - prefix.length;
+        zero(slotOffset(count), pageSize);
+        writeBytes(writeOffset, prefix);
+        setPrefixLength(prefix.length);
+        for (int i = 0; i < count; i++) {
+            writeOffset = writeCell(writeOffset, keys[i], values[i], overflows[i]);
+            buffer.putShort(slotOffset(i), (short) writeOffset);
+        }
+        setCellStart(writeOffset);
+        setFragmentedBytes(0);
+    }
+    
+    /**
+     * Writes a cell ending at the given offset, truncating the key by the page
+     * prefix if it starts with it.
+     *
+     * @return The offset of the new cell
+     */
+    private int writeCell(int endOffset, byte[] key, byte[] value, boolean hasOverflow) {
+        boolean truncated = sharesPrefix(key);
+        int keyStart = truncated ? prefixLength() : 0;
+        int keyLength = key.length - keyStart;
+        int cellOffset = endOffset - ELEM_HEADER_SIZE - keyLength - value.length;
+        
+        buffer.putShort(cellOffset, (short) keyLength);
+        buffer.putShort(cellOffset + 2, (short) value.length);
+        buffer.put(cellOffset + 4, (byte) ((hasOverflow ? CELL_OVERFLOW : 0) | (truncated ? 0 : CELL_FULL_KEY)));
+        buffer.put(cellOffset + 5, (byte) 0); // padding
+        buffer.putShort(cellOffset + 6, (short) 0); // padding
+        writeBytes(cellOffset + ELEM_HEADER_SIZE, key, keyStart, keyLength);
+        writeBytes(cellOffset + ELEM_HEADER_SIZE + keyLength, value);
+        return cellOffset;
+    }
+    
+    /**
+     * The longest prefix of all non-empty keys. Empty keys (the first entry of
+     * a branch page) are left out; they are stored in full whatever the prefix.
+     */
+    private static byte[] sharedPrefix(byte[][] keys, byte[] incomingKey) {
+        byte[] prefix = incomingKey != null && incomingKey.length > 0 ? incomingKey : null;
+        int length = prefix == null ? 0 : prefix.length;
+        for (byte[] key : keys) {
+            if (key.length == 0) {
+                continue;
+            }
+            if (prefix == null) {
+                prefix = key;
+                length = key.length;
+            } else {
+                int mismatch = Arrays.mismatch(prefix, 0, length, key, 0, key.length);
+                if (mismatch >= 0) {
+                    length = mismatch;
+                }
+            }
+        }
+        return prefix == null ? new byte[0] : Arrays.copyOf(prefix, length);
+    }
+    
+    /**
+     * Counts the key bytes a page would store with the given prefix, including the prefix itself.
+     */
+    private static int storedKeyBytes(byte[] prefix, byte[][] keys, byte[] incomingKey) {
+        int total = prefix.length;
+        for (byte[] key : keys) {
+            total += startsWith(key, prefix) ? key.length - prefix.length : key.length;
+        }
+        if (incomingKey != null) {
+            total += startsWith(incomingKey, prefix) ? incomingKey.length - prefix.length : incomingKey.length;
+        }
+        return total;
+    }
+    
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+    
+    private void removeSlot(int index) {
+        int count = count();
+        int slotPosition = slotOffset(index);
+        moveBytes(slotPosition + SLOT_SIZE, slotPosition, (count - index - 1) * SLOT_SIZE);
+        buffer.putInt(COUNT_OFFSET, count - 1);
+    }
+    
+    private Element readElement(int offset) {
+        int keyLength = keyLength(offset);
+        int valueLength = valueLength(offset);
+        int keyStart = offset + ELEM_HEADER_SIZE;
+        
+        boolean hasOverflow = (buffer.get(offset + 4) & CELL_OVERFLOW) != 0;
+        byte[] key = fullKey(offset);
+        byte[] value = readBytes(keyStart + keyLength, valueLength);
+        return new Element(key, value, hasOverflow);
+    }
+    
+    /**
+     * Rebuilds the full key of a cell from the page prefix and the stored suffix.
+     */
+    private byte[] fullKey(int cellOffset) {
+        int keyLength = keyLength(cellOffset);
+        int prefixLength = isTruncated(cellOffset) ? prefixLength() : 0;
+        byte[] key = new byte[prefixLength + keyLength];
+        readBytes(pageSize - prefixLength(), key, 0, prefixLength);
+        readBytes(cellOffset + ELEM_HEADER_SIZE, key, prefixLength, keyLength);
+        return key;
+    }
+    
+    private boolean isTruncated(int cellOffset) {
+        return (buffer.get(cellOffset + 4) & CELL_FULL_KEY) == 0;
+    }
+    
+    private boolean sharesPrefix(byte[] key) {
+        return comparePrefix(key) == 0;
+    }
+    
+    /**
+     * Compares the page prefix with the start of a key. Because every truncated
+     * cell starts with the prefix, a non-zero result orders all of them
+     * against the key at once.
+     *
+     * @return 0 if the key starts with the prefix, otherwise the order of the prefix relative to the key
+     */
+    private int comparePrefix(byte[] key) {
+        int prefixLength = prefixLength();
+        int length = Math.min(prefixLength, key.length);
+        int cmp = compareBytes(pageSize - prefixLength, length, key, 0, length);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return key.length < prefixLength ? 1 : 0;
+    }
+    
+    /**
+     * Compares the key of the cell at the given offset with a key, in place.
+     *
+     * @param prefixOrder The result of comparePrefix(key)
+     */
+    private int compareKeyAt(int cellOffset, byte[] key, int prefixOrder) {
+        int keyStart = cellOffset + ELEM_HEADER_SIZE;
+        int keyLength = keyLength(cellOffset);
+        if (!isTruncated(cellOffset)) {
+            return compareBytes(keyStart, keyLength, key, 0, key.length);
+        }
+        if (prefixOrder != 0) {
+            return prefixOrder;
+        }
+        int prefixLength = prefixLength();
+        return compareBytes(keyStart, keyLength, key, prefixLength, key.length - prefixLength);
+    }
+    
+    private int compareBytes(int offset, int length, byte[] other, int otherOffset, int otherLength) {
+        if (buffer.hasArray()) {
+            int start = buffer.arrayOffset() + offset;
+            return Arrays.compare(buffer.array(), start, start + length, other, otherOffset, otherOffset + otherLength);
+        }
+        
+        int common = Math.min(length, otherLength);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compare(buffer.get(offset + i), other[otherOffset + i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - otherLength;
+    }
+    
+    // Bulk byte access by absolute offset; works for heap, direct and mapped buffers alike
+    
+    private byte[] readBytes(int offset, int length) {
+        byte[] bytes = new byte[length];
+        readBytes(offset, bytes, 0, length);
+        return bytes;
+    }
+    
+    private void readBytes(int offset, byte[] target, int targetOffset, int length) {
+        buffer.get(offset, target, targetOffset, length);
+    }
+    
+    private void writeBytes(int offset, byte[] bytes) {
+        writeBytes(offset, bytes, 0, bytes.length);
+    }
+    
+    private void writeBytes(int offset, byte[] bytes, int from, int length) {
+        buffer.put(offset, bytes, from, length);
+    }
+    
+    private void moveBytes(int from, int to, int length) {
+        if (length == 0) {
+            return;
+        }
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + from, buffer.array(), buffer.arrayOffset() + to, length);
+        } else {
+            writeBytes(to, readBytes(from, length));
+        }
+    }
+    
+    private void zero(int from, int to) {
+        if (buffer.hasArray()) {
+            Arrays.fill(buffer.array(), buffer.arrayOffset() + from, buffer.arrayOffset() + to, (byte) 0);
+        } else {
+            writeBytes(from, new byte[to - from]);
+        }
+    }
+    
+    private int contiguousFreeSpace() {
+        return cellStart() - slotOffset(count());
+    }
+    
+    private static int slotOffset(int index) {
+        return PAGE_HEADER_SIZE + index * SLOT_SIZE;
+    }
+    
+    private int cellOffset(int index) {
+        return buffer.getShort(slotOffset(index)) & 0xFFFF;
+    }
+    
+    private int keyLength(int cellOffset) {
+        return buffer.getShort(cellOffset) & 0xFFFF;
+    }
+    
+    private int valueLength(int cellOffset) {
+        return buffer.getShort(cellOffset + 2) & 0xFFFF;
+    }
+    
+    private int cellSize(int cellOffset) {
+        return ELEM_HEADER_SIZE + keyLength(cellOffset) + valueLength(cellOffset);
+    }
+    
+    private int cellStart() {
+        int cellStart = buffer.getInt(CELL_START_OFFSET);
+        return cellStart == 0 ? pageSize : cellStart;
+    }
+    
+    private void setCellStart(int cellStart) {
+        buffer.putInt(CELL_START_OFFSET, cellStart);
+    }
+    
+    private int prefixLength() {
+        return buffer.getShort(PREFIX_LENGTH_OFFSET) & 0xFFFF;
+    }
+    
+    private void setPrefixLength(int prefixLength) {
+        buffer.putShort(PREFIX_LENGTH_OFFSET, (short) prefixLength);
+    }
+    
+    private int fragmentedBytes() {
+        return buffer.getShort(FRAGMENTED_OFFSET) & 0xFFFF;
+    }
+    
+    private void setFragmentedBytes(int fragmentedBytes) {
+        buffer.putShort(FRAGMENTED_OFFSET, (short) fragmentedBytes);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,128 @@
+package minispark.storage.btree.page;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable page frames in direct (off-heap) memory.
+ *
+ * Reading a page into a fresh heap array costs an allocation per read, a
+ * zero-fill the read immediately overwrites, and a hidden copy: FileChannel
+ * reads into a heap buffer go through a temporary native buffer first.
+ * A PageManager with a frame pool reads straight into a direct frame instead,
+ * and the buffer pool hands the frame back when the page leaves the pool, so
+ * a long scan keeps recycling the same few frames.
+ *
+ * Frames are only zeroed when they become a new, empty page. Up to
+ * maxRetainedFrames released frames are kept for reuse; beyond that they
+ * are left to the garbage collector, which frees their native memory.
+ */
+public class PageFramePool {
+    public static final int DEFAULT_MAX_RETAINED_FRAMES = 64;
+    
+    private final int pageSize;
+    private final int maxRetainedFrames;
+    private final byte[] zeros;
+    
+    // Released frames, most recently released first so reuse hits warm memory; guarded by this
+    private final ArrayDeque<ByteBuffer> freeFrames = new ArrayDeque<>();
+    
+    private final AtomicLong allocatedCount = new AtomicLong();
+    private final AtomicLong reuseCount = new AtomicLong();
+    
+    /**
+     * Creates a frame pool that keeps the default number of released frames.
+     *
+     * @param pageSize Size of each frame in bytes
+     */
+    public PageFramePool(int pageSize) {
+        this(pageSize, DEFAULT_MAX_RETAINED_FRAMES);
+    }
+    
+    /**
+     * Creates a frame pool.
+     *
+     * @param pageSize Size of each frame in bytes
+     * @param maxRetainedFrames Released frames kept for reuse
+     */
+    public PageFramePool(int pageSize, int maxRetainedFrames) {
+        if (maxRetainedFrames < 0) {
+            throw new IllegalArgumentException("Retained frame count cannot be negative: " + maxRetainedFrames);
+        }
+        this.pageSize = pageSize;
+        this.maxRetainedFrames = maxRetainedFrames;
+        this.zeros = new byte[pageSize];
+    }
+    
+    /**
+     * Leases a frame whose contents are undefined, to be overwritten by a read.
+     *
+     * @return A direct buffer of pageSize bytes
+     */
+    public ByteBuffer lease() {
+        ByteBuffer frame;
+        synchronized (this) {
+            frame = freeFrames.pollFirst();
+        }
+        if (frame != null) {
+            reuseCount.incrementAndGet();
+            return frame;
+        }
+        allocatedCount.incrementAndGet();
+        return ByteBuffer.allocateDirect(pageSize);
+    }
+    
+    /**
+     * Leases a frame filled with zeros (an empty page).
+     *
+     * @return A direct buffer of pageSize zero bytes
+     */
+    public ByteBuffer leaseZeroed() {
+        ByteBuffer frame = lease();
+        // One bulk copy; a freshly allocated direct buffer is already zero, a reused one is not
+        frame.put(0, zeros);
+        return frame;
+    }
+    
+    /**
+     * Returns a frame for reuse. The caller must not touch it afterwards.
+     *
+     * @param frame A frame leased from this pool
+     */
+    public void release(ByteBuffer frame) {
+        synchronized (this) {
+            if (freeFrames.size() < maxRetainedFrames) {
+                freeFrames.addFirst(frame);
+            }
+        }
+    }
+    
+    /**
+     * Gets the size of each frame in bytes.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    /**
+     * Gets the number of frames allocated from native memory so far.
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.get();
+    }
+    
+    /**
+     * Gets the number of leases served by a released frame.
+     */
+    public long getReuseCount() {
+        return reuseCount.get();
+    }
+    
+    /**
+     * Gets the number of released frames waiting for reuse.
+     */
+    public synchronized int getFreeCount() {
+        return freeFrames.size();
+    }
+}
@@ -10,37 +10,125 @@ import java.util.concurrent.atomic.AtomicLong;
 /**
  * Manages reading and writing pages to disk.
  * Includes logging for educational purposes to show page access patterns.
+ *
+ * The file grows a whole extent at a time rather than a page at a time, so
+ * an insert-heavy workload changes the file length (a metadata update the
+ * file system has to journal) once per extent instead of on every new page.
+ * Allocating a page only hands out the next page ID; the preallocated space
+ * already reads as zeros. On close the file is trimmed back to the pages in
+ * use. After a crash the unused tail is recognized on open because it holds
+ * only all-zero pages, as in MappedPageManager.
+ *
+ * Reusing pages the tree no longer needs is the job of the tree's free list
+ * (see BTree), because freeing a page must be logged like any other change.
+ *
+ * With a PageFramePool, pages live in direct frames leased from the pool:
+ * reads go straight from the file into the frame, writes straight from the
+ * frame to the file, and the buffer pool returns frames through
+ * releasePage() when it drops a page. Without one every page gets a fresh
+ * heap buffer.
  */
 public class PageManager implements AutoCloseable {
-    private final RandomAccessFile file;
-    private final FileChannel channel;
-    private final int pageSize;
-    private final AtomicLong nextPageId;
+    public static final int DEFAULT_EXTENT_SIZE = 1024 * 1024;
+    
+    protected final RandomAccessFile file;
+    protected final FileChannel channel;
+    protected final int pageSize;
+    protected final AtomicLong nextPageId;
+    
+    // When false, writes are left in the OS cache until sync() is called
+    protected final boolean forceEachWrite;
+    
+    // Bytes the file grows by at a time (whole pages)
+    protected final long extentSize;
+    
+    // File length including preallocated space; guarded by this
+    private long fileLength;
+    
+    // Direct frames for pages, or null for heap pages
+    protected final PageFramePool framePool;
     
     // Counters for tracking page access statistics
-    private final AtomicLong pageReadsCount = new AtomicLong(0);
-    private final AtomicLong pageWritesCount = new AtomicLong(0);
+    protected final AtomicLong pageReadsCount = new AtomicLong(0);
+    protected final AtomicLong pageWritesCount = new AtomicLong(0);
+    protected final AtomicLong syncCount = new AtomicLong(0);
+    protected final AtomicLong fileExtensionCount = new AtomicLong(0);
     
     /**
-     * Creates a new page manager.
+     * Creates a new page manager that forces every page write to disk.
      *
      * @param filePath Path to the database file
      * @param pageSize Size of each page in bytes
      * @throws IOException If an I/O error occurs
      */
     public PageManager(Path filePath, int pageSize) throws IOException {
+        this(filePath, pageSize, true);
+    }
+    
+    /**
+     * Creates a new page manager.
+     *
+     * @param filePath Path to the database file
+     * @param pageSize Size of each page in bytes
+     * @param forceEachWrite Whether each page write is followed by an fsync.
+     *                       Pass false when a write-ahead log provides durability.
+     * @throws IOException If an I/O error occurs
+     */
+    public PageManager(Path filePath, int pageSize, boolean forceEachWrite) throws IOException {
+        this(filePath, pageSize, forceEachWrite, DEFAULT_EXTENT_SIZE);
+    }
+    
+    /**
+     * Creates a new page manager that grows the file by the given extent.
+     *
+     * @param filePath Path to the database file
+     * @param pageSize Size of each page in bytes
+     * @param forceEachWrite Whether each page write is followed by an fsync
+     * @param extentSize Bytes the file grows by at a time (rounded to whole pages)
+     * @throws IOException If an I/O error occurs
+     */
+    public PageManager(Path filePath, int pageSize, boolean forceEachWrite, int extentSize) throws IOException {
+        this(filePath, pageSize, forceEachWrite, extentSize, null);
+    }
+    
+    /**
+     * Creates a new page manager whose pages live in frames leased from the given pool.
+     *
+     * @param filePath Path to the database file
+     * @param pageSize Size of each page in bytes
+     * @param forceEachWrite Whether each page write is followed by an fsync
+     * @param extentSize Bytes the file grows by at a time (rounded to whole pages)
+     * @param framePool Pool of direct page frames, or null for heap pages
+     * @throws IOException If an I/O error occurs
+     */
+    public PageManager(Path filePath, int pageSize, boolean forceEachWrite, int extentSize,
+                       PageFramePool framePool) throws IOException {
+        if (framePool != null && framePool.getPageSize() != pageSize) {
+            throw new IllegalArgumentException("Frame pool holds " + framePool.getPageSize()
+                + " byte frames, not " + pageSize);
+        }
+        this.framePool = framePool;
         this.file = new RandomAccessFile(filePath.toFile(), "rw");
         this.channel = file.getChannel();
         this.pageSize = pageSize;
+        this.forceEachWrite = forceEachWrite;
+        this.extentSize = (long) Math.max(1, extentSize / pageSize) * pageSize;
+        this.fileLength = file.length();
         
-        // Initialize next page ID from file size
-        long fileSize = file.length();
-        this.nextPageId = new AtomicLong(fileSize / pageSize);
+        // Initialize next page ID from file size, skipping space preallocated before a crash
+        long pageCount = fileLength / pageSize;
+        while (pageCount > 0 && isZeroPage(pageCount - 1)) {
+            pageCount--;
+        }
+        this.nextPageId = new AtomicLong(pageCount);
         
         System.out.println("📁 PageManager initialized for file: " + filePath.getFileName());
         System.out.println("   Page size: " + pageSize + " bytes");
-        System.out.println("   Initial file size: " + fileSize + " bytes");
-        System.out.println("   Initial page count: " + (fileSize / pageSize));
+        System.out.println("   Initial file size: " + fileLength + " bytes");
+        System.out.println("   Initial page count: " + pageCount);
+        if (framePool != null) {
+            System.out.println("   Page frames: direct, pooled");
+        }
         System.out.println();
     }
     
@@ -54,39 +142,45 @@ public class PageManager implements AutoCloseable {
     }
     
     /**
-     * Gets the file size in bytes.
+     * Gets the size of the pages in use, in bytes. The file itself may be
+     * longer because it grows an extent at a time.
      *
      * @return The file size
      * @throws IOException If an I/O error occurs
      */
     public long getFileSize() throws IOException {
-        return file.length();
+        return nextPageId.get() * pageSize;
     }
     
     /**
-     * Allocates a new page.
+     * Allocates a new page at the end of the file. The page reads as all
+     * zeros (an empty page) until it is first written.
      *
      * @return The ID of the allocated page
      * @throws IOException If an I/O error occurs
      */
     public long allocatePage() throws IOException {
         long pageId = nextPageId.getAndIncrement();
-        
-        // Extend file if necessary
-        long requiredSize = (pageId + 1) * pageSize;
-        if (file.length() < requiredSize) {
-            file.setLength(requiredSize);
-        }
-        
-        // Create and initialize the page
-        Page page = new Page(pageSize, pageId);
-        writePage(page);
+        ensureLength((pageId + 1) * pageSize);
         
         System.out.println("🆕 Allocated new page: " + pageId);
         
         return pageId;
     }
     
+    /**
+     * Creates the in-memory page for a freshly allocated page, without reading it back.
+     *
+     * @param pageId The page ID returned by allocatePage()
+     * @return An empty page
+     */
+    public Page emptyPage(long pageId) {
+        if (framePool != null) {
+            return new Page(framePool.leaseZeroed(), pageId, framePool);
+        }
+        return new Page(pageSize, pageId);
+    }
+    
     /**
      * Reads a page from disk.
      *
@@ -100,27 +194,34 @@ public class PageManager implements AutoCloseable {
         System.out.println("📖 PAGE READ #" + readCount + " - Reading page " + pageId + " from disk");
         
         // Check if page exists
-        long fileSize = file.length();
+        long pageCount = nextPageId.get();
         long pageOffset = pageId * pageSize;
         
-        if (pageOffset >= fileSize) {
-            throw new IOException("Page " + pageId + " does not exist (offset " + pageOffset + " >= file size " + fileSize + ")");
+        if (pageId >= pageCount) {
+            throw new IOException("Page " + pageId + " does not exist (page count " + pageCount + ")");
         }
         
-        // Read page data
-        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
-        channel.position(pageOffset);
-        int bytesRead = channel.read(buffer);
+        // Read straight into the page's memory; positional reads leave the shared
+        // channel position alone, so concurrent readers cannot interfere with each other
+        Page page = framePool != null
+            ? new Page(framePool.lease(), pageId, framePool)
+            : new Page(pageSize, pageId);
+        ByteBuffer buffer = page.contents();
+        int bytesRead = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, pageOffset + buffer.position());
+            if (read < 0) {
+                break;
+            }
+            bytesRead += read;
+        }
         
         if (bytesRead != pageSize) {
+            page.releaseFrame();
             throw new IOException("Failed to read page " + pageId + 
                 ": expected " + pageSize + " bytes but got " + bytesRead);
         }
         
-        // Create page and set data
-        Page page = new Page(pageSize, pageId);
-        page.setData(buffer.array());
-        
         System.out.println("   ✅ Successfully read page " + pageId + " (" + pageSize + " bytes)");
         
         return page;
@@ -140,16 +241,16 @@ public class PageManager implements AutoCloseable {
         
         long pageOffset = pageId * pageSize;
         
-        // Ensure file is large enough
-        long requiredSize = pageOffset + pageSize;
-        if (file.length() < requiredSize) {
-            file.setLength(requiredSize);
-        }
+        // Ensure file is large enough; pages written past the end (e.g. during log replay) count as allocated
+        ensureLength(pageOffset + pageSize);
+        nextPageId.accumulateAndGet(pageId + 1, Math::max);
         
-        // Write page data
-        channel.position(pageOffset);
-        ByteBuffer buffer = ByteBuffer.wrap(page.getData());
-        int bytesWritten = channel.write(buffer);
+        // Write page data straight from the page's memory
+        ByteBuffer buffer = page.contents();
+        int bytesWritten = 0;
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer, pageOffset + buffer.position());
+        }
         
         if (bytesWritten != pageSize) {
             throw new IOException("Failed to write page " + pageId + 
@@ -157,11 +258,40 @@ public class PageManager implements AutoCloseable {
         }
         
         // Force to disk
-        channel.force(false);
+        if (forceEachWrite) {
+            sync();
+        }
         
         System.out.println("   ✅ Successfully wrote page " + pageId + " (" + pageSize + " bytes)");
     }
     
+    /**
+     * Hands the memory of a page that is no longer used back for reuse.
+     * Pages not leased from the frame pool are left to the garbage collector.
+     *
+     * @param page A page that nobody will access again
+     */
+    public void releasePage(Page page) {
+        page.releaseFrame();
+    }
+    
+    /**
+     * Gets the pool of direct page frames, or null if pages live on the heap.
+     */
+    public PageFramePool getFramePool() {
+        return framePool;
+    }
+    
+    /**
+     * Forces all written pages to disk.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+        syncCount.incrementAndGet();
+    }
+    
     /**
      * Prints page access statistics.
      */
@@ -171,6 +301,7 @@ public class PageManager implements AutoCloseable {
         System.out.println("   Total page reads:  " + pageReadsCount.get());
         System.out.println("   Total page writes: " + pageWritesCount.get());
         System.out.println("   Total page I/O:    " + (pageReadsCount.get() + pageWritesCount.get()));
+        System.out.println("   Total fsyncs:      " + syncCount.get());
         System.out.println();
     }
     
@@ -180,6 +311,7 @@ public class PageManager implements AutoCloseable {
     public void resetAccessCounters() {
         pageReadsCount.set(0);
         pageWritesCount.set(0);
+        syncCount.set(0);
         System.out.println("🔄 Page access counters reset");
         System.out.println();
     }
@@ -198,6 +330,20 @@ public class PageManager implements AutoCloseable {
         return pageWritesCount.get();
     }
     
+    /**
+     * Gets the total number of fsyncs issued on the database file.
+     */
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+    
+    /**
+     * Gets the number of times the file was extended.
+     */
+    public long getFileExtensionCount() {
+        return fileExtensionCount.get();
+    }
+    
     /**
      * Closes the page manager and releases resources.
      *
@@ -207,7 +353,45 @@ public class PageManager implements AutoCloseable {
     public void close() throws IOException {
         System.out.println("🔒 Closing PageManager");
         printAccessStatistics();
+        trimToPagesInUse();
         channel.close();
         file.close();
     }
+    
+    /**
+     * Gives back the preallocated space past the last page in use.
+     */
+    protected synchronized void trimToPagesInUse() throws IOException {
+        long usedLength = nextPageId.get() * pageSize;
+        if (fileLength > usedLength) {
+            file.setLength(usedLength);
+            fileLength = usedLength;
+        }
+    }
+    
+    /**
+     * Extends the file by at least one extent if it is shorter than the given length.
+     */
+    private synchronized void ensureLength(long requiredSize) throws IOException {
+        if (fileLength >= requiredSize) {
+            return;
+        }
+        long newLength = Math.max(requiredSize, fileLength + extentSize);
+        file.setLength(newLength);
+        fileLength = newLength;
+        fileExtensionCount.incrementAndGet();
+        System.out.println("📏 Extended file to " + newLength + " bytes (" + extentSize / pageSize + " pages per extent)");
+    }
+    
+    private boolean isZeroPage(long pageId) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        channel.read(buffer, pageId * pageSize);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            if (buffer.get() != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package minispark.storage.index;
 
 import minispark.storage.table.Table;
+import minispark.storage.table.TableRecord;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -11,6 +12,11 @@ import java.util.List;
  * 
  * This is a minimal implementation that uses the generic IndexManager underneath.
  * The service provides city-specific methods while being decoupled from B+Tree internals.
+ * 
+ * The city index is a SecondaryIndex the table maintains on every insert and
+ * delete, so lookups see new customers at once, without a rebuild. It
+ * includes the customer name and email, so listing those for a city reads
+ * the index alone instead of looking up every customer in the table.
  */
 public class CityIndex {
     
@@ -19,45 +25,51 @@ public class CityIndex {
     
     private static final String CITY_INDEX_NAME = "city_index";
     
+    // Stored in every city index entry (the columns city listings show)
+    private static final List<String> INCLUDED_COLUMNS = List.of("name", "email");
+    
     /**
-     * Creates a new city lookup service.
+     * Creates a new city lookup service and indexes the customers already in the table.
      * 
      * @param table The table to provide city lookups for
      * @param indexBaseDirectory Base directory for index files
+     * @throws IOException If an I/O error occurs
      */
-    public CityIndex(Table table, Path indexBaseDirectory) {
+    public CityIndex(Table table, Path indexBaseDirectory) throws IOException {
         this.table = table;
         this.indexManager = new IndexManager(
             table.getTableName() + "_indexes",
             indexBaseDirectory
         );
         
-        // Register the city index
-        indexManager.registerIndex(CITY_INDEX_NAME);
+        // Register the city index with the table, which keeps it up to date
+        table.setIndexManager(indexManager);
+        table.createIndex(CITY_INDEX_NAME, "city", CityIndex::normalizeCity, INCLUDED_COLUMNS);
     }
     
     /**
-     * Adds a city mapping (should be called during data insertion).
+     * Adds a city mapping. Does nothing any more: the table indexes the city
+     * of every row it writes.
      * 
      * @param city The city name
      * @param customerId The customer ID
+     * @deprecated Table.insert maintains the city index
      */
+    @Deprecated
     public void addCityMapping(String city, String customerId) {
-        if (city != null && !city.trim().isEmpty()) {
-            // Normalize city name
-            String normalizedCity = city.trim().toLowerCase();
-            indexManager.addIndexMapping(CITY_INDEX_NAME, normalizedCity, customerId);
-        }
+        // Nothing to collect: the mapping was indexed when the row was inserted
     }
     
     /**
-     * Builds the city index from collected mappings.
+     * Builds the city index. The index is maintained on every write, so it
+     * is always built.
      * 
-     * @return true if the index was built successfully
-     * @throws IOException If an I/O error occurs
+     * @return true, the index is always up to date
+     * @deprecated Table.insert maintains the city index
      */
-    public boolean buildCityIndex() throws IOException {
-        return indexManager.buildIndex(CITY_INDEX_NAME);
+    @Deprecated
+    public boolean buildCityIndex() {
+        return true;
     }
     
     /**
@@ -72,19 +84,39 @@ public class CityIndex {
             return List.of();
         }
         
-        // Normalize city name for lookup
-        String normalizedCity = city.trim().toLowerCase();
-        
-        // Get customer IDs from the index
-        return indexManager.lookup(CITY_INDEX_NAME, normalizedCity);
+        // Get customer IDs from the index (which normalizes the city name)
+        return indexManager.lookup(CITY_INDEX_NAME, city);
+    }
+    
+    /**
+     * Gets the given columns of all customers in a specific city. Name and
+     * email come straight from the city index; any other column is read from
+     * the table.
+     * 
+     * @param city The city name
+     * @param columns The columns wanted
+     * @return The customers in that city, holding only the requested columns
+     * @throws IOException If an I/O error occurs
+     */
+    public List<TableRecord> getCustomersByCity(String city, List<String> columns) throws IOException {
+        if (city == null || city.trim().isEmpty()) {
+            return List.of();
+        }
+        return table.findByIndex(CITY_INDEX_NAME, city, columns);
+    }
+    
+    private static String normalizeCity(String city) {
+        return city.trim().toLowerCase();
     }
     
     /**
-     * Closes the service and releases resources.
+     * Closes the service and releases resources. The table stops maintaining
+     * the city index, so it can still be written afterwards.
      * 
      * @throws IOException If an I/O error occurs
      */
     public void close() throws IOException {
+        table.setIndexManager(null);
         indexManager.close();
     }
 } 
\ No newline at end of file
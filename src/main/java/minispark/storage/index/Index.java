@@ -1,8 +1,10 @@
 package minispark.storage.index;
 
+import minispark.storage.Record;
 import minispark.storage.btree.BTree;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -92,7 +94,10 @@ public class Index<K, V> {
      * 
      * PHASE 2: Index Building Phase
      * Creates the persistent B+Tree index from the complete in-memory collection.
-     * Each unique key gets ONE INSERT operation with all its values.
+     * Each unique key gets ONE entry with all its values. The entries are sorted
+     * and bulk loaded bottom-up, so the tree is written in one sequential pass
+     * instead of one random insert (and split) at a time. Rebuilding replaces
+     * any previous index file.
      * 
      * @return true if the index was built successfully
      * @throws IOException If an I/O error occurs
@@ -102,11 +107,16 @@ public class Index<K, V> {
             return false;
         }
         
-        // Create B+Tree for the index
+        // Start from an empty file so a rebuild does not keep stale entries
+        if (indexBTree != null) {
+            indexBTree.close();
+        }
+        Files.deleteIfExists(indexPath);
         indexBTree = new BTree(indexPath);
         
-        // Insert each key and its values into the index
-        // NOTE: This is why we collect in memory first - we can INSERT each key only once
+        // Sort entries in B+Tree key order (one entry per unique key)
+        // NOTE: This is why we collect in memory first - each key gets all its values at once
+        TreeMap<byte[], Map<String, Object>> sortedEntries = new TreeMap<>(Arrays::compare);
         for (Map.Entry<K, Queue<V>> entry : keyToValues.entrySet()) {
             K key = entry.getKey();
             Queue<V> values = entry.getValue();
@@ -118,9 +128,15 @@ public class Index<K, V> {
                 .map(Object::toString)
                 .toArray(String[]::new)));
             
-            // Insert into B+Tree index (one INSERT per unique key)
-            indexBTree.write(key.toString().getBytes(), indexValue);
+            sortedEntries.put(key.toString().getBytes(), indexValue);
+        }
+        
+        // Build the B+Tree bottom-up from the sorted entries
+        List<Record> records = new ArrayList<>(sortedEntries.size());
+        for (Map.Entry<byte[], Map<String, Object>> entry : sortedEntries.entrySet()) {
+            records.add(new Record(entry.getKey(), entry.getValue()));
         }
+        indexBTree.bulkLoad(records.iterator());
         
         indexBuilt = true;
         return true;
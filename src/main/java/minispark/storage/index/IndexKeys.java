@@ -0,0 +1,56 @@
+package minispark.storage.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Composite B+Tree keys shared by the maintained index types:
+ *
+ *   |index key (escaped)|0x00 0x01|suffix|
+ *
+ * A 0x00 byte inside the index key is written as 0x00 0xFF, so the
+ * terminator cannot appear inside an index key and no index key's entries
+ * fall into another key's range. All entries of one index key therefore
+ * form a single range, [prefix, prefixEnd).
+ */
+final class IndexKeys {
+    
+    private IndexKeys() {
+    }
+    
+    /**
+     * Gets the escaped index key followed by the terminator.
+     */
+    static byte[] prefix(String indexKey) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte b : indexKey.getBytes(StandardCharsets.UTF_8)) {
+            out.write(b);
+            if (b == 0) {
+                out.write(0xFF);
+            }
+        }
+        out.write(0);
+        out.write(1);
+        return out.toByteArray();
+    }
+    
+    /**
+     * Gets the first key past every key that starts with the prefix.
+     */
+    static byte[] prefixEnd(byte[] prefix) {
+        byte[] end = prefix.clone();
+        end[end.length - 1]++;
+        return end;
+    }
+    
+    /**
+     * Gets the entry key for an index key and a suffix.
+     */
+    static byte[] entryKey(String indexKey, byte[] suffix) {
+        byte[] prefix = prefix(indexKey);
+        byte[] key = new byte[prefix.length + suffix.length];
+        System.arraycopy(prefix, 0, key, 0, prefix.length);
+        System.arraycopy(suffix, 0, key, prefix.length, suffix.length);
+        return key;
+    }
+}
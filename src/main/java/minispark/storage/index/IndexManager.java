@@ -1,15 +1,29 @@
 package minispark.storage.index;
 
+import minispark.storage.table.Table;
+import minispark.storage.table.TableRecord;
+
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
 
 /**
  * IndexManager - Manages multiple generic indexes at the storage layer.
  * 
  * This is a minimal implementation to make the test pass.
  * The manager is completely generic and has no domain-specific knowledge.
+ * 
+ * Three kinds of index are managed side by side:
+ * - Index: mappings collected with addIndexMapping and built in one go by buildIndex
+ * - SecondaryIndex: one entry per row under a composite (index key, primary key),
+ *   maintained on every write by a Table the manager is attached to
+ *   (Table.setIndexManager), so lookups never wait for a rebuild
+ * - PostingListIndex: maintained the same way, but storing each index key's
+ *   rows as a compressed row ID set; lookupAll / lookupAny combine several of
+ *   them with bitmap AND / OR
  */
 public class IndexManager {
     
@@ -19,6 +33,12 @@ public class IndexManager {
     // Map of index name -> Index instance
     private final Map<String, Index<String, String>> indexes = new ConcurrentHashMap<>();
     
+    // Map of index name -> index maintained on every table write
+    private final Map<String, TableIndex> secondaryIndexes = new ConcurrentHashMap<>();
+    
+    // Row IDs shared by all posting list indexes; created with the first of them, guarded by this
+    private RowIdMap rowIds;
+    
     /**
      * Creates a new index manager for a table.
      * 
@@ -43,6 +63,9 @@ public class IndexManager {
         if (indexes.containsKey(indexName)) {
             return indexes.get(indexName);
         }
+        if (secondaryIndexes.containsKey(indexName)) {
+            throw new IllegalArgumentException("Index '" + indexName + "' is already registered as a secondary index");
+        }
         
         // Create index file path
         Path indexPath = indexBaseDirectory.resolve(indexName + ".btree");
@@ -54,6 +77,144 @@ public class IndexManager {
         return index;
     }
     
+    /**
+     * Registers a secondary index on a column, maintained row by row.
+     * 
+     * @param indexName Name of the index
+     * @param column The indexed column
+     * @return The created index instance
+     * @throws IOException If the index file cannot be opened
+     */
+    public SecondaryIndex registerIndex(String indexName, String column) throws IOException {
+        return registerIndex(indexName, column, UnaryOperator.identity());
+    }
+    
+    /**
+     * Registers a secondary index on a column, maintained row by row.
+     * 
+     * @param indexName Name of the index
+     * @param column The indexed column
+     * @param normalizer Applied to column values and lookup keys alike
+     * @return The created index instance
+     * @throws IOException If the index file cannot be opened
+     */
+    public SecondaryIndex registerIndex(String indexName, String column, UnaryOperator<String> normalizer) throws IOException {
+        return registerIndex(indexName, column, normalizer, List.of());
+    }
+    
+    /**
+     * Registers a covering secondary index on a column, maintained row by row.
+     * The included columns are stored in every index entry, so lookups that
+     * need only them never read the table (SecondaryIndex.lookupCovering).
+     * Registering a name again returns the existing index if the column and
+     * included columns match. Normalizers cannot be compared, so the caller
+     * must pass the same one again; the existing index keeps its own.
+     * 
+     * @param indexName Name of the index
+     * @param column The indexed column
+     * @param normalizer Applied to column values and lookup keys alike
+     * @param includedColumns Columns stored alongside the primary key in each entry
+     * @return The created index instance
+     * @throws IOException If the index file cannot be opened
+     * @throws IllegalArgumentException If the name is taken by another kind of index, or on another column
+     */
+    public synchronized SecondaryIndex registerIndex(String indexName, String column, UnaryOperator<String> normalizer,
+                                                     List<String> includedColumns) throws IOException {
+        if (indexes.containsKey(indexName)) {
+            throw new IllegalArgumentException("Index '" + indexName + "' is already registered as a batch-built index");
+        }
+        TableIndex index = secondaryIndexes.get(indexName);
+        if (index == null) {
+            index = new SecondaryIndex(indexName, column, normalizer, includedColumns,
+                indexBaseDirectory.resolve(indexName + ".btree"));
+            secondaryIndexes.put(indexName, index);
+        } else if (!(index instanceof SecondaryIndex)) {
+            throw new IllegalArgumentException("Index '" + indexName + "' is already registered as a posting list index");
+        } else if (!index.getColumn().equals(column)) {
+            throw new IllegalArgumentException("Index '" + indexName + "' is already registered on column '"
+                + index.getColumn() + "'");
+        } else if (!((SecondaryIndex) index).getIncludedColumns().equals(includedColumns)) {
+            throw new IllegalArgumentException("Index '" + indexName + "' is already registered with included columns "
+                + ((SecondaryIndex) index).getIncludedColumns());
+        }
+        return (SecondaryIndex) index;
+    }
+    
+    /**
+     * Registers a posting list index on a (low-cardinality) column, maintained row by row.
+     * Registering a name again returns the existing index if the column
+     * matches; as with registerIndex, the caller must pass the same normalizer.
+     * 
+     * @param indexName Name of the index
+     * @param column The indexed column
+     * @param normalizer Applied to column values and lookup keys alike
+     * @return The created index instance
+     * @throws IOException If the index file cannot be opened
+     * @throws IllegalArgumentException If the name is taken by another kind of index, or on another column
+     */
+    public synchronized PostingListIndex registerPostingListIndex(String indexName, String column,
+                                                                  UnaryOperator<String> normalizer) throws IOException {
+        if (indexes.containsKey(indexName)) {
+            throw new IllegalArgumentException("Index '" + indexName + "' is already registered as a batch-built index");
+        }
+        TableIndex index = secondaryIndexes.get(indexName);
+        if (index == null) {
+            if (rowIds == null) {
+                rowIds = new RowIdMap(indexBaseDirectory.resolve("row_ids.btree"));
+            }
+            index = new PostingListIndex(indexName, column, normalizer, indexBaseDirectory.resolve(indexName + ".btree"), rowIds);
+            secondaryIndexes.put(indexName, index);
+        } else if (!(index instanceof PostingListIndex)) {
+            throw new IllegalArgumentException("Index '" + indexName + "' is already registered as a secondary index");
+        } else if (!index.getColumn().equals(column)) {
+            throw new IllegalArgumentException("Index '" + indexName + "' is already registered on column '"
+                + index.getColumn() + "'");
+        }
+        return (PostingListIndex) index;
+    }
+    
+    /**
+     * Gets a secondary index by name.
+     * 
+     * @param indexName Name of the index
+     * @return The index, or null if no secondary index has that name
+     */
+    public SecondaryIndex getSecondaryIndex(String indexName) {
+        TableIndex index = secondaryIndexes.get(indexName);
+        return index instanceof SecondaryIndex ? (SecondaryIndex) index : null;
+    }
+    
+    /**
+     * Gets a posting list index by name.
+     * 
+     * @param indexName Name of the index
+     * @return The index, or null if no posting list index has that name
+     */
+    public PostingListIndex getPostingListIndex(String indexName) {
+        TableIndex index = secondaryIndexes.get(indexName);
+        return index instanceof PostingListIndex ? (PostingListIndex) index : null;
+    }
+    
+    /**
+     * Checks whether any secondary index needs to see table writes.
+     */
+    public boolean hasSecondaryIndexes() {
+        return !secondaryIndexes.isEmpty();
+    }
+    
+    /**
+     * Brings every secondary index up to date with one row change.
+     * 
+     * @param oldRecord The row before the change, or null if it is new
+     * @param newRecord The row after the change, or null if it was deleted
+     * @throws IOException If an I/O error occurs
+     */
+    public void indexRecord(TableRecord oldRecord, TableRecord newRecord) throws IOException {
+        for (TableIndex index : secondaryIndexes.values()) {
+            index.update(oldRecord, newRecord);
+        }
+    }
+    
     /**
      * Adds a mapping to a specific index.
      * 
@@ -84,6 +245,48 @@ public class IndexManager {
         return index.buildIndex();
     }
     
+    /**
+     * Rebuilds every secondary index from the table, in parallel on all
+     * cores and within the default memory budget (see ParallelIndexBuilder).
+     * 
+     * @param table The table the indexes belong to
+     * @throws IOException If an I/O error occurs
+     */
+    public void rebuildIndexes(Table table) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        rebuildIndexes(table, cores, ParallelIndexBuilder.DEFAULT_MEMORY_BUDGET_BYTES);
+    }
+    
+    /**
+     * Rebuilds every secondary index from the table. The table is scanned in
+     * 4 key-range partitions per thread, so uneven ranges still keep all
+     * threads busy; sorted runs that do not fit in the memory budget are
+     * spilled under the index directory. Posting list indexes are updated in
+     * place on every write and are not rebuilt. Writes to the table must be
+     * paused meanwhile.
+     * 
+     * @param table The table the indexes belong to
+     * @param parallelism Threads used for scanning, sorting and merging
+     * @param memoryBudgetBytes Entries buffered in memory before runs are spilled
+     * @throws IOException If an I/O error occurs
+     */
+    public void rebuildIndexes(Table table, int parallelism, long memoryBudgetBytes) throws IOException {
+        List<SecondaryIndex> rebuilt = new ArrayList<>();
+        for (TableIndex index : secondaryIndexes.values()) {
+            if (index instanceof SecondaryIndex) {
+                rebuilt.add((SecondaryIndex) index);
+            }
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            new ParallelIndexBuilder(pool, parallelism * 4, memoryBudgetBytes, indexBaseDirectory.resolve("spill"))
+                .build(table, rebuilt);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
     /**
      * Looks up values for a key in a specific index.
      * 
@@ -93,6 +296,11 @@ public class IndexManager {
      * @throws IOException If an I/O error occurs
      */
     public List<String> lookup(String indexName, String key) throws IOException {
+        TableIndex secondaryIndex = secondaryIndexes.get(indexName);
+        if (secondaryIndex != null) {
+            return secondaryIndex.lookup(key);
+        }
+        
         Index<String, String> index = indexes.get(indexName);
         if (index == null) {
             return new ArrayList<>();
@@ -101,14 +309,81 @@ public class IndexManager {
         return index.lookup(key);
     }
     
+    /**
+     * Finds the rows matching every given index key (WHERE a = ? AND b = ?).
+     * The posting lists are intersected as bitmaps; only the rows left at the
+     * end are resolved to primary keys, and the table is never read.
+     * 
+     * @param keysByIndex Index key to match, by posting list index name
+     * @return Primary keys of the matching rows, in row ID order
+     * @throws IOException If an I/O error occurs
+     */
+    public List<String> lookupAll(Map<String, String> keysByIndex) throws IOException {
+        RowIdSet result = null;
+        for (Map.Entry<String, String> entry : keysByIndex.entrySet()) {
+            RowIdSet rows = postingListIndex(entry.getKey()).lookupRowIds(entry.getValue());
+            result = result == null ? rows : result.and(rows);
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result != null ? resolve(result) : new ArrayList<>();
+    }
+    
+    /**
+     * Finds the rows matching any of the given index keys (WHERE a = ? OR b = ?),
+     * uniting the posting lists as bitmaps.
+     * 
+     * @param keysByIndex Index key to match, by posting list index name
+     * @return Primary keys of the matching rows, in row ID order
+     * @throws IOException If an I/O error occurs
+     */
+    public List<String> lookupAny(Map<String, String> keysByIndex) throws IOException {
+        RowIdSet result = new RowIdSet();
+        for (Map.Entry<String, String> entry : keysByIndex.entrySet()) {
+            result = result.or(postingListIndex(entry.getKey()).lookupRowIds(entry.getValue()));
+        }
+        return resolve(result);
+    }
+    
+    /**
+     * Resolves row IDs from posting list lookups (possibly combined with
+     * RowIdSet.and / or) to primary keys.
+     * 
+     * @param rowIdSet Row IDs from this manager's posting list indexes
+     * @return The primary keys, in row ID order
+     * @throws IOException If an I/O error occurs
+     */
+    public List<String> resolve(RowIdSet rowIdSet) throws IOException {
+        RowIdMap map;
+        synchronized (this) {
+            map = rowIds;
+        }
+        return map != null ? map.primaryKeys(rowIdSet) : new ArrayList<>();
+    }
+    
     /**
      * Closes all indexes and releases resources.
      * 
      * @throws IOException If an I/O error occurs
      */
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
         for (Index<String, String> index : indexes.values()) {
             index.close();
         }
+        for (TableIndex index : secondaryIndexes.values()) {
+            index.close();
+        }
+        if (rowIds != null) {
+            rowIds.close();
+        }
+    }
+    
+    private PostingListIndex postingListIndex(String indexName) {
+        PostingListIndex index = getPostingListIndex(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException("No posting list index named '" + indexName + "'");
+        }
+        return index;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,381 @@
+package minispark.storage.index;
+
+import minispark.storage.Record;
+import minispark.storage.RecordCursor;
+import minispark.storage.btree.ValueSerializer;
+import minispark.storage.table.Table;
+import minispark.storage.table.TableRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds secondary indexes from a table with all cores, in bounded memory.
+ *
+ * 1. PARTITION: the table's key space is split into ranges (Table.splitKeys),
+ *    and each range is scanned by its own task on a fork-join pool.
+ * 2. SORT: a task turns every row into one entry per index and buffers the
+ *    entries; whenever its share of the memory budget is used up, each
+ *    buffer is sorted and written to disk as a run.
+ * 3. MERGE: the runs of all partitions are merged per index (a k-way merge
+ *    over a priority queue) straight into SecondaryIndex.load, which bulk
+ *    loads a new B+Tree bottom-up. The indexes are merged in parallel too.
+ *
+ * Partitions cover disjoint primary key ranges but interleave in index key
+ * order, which is why the runs have to be merged. Writes to the table must
+ * be paused while the indexes are rebuilt.
+ */
+public class ParallelIndexBuilder {
+    public static final long DEFAULT_MEMORY_BUDGET_BYTES = 64L * 1024 * 1024;
+    
+    // Rough heap cost of a buffered entry besides its key bytes and values (objects, map, array slot)
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    
+    // Rough heap cost of one value in an entry's map (map node, boxing or string header)
+    private static final int VALUE_OVERHEAD_BYTES = 48;
+    
+    private final ForkJoinPool pool;
+    private final int partitions;
+    private final long memoryBudgetBytes;
+    private final Path spillDirectory;
+    private final ValueSerializer valueSerializer = new ValueSerializer();
+    private final AtomicLong spilledRuns = new AtomicLong();
+    
+    /**
+     * Creates a builder.
+     *
+     * @param pool Pool that runs the partition scans and merges
+     * @param partitions Number of key ranges the table is scanned in
+     * @param memoryBudgetBytes Entries buffered across all partitions before runs are spilled
+     * @param spillDirectory Directory for spilled runs; they are deleted when the build ends
+     */
+    public ParallelIndexBuilder(ForkJoinPool pool, int partitions, long memoryBudgetBytes, Path spillDirectory) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partitions must be positive: " + partitions);
+        }
+        this.pool = pool;
+        this.partitions = partitions;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+    }
+    
+    /**
+     * Rebuilds the given indexes from the current rows of the table.
+     *
+     * @param table The indexed table
+     * @param indexes The indexes to rebuild
+     * @throws IOException If an I/O error occurs
+     */
+    public void build(Table table, List<SecondaryIndex> indexes) throws IOException {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(spillDirectory);
+        
+        List<byte[]> splitKeys = table.splitKeys(partitions);
+        System.out.println("🏗️ ParallelIndexBuilder - rebuilding " + indexes.size() + " indexes from "
+            + (splitKeys.size() + 1) + " partitions on " + pool.getParallelism() + " threads");
+        
+        Set<String> columns = new LinkedHashSet<>();
+        for (SecondaryIndex index : indexes) {
+            columns.add(index.getColumn());
+            columns.addAll(index.getIncludedColumns());
+        }
+        long partitionBudget = Math.max(1, memoryBudgetBytes / (splitKeys.size() + 1));
+        
+        // Phase 1 and 2: every partition scans its range into sorted runs, one list per index
+        List<Future<List<List<SortedRun>>>> partitionTasks = new ArrayList<>();
+        for (int p = 0; p <= splitKeys.size(); p++) {
+            byte[] startKey = p == 0 ? new byte[0] : splitKeys.get(p - 1);
+            byte[] endKey = p < splitKeys.size() ? splitKeys.get(p) : null;
+            partitionTasks.add(pool.submit(() ->
+                sortPartition(table, startKey, endKey, new ArrayList<>(columns), indexes, partitionBudget)));
+        }
+        
+        List<List<SortedRun>> runsByIndex = new ArrayList<>();
+        for (int i = 0; i < indexes.size(); i++) {
+            runsByIndex.add(new ArrayList<>());
+        }
+        try {
+            for (Future<List<List<SortedRun>>> task : partitionTasks) {
+                List<List<SortedRun>> partitionRuns = await(task);
+                for (int i = 0; i < indexes.size(); i++) {
+                    runsByIndex.get(i).addAll(partitionRuns.get(i));
+                }
+            }
+            
+            // Phase 3: merge each index's runs into a bottom-up bulk load
+            List<Future<Void>> mergeTasks = new ArrayList<>();
+            for (int i = 0; i < indexes.size(); i++) {
+                SecondaryIndex index = indexes.get(i);
+                List<SortedRun> runs = runsByIndex.get(i);
+                mergeTasks.add(pool.submit(() -> {
+                    index.load(new MergingIterator(runs));
+                    return null;
+                }));
+            }
+            for (Future<Void> task : mergeTasks) {
+                await(task);
+            }
+        } finally {
+            for (List<SortedRun> runs : runsByIndex) {
+                for (SortedRun run : runs) {
+                    run.delete();
+                }
+            }
+        }
+        System.out.println("   ✅ Indexes rebuilt (" + spilledRuns.get() + " runs spilled so far)");
+    }
+    
+    /**
+     * Gets the number of sorted runs written to disk so far.
+     */
+    public long getSpilledRunCount() {
+        return spilledRuns.get();
+    }
+    
+    private List<List<SortedRun>> sortPartition(Table table, byte[] startKey, byte[] endKey, List<String> columns,
+                                                List<SecondaryIndex> indexes, long budgetBytes) throws IOException {
+        List<List<SortedRun>> runs = new ArrayList<>();
+        List<List<Record>> buffers = new ArrayList<>();
+        for (int i = 0; i < indexes.size(); i++) {
+            runs.add(new ArrayList<>());
+            buffers.add(new ArrayList<>());
+        }
+        
+        long bufferedBytes = 0;
+        try (RecordCursor cursor = table.openCursor(startKey, endKey, columns)) {
+            while (cursor.hasNext()) {
+                Record row = cursor.next();
+                TableRecord record = new TableRecord(new String(row.getKey()), row.getValue());
+                for (int i = 0; i < indexes.size(); i++) {
+                    Record entry = indexes.get(i).entryFor(record);
+                    if (entry != null) {
+                        buffers.get(i).add(entry);
+                        bufferedBytes += estimatedSize(entry);
+                    }
+                }
+                if (bufferedBytes >= budgetBytes) {
+                    for (int i = 0; i < indexes.size(); i++) {
+                        if (!buffers.get(i).isEmpty()) {
+                            runs.get(i).add(spill(sorted(buffers.get(i))));
+                            buffers.set(i, new ArrayList<>());
+                        }
+                    }
+                    bufferedBytes = 0;
+                }
+            }
+        }
+        
+        // What is left stays in memory as the partition's last run
+        for (int i = 0; i < indexes.size(); i++) {
+            if (!buffers.get(i).isEmpty()) {
+                runs.get(i).add(new MemoryRun(sorted(buffers.get(i))));
+            }
+        }
+        return runs;
+    }
+    
+    // Included columns travel in the value, so a covering index on wide columns weighs much more per entry
+    private static long estimatedSize(Record entry) {
+        long size = entry.getKey().length + ENTRY_OVERHEAD_BYTES;
+        for (Object value : entry.getValue().values()) {
+            size += VALUE_OVERHEAD_BYTES;
+            if (value instanceof String) {
+                size += 2L * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += ((byte[]) value).length;
+            }
+        }
+        return size;
+    }
+    
+    private static List<Record> sorted(List<Record> entries) {
+        entries.sort((a, b) -> Arrays.compare(a.getKey(), b.getKey()));
+        return entries;
+    }
+    
+    // Run file format: |keyLength int|key|valueLength int|value| ... until end of file
+    private SortedRun spill(List<Record> sortedEntries) throws IOException {
+        Path file = Files.createTempFile(spillDirectory, "run-", ".sorted");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (Record entry : sortedEntries) {
+                byte[] value = valueSerializer.serialize(entry.getValue());
+                out.writeInt(entry.getKey().length);
+                out.write(entry.getKey());
+                out.writeInt(value.length);
+                out.write(value);
+            }
+        }
+        spilledRuns.incrementAndGet();
+        return new FileRun(file);
+    }
+    
+    private static <T> T await(Future<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building indexes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("Index build failed", e.getCause());
+        }
+    }
+    
+    /**
+     * Entries sorted by key, in memory or on disk.
+     */
+    private interface SortedRun {
+        Iterator<Record> open() throws IOException;
+        
+        void delete() throws IOException;
+    }
+    
+    private static final class MemoryRun implements SortedRun {
+        private final List<Record> entries;
+        
+        MemoryRun(List<Record> entries) {
+            this.entries = entries;
+        }
+        
+        @Override
+        public Iterator<Record> open() {
+            return entries.iterator();
+        }
+        
+        @Override
+        public void delete() {
+        }
+    }
+    
+    private final class FileRun implements SortedRun {
+        private final Path file;
+        
+        FileRun(Path file) {
+            this.file = file;
+        }
+        
+        @Override
+        public Iterator<Record> open() throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            return new Iterator<>() {
+                private Record next = read();
+                
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+                
+                @Override
+                public Record next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Record current = next;
+                    next = read();
+                    return current;
+                }
+                
+                // The next entry, or null (closing the file) at the end of the run
+                private Record read() {
+                    try {
+                        byte[] key = new byte[in.readInt()];
+                        in.readFully(key);
+                        byte[] value = new byte[in.readInt()];
+                        in.readFully(value);
+                        return new Record(key, valueSerializer.deserialize(value));
+                    } catch (EOFException e) {
+                        closeQuietly();
+                        return null;
+                    } catch (IOException e) {
+                        closeQuietly();
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                
+                private void closeQuietly() {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                        // Nothing more is read from this run
+                    }
+                }
+            };
+        }
+        
+        @Override
+        public void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    /**
+     * K-way merge of sorted runs; each step takes the smallest head.
+     */
+    private static final class MergingIterator implements Iterator<Record> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(
+            Comparator.comparing((Head head) -> head.record.getKey(), Arrays::compare));
+        
+        private static final class Head {
+            final Record record;
+            final Iterator<Record> rest;
+            
+            Head(Record record, Iterator<Record> rest) {
+                this.record = record;
+                this.rest = rest;
+            }
+        }
+        
+        MergingIterator(List<SortedRun> runs) throws IOException {
+            for (SortedRun run : runs) {
+                Iterator<Record> entries = run.open();
+                if (entries.hasNext()) {
+                    heads.add(new Head(entries.next(), entries));
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+        
+        @Override
+        public Record next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            if (head.rest.hasNext()) {
+                heads.add(new Head(head.rest.next(), head.rest));
+            }
+            return head.record;
+        }
+    }
+}
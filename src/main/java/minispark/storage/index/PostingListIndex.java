@@ -0,0 +1,154 @@
+package minispark.storage.index;
+
+import minispark.storage.Record;
+import minispark.storage.RecordCursor;
+import minispark.storage.btree.BTree;
+import minispark.storage.table.TableRecord;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/**
+ * Secondary index that stores the rows of each index key as a compressed
+ * row ID set (RowIdSet), for low-cardinality columns such as a city or a
+ * status.
+ *
+ * A SecondaryIndex entry per row repeats the index key in every entry; here
+ * the rows of one index key are a handful of roaring-style containers, each
+ * its own B+Tree entry under
+ *
+ *   |index key (escaped)|0x00 0x01|high 16 bits of the row IDs|
+ *
+ * Adding or removing a row rewrites only the container its row ID falls
+ * into (at most 8KB), never the whole posting list, and a lookup is one
+ * prefix range scan over the containers. Because every posting list index
+ * of an IndexManager numbers rows with the same RowIdMap, lookups on
+ * several indexes combine with RowIdSet.and / or before a single primary
+ * key is resolved, and without reading the table.
+ */
+public class PostingListIndex implements TableIndex {
+    
+    private final String indexName;
+    private final String column;
+    private final UnaryOperator<String> normalizer;
+    private final BTree indexBTree;
+    private final RowIdMap rowIds;
+    
+    PostingListIndex(String indexName, String column, UnaryOperator<String> normalizer,
+                     Path indexPath, RowIdMap rowIds) throws IOException {
+        this.indexName = indexName;
+        this.column = column;
+        this.normalizer = normalizer;
+        this.indexBTree = new BTree(indexPath);
+        this.rowIds = rowIds;
+    }
+    
+    @Override
+    public synchronized void add(TableRecord record) throws IOException {
+        String indexKey = indexKeyOf(record);
+        if (indexKey != null) {
+            updateContainer(indexKey, rowIds.idFor(record.getPrimaryKey()), true);
+        }
+    }
+    
+    @Override
+    public synchronized void remove(TableRecord record) throws IOException {
+        String indexKey = indexKeyOf(record);
+        int rowId = rowIds.find(record.getPrimaryKey());
+        if (indexKey != null && rowId >= 0) {
+            updateContainer(indexKey, rowId, false);
+        }
+    }
+    
+    @Override
+    public synchronized void update(TableRecord oldRecord, TableRecord newRecord) throws IOException {
+        if (oldRecord != null && newRecord != null && indexKeyOf(oldRecord) != null
+                && indexKeyOf(oldRecord).equals(indexKeyOf(newRecord))) {
+            return;
+        }
+        if (oldRecord != null) {
+            remove(oldRecord);
+        }
+        if (newRecord != null) {
+            add(newRecord);
+        }
+    }
+    
+    /**
+     * Looks up the row IDs of all rows with the given index key.
+     *
+     * @param key The index key (normalized like the indexed values)
+     * @return The row IDs
+     * @throws IOException If an I/O error occurs
+     */
+    public RowIdSet lookupRowIds(String key) throws IOException {
+        RowIdSet result = new RowIdSet();
+        if (key == null) {
+            return result;
+        }
+        byte[] prefix = IndexKeys.prefix(normalizer.apply(key));
+        try (RecordCursor cursor = indexBTree.openCursor(prefix, IndexKeys.prefixEnd(prefix), null)) {
+            while (cursor.hasNext()) {
+                Record record = cursor.next();
+                byte[] entryKey = record.getKey();
+                int high = (entryKey[entryKey.length - 2] & 0xFF) << 8 | (entryKey[entryKey.length - 1] & 0xFF);
+                result.putContainer(high, (byte[]) record.getValue().get("c"));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Looks up the primary keys of all rows with the given index key, in row ID order.
+     */
+    @Override
+    public List<String> lookup(String key) throws IOException {
+        return rowIds.primaryKeys(lookupRowIds(key));
+    }
+    
+    @Override
+    public String getIndexName() {
+        return indexName;
+    }
+    
+    @Override
+    public String getColumn() {
+        return column;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        indexBTree.close();
+    }
+    
+    private String indexKeyOf(TableRecord record) {
+        Object value = record.getValue(column);
+        return value != null ? normalizer.apply(value.toString()) : null;
+    }
+    
+    // Reads the one container the row ID falls into, changes it, and writes it back (or deletes it once empty)
+    private void updateContainer(String indexKey, int rowId, boolean add) throws IOException {
+        int high = rowId >>> 16;
+        byte[] entryKey = IndexKeys.entryKey(indexKey, new byte[] {(byte) (high >>> 8), (byte) high});
+        RowIdSet container = new RowIdSet();
+        Optional<Map<String, Object>> stored = indexBTree.read(entryKey);
+        if (stored.isPresent()) {
+            container.putContainer(high, (byte[]) stored.get().get("c"));
+        }
+        
+        boolean changed = add ? container.add(rowId) : container.remove(rowId);
+        if (!changed) {
+            return;
+        }
+        byte[] encoded = container.encodeContainer(high);
+        if (encoded != null) {
+            indexBTree.write(entryKey, Map.of("c", encoded));
+        } else {
+            indexBTree.delete(entryKey);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package minispark.storage.index;
+
+import minispark.storage.btree.BTree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Dense int row IDs for a table's string primary keys, so posting lists can
+ * store rows as compressed bitmaps (RowIdSet).
+ *
+ * IDs are handed out in insertion order and kept in a B+Tree both ways:
+ * 'p' + primary key -> ID, and 'r' + ID -> primary key. All posting list
+ * indexes of an IndexManager share one map, which is what lets their row
+ * ID sets be intersected. An ID stays assigned after its row is deleted,
+ * so a re-inserted row gets its old ID back.
+ */
+final class RowIdMap {
+    private static final byte[] NEXT_ID_KEY = {'n'};
+    
+    private final BTree btree;
+    
+    // Next ID to hand out; guarded by this
+    private int nextRowId;
+    
+    RowIdMap(Path path) throws IOException {
+        this.btree = new BTree(path);
+        this.nextRowId = btree.read(NEXT_ID_KEY).map(value -> (Integer) value.get("next")).orElse(0);
+    }
+    
+    /**
+     * Gets the ID of a primary key, assigning the next one if it has none yet.
+     */
+    synchronized int idFor(String primaryKey) throws IOException {
+        int rowId = find(primaryKey);
+        if (rowId >= 0) {
+            return rowId;
+        }
+        rowId = nextRowId++;
+        btree.write(rowKey(rowId), Map.of("pk", primaryKey));
+        btree.write(primaryKeyKey(primaryKey), Map.of("id", rowId));
+        btree.write(NEXT_ID_KEY, Map.of("next", nextRowId));
+        return rowId;
+    }
+    
+    /**
+     * Gets the ID of a primary key, or -1 if it has none.
+     */
+    int find(String primaryKey) throws IOException {
+        Optional<Map<String, Object>> value = btree.read(primaryKeyKey(primaryKey));
+        return value.map(v -> (Integer) v.get("id")).orElse(-1);
+    }
+    
+    /**
+     * Gets the primary keys of a set of row IDs, in row ID order.
+     */
+    List<String> primaryKeys(RowIdSet rowIds) throws IOException {
+        List<String> primaryKeys = new ArrayList<>(rowIds.cardinality());
+        for (int rowId : rowIds) {
+            Optional<Map<String, Object>> value = btree.read(rowKey(rowId));
+            if (value.isPresent()) {
+                primaryKeys.add((String) value.get().get("pk"));
+            }
+        }
+        return primaryKeys;
+    }
+    
+    void close() throws IOException {
+        btree.close();
+    }
+    
+    private static byte[] rowKey(int rowId) {
+        return ByteBuffer.allocate(1 + Integer.BYTES).put((byte) 'r').putInt(rowId).array();
+    }
+    
+    private static byte[] primaryKeyKey(String primaryKey) {
+        byte[] pk = primaryKey.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + pk.length).put((byte) 'p').put(pk).array();
+    }
+}
@@ -0,0 +1,535 @@
+package minispark.storage.index;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A compressed set of row IDs (non-negative ints), split into roaring-style
+ * containers.
+ *
+ * The high 16 bits of a row ID pick its container, the low 16 bits are
+ * stored in it. A container with at most ARRAY_MAX_SIZE IDs is a sorted
+ * array of chars (2 bytes per ID); a fuller one is a 2^16-bit bitmap
+ * (8KB, fixed). Each container takes whichever form is smaller, so sparse
+ * and dense ranges are both compact, and AND / OR work container by
+ * container: two arrays are merged, anything with a bitmap is combined a
+ * 64-bit word at a time.
+ *
+ * On disk (encodeContainer) an array container is written as varint deltas
+ * between consecutive IDs, which takes one byte per ID for the clustered
+ * IDs of a low-cardinality column.
+ */
+public final class RowIdSet implements Iterable<Integer> {
+    // Above this many IDs a bitmap (8KB) is smaller than a sorted array
+    static final int ARRAY_MAX_SIZE = 4096;
+    
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final byte ARRAY_CONTAINER = 0;
+    private static final byte BITMAP_CONTAINER = 1;
+    
+    // Containers by the high 16 bits of their IDs; never empty
+    private final TreeMap<Integer, Container> containers = new TreeMap<>();
+    
+    /**
+     * Creates a set of the given row IDs.
+     */
+    public static RowIdSet of(int... rowIds) {
+        RowIdSet set = new RowIdSet();
+        for (int rowId : rowIds) {
+            set.add(rowId);
+        }
+        return set;
+    }
+    
+    /**
+     * Adds a row ID.
+     *
+     * @return true if it was not in the set yet
+     */
+    public boolean add(int rowId) {
+        checkRowId(rowId);
+        int high = rowId >>> 16;
+        Container container = containers.get(high);
+        if (container == null) {
+            container = new ArrayContainer();
+        }
+        int before = container.cardinality();
+        containers.put(high, container.add((char) rowId));
+        return containers.get(high).cardinality() > before;
+    }
+    
+    /**
+     * Removes a row ID.
+     *
+     * @return true if it was in the set
+     */
+    public boolean remove(int rowId) {
+        int high = rowId >>> 16;
+        Container container = containers.get(high);
+        if (container == null || !container.contains((char) rowId)) {
+            return false;
+        }
+        Container updated = container.remove((char) rowId);
+        if (updated.cardinality() == 0) {
+            containers.remove(high);
+        } else {
+            containers.put(high, updated);
+        }
+        return true;
+    }
+    
+    public boolean contains(int rowId) {
+        Container container = containers.get(rowId >>> 16);
+        return container != null && container.contains((char) rowId);
+    }
+    
+    /**
+     * Gets the number of row IDs in the set.
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (Container container : containers.values()) {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+    
+    public boolean isEmpty() {
+        return containers.isEmpty();
+    }
+    
+    /**
+     * Intersects two sets. Containers present in only one of them are
+     * skipped without being looked at.
+     *
+     * @return A new set with the row IDs in both sets
+     */
+    public RowIdSet and(RowIdSet other) {
+        RowIdSet result = new RowIdSet();
+        for (Map.Entry<Integer, Container> entry : containers.entrySet()) {
+            Container otherContainer = other.containers.get(entry.getKey());
+            if (otherContainer != null) {
+                Container both = entry.getValue().and(otherContainer);
+                if (both.cardinality() > 0) {
+                    result.containers.put(entry.getKey(), both);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Unites two sets.
+     *
+     * @return A new set with the row IDs in either set
+     */
+    public RowIdSet or(RowIdSet other) {
+        RowIdSet result = new RowIdSet();
+        for (Map.Entry<Integer, Container> entry : containers.entrySet()) {
+            result.containers.put(entry.getKey(), entry.getValue().copy());
+        }
+        for (Map.Entry<Integer, Container> entry : other.containers.entrySet()) {
+            Container mine = result.containers.get(entry.getKey());
+            result.containers.put(entry.getKey(), mine != null ? mine.or(entry.getValue()) : entry.getValue().copy());
+        }
+        return result;
+    }
+    
+    /**
+     * Gets the row IDs in ascending order.
+     */
+    public int[] toArray() {
+        int[] rowIds = new int[cardinality()];
+        int i = 0;
+        for (int rowId : this) {
+            rowIds[i++] = rowId;
+        }
+        return rowIds;
+    }
+    
+    @Override
+    public Iterator<Integer> iterator() {
+        return containers.entrySet().stream()
+            .flatMap(entry -> {
+                int base = entry.getKey() << 16;
+                return Arrays.stream(entry.getValue().values()).mapToObj(low -> base | low);
+            })
+            .iterator();
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RowIdSet)) {
+            return false;
+        }
+        return Arrays.equals(toArray(), ((RowIdSet) o).toArray());
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+    
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+    
+    // ========================================
+    // CONTAINER ENCODING (used by PostingListIndex)
+    // ========================================
+    
+    /**
+     * Gets the high 16 bits of every container, ascending.
+     */
+    Iterable<Integer> containerKeys() {
+        return containers.keySet();
+    }
+    
+    /**
+     * Encodes one container, or returns null if the set has none for that high key.
+     */
+    byte[] encodeContainer(int high) {
+        Container container = containers.get(high);
+        return container != null ? container.encode() : null;
+    }
+    
+    /**
+     * Adds a container decoded from encodeContainer's output.
+     */
+    void putContainer(int high, byte[] encoded) {
+        Container container = decode(encoded);
+        if (container.cardinality() > 0) {
+            containers.put(high, container);
+        }
+    }
+    
+    private static void checkRowId(int rowId) {
+        if (rowId < 0) {
+            throw new IllegalArgumentException("Row IDs cannot be negative: " + rowId);
+        }
+    }
+    
+    private static Container decode(byte[] encoded) {
+        if (encoded[0] == BITMAP_CONTAINER) {
+            long[] words = new long[BITMAP_WORDS];
+            int offset = 1;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = 0;
+                for (int b = 0; b < Long.BYTES; b++) {
+                    word |= (encoded[offset++] & 0xFFL) << (b * 8);
+                }
+                words[i] = word;
+            }
+            return new BitmapContainer(words);
+        }
+        int[] position = {1};
+        int size = readVarint(encoded, position);
+        char[] values = new char[size];
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += readVarint(encoded, position);
+            values[i] = (char) previous;
+        }
+        return new ArrayContainer(values, size);
+    }
+    
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+    
+    private static int readVarint(byte[] bytes, int[] position) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+    
+    /**
+     * The low 16 bits of the IDs sharing one high key. Operations return the
+     * container to keep, which may be of the other kind.
+     */
+    private interface Container {
+        Container add(char value);
+        Container remove(char value);
+        boolean contains(char value);
+        int cardinality();
+        char[] valuesArray();
+        long[] words();
+        byte[] encode();
+        Container copy();
+        
+        default int[] values() {
+            char[] chars = valuesArray();
+            int[] values = new int[chars.length];
+            for (int i = 0; i < chars.length; i++) {
+                values[i] = chars[i];
+            }
+            return values;
+        }
+        
+        default Container and(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer) {
+                return ((ArrayContainer) this).intersect((ArrayContainer) other);
+            }
+            if (this instanceof ArrayContainer || other instanceof ArrayContainer) {
+                // Probe the bitmap with the (at most ARRAY_MAX_SIZE) array values
+                ArrayContainer array = (ArrayContainer) (this instanceof ArrayContainer ? this : other);
+                Container bitmap = array == this ? other : this;
+                char[] kept = new char[array.size];
+                int size = 0;
+                for (int i = 0; i < array.size; i++) {
+                    if (bitmap.contains(array.values[i])) {
+                        kept[size++] = array.values[i];
+                    }
+                }
+                return new ArrayContainer(kept, size);
+            }
+            long[] a = words();
+            long[] b = other.words();
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = a[i] & b[i];
+            }
+            return new BitmapContainer(result).compact();
+        }
+        
+        default Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                    && cardinality() + other.cardinality() <= ARRAY_MAX_SIZE) {
+                return ((ArrayContainer) this).union((ArrayContainer) other);
+            }
+            long[] a = words();
+            long[] b = other.words();
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = a[i] | b[i];
+            }
+            return new BitmapContainer(result).compact();
+        }
+    }
+    
+    private static final class ArrayContainer implements Container {
+        private char[] values;
+        private int size;
+        
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+        
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+        
+        @Override
+        public Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == ARRAY_MAX_SIZE) {
+                return new BitmapContainer(words()).add(value);
+            }
+            int insertAt = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX_SIZE, Math.max(4, values.length * 2)));
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+            values[insertAt] = value;
+            size++;
+            return this;
+        }
+        
+        @Override
+        public Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return this;
+        }
+        
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+        
+        @Override
+        public Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, size), size);
+        }
+        
+        @Override
+        public int cardinality() {
+            return size;
+        }
+        
+        @Override
+        public char[] valuesArray() {
+            return Arrays.copyOf(values, size);
+        }
+        
+        @Override
+        public long[] words() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+        
+        @Override
+        public byte[] encode() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(size + 4);
+            out.write(ARRAY_CONTAINER);
+            writeVarint(out, size);
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                writeVarint(out, values[i] - previous);
+                previous = values[i];
+            }
+            return out.toByteArray();
+        }
+        
+        ArrayContainer intersect(ArrayContainer other) {
+            char[] result = new char[Math.min(size, other.size)];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (values[i] < other.values[j]) {
+                    i++;
+                } else if (values[i] > other.values[j]) {
+                    j++;
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+        
+        ArrayContainer union(ArrayContainer other) {
+            char[] result = new char[size + other.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < other.size) {
+                if (j == other.size || (i < size && values[i] < other.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == size || values[i] > other.values[j]) {
+                    result[count++] = other.values[j++];
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+    }
+    
+    private static final class BitmapContainer implements Container {
+        private final long[] words;
+        private int cardinality;
+        
+        BitmapContainer(long[] words) {
+            this.words = words;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+        }
+        
+        @Override
+        public Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+        
+        @Override
+        public Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return compact();
+        }
+        
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+        
+        @Override
+        public Container copy() {
+            return new BitmapContainer(words.clone());
+        }
+        
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+        
+        @Override
+        public char[] valuesArray() {
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return values;
+        }
+        
+        @Override
+        public long[] words() {
+            return words;
+        }
+        
+        @Override
+        public byte[] encode() {
+            byte[] encoded = new byte[1 + BITMAP_WORDS * Long.BYTES];
+            encoded[0] = BITMAP_CONTAINER;
+            int offset = 1;
+            for (long word : words) {
+                for (int b = 0; b < Long.BYTES; b++) {
+                    encoded[offset++] = (byte) (word >>> (b * 8));
+                }
+            }
+            return encoded;
+        }
+        
+        // The array form once the bitmap is no longer the smaller one
+        Container compact() {
+            if (cardinality > ARRAY_MAX_SIZE) {
+                return this;
+            }
+            char[] values = valuesArray();
+            return new ArrayContainer(values, values.length);
+        }
+    }
+}
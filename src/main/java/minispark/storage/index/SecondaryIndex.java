@@ -0,0 +1,287 @@
+package minispark.storage.index;
+
+import minispark.storage.Record;
+import minispark.storage.RecordCursor;
+import minispark.storage.btree.BTree;
+import minispark.storage.table.TableRecord;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * Secondary index on one table column, kept up to date on every write.
+ *
+ * Unlike Index, which collects mappings in memory and rebuilds its B+Tree in
+ * one go, every row is its own B+Tree entry under a composite key:
+ *
+ *   |index key (escaped)|0x00 0x01|primary key|
+ *
+ * Duplicate index keys therefore never have to be merged into one value:
+ * adding a row is one insert, removing it is one delete, and all rows with
+ * the same index key sit next to each other, ordered by primary key, so a
+ * lookup is one prefix range scan (see IndexKeys for the escaping).
+ *
+ * An index can also store included columns next to the primary key in each
+ * entry. A query that needs only those columns is then answered by the range
+ * scan alone (lookupCovering), without reading a single table row.
+ */
+public class SecondaryIndex implements TableIndex {
+    
+    // Entry value field holding the primary key, next to the included columns
+    private static final String PRIMARY_KEY = "pk";
+    
+    private final String indexName;
+    private final String column;
+    private final UnaryOperator<String> normalizer;
+    private final List<String> includedColumns;
+    private final Path indexPath;
+    
+    // Replaced as a whole when the index is rebuilt (see ParallelIndexBuilder)
+    private volatile BTree indexBTree;
+    
+    /**
+     * Opens (or creates) a secondary index. An existing index file keeps its
+     * entries, so the index survives restarts along with its table.
+     *
+     * @param indexName Name of the index
+     * @param column The indexed column
+     * @param normalizer Applied to column values and lookup keys alike (e.g. lower-casing)
+     * @param indexPath Path of the B+Tree file
+     * @throws IOException If the index file cannot be opened
+     */
+    public SecondaryIndex(String indexName, String column, UnaryOperator<String> normalizer, Path indexPath) throws IOException {
+        this(indexName, column, normalizer, List.of(), indexPath);
+    }
+    
+    /**
+     * Opens (or creates) a covering secondary index. Entries already in an
+     * existing index file keep the included columns they were written with;
+     * rebuild the index (IndexManager.rebuildIndexes) after changing them.
+     *
+     * @param indexName Name of the index
+     * @param column The indexed column
+     * @param normalizer Applied to column values and lookup keys alike (e.g. lower-casing)
+     * @param includedColumns Columns stored in every entry, as they are in the row
+     * @param indexPath Path of the B+Tree file
+     * @throws IOException If the index file cannot be opened
+     */
+    public SecondaryIndex(String indexName, String column, UnaryOperator<String> normalizer,
+                          List<String> includedColumns, Path indexPath) throws IOException {
+        if (includedColumns.contains(PRIMARY_KEY)) {
+            throw new IllegalArgumentException("Included column name '" + PRIMARY_KEY + "' is reserved");
+        }
+        this.indexName = indexName;
+        this.column = column;
+        this.normalizer = normalizer;
+        this.includedColumns = List.copyOf(includedColumns);
+        this.indexPath = indexPath;
+        this.indexBTree = new BTree(indexPath);
+    }
+    
+    /**
+     * Adds a row to the index. Rows without a value in the indexed column are not indexed.
+     *
+     * @param record The row
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public void add(TableRecord record) throws IOException {
+        Record entry = entryFor(record);
+        if (entry != null) {
+            indexBTree.write(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Removes a row from the index.
+     *
+     * @param record The row as it was indexed
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public void remove(TableRecord record) throws IOException {
+        String indexKey = indexKeyOf(record);
+        if (indexKey != null) {
+            indexBTree.delete(IndexKeys.entryKey(indexKey, record.getPrimaryKey().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+    
+    /**
+     * Updates the index for a row that changed. Nothing is written when the
+     * indexed column and the included columns kept their values.
+     *
+     * @param oldRecord The row before the change, or null if it is new
+     * @param newRecord The row after the change, or null if it was deleted
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public void update(TableRecord oldRecord, TableRecord newRecord) throws IOException {
+        if (oldRecord != null && newRecord != null && indexKeyOf(oldRecord) != null
+                && indexKeyOf(oldRecord).equals(indexKeyOf(newRecord))) {
+            // Same entry key: only a changed included column needs the entry rewritten
+            if (!includedValuesEqual(oldRecord, newRecord)) {
+                add(newRecord);
+            }
+            return;
+        }
+        if (oldRecord != null) {
+            remove(oldRecord);
+        }
+        if (newRecord != null) {
+            add(newRecord);
+        }
+    }
+    
+    /**
+     * Looks up the primary keys of all rows with the given index key, in
+     * primary key order, with one range scan over the composite keys.
+     *
+     * @param key The index key (normalized like the indexed values)
+     * @return The primary keys
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public List<String> lookup(String key) throws IOException {
+        List<String> primaryKeys = new ArrayList<>();
+        if (key == null) {
+            return primaryKeys;
+        }
+        byte[] prefix = IndexKeys.prefix(normalizer.apply(key));
+        try (RecordCursor cursor = indexBTree.openCursor(prefix, IndexKeys.prefixEnd(prefix), List.of(PRIMARY_KEY))) {
+            while (cursor.hasNext()) {
+                primaryKeys.add((String) cursor.next().getValue().get(PRIMARY_KEY));
+            }
+        }
+        return primaryKeys;
+    }
+    
+    /**
+     * Looks up all rows with the given index key and returns the requested
+     * columns straight from the index entries, in primary key order. Only
+     * included columns can be requested (see covers); columns the row has no
+     * value for are missing from the result, as in a table scan.
+     *
+     * @param key The index key (normalized like the indexed values)
+     * @param columns Included columns to return
+     * @return The matching rows, holding only the requested columns
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If a column is not included in the index
+     */
+    public List<TableRecord> lookupCovering(String key, List<String> columns) throws IOException {
+        if (!covers(columns)) {
+            throw new IllegalArgumentException("Index '" + indexName + "' does not include all of " + columns);
+        }
+        List<TableRecord> rows = new ArrayList<>();
+        if (key == null) {
+            return rows;
+        }
+        List<String> projection = new ArrayList<>(columns);
+        projection.add(PRIMARY_KEY);
+        byte[] prefix = IndexKeys.prefix(normalizer.apply(key));
+        try (RecordCursor cursor = indexBTree.openCursor(prefix, IndexKeys.prefixEnd(prefix), projection)) {
+            while (cursor.hasNext()) {
+                Map<String, Object> values = new HashMap<>(cursor.next().getValue());
+                String primaryKey = (String) values.remove(PRIMARY_KEY);
+                rows.add(new TableRecord(primaryKey, values));
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * Checks whether a query needing the given columns can be answered from
+     * this index alone.
+     *
+     * @param columns The columns the query needs
+     */
+    public boolean covers(List<String> columns) {
+        return includedColumns.containsAll(columns);
+    }
+    
+    /**
+     * Gets the B+Tree entry that indexes a row.
+     *
+     * @return The entry, or null if the row has no value in the indexed column
+     */
+    Record entryFor(TableRecord record) {
+        String indexKey = indexKeyOf(record);
+        if (indexKey == null) {
+            return null;
+        }
+        byte[] key = IndexKeys.entryKey(indexKey, record.getPrimaryKey().getBytes(StandardCharsets.UTF_8));
+        Map<String, Object> value = new HashMap<>();
+        value.put(PRIMARY_KEY, record.getPrimaryKey());
+        for (String included : includedColumns) {
+            Object columnValue = record.getValue(included);
+            if (columnValue != null) {
+                value.put(included, columnValue);
+            }
+        }
+        return new Record(key, value);
+    }
+    
+    /**
+     * Replaces the whole index with the given entries, bulk loaded into a new
+     * B+Tree file. Writes to the table must be paused meanwhile.
+     *
+     * @param sortedEntries Entries (see entryFor) in strictly ascending key order
+     * @throws IOException If an I/O error occurs
+     */
+    synchronized void load(Iterator<Record> sortedEntries) throws IOException {
+        indexBTree.close();
+        Files.deleteIfExists(indexPath);
+        BTree rebuilt = new BTree(indexPath);
+        rebuilt.bulkLoad(sortedEntries);
+        indexBTree = rebuilt;
+    }
+    
+    @Override
+    public String getIndexName() {
+        return indexName;
+    }
+    
+    @Override
+    public String getColumn() {
+        return column;
+    }
+    
+    /**
+     * Gets the columns stored in every entry besides the primary key.
+     */
+    public List<String> getIncludedColumns() {
+        return includedColumns;
+    }
+    
+    /**
+     * Closes the index and releases resources.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        indexBTree.close();
+    }
+    
+    private String indexKeyOf(TableRecord record) {
+        Object value = record.getValue(column);
+        return value != null ? normalizer.apply(value.toString()) : null;
+    }
+    
+    private boolean includedValuesEqual(TableRecord oldRecord, TableRecord newRecord) {
+        for (String included : includedColumns) {
+            if (!Objects.equals(oldRecord.getValue(included), newRecord.getValue(included))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
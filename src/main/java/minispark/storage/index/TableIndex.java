@@ -0,0 +1,60 @@
+package minispark.storage.index;
+
+import minispark.storage.table.TableRecord;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An index on one table column that a Table keeps up to date on every write
+ * (see Table.setIndexManager). Implementations differ in how they store the
+ * rows of an index key: SecondaryIndex as one entry per row, PostingListIndex
+ * as compressed row ID sets.
+ */
+public interface TableIndex {
+    
+    /**
+     * Adds a row to the index. Rows without a value in the indexed column are not indexed.
+     *
+     * @param record The row
+     * @throws IOException If an I/O error occurs
+     */
+    void add(TableRecord record) throws IOException;
+    
+    /**
+     * Removes a row from the index.
+     *
+     * @param record The row as it was indexed
+     * @throws IOException If an I/O error occurs
+     */
+    void remove(TableRecord record) throws IOException;
+    
+    /**
+     * Updates the index for a row that changed.
+     *
+     * @param oldRecord The row before the change, or null if it is new
+     * @param newRecord The row after the change, or null if it was deleted
+     * @throws IOException If an I/O error occurs
+     */
+    void update(TableRecord oldRecord, TableRecord newRecord) throws IOException;
+    
+    /**
+     * Looks up the primary keys of all rows with the given index key.
+     *
+     * @param key The index key
+     * @return The primary keys
+     * @throws IOException If an I/O error occurs
+     */
+    List<String> lookup(String key) throws IOException;
+    
+    String getIndexName();
+    
+    String getColumn();
+    
+    /**
+     * Closes the index and releases resources.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    void close() throws IOException;
+}
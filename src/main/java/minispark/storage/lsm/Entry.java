@@ -0,0 +1,23 @@
+package minispark.storage.lsm;
+
+/**
+ * A key with its serialized value, or a deletion marker (tombstone).
+ *
+ * A delete cannot remove a key from sorted runs that are already on disk,
+ * so it is written as a tombstone that hides older versions of the key
+ * until compaction reaches the last level and drops both.
+ */
+final class Entry {
+    final byte[] key;
+    // null for a tombstone
+    final byte[] value;
+    
+    Entry(byte[] key, byte[] value) {
+        this.key = key;
+        this.value = value;
+    }
+    
+    boolean isTombstone() {
+        return value == null;
+    }
+}
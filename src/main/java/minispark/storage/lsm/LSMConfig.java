@@ -0,0 +1,170 @@
+package minispark.storage.lsm;
+
+import minispark.storage.table.TableSchema;
+
+/**
+ * Configuration for an LSMTree instance.
+ *
+ * Defaults are small enough that the workshop tests see memtable flushes and
+ * compactions after a few thousand records; production-sized trees would use
+ * memtables and levels a few orders of magnitude larger.
+ */
+public class LSMConfig {
+    static final long DEFAULT_MEMTABLE_BYTES = 1024 * 1024;
+    static final int DEFAULT_BLOCK_SIZE = 4096;
+    static final int DEFAULT_BLOOM_FILTER_BITS_PER_KEY = 10;
+    static final int DEFAULT_LEVEL0_COMPACTION_TRIGGER = 4;
+    static final long DEFAULT_LEVEL1_MAX_BYTES = 4L * 1024 * 1024;
+    static final int DEFAULT_LEVEL_SIZE_MULTIPLIER = 10;
+    static final long DEFAULT_TARGET_FILE_BYTES = 1024 * 1024;
+    
+    private final long memtableBytes;
+    private final int blockSize;
+    private final int bloomFilterBitsPerKey;
+    private final int level0CompactionTrigger;
+    private final long level1MaxBytes;
+    private final int levelSizeMultiplier;
+    private final long targetFileBytes;
+    private final boolean syncWrites;
+    private final TableSchema rowSchema;
+    
+    private LSMConfig(Builder builder) {
+        this.memtableBytes = builder.memtableBytes;
+        this.blockSize = builder.blockSize;
+        this.bloomFilterBitsPerKey = builder.bloomFilterBitsPerKey;
+        this.level0CompactionTrigger = builder.level0CompactionTrigger;
+        this.level1MaxBytes = builder.level1MaxBytes;
+        this.levelSizeMultiplier = builder.levelSizeMultiplier;
+        this.targetFileBytes = builder.targetFileBytes;
+        this.syncWrites = builder.syncWrites;
+        this.rowSchema = builder.rowSchema;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static LSMConfig defaults() {
+        return builder().build();
+    }
+    
+    public static class Builder {
+        private long memtableBytes = DEFAULT_MEMTABLE_BYTES;
+        private int blockSize = DEFAULT_BLOCK_SIZE;
+        private int bloomFilterBitsPerKey = DEFAULT_BLOOM_FILTER_BITS_PER_KEY;
+        private int level0CompactionTrigger = DEFAULT_LEVEL0_COMPACTION_TRIGGER;
+        private long level1MaxBytes = DEFAULT_LEVEL1_MAX_BYTES;
+        private int levelSizeMultiplier = DEFAULT_LEVEL_SIZE_MULTIPLIER;
+        private long targetFileBytes = DEFAULT_TARGET_FILE_BYTES;
+        private boolean syncWrites = true;
+        private TableSchema rowSchema = null;
+        
+        /**
+         * Approximate bytes of keys and values the memtable holds before it is
+         * frozen and flushed to a level-0 sorted run.
+         */
+        public Builder memtableBytes(long memtableBytes) {
+            this.memtableBytes = memtableBytes;
+            return this;
+        }
+        
+        /**
+         * Size of the data blocks in a sorted run. The fence index keeps the
+         * first key of every block, so a point read reads one block.
+         */
+        public Builder blockSize(int blockSize) {
+            this.blockSize = blockSize;
+            return this;
+        }
+        
+        /**
+         * Bits per key of each sorted run's Bloom filter; 0 disables the filters.
+         */
+        public Builder bloomFilterBitsPerKey(int bloomFilterBitsPerKey) {
+            this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+            return this;
+        }
+        
+        /**
+         * Number of level-0 runs that triggers their compaction into level 1.
+         * Level-0 runs overlap, so each one costs every point read a probe.
+         */
+        public Builder level0CompactionTrigger(int level0CompactionTrigger) {
+            this.level0CompactionTrigger = level0CompactionTrigger;
+            return this;
+        }
+        
+        /**
+         * Size of level 1 that triggers compaction into level 2. Every deeper
+         * level may hold levelSizeMultiplier times more than the one above.
+         */
+        public Builder level1MaxBytes(long level1MaxBytes) {
+            this.level1MaxBytes = level1MaxBytes;
+            return this;
+        }
+        
+        public Builder levelSizeMultiplier(int levelSizeMultiplier) {
+            this.levelSizeMultiplier = levelSizeMultiplier;
+            return this;
+        }
+        
+        /**
+         * Size at which compaction starts a new output run, so a later
+         * compaction only rewrites the runs that overlap its input.
+         */
+        public Builder targetFileBytes(long targetFileBytes) {
+            this.targetFileBytes = targetFileBytes;
+            return this;
+        }
+        
+        /**
+         * Wait for the write-ahead log to reach the disk before a write
+         * returns. Concurrent writers share one fsync (group commit). Without
+         * it, writes since the last sync can be lost in a crash.
+         */
+        public Builder syncWrites(boolean syncWrites) {
+            this.syncWrites = syncWrites;
+            return this;
+        }
+        
+        /**
+         * Store values in the compact row format of this schema (see ValueSerializer).
+         */
+        public Builder rowSchema(TableSchema rowSchema) {
+            this.rowSchema = rowSchema;
+            return this;
+        }
+        
+        public LSMConfig build() {
+            if (memtableBytes <= 0) {
+                throw new IllegalArgumentException("Memtable size must be positive: " + memtableBytes);
+            }
+            if (blockSize < 64) {
+                throw new IllegalArgumentException("Block size must be at least 64 bytes: " + blockSize);
+            }
+            if (bloomFilterBitsPerKey < 0) {
+                throw new IllegalArgumentException("Bloom filter bits per key cannot be negative: " + bloomFilterBitsPerKey);
+            }
+            if (level0CompactionTrigger < 1) {
+                throw new IllegalArgumentException("Level-0 compaction trigger must be at least 1: " + level0CompactionTrigger);
+            }
+            if (level1MaxBytes <= 0 || targetFileBytes <= 0) {
+                throw new IllegalArgumentException("Level and file sizes must be positive");
+            }
+            if (levelSizeMultiplier < 2) {
+                throw new IllegalArgumentException("Level size multiplier must be at least 2: " + levelSizeMultiplier);
+            }
+            return new LSMConfig(this);
+        }
+    }
+    
+    public long getMemtableBytes() { return memtableBytes; }
+    public int getBlockSize() { return blockSize; }
+    public int getBloomFilterBitsPerKey() { return bloomFilterBitsPerKey; }
+    public int getLevel0CompactionTrigger() { return level0CompactionTrigger; }
+    public long getLevel1MaxBytes() { return level1MaxBytes; }
+    public int getLevelSizeMultiplier() { return levelSizeMultiplier; }
+    public long getTargetFileBytes() { return targetFileBytes; }
+    public boolean isSyncWrites() { return syncWrites; }
+    public TableSchema getRowSchema() { return rowSchema; }
+}
@@ -0,0 +1,927 @@
+package minispark.storage.lsm;
+
+import minispark.storage.Record;
+import minispark.storage.StorageInterface;
+import minispark.storage.btree.ValueSerializer;
+import minispark.storage.wal.WriteAheadLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Log-structured merge tree storage implementation.
+ * Optimized for write-heavy ingest: a write appends to a log and updates a
+ * sorted structure in memory, and the disk only ever sees sequential writes
+ * of whole files. Reads and scans merge the memory and disk parts.
+ *
+ * WRITE PATH
+ * ----------
+ * A write is appended to the write-ahead log of the active memtable and then
+ * applied to the memtable (a concurrent skip list). When the memtable reaches
+ * LSMConfig.memtableBytes it is frozen, a fresh memtable with a new log takes
+ * its place, and a background thread writes the frozen one to a level-0
+ * sorted run (SSTable) and deletes its log. Deletes are writes of tombstones.
+ * Writers are serialized while they append, and wait for the log fsync after
+ * releasing the lock, so concurrent writers share one fsync (group commit).
+ * If the next memtable fills up before the previous flush is done, writers
+ * stall until it is - memory use stays bounded by two memtables.
+ *
+ * READ PATH
+ * ---------
+ * A point read checks the active and the frozen memtable, then the level-0
+ * runs from newest to oldest (they may overlap), then at most one run per
+ * deeper level, since runs within a level never overlap. Each run first
+ * asks its Bloom filter, so runs that do not hold the key cost no disk read;
+ * the fence index then narrows the lookup to a single data block. The first
+ * version found wins; a tombstone means the key was deleted. Scans merge all
+ * sources with a heap (MergingIterator), newest version first.
+ *
+ * LEVELED COMPACTION
+ * ------------------
+ * Too many level-0 runs slow down every read, so once there are
+ * LSMConfig.level0CompactionTrigger of them they are merged together with
+ * the level-1 runs they overlap into new level-1 runs. A deeper level that
+ * grows past its size limit (level1MaxBytes, times levelSizeMultiplier per
+ * level) pushes one run, chosen round-robin through the key space, into the
+ * next level the same way. A run that overlaps nothing below is simply moved
+ * down a level without rewriting it. Tombstones are dropped once no deeper
+ * level can hold an older version of the key.
+ *
+ * FILES AND RECOVERY
+ * ------------------
+ * Everything lives in one directory: NNNNNN.log memtable logs, NNNNNN.sst
+ * sorted runs and a MANIFEST naming the live runs of each level. The
+ * manifest is replaced atomically after every flush and compaction. On open,
+ * runs the manifest does not list (from an interrupted compaction) are
+ * deleted, and any logs left behind by a crash are replayed and flushed to
+ * level-0 runs before the tree accepts writes.
+ *
+ * CONCURRENCY
+ * -----------
+ * The memtables and the run lists of every level form an immutable Version
+ * that is replaced as a whole. A reader takes the current version and uses
+ * it under a shared lock; compaction deletes the runs it replaced under the
+ * exclusive lock, so no reader is still using them. Flushes and compactions
+ * run one at a time on a single background thread.
+ */
+public class LSMTree implements StorageInterface {
+    private final Path directory;
+    private final LSMConfig config;
+    
+    // Serializer/deserializer for values, the same row formats the B+Tree uses
+    private final ValueSerializer valueSerializer;
+    
+    // Serializes writers so the log holds changes in the order the memtable applies them
+    private final ReentrantLock writerLock = new ReentrantLock();
+    
+    // Guards version changes and file numbers; writers wait on it for a flush to finish
+    private final Object stateLock = new Object();
+    private volatile Version version;
+    private long nextFileNumber;
+    
+    // Shared by readers while they use sorted runs; replaced runs are deleted under the write lock
+    private final ReentrantReadWriteLock runsLock = new ReentrantReadWriteLock();
+    
+    // Runs flushes and compactions one at a time
+    private final ExecutorService background;
+    private volatile IOException backgroundFailure;
+    
+    // Key after which each level's next compaction starts; used by the background thread only
+    private final Map<Integer, byte[]> compactionPointers = new HashMap<>();
+    
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong compactionCount = new AtomicLong();
+    private final AtomicLong trivialMoveCount = new AtomicLong();
+    private final AtomicLong writeStallCount = new AtomicLong();
+    private final AtomicLong bloomFilterNegatives = new AtomicLong();
+    private final AtomicLong blockReads = new AtomicLong();
+    
+    private static final byte[] FIRST_KEY = new byte[0];
+    
+    /**
+     * The memtables and the sorted runs of every level, replaced as a whole.
+     */
+    private static final class Version {
+        final Memtable active;
+        // Frozen memtable being flushed, or null
+        final Memtable flushing;
+        // Level 0 newest first, deeper levels in key order
+        final List<List<SSTable>> levels;
+        
+        Version(Memtable active, Memtable flushing, List<List<SSTable>> levels) {
+            this.active = active;
+            this.flushing = flushing;
+            List<List<SSTable>> copy = new ArrayList<>();
+            for (List<SSTable> level : levels) {
+                copy.add(List.copyOf(level));
+            }
+            this.levels = Collections.unmodifiableList(copy);
+        }
+    }
+    
+    /**
+     * Opens (or creates) an LSM tree with a default configuration
+     *
+     * @param directory Directory holding the logs, sorted runs and manifest
+     * @throws IOException If an I/O error occurs
+     */
+    public LSMTree(Path directory) throws IOException {
+        this(directory, LSMConfig.defaults());
+    }
+    
+    /**
+     * Opens (or creates) an LSM tree, recovering writes a crash left in the logs
+     *
+     * @param directory Directory holding the logs, sorted runs and manifest
+     * @param config Memtable size, compaction and filter settings
+     * @throws IOException If an I/O error occurs
+     */
+    public LSMTree(Path directory, LSMConfig config) throws IOException {
+        this.directory = directory;
+        this.config = config;
+        this.valueSerializer = config.getRowSchema() != null
+            ? new ValueSerializer(config.getRowSchema()) : new ValueSerializer();
+        this.background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lsm-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        try {
+            Files.createDirectories(directory);
+            Manifest manifest = Manifest.read(directory);
+            nextFileNumber = Math.max(manifest.nextFileNumber, highestFileNumber() + 1);
+            version = new Version(null, null, openRuns(manifest));
+            deleteOrphanRuns(manifest);
+            recoverLogs();
+            synchronized (stateLock) {
+                version = new Version(newMemtable(), null, version.levels);
+            }
+        } catch (IOException | RuntimeException e) {
+            background.shutdownNow();
+            closeRuns(version);
+            throw new IOException("Failed to open LSM tree in " + directory, e);
+        }
+        
+        System.out.println("🌲 LSMTree opened: " + directory.getFileName() + " " + describeLevels(version.levels));
+        
+        // Catch up on compaction a previous run did not get to
+        background.submit(this::flushAndCompact);
+    }
+    
+    @Override
+    public void write(byte[] key, Map<String, Object> value) throws IOException {
+        apply(List.of(new Entry(key, valueSerializer.serialize(value))));
+    }
+    
+    @Override
+    public void writeBatch(List<Record> records) throws IOException {
+        List<Entry> changes = new ArrayList<>(records.size());
+        for (Record record : records) {
+            changes.add(new Entry(record.getKey(), valueSerializer.serialize(record.getValue())));
+        }
+        // One log fsync for the whole batch
+        apply(changes);
+    }
+    
+    @Override
+    public void delete(byte[] key) throws IOException {
+        apply(List.of(new Entry(key, null)));
+    }
+    
+    /**
+     * Logs and applies changes to the active memtable, then waits for the
+     * log fsync without holding the writer lock (group commit).
+     */
+    private void apply(List<Entry> changes) throws IOException {
+        WriteAheadLog log;
+        long lsn = 0;
+        writerLock.lock();
+        try {
+            Memtable memtable = makeRoomForWrite();
+            for (Entry change : changes) {
+                lsn = memtable.apply(change.key, change.value);
+            }
+            log = memtable.getLog();
+        } finally {
+            writerLock.unlock();
+        }
+        
+        // A log closed by a flush meanwhile was synced by close(), so this returns at once
+        if (config.isSyncWrites() && lsn > 0) {
+            log.sync(lsn);
+        }
+    }
+    
+    /**
+     * Returns the memtable to write to, freezing the active one if it is
+     * full. The caller must hold the writer lock.
+     */
+    private Memtable makeRoomForWrite() throws IOException {
+        synchronized (stateLock) {
+            while (true) {
+                checkBackgroundFailure();
+                Version current = version;
+                if (current.active.sizeBytes() < config.getMemtableBytes()) {
+                    return current.active;
+                }
+                if (current.flushing == null) {
+                    freezeActive();
+                    return version.active;
+                }
+                // Both memtables are full: wait for the flush instead of growing without bound
+                writeStallCount.incrementAndGet();
+                System.out.println("   ⏳ WRITE STALL: waiting for memtable " + current.flushing.getNumber() + " to be flushed");
+                waitForStateChange();
+            }
+        }
+    }
+    
+    /**
+     * Swaps in a fresh memtable and schedules the full one for flushing.
+     * The caller must hold the state lock, and no other memtable may be flushing.
+     */
+    private void freezeActive() throws IOException {
+        Version current = version;
+        Memtable frozen = current.active;
+        version = new Version(newMemtable(), frozen, current.levels);
+        System.out.println("🧊 MEMTABLE FROZEN - " + frozen.size() + " keys, " + frozen.sizeBytes()
+            + " bytes; flushing in the background");
+        background.submit(this::flushAndCompact);
+    }
+    
+    @Override
+    public Optional<Map<String, Object>> read(byte[] key) throws IOException {
+        System.out.println("LSMTree.read() - Reading key: " + new String(key));
+        
+        Entry entry = find(key);
+        if (entry == null || entry.isTombstone()) {
+            System.out.println("   NOT FOUND: Key not found: " + new String(key));
+            System.out.println();
+            return Optional.empty();
+        }
+        
+        System.out.println("   SUCCESS: Found key: " + new String(key));
+        System.out.println();
+        return Optional.of(valueSerializer.deserialize(entry.value));
+    }
+    
+    /**
+     * Finds the newest version of a key: memtables first, then the levels from the top.
+     *
+     * @return The entry (possibly a tombstone), or null if the key was never written
+     */
+    private Entry find(byte[] key) throws IOException {
+        runsLock.readLock().lock();
+        try {
+            Version current = version;
+            Entry entry = current.active.get(key);
+            if (entry == null && current.flushing != null) {
+                entry = current.flushing.get(key);
+            }
+            if (entry != null) {
+                return entry;
+            }
+            
+            for (int level = 0; level < current.levels.size(); level++) {
+                // Level-0 runs overlap, so each one is a candidate; deeper levels have at most one
+                List<SSTable> candidates = level == 0
+                    ? current.levels.get(0)
+                    : runCovering(current.levels.get(level), key);
+                for (SSTable run : candidates) {
+                    if (!run.covers(key)) {
+                        continue;
+                    }
+                    if (!run.mightContain(key)) {
+                        bloomFilterNegatives.incrementAndGet();
+                        continue;
+                    }
+                    Entry found = run.get(key);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+            }
+            return null;
+        } finally {
+            runsLock.readLock().unlock();
+        }
+    }
+    
+    // The run of a non-overlapping level whose key range may hold the key, as a list of zero or one
+    private static List<SSTable> runCovering(List<SSTable> runs, byte[] key) {
+        int low = 0;
+        int high = runs.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Arrays.compare(runs.get(mid).largestKey(), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low < runs.size() ? List.of(runs.get(low)) : List.of();
+    }
+    
+    @Override
+    public List<Record> scan(byte[] startKey, byte[] endKey, List<String> columns) throws IOException {
+        System.out.println("LSMTree.scan() - Scanning from '" + new String(startKey) + "' to '" +
+                          (endKey != null ? new String(endKey) : "END") + "'");
+        
+        List<Record> results = new ArrayList<>();
+        if (endKey != null && Arrays.compare(startKey, endKey) >= 0) {
+            return results;
+        }
+        runsLock.readLock().lock();
+        try {
+            Version current = version;
+            List<Iterator<Entry>> sources = new ArrayList<>();
+            sources.add(current.active.iterator(startKey, endKey));
+            if (current.flushing != null) {
+                sources.add(current.flushing.iterator(startKey, endKey));
+            }
+            for (List<SSTable> level : current.levels) {
+                for (SSTable run : level) {
+                    if (run.overlaps(startKey, endKey)) {
+                        sources.add(run.iterator(startKey, endKey));
+                    }
+                }
+            }
+            
+            Iterator<Entry> merged = MergingIterator.live(sources);
+            while (merged.hasNext()) {
+                Entry entry = merged.next();
+                results.add(new Record(entry.key, valueSerializer.deserialize(entry.value, columns)));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            runsLock.readLock().unlock();
+        }
+        
+        System.out.println("   SUCCESS: Scan merged " + results.size() + " records");
+        System.out.println();
+        return results;
+    }
+    
+    /**
+     * Writes the active memtable to a level-0 run and waits until that flush,
+     * and any compaction it triggers, is done.
+     *
+     * @throws IOException If an I/O error occurs in the flush or a compaction
+     */
+    public void flush() throws IOException {
+        writerLock.lock();
+        try {
+            synchronized (stateLock) {
+                while (version.flushing != null) {
+                    checkBackgroundFailure();
+                    waitForStateChange();
+                }
+                if (!version.active.isEmpty()) {
+                    freezeActive();
+                }
+            }
+        } finally {
+            writerLock.unlock();
+        }
+        awaitBackgroundWork();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        writerLock.lock();
+        try {
+            try {
+                flush();
+            } finally {
+                background.shutdown();
+                try {
+                    background.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Version current = version;
+                if (current.active.isEmpty()) {
+                    current.active.discardLog();
+                } else {
+                    // Only after a failed flush; the log is replayed on the next open
+                    current.active.getLog().close();
+                }
+                runsLock.writeLock().lock();
+                try {
+                    closeRuns(current);
+                } finally {
+                    runsLock.writeLock().unlock();
+                }
+            }
+            System.out.println("🌲 LSMTree closed: " + describeLevels(version.levels) + ", " + flushCount.get()
+                + " flushes, " + compactionCount.get() + " compactions");
+        } finally {
+            writerLock.unlock();
+        }
+    }
+    
+    // ========================================
+    // BACKGROUND FLUSH AND COMPACTION
+    // ========================================
+    
+    /**
+     * Background task: flushes the frozen memtable, if any, then compacts
+     * until no level is over its limit. A failure stops all further writes.
+     */
+    private void flushAndCompact() {
+        try {
+            flushFrozen();
+            compactWhileNeeded();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("❌ LSM background work failed: " + e.getMessage());
+            backgroundFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+        } finally {
+            synchronized (stateLock) {
+                stateLock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Writes the frozen memtable to a new level-0 run, publishes it and
+     * deletes the memtable's log.
+     */
+    private void flushFrozen() throws IOException {
+        Memtable frozen = version.flushing;
+        if (frozen == null) {
+            return;
+        }
+        
+        SSTable run = frozen.isEmpty() ? null : writeRun(frozen.iterator(FIRST_KEY, null));
+        synchronized (stateLock) {
+            List<List<SSTable>> levels = mutableLevels(version.levels);
+            if (run != null) {
+                levels.get(0).add(0, run);
+            }
+            installVersion(new Version(version.active, null, levels));
+        }
+        // The run is in the manifest, so the log is no longer needed for recovery
+        frozen.discardLog();
+        
+        flushCount.incrementAndGet();
+        if (run != null) {
+            System.out.println("💧 FLUSH - memtable " + frozen.getNumber() + " written to level-0 run "
+                + run.getPath().getFileName() + " (" + run.getEntryCount() + " entries, " + run.getFileSize() + " bytes)");
+        }
+    }
+    
+    private void compactWhileNeeded() throws IOException {
+        while (true) {
+            List<List<SSTable>> levels = version.levels;
+            int level = pickCompactionLevel(levels);
+            if (level < 0) {
+                return;
+            }
+            compact(levels, level);
+        }
+    }
+    
+    /**
+     * Picks the level that most needs compacting: level 0 when it has too
+     * many runs, otherwise the first level over its size limit.
+     *
+     * @return The level to compact, or -1 if none needs it
+     */
+    private int pickCompactionLevel(List<List<SSTable>> levels) {
+        if (levels.get(0).size() >= config.getLevel0CompactionTrigger()) {
+            return 0;
+        }
+        long maxBytes = config.getLevel1MaxBytes();
+        for (int level = 1; level < levels.size(); level++) {
+            if (levelBytes(levels.get(level)) > maxBytes) {
+                return level;
+            }
+            maxBytes *= config.getLevelSizeMultiplier();
+        }
+        return -1;
+    }
+    
+    /**
+     * Merges runs of one level with the runs they overlap in the next level.
+     */
+    private void compact(List<List<SSTable>> levels, int level) throws IOException {
+        List<SSTable> inputs = level == 0 ? levels.get(0) : List.of(pickRun(levels.get(level), level));
+        byte[] smallest = inputs.get(0).smallestKey();
+        byte[] largest = inputs.get(0).largestKey();
+        for (SSTable run : inputs) {
+            smallest = Arrays.compare(run.smallestKey(), smallest) < 0 ? run.smallestKey() : smallest;
+            largest = Arrays.compare(run.largestKey(), largest) > 0 ? run.largestKey() : largest;
+        }
+        
+        List<SSTable> overlapping = new ArrayList<>();
+        if (level + 1 < levels.size()) {
+            for (SSTable run : levels.get(level + 1)) {
+                if (run.overlaps(smallest, largest)) {
+                    overlapping.add(run);
+                }
+            }
+        }
+        
+        List<SSTable> outputs;
+        if (inputs.size() == 1 && overlapping.isEmpty()) {
+            // Nothing to merge with: move the run down without rewriting it
+            outputs = inputs;
+            trivialMoveCount.incrementAndGet();
+            System.out.println("🧹 COMPACTION - moved " + inputs.get(0).getPath().getFileName()
+                + " from level " + level + " to level " + (level + 1));
+        } else {
+            // Inputs are newer than the level below; level-0 inputs are already newest first
+            List<Iterator<Entry>> sources = new ArrayList<>();
+            for (SSTable run : inputs) {
+                sources.add(run.iterator(FIRST_KEY, null));
+            }
+            for (SSTable run : overlapping) {
+                sources.add(run.iterator(FIRST_KEY, null));
+            }
+            boolean dropTombstones = !deeperLevelsOverlap(levels, level + 1, smallest, largest);
+            try {
+                outputs = writeRuns(new MergingIterator(sources), dropTombstones);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            
+            compactionCount.incrementAndGet();
+            System.out.println("🧹 COMPACTION - merged " + inputs.size() + " level-" + level + " and "
+                + overlapping.size() + " level-" + (level + 1) + " runs into " + outputs.size()
+                + " level-" + (level + 1) + " runs" + (dropTombstones ? ", tombstones dropped" : ""));
+        }
+        
+        synchronized (stateLock) {
+            List<List<SSTable>> next = mutableLevels(version.levels);
+            while (next.size() <= level + 1) {
+                next.add(new ArrayList<>());
+            }
+            next.get(level).removeAll(inputs);
+            next.get(level + 1).removeAll(overlapping);
+            next.get(level + 1).addAll(outputs);
+            next.get(level + 1).sort((a, b) -> Arrays.compare(a.smallestKey(), b.smallestKey()));
+            installVersion(new Version(version.active, version.flushing, next));
+        }
+        compactionPointers.put(level, largest);
+        
+        List<SSTable> replaced = new ArrayList<>(inputs);
+        replaced.addAll(overlapping);
+        replaced.removeAll(outputs);
+        deleteRuns(replaced);
+    }
+    
+    /**
+     * Picks the run of a level that comes after the previous compaction's
+     * key range, wrapping around, so compaction cycles through the key space.
+     */
+    private SSTable pickRun(List<SSTable> runs, int level) {
+        byte[] pointer = compactionPointers.get(level);
+        if (pointer != null) {
+            for (SSTable run : runs) {
+                if (Arrays.compare(run.smallestKey(), pointer) > 0) {
+                    return run;
+                }
+            }
+        }
+        return runs.get(0);
+    }
+    
+    private static boolean deeperLevelsOverlap(List<List<SSTable>> levels, int level, byte[] smallest, byte[] largest) {
+        for (int deeper = level + 1; deeper < levels.size(); deeper++) {
+            for (SSTable run : levels.get(deeper)) {
+                if (run.overlaps(smallest, largest)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Writes merged entries to one sorted run.
+     */
+    private SSTable writeRun(Iterator<Entry> entries) throws IOException {
+        SSTableWriter writer = newRunWriter();
+        try {
+            while (entries.hasNext()) {
+                writer.add(entries.next());
+            }
+            return writer.finish(blockReads);
+        } catch (IOException | RuntimeException e) {
+            writer.abandon();
+            throw e;
+        }
+    }
+    
+    /**
+     * Writes merged entries to as many runs as LSMConfig.targetFileBytes
+     * calls for. Runs are not published here; on failure they are deleted.
+     */
+    private List<SSTable> writeRuns(Iterator<Entry> entries, boolean dropTombstones) throws IOException {
+        List<SSTable> outputs = new ArrayList<>();
+        SSTableWriter writer = null;
+        try {
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (dropTombstones && entry.isTombstone()) {
+                    continue;
+                }
+                if (writer == null) {
+                    writer = newRunWriter();
+                }
+                writer.add(entry);
+                if (writer.sizeBytes() >= config.getTargetFileBytes()) {
+                    SSTableWriter finished = writer;
+                    writer = null;
+                    outputs.add(finished.finish(blockReads));
+                }
+            }
+            if (writer != null) {
+                SSTableWriter finished = writer;
+                writer = null;
+                outputs.add(finished.finish(blockReads));
+            }
+            return outputs;
+        } catch (IOException | RuntimeException e) {
+            if (writer != null) {
+                writer.abandon();
+            }
+            deleteRuns(outputs);
+            throw e;
+        }
+    }
+    
+    private SSTableWriter newRunWriter() throws IOException {
+        long number = allocateFileNumber();
+        return new SSTableWriter(runPath(number), number, config.getBlockSize(), config.getBloomFilterBitsPerKey());
+    }
+    
+    /**
+     * Persists a new version in the manifest, then publishes it to readers.
+     * The caller must hold the state lock.
+     */
+    private void installVersion(Version next) throws IOException {
+        List<List<Long>> numbers = new ArrayList<>();
+        for (List<SSTable> level : next.levels) {
+            List<Long> levelNumbers = new ArrayList<>();
+            for (SSTable run : level) {
+                levelNumbers.add(run.getNumber());
+            }
+            numbers.add(levelNumbers);
+        }
+        new Manifest(nextFileNumber, numbers).write(directory);
+        version = next;
+        stateLock.notifyAll();
+    }
+    
+    /**
+     * Deletes runs no longer in the current version, once no reader can be using them.
+     */
+    private void deleteRuns(List<SSTable> runs) throws IOException {
+        runsLock.writeLock().lock();
+        try {
+            for (SSTable run : runs) {
+                run.delete();
+            }
+        } finally {
+            runsLock.writeLock().unlock();
+        }
+    }
+    
+    // ========================================
+    // OPEN AND RECOVERY
+    // ========================================
+    
+    private List<List<SSTable>> openRuns(Manifest manifest) throws IOException {
+        List<List<SSTable>> levels = new ArrayList<>();
+        levels.add(new ArrayList<>());
+        for (int level = 0; level < manifest.levels.size(); level++) {
+            if (level > 0) {
+                levels.add(new ArrayList<>());
+            }
+            for (long number : manifest.levels.get(level)) {
+                levels.get(level).add(SSTable.open(runPath(number), number, blockReads));
+            }
+        }
+        return levels;
+    }
+    
+    /**
+     * Deletes sorted runs the manifest does not list: outputs of a flush or
+     * compaction that was interrupted before it was published.
+     */
+    private void deleteOrphanRuns(Manifest manifest) throws IOException {
+        Set<Long> live = new HashSet<>();
+        manifest.levels.forEach(live::addAll);
+        for (Path path : listFiles(".sst")) {
+            if (!live.contains(fileNumber(path))) {
+                System.out.println("   🗑️  Deleting unpublished sorted run " + path.getFileName());
+                Files.delete(path);
+            }
+        }
+    }
+    
+    /**
+     * Replays the logs left behind by a crash, oldest first, and flushes each
+     * one to a level-0 run before deleting it.
+     */
+    private void recoverLogs() throws IOException {
+        List<Path> logs = listFiles(".log");
+        logs.sort(Comparator.comparingLong(LSMTree::fileNumber));
+        for (Path path : logs) {
+            Memtable recovered;
+            try (WriteAheadLog log = new WriteAheadLog(path)) {
+                recovered = Memtable.replay(fileNumber(path), log);
+            }
+            System.out.println("   🔁 Recovered " + recovered.size() + " keys from " + path.getFileName());
+            if (!recovered.isEmpty()) {
+                SSTable run = writeRun(recovered.iterator(FIRST_KEY, null));
+                synchronized (stateLock) {
+                    List<List<SSTable>> levels = mutableLevels(version.levels);
+                    levels.get(0).add(0, run);
+                    installVersion(new Version(null, null, levels));
+                }
+            }
+            Files.delete(path);
+        }
+    }
+    
+    private Memtable newMemtable() throws IOException {
+        long number = allocateFileNumber();
+        return new Memtable(number, new WriteAheadLog(directory.resolve(String.format("%06d.log", number))));
+    }
+    
+    private long allocateFileNumber() {
+        synchronized (stateLock) {
+            return nextFileNumber++;
+        }
+    }
+    
+    private Path runPath(long number) {
+        return directory.resolve(String.format("%06d.sst", number));
+    }
+    
+    private long highestFileNumber() throws IOException {
+        long highest = 0;
+        for (Path path : listFiles(".sst")) {
+            highest = Math.max(highest, fileNumber(path));
+        }
+        for (Path path : listFiles(".log")) {
+            highest = Math.max(highest, fileNumber(path));
+        }
+        return highest;
+    }
+    
+    private List<Path> listFiles(String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path path : stream) {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+    
+    private static long fileNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+    
+    // ========================================
+    // HELPERS
+    // ========================================
+    
+    private static List<List<SSTable>> mutableLevels(List<List<SSTable>> levels) {
+        List<List<SSTable>> copy = new ArrayList<>();
+        for (List<SSTable> level : levels) {
+            copy.add(new ArrayList<>(level));
+        }
+        return copy;
+    }
+    
+    private static long levelBytes(List<SSTable> runs) {
+        long bytes = 0;
+        for (SSTable run : runs) {
+            bytes += run.getFileSize();
+        }
+        return bytes;
+    }
+    
+    private static String describeLevels(List<List<SSTable>> levels) {
+        StringBuilder description = new StringBuilder("[");
+        for (int level = 0; level < levels.size(); level++) {
+            description.append(level == 0 ? "" : ", ").append("L").append(level).append(": ")
+                .append(levels.get(level).size()).append(" runs");
+        }
+        return description.append("]").toString();
+    }
+    
+    private void awaitBackgroundWork() throws IOException {
+        try {
+            // The executor runs tasks in order, so this returns after everything queued before it
+            background.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for background flush", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Background task failed", e.getCause());
+        }
+        checkBackgroundFailure();
+    }
+    
+    private void waitForStateChange() throws IOException {
+        try {
+            stateLock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a memtable flush", e);
+        }
+    }
+    
+    private void checkBackgroundFailure() throws IOException {
+        if (backgroundFailure != null) {
+            throw new IOException("LSM tree is unusable after a failed flush or compaction", backgroundFailure);
+        }
+    }
+    
+    private static void closeRuns(Version version) throws IOException {
+        if (version == null) {
+            return;
+        }
+        for (List<SSTable> level : version.levels) {
+            for (SSTable run : level) {
+                run.close();
+            }
+        }
+    }
+    
+    // ========================================
+    // STATISTICS
+    // ========================================
+    
+    /**
+     * Gets the number of sorted runs in each level, level 0 first.
+     */
+    public List<Integer> getRunCounts() {
+        List<Integer> counts = new ArrayList<>();
+        for (List<SSTable> level : version.levels) {
+            counts.add(level.size());
+        }
+        return counts;
+    }
+    
+    /**
+     * Gets the number of memtables flushed to level-0 runs.
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+    
+    /**
+     * Gets the number of compactions that merged and rewrote runs.
+     */
+    public long getCompactionCount() {
+        return compactionCount.get();
+    }
+    
+    /**
+     * Gets the number of runs moved to the next level without being rewritten.
+     */
+    public long getTrivialMoveCount() {
+        return trivialMoveCount.get();
+    }
+    
+    /**
+     * Gets the number of times a writer waited for a flush because both memtables were full.
+     */
+    public long getWriteStallCount() {
+        return writeStallCount.get();
+    }
+    
+    /**
+     * Gets the number of sorted runs a point read skipped because their Bloom filter ruled the key out.
+     */
+    public long getBloomFilterNegativeCount() {
+        return bloomFilterNegatives.get();
+    }
+    
+    /**
+     * Gets the number of data blocks read from sorted runs, by reads, scans and compactions.
+     */
+    public long getBlockReadsCount() {
+        return blockReads.get();
+    }
+}
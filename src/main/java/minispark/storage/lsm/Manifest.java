@@ -0,0 +1,94 @@
+package minispark.storage.lsm;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The persistent list of live sorted runs, per level.
+ *
+ * A flush or compaction only becomes visible after a crash once the
+ * manifest names its output; until then the new files are orphans, which
+ * the next open deletes. The manifest is rewritten as a whole and swapped in
+ * with an atomic rename, so it always describes one complete version of the
+ * tree. It is a small text file:
+ *
+ *   next-file 42
+ *   level 0 41 39
+ *   level 1 12 17 23
+ *
+ * Level 0 lists runs newest first; deeper levels list them in key order.
+ */
+final class Manifest {
+    static final String FILE_NAME = "MANIFEST";
+    
+    final long nextFileNumber;
+    final List<List<Long>> levels;
+    
+    Manifest(long nextFileNumber, List<List<Long>> levels) {
+        this.nextFileNumber = nextFileNumber;
+        this.levels = levels;
+    }
+    
+    /**
+     * Reads the manifest of a tree directory.
+     *
+     * @return The manifest, or an empty one for a new tree
+     */
+    static Manifest read(Path directory) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(directory.resolve(FILE_NAME), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return new Manifest(1, new ArrayList<>());
+        }
+        
+        long nextFileNumber = 1;
+        List<List<Long>> levels = new ArrayList<>();
+        for (String line : lines) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].equals("next-file")) {
+                nextFileNumber = Long.parseLong(fields[1]);
+            } else if (fields[0].equals("level")) {
+                int level = Integer.parseInt(fields[1]);
+                while (levels.size() <= level) {
+                    levels.add(new ArrayList<>());
+                }
+                for (int i = 2; i < fields.length; i++) {
+                    levels.get(level).add(Long.parseLong(fields[i]));
+                }
+            } else if (!fields[0].isEmpty()) {
+                throw new IOException("Corrupt LSM manifest line: " + line);
+            }
+        }
+        return new Manifest(nextFileNumber, levels);
+    }
+    
+    /**
+     * Replaces the manifest of a tree directory.
+     */
+    void write(Path directory) throws IOException {
+        StringBuilder text = new StringBuilder("next-file ").append(nextFileNumber).append('\n');
+        for (int level = 0; level < levels.size(); level++) {
+            text.append("level ").append(level);
+            for (long number : levels.get(level)) {
+                text.append(' ').append(number);
+            }
+            text.append('\n');
+        }
+        
+        Path temp = directory.resolve(FILE_NAME + ".tmp");
+        Files.writeString(temp, text, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
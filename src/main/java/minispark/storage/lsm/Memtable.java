@@ -0,0 +1,168 @@
+package minispark.storage.lsm;
+
+import minispark.storage.wal.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The in-memory, mutable part of an LSMTree.
+ *
+ * Writes go to a sorted concurrent skip list, so readers never block and a
+ * flush can stream the entries to disk in key order. Every change is first
+ * appended to this memtable's own write-ahead log; once the memtable has
+ * been flushed to a sorted run, the log is no longer needed and is deleted.
+ */
+final class Memtable {
+    // Stands for a tombstone in the map, which cannot hold null values; compared by identity
+    private static final byte[] TOMBSTONE = new byte[0];
+    
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    
+    private final long number;
+    private final WriteAheadLog log;
+    private final ConcurrentSkipListMap<byte[], byte[]> entries = new ConcurrentSkipListMap<>(Arrays::compare);
+    private final AtomicLong sizeBytes = new AtomicLong();
+    
+    /**
+     * Creates an empty memtable.
+     *
+     * @param number File number of its log, which orders memtables by age
+     * @param log The log its writes are appended to, or null while replaying a log
+     */
+    Memtable(long number, WriteAheadLog log) {
+        this.number = number;
+        this.log = log;
+    }
+    
+    long getNumber() {
+        return number;
+    }
+    
+    WriteAheadLog getLog() {
+        return log;
+    }
+    
+    /**
+     * Logs and applies a write. The caller serializes writers, so log order
+     * matches the order changes are applied in.
+     *
+     * @param value The serialized value, or null to delete the key
+     * @return The log LSN to sync for durability
+     */
+    long apply(byte[] key, byte[] value) throws IOException {
+        // The caller may reuse its array
+        key = key.clone();
+        long lsn = log.append(encode(key, value));
+        put(key, value);
+        return lsn;
+    }
+    
+    private void put(byte[] key, byte[] value) {
+        byte[] previous = entries.put(key, value == null ? TOMBSTONE : value);
+        long delta = 2 * Integer.BYTES + key.length + (value == null ? 0 : value.length);
+        if (previous != null) {
+            delta -= 2 * Integer.BYTES + key.length + previous.length;
+        }
+        sizeBytes.addAndGet(delta);
+    }
+    
+    /**
+     * Looks a key up.
+     *
+     * @return The entry (possibly a tombstone), or null if this memtable has never seen the key
+     */
+    Entry get(byte[] key) {
+        byte[] value = entries.get(key);
+        return value == null ? null : new Entry(key, value == TOMBSTONE ? null : value);
+    }
+    
+    /**
+     * Iterates over the entries of a key range, tombstones included.
+     *
+     * @param startKey First key (inclusive)
+     * @param endKey End of the range (exclusive), or null for open-ended
+     */
+    Iterator<Entry> iterator(byte[] startKey, byte[] endKey) {
+        NavigableMap<byte[], byte[]> range = endKey == null
+            ? entries.tailMap(startKey, true)
+            : entries.subMap(startKey, true, endKey, false);
+        Iterator<Map.Entry<byte[], byte[]>> source = range.entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+            
+            @Override
+            public Entry next() {
+                Map.Entry<byte[], byte[]> next = source.next();
+                byte[] value = next.getValue();
+                return new Entry(next.getKey(), value == TOMBSTONE ? null : value);
+            }
+        };
+    }
+    
+    long sizeBytes() {
+        return sizeBytes.get();
+    }
+    
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+    
+    int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Closes and deletes the log, once the entries are safe in a sorted run.
+     */
+    void discardLog() throws IOException {
+        if (log != null) {
+            log.close();
+            Files.deleteIfExists(log.getLogPath());
+        }
+    }
+    
+    /**
+     * Rebuilds a memtable from the records of a log left behind by a crash.
+     */
+    static Memtable replay(long number, WriteAheadLog log) throws IOException {
+        Memtable memtable = new Memtable(number, null);
+        for (byte[] record : log.readRecords()) {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            byte op = buffer.get();
+            byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            if (op == OP_PUT) {
+                byte[] value = new byte[buffer.getInt()];
+                buffer.get(value);
+                memtable.put(key, value);
+            } else {
+                memtable.put(key, null);
+            }
+        }
+        return memtable;
+    }
+    
+    // |op byte|key length int|key|value length int|value| (no value for a delete)
+    private static byte[] encode(byte[] key, byte[] value) {
+        int size = 1 + Integer.BYTES + key.length + (value == null ? 0 : Integer.BYTES + value.length);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(value == null ? OP_DELETE : OP_PUT);
+        buffer.putInt(key.length).put(key);
+        if (value != null) {
+            buffer.putInt(value.length).put(value);
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,115 @@
+package minispark.storage.lsm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges sorted entry iterators into one, keeping only the newest version
+ * of each key.
+ *
+ * Sources are given newest first (memtables, then level 0 from the newest
+ * run, then the deeper levels). A heap holds the current head of every
+ * source, ordered by key and then by source age, so when several sources
+ * hold the same key the newest one is returned and the others are skipped.
+ * Tombstones are returned like any other entry; the caller decides whether
+ * to hide them (reads) or keep them (compactions that are not the last level).
+ */
+final class MergingIterator implements Iterator<Entry> {
+    private final PriorityQueue<Head> heads = new PriorityQueue<>();
+    
+    private static final class Head implements Comparable<Head> {
+        final int age;
+        final Iterator<Entry> source;
+        Entry entry;
+        
+        Head(int age, Iterator<Entry> source) {
+            this.age = age;
+            this.source = source;
+            this.entry = source.next();
+        }
+        
+        @Override
+        public int compareTo(Head other) {
+            int comparison = Arrays.compare(entry.key, other.entry.key);
+            return comparison != 0 ? comparison : Integer.compare(age, other.age);
+        }
+    }
+    
+    /**
+     * @param sources Sorted iterators, newest first
+     */
+    MergingIterator(List<Iterator<Entry>> sources) {
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i).hasNext()) {
+                heads.add(new Head(i, sources.get(i)));
+            }
+        }
+    }
+    
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+    
+    @Override
+    public Entry next() {
+        if (heads.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        Head newest = heads.poll();
+        Entry entry = newest.entry;
+        advance(newest);
+        
+        // Older versions of the same key are shadowed
+        while (!heads.isEmpty() && Arrays.equals(heads.peek().entry.key, entry.key)) {
+            advance(heads.poll());
+        }
+        return entry;
+    }
+    
+    private void advance(Head head) {
+        if (head.source.hasNext()) {
+            head.entry = head.source.next();
+            heads.add(head);
+        }
+    }
+    
+    /**
+     * Wraps the merge so tombstones are skipped, for reads.
+     */
+    static Iterator<Entry> live(List<Iterator<Entry>> sources) {
+        MergingIterator merged = new MergingIterator(new ArrayList<>(sources));
+        return new Iterator<>() {
+            private Entry next = advance();
+            
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+            
+            @Override
+            public Entry next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Entry entry = next;
+                next = advance();
+                return entry;
+            }
+            
+            private Entry advance() {
+                while (merged.hasNext()) {
+                    Entry entry = merged.next();
+                    if (!entry.isTombstone()) {
+                        return entry;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,310 @@
+package minispark.storage.lsm;
+
+import minispark.storage.btree.BloomFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable sorted run on disk, written by SSTableWriter.
+ *
+ * Opening a run reads its fence index and Bloom filter into memory; data
+ * blocks stay on disk. A point read checks the filter, binary searches the
+ * fence keys for the one block that can hold the key and reads only that
+ * block. A range read walks the blocks from the first one that can hold the
+ * start key. Runs are never modified; compaction writes new ones and deletes
+ * the old files.
+ */
+final class SSTable implements Closeable {
+    static final int MAGIC = 0x4C534D54; // "LSMT"
+    static final int FOOTER_SIZE = 4 * Long.BYTES + Integer.BYTES;
+    
+    private final Path path;
+    private final long number;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long entryCount;
+    
+    // First key, offset and length of every data block
+    private final byte[][] fenceKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final byte[] largestKey;
+    
+    // null when the run was written without a filter
+    private final BloomFilter filter;
+    
+    private final AtomicLong blockReads;
+    
+    private SSTable(Path path, long number, FileChannel channel, long fileSize, long entryCount,
+                    byte[][] fenceKeys, long[] blockOffsets, int[] blockLengths, byte[] largestKey,
+                    BloomFilter filter, AtomicLong blockReads) {
+        this.path = path;
+        this.number = number;
+        this.channel = channel;
+        this.fileSize = fileSize;
+        this.entryCount = entryCount;
+        this.fenceKeys = fenceKeys;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.largestKey = largestKey;
+        this.filter = filter;
+        this.blockReads = blockReads;
+    }
+    
+    /**
+     * Opens a finished run.
+     *
+     * @param blockReads Counter to add every data block read to
+     * @throws IOException If the file is not a complete sorted run
+     */
+    static SSTable open(Path path, long number, AtomicLong blockReads) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < FOOTER_SIZE) {
+                throw new IOException("Sorted run " + path.getFileName() + " is truncated");
+            }
+            ByteBuffer footer = read(channel, fileSize - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            long filterOffset = footer.getLong();
+            long filterEnd = footer.getLong();
+            long entryCount = footer.getLong();
+            if (footer.getInt() != MAGIC || indexOffset > filterOffset || filterOffset > filterEnd
+                    || filterEnd != fileSize - FOOTER_SIZE) {
+                throw new IOException("Sorted run " + path.getFileName() + " has a corrupt footer");
+            }
+            
+            DataInputStream index = new DataInputStream(new ByteArrayInputStream(
+                read(channel, indexOffset, (int) (filterOffset - indexOffset)).array()));
+            int blocks = index.readInt();
+            byte[][] fenceKeys = new byte[blocks][];
+            long[] blockOffsets = new long[blocks];
+            int[] blockLengths = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                fenceKeys[i] = new byte[index.readInt()];
+                index.readFully(fenceKeys[i]);
+                blockOffsets[i] = index.readLong();
+                blockLengths[i] = index.readInt();
+            }
+            byte[] largestKey = new byte[index.readInt()];
+            index.readFully(largestKey);
+            
+            BloomFilter filter = null;
+            if (filterEnd > filterOffset) {
+                filter = BloomFilter.readFrom(new ByteArrayInputStream(
+                    read(channel, filterOffset, (int) (filterEnd - filterOffset)).array()));
+            }
+            return new SSTable(path, number, channel, fileSize, entryCount,
+                fenceKeys, blockOffsets, blockLengths, largestKey, filter, blockReads);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    long getNumber() {
+        return number;
+    }
+    
+    Path getPath() {
+        return path;
+    }
+    
+    long getFileSize() {
+        return fileSize;
+    }
+    
+    long getEntryCount() {
+        return entryCount;
+    }
+    
+    boolean isEmpty() {
+        return fenceKeys.length == 0;
+    }
+    
+    byte[] smallestKey() {
+        return fenceKeys[0];
+    }
+    
+    byte[] largestKey() {
+        return largestKey;
+    }
+    
+    /**
+     * Checks whether the run's key range can hold the key.
+     */
+    boolean covers(byte[] key) {
+        return !isEmpty() && Arrays.compare(key, smallestKey()) >= 0 && Arrays.compare(key, largestKey) <= 0;
+    }
+    
+    /**
+     * Checks whether the run's key range overlaps [startKey, endKey], both
+     * inclusive; a null endKey is open-ended.
+     */
+    boolean overlaps(byte[] startKey, byte[] endKey) {
+        return !isEmpty() && Arrays.compare(largestKey, startKey) >= 0
+            && (endKey == null || Arrays.compare(smallestKey(), endKey) <= 0);
+    }
+    
+    /**
+     * Asks the Bloom filter whether the run may hold the key.
+     *
+     * @return false if the key is definitely not in the run
+     */
+    boolean mightContain(byte[] key) {
+        return filter == null || filter.mightContain(key);
+    }
+    
+    /**
+     * Looks a key up, reading at most one data block.
+     *
+     * @return The entry (possibly a tombstone), or null if the key is not in the run
+     */
+    Entry get(byte[] key) throws IOException {
+        int block = blockFor(key);
+        if (block < 0) {
+            return null;
+        }
+        ByteBuffer data = readBlock(block);
+        while (data.hasRemaining()) {
+            Entry entry = decode(data);
+            int comparison = Arrays.compare(entry.key, key);
+            if (comparison == 0) {
+                return entry;
+            }
+            if (comparison > 0) {
+                break;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Iterates over the entries of a key range, tombstones included, reading
+     * one block at a time.
+     *
+     * @param startKey First key (inclusive)
+     * @param endKey End of the range (exclusive), or null for open-ended
+     */
+    Iterator<Entry> iterator(byte[] startKey, byte[] endKey) {
+        return new Iterator<>() {
+            private int nextBlock = Math.max(0, blockFor(startKey));
+            private ByteBuffer block;
+            private Entry next = advance();
+            
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+            
+            @Override
+            public Entry next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Entry entry = next;
+                next = advance();
+                return entry;
+            }
+            
+            private Entry advance() {
+                try {
+                    while (true) {
+                        while (block == null || !block.hasRemaining()) {
+                            if (nextBlock >= fenceKeys.length) {
+                                return null;
+                            }
+                            block = readBlock(nextBlock++);
+                        }
+                        Entry entry = decode(block);
+                        if (Arrays.compare(entry.key, startKey) < 0) {
+                            continue;
+                        }
+                        if (endKey != null && Arrays.compare(entry.key, endKey) >= 0) {
+                            nextBlock = fenceKeys.length;
+                            block = null;
+                            return null;
+                        }
+                        return entry;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read sorted run " + path.getFileName(), e);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * Closes and deletes the file, once no version of the tree refers to it.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+    
+    // Index of the last block whose first key is <= key, or -1 if the key sorts before the run
+    private int blockFor(byte[] key) {
+        int low = 0;
+        int high = fenceKeys.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Arrays.compare(fenceKeys[mid], key) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+    
+    private ByteBuffer readBlock(int block) throws IOException {
+        blockReads.incrementAndGet();
+        return read(channel, blockOffsets[block], blockLengths[block]);
+    }
+    
+    private static Entry decode(ByteBuffer block) {
+        byte[] key = new byte[block.getInt()];
+        int valueLength = block.getInt();
+        block.get(key);
+        byte[] value = null;
+        if (valueLength >= 0) {
+            value = new byte[valueLength];
+            block.get(value);
+        }
+        return new Entry(key, value);
+    }
+    
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of sorted run");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
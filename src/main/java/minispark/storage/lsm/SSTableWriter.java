@@ -0,0 +1,185 @@
+package minispark.storage.lsm;
+
+import minispark.storage.btree.BloomFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes one sorted run (SSTable) from entries added in ascending key order.
+ *
+ * File layout:
+ * |data block|data block|...|fence index|Bloom filter|footer|
+ *
+ * A data block holds entries back to back, each
+ * |key length int|value length int (-1 for a tombstone)|key|value|,
+ * and is closed once it reaches the block size. The fence index lists the
+ * first key, file offset and length of every block, followed by the last key
+ * of the run. The fixed-size footer points at the index and the filter. The
+ * file is written sequentially and forced once, when it is finished.
+ */
+final class SSTableWriter {
+    private final Path path;
+    private final long number;
+    private final int blockSize;
+    private final int bloomFilterBitsPerKey;
+    private final FileChannel channel;
+    
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+    private final DataOutputStream blockOut = new DataOutputStream(block);
+    private byte[] blockFirstKey;
+    
+    private final List<byte[]> fenceKeys = new ArrayList<>();
+    private final List<long[]> fences = new ArrayList<>();
+    private long[] keyHashes = new long[1024];
+    private long entryCount;
+    private byte[] lastKey;
+    private long position;
+    
+    /**
+     * Creates the file for a new sorted run.
+     *
+     * @param path The file to create
+     * @param number The run's file number
+     * @param blockSize Size at which a data block is closed
+     * @param bloomFilterBitsPerKey Bits per key of the run's Bloom filter; 0 for none
+     */
+    SSTableWriter(Path path, long number, int blockSize, int bloomFilterBitsPerKey) throws IOException {
+        this.path = path;
+        this.number = number;
+        this.blockSize = blockSize;
+        this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+    
+    /**
+     * Appends an entry; keys must be strictly ascending.
+     */
+    void add(Entry entry) throws IOException {
+        if (lastKey != null && Arrays.compare(lastKey, entry.key) >= 0) {
+            throw new IllegalArgumentException("Sorted run keys must be ascending: '" + new String(entry.key)
+                + "' follows '" + new String(lastKey) + "'");
+        }
+        if (blockFirstKey == null) {
+            blockFirstKey = entry.key;
+        }
+        blockOut.writeInt(entry.key.length);
+        blockOut.writeInt(entry.isTombstone() ? -1 : entry.value.length);
+        blockOut.write(entry.key);
+        if (!entry.isTombstone()) {
+            blockOut.write(entry.value);
+        }
+        
+        if (entryCount == keyHashes.length) {
+            keyHashes = Arrays.copyOf(keyHashes, keyHashes.length * 2);
+        }
+        keyHashes[(int) entryCount++] = BloomFilter.hash(entry.key);
+        lastKey = entry.key;
+        
+        if (block.size() >= blockSize) {
+            finishBlock();
+        }
+    }
+    
+    /**
+     * Gets the bytes written so far, counting the open block.
+     */
+    long sizeBytes() {
+        return position + block.size();
+    }
+    
+    long getEntryCount() {
+        return entryCount;
+    }
+    
+    /**
+     * Writes the index, the filter and the footer, forces the file and
+     * opens it for reading.
+     *
+     * @param blockReads Counter the opened run adds its block reads to
+     */
+    SSTable finish(AtomicLong blockReads) throws IOException {
+        try {
+            finishBlock();
+            
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            DataOutputStream indexOut = new DataOutputStream(index);
+            indexOut.writeInt(fences.size());
+            for (int i = 0; i < fences.size(); i++) {
+                byte[] firstKey = fenceKeys.get(i);
+                indexOut.writeInt(firstKey.length);
+                indexOut.write(firstKey);
+                indexOut.writeLong(fences.get(i)[0]);
+                indexOut.writeInt((int) fences.get(i)[1]);
+            }
+            byte[] last = lastKey == null ? new byte[0] : lastKey;
+            indexOut.writeInt(last.length);
+            indexOut.write(last);
+            long indexOffset = position;
+            write(index.toByteArray());
+            
+            long filterOffset = position;
+            if (bloomFilterBitsPerKey > 0) {
+                BloomFilter filter = BloomFilter.create(entryCount, bloomFilterBitsPerKey);
+                for (int i = 0; i < entryCount; i++) {
+                    filter.add(keyHashes[i]);
+                }
+                ByteArrayOutputStream filterBytes = new ByteArrayOutputStream();
+                filter.writeTo(filterBytes);
+                write(filterBytes.toByteArray());
+            }
+            
+            ByteBuffer footer = ByteBuffer.allocate(SSTable.FOOTER_SIZE);
+            footer.putLong(indexOffset);
+            footer.putLong(filterOffset);
+            footer.putLong(position);
+            footer.putLong(entryCount);
+            footer.putInt(SSTable.MAGIC);
+            write(footer.array());
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        return SSTable.open(path, number, blockReads);
+    }
+    
+    /**
+     * Closes and deletes an unfinished file, after a failed flush or compaction.
+     */
+    void abandon() {
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("⚠️  Could not delete unfinished sorted run " + path.getFileName() + ": " + e.getMessage());
+        }
+    }
+    
+    private void finishBlock() throws IOException {
+        if (block.size() == 0) {
+            return;
+        }
+        fenceKeys.add(blockFirstKey);
+        fences.add(new long[] {position, block.size()});
+        write(block.toByteArray());
+        block.reset();
+        blockFirstKey = null;
+    }
+    
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package minispark.storage.memory;
+
+import minispark.storage.Record;
+import minispark.storage.RecordCursor;
+import minispark.storage.StorageInterface;
+import minispark.storage.btree.ValueSerializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory storage implementation over a concurrent skip list.
+ * Meant for hot reference tables and test fixtures that fit in memory, and
+ * as the sorted in-memory part of a log-structured engine. Nothing is
+ * persisted; closing the storage drops its contents.
+ *
+ * VERSIONS
+ * --------
+ * Keys are binary and ordered like the B+Tree orders them. Each key maps to
+ * a chain of versions, newest first, tagged with a sequence number. A write
+ * takes the next sequence number, links a new version into the chain and
+ * then publishes its sequence number; a delete links a version without a
+ * value (a tombstone). A read sees the newest version at or below the
+ * published sequence number, so it never sees half of a writeBatch: a batch
+ * takes a block of sequence numbers and publishes them at once. Sequence
+ * numbers are published in order, so a writer waits briefly for writers
+ * that took a smaller number to link their versions in.
+ *
+ * SNAPSHOTS
+ * ---------
+ * A Snapshot pins the published sequence number at the moment it is taken;
+ * reads, scans and cursors through it see exactly the data of that moment,
+ * however long they run and whatever is written meanwhile. Plain scans and
+ * cursors take a snapshot of their own. After each write the key's chain is
+ * pruned down to the versions some reader may still see: all versions newer
+ * than the oldest open snapshot, plus the newest one at or below it. A key
+ * whose only remaining version is a tombstone leaves the skip list.
+ *
+ * CONCURRENCY
+ * -----------
+ * Reads take no locks at all, and writes take none either: version chains
+ * are immutable and replaced with the skip list's atomic compute. Writers
+ * to different keys never wait for each other beyond the ordered
+ * publication of sequence numbers.
+ *
+ * OFF-HEAP VALUES
+ * ---------------
+ * With MemoryStorageConfig.offHeapValues, serialized values are packed into
+ * direct memory slabs (OffHeapValues), leaving only keys and small version
+ * objects on the Java heap for the garbage collector to trace.
+ */
+public class MemoryStorage implements StorageInterface {
+    private final MemoryStorageConfig config;
+    
+    // Serializer/deserializer for values, the same row formats the B+Tree uses
+    private final ValueSerializer valueSerializer;
+    
+    // Direct memory for values, or null when they stay on the heap
+    private final OffHeapValues offHeapValues;
+    
+    private final ConcurrentSkipListMap<byte[], VersionNode> entries = new ConcurrentSkipListMap<>(Arrays::compare);
+    
+    // Last sequence number handed out to a writer, and the last one readers may see
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong publishedSequence = new AtomicLong();
+    
+    private final Set<Snapshot> openSnapshots = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+    
+    /**
+     * One version of a key. Chains are immutable and ordered newest first.
+     */
+    private static final class VersionNode {
+        final long sequence;
+        // byte[] or OffHeapValues.Ref, or null for a tombstone
+        final Object value;
+        final VersionNode older;
+        
+        VersionNode(long sequence, Object value, VersionNode older) {
+            this.sequence = sequence;
+            this.value = value;
+            this.older = older;
+        }
+    }
+    
+    /**
+     * Creates an empty in-memory storage with a default configuration
+     */
+    public MemoryStorage() {
+        this(MemoryStorageConfig.defaults());
+    }
+    
+    /**
+     * Creates an empty in-memory storage
+     *
+     * @param config Value placement and row format
+     */
+    public MemoryStorage(MemoryStorageConfig config) {
+        this.config = config;
+        this.valueSerializer = config.getRowSchema() != null
+            ? new ValueSerializer(config.getRowSchema())
+            : new ValueSerializer();
+        this.offHeapValues = config.isOffHeapValues() ? new OffHeapValues(config.getSlabBytes()) : null;
+        System.out.println("🧠 MemoryStorage opened: values " + (offHeapValues != null
+            ? "off-heap in " + config.getSlabBytes() + " byte slabs" : "on heap"));
+    }
+    
+    // ========================================
+    // WRITES
+    // ========================================
+    
+    @Override
+    public void write(byte[] key, Map<String, Object> value) {
+        apply(List.of(key), List.of(storeValue(value)));
+    }
+    
+    @Override
+    public void writeBatch(List<Record> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<byte[]> keys = new ArrayList<>(records.size());
+        List<Object> values = new ArrayList<>(records.size());
+        for (Record record : records) {
+            keys.add(record.getKey());
+            values.add(storeValue(record.getValue()));
+        }
+        apply(keys, values);
+    }
+    
+    @Override
+    public void delete(byte[] key) {
+        List<Object> tombstone = new ArrayList<>();
+        tombstone.add(null);
+        apply(List.of(key), tombstone);
+    }
+    
+    private Object storeValue(Map<String, Object> value) {
+        byte[] bytes = valueSerializer.serialize(value);
+        return offHeapValues != null ? offHeapValues.store(bytes) : bytes;
+    }
+    
+    /**
+     * Links new versions of the keys in and makes them visible at once.
+     */
+    private void apply(List<byte[]> keys, List<Object> values) {
+        checkOpen();
+        long last = nextSequence.addAndGet(keys.size());
+        long first = last - keys.size() + 1;
+        for (int i = 0; i < keys.size(); i++) {
+            long sequence = first + i;
+            Object value = values.get(i);
+            entries.compute(keys.get(i).clone(), (key, head) -> link(head, sequence, value));
+        }
+        
+        // Readers may only see this block once every smaller sequence number is linked in too
+        while (!publishedSequence.compareAndSet(first - 1, last)) {
+            Thread.onSpinWait();
+        }
+        
+        long bound = pruneBound();
+        for (byte[] key : keys) {
+            entries.computeIfPresent(key, (k, head) -> prune(head, bound));
+        }
+    }
+    
+    // A chain with the version added in sequence order; a writer with a larger number may have linked first
+    private static VersionNode link(VersionNode head, long sequence, Object value) {
+        if (head == null || head.sequence < sequence) {
+            return new VersionNode(sequence, value, head);
+        }
+        return new VersionNode(head.sequence, head.value, link(head.older, sequence, value));
+    }
+    
+    /**
+     * The sequence number no reader can be below: the oldest open snapshot,
+     * or what a snapshot taken now would see. Snapshots still being opened
+     * count as 0, so nothing is pruned that they might need.
+     */
+    private long pruneBound() {
+        long bound = publishedSequence.get();
+        for (Snapshot snapshot : openSnapshots) {
+            bound = Math.min(bound, snapshot.sequence);
+        }
+        return bound;
+    }
+    
+    // The chain without the versions hidden from every reader, or null if nothing visible is left
+    private static VersionNode prune(VersionNode node, long bound) {
+        if (node == null) {
+            return null;
+        }
+        if (node.sequence <= bound) {
+            // The version every reader at the bound sees; older ones are unreachable, and so is a tombstone
+            if (node.value == null) {
+                return null;
+            }
+            return node.older == null ? node : new VersionNode(node.sequence, node.value, null);
+        }
+        VersionNode older = prune(node.older, bound);
+        return older == node.older ? node : new VersionNode(node.sequence, node.value, older);
+    }
+    
+    // ========================================
+    // READS
+    // ========================================
+    
+    @Override
+    public Optional<Map<String, Object>> read(byte[] key) {
+        checkOpen();
+        VersionNode chain = entries.get(key);
+        // Sequence taken after the chain: any prune that ran before the get kept the version visible at it
+        Object value = valueAt(chain, publishedSequence.get());
+        return value == null ? Optional.empty() : Optional.of(deserialize(value, null));
+    }
+    
+    @Override
+    public List<Record> scan(byte[] startKey, byte[] endKey, List<String> columns) {
+        try (Snapshot snapshot = snapshot()) {
+            return snapshot.scan(startKey, endKey, columns);
+        }
+    }
+    
+    @Override
+    public RecordCursor openCursor(byte[] startKey, byte[] endKey, List<String> columns) {
+        return new SnapshotCursor(snapshot(), true, startKey, endKey, columns);
+    }
+    
+    /**
+     * Takes a snapshot of the current contents. The caller must close it,
+     * since an open snapshot keeps the versions it sees from being pruned.
+     *
+     * @return A snapshot of the latest published writes
+     */
+    public Snapshot snapshot() {
+        checkOpen();
+        Snapshot snapshot = new Snapshot();
+        // Registered before it reads the sequence number, so a concurrent prune keeps what it will need
+        openSnapshots.add(snapshot);
+        snapshot.sequence = publishedSequence.get();
+        return snapshot;
+    }
+    
+    private Optional<Map<String, Object>> readAt(byte[] key, long sequence, List<String> columns) {
+        Object value = valueAt(entries.get(key), sequence);
+        return value == null ? Optional.empty() : Optional.of(deserialize(value, columns));
+    }
+    
+    // The value a reader at the sequence number sees, or null if the key does not exist for it
+    private static Object valueAt(VersionNode node, long sequence) {
+        while (node != null && node.sequence > sequence) {
+            node = node.older;
+        }
+        return node != null ? node.value : null;
+    }
+    
+    private Map<String, Object> deserialize(Object value, List<String> columns) {
+        byte[] bytes = value instanceof OffHeapValues.Ref ? ((OffHeapValues.Ref) value).read() : (byte[]) value;
+        return valueSerializer.deserialize(bytes, columns);
+    }
+    
+    private Iterator<Map.Entry<byte[], VersionNode>> range(byte[] startKey, byte[] endKey) {
+        if (endKey == null) {
+            return entries.tailMap(startKey, true).entrySet().iterator();
+        }
+        if (Arrays.compare(startKey, endKey) >= 0) {
+            return List.<Map.Entry<byte[], VersionNode>>of().iterator();
+        }
+        return entries.subMap(startKey, true, endKey, false).entrySet().iterator();
+    }
+    
+    /**
+     * A consistent view of the storage at one point in time.
+     */
+    public final class Snapshot implements AutoCloseable {
+        // 0 until the snapshot is fully opened
+        private volatile long sequence;
+        
+        private Snapshot() {
+        }
+        
+        /**
+         * Gets the sequence number of the last write this snapshot sees.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+        
+        /**
+         * Reads a record as it was when the snapshot was taken.
+         */
+        public Optional<Map<String, Object>> read(byte[] key) {
+            checkOpen();
+            return readAt(key, sequence, null);
+        }
+        
+        /**
+         * Scans records within a key range as they were when the snapshot was taken.
+         *
+         * @param startKey Start of the key range (inclusive)
+         * @param endKey End of the key range (exclusive), or null for open-ended
+         * @param columns Specific columns to read, or null for all columns
+         */
+        public List<Record> scan(byte[] startKey, byte[] endKey, List<String> columns) {
+            List<Record> results = new ArrayList<>();
+            try (SnapshotCursor cursor = new SnapshotCursor(this, false, startKey, endKey, columns)) {
+                while (cursor.hasNext()) {
+                    results.add(cursor.next());
+                }
+            }
+            return results;
+        }
+        
+        /**
+         * Opens a cursor over the snapshot. Closing the cursor leaves the snapshot open.
+         */
+        public RecordCursor openCursor(byte[] startKey, byte[] endKey, List<String> columns) {
+            return new SnapshotCursor(this, false, startKey, endKey, columns);
+        }
+        
+        /**
+         * Releases the snapshot, so the versions only it could see can be pruned.
+         */
+        @Override
+        public void close() {
+            openSnapshots.remove(this);
+        }
+    }
+    
+    /**
+     * Cursor over the skip list that resolves every key at a snapshot's sequence number.
+     * The skip list iterator never blocks writers; keys they add after the
+     * snapshot only have versions the snapshot does not see.
+     */
+    private final class SnapshotCursor implements RecordCursor {
+        private final Snapshot snapshot;
+        private final boolean ownsSnapshot;
+        private final byte[] endKey;
+        private final List<String> columns;
+        private Iterator<Map.Entry<byte[], VersionNode>> source;
+        private Record next;
+        
+        SnapshotCursor(Snapshot snapshot, boolean ownsSnapshot, byte[] startKey, byte[] endKey, List<String> columns) {
+            this.snapshot = snapshot;
+            this.ownsSnapshot = ownsSnapshot;
+            this.endKey = endKey;
+            this.columns = columns;
+            this.source = range(startKey, endKey);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            checkOpen();
+            while (next == null && source.hasNext()) {
+                Map.Entry<byte[], VersionNode> entry = source.next();
+                Object value = valueAt(entry.getValue(), snapshot.sequence);
+                if (value != null) {
+                    next = new Record(entry.getKey().clone(), deserialize(value, columns));
+                }
+            }
+            return next != null;
+        }
+        
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Cursor is exhausted");
+            }
+            Record record = next;
+            next = null;
+            return record;
+        }
+        
+        @Override
+        public void seek(byte[] key) {
+            source = range(key, endKey);
+            next = null;
+        }
+        
+        @Override
+        public void close() {
+            if (ownsSnapshot) {
+                snapshot.close();
+            }
+        }
+    }
+    
+    // ========================================
+    // LIFECYCLE AND STATISTICS
+    // ========================================
+    
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        int keys = entries.size();
+        entries.clear();
+        openSnapshots.clear();
+        System.out.println("🧠 MemoryStorage closed: " + keys + " keys dropped");
+    }
+    
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("MemoryStorage is closed");
+        }
+    }
+    
+    /**
+     * Gets the number of keys in the skip list, including deleted keys that
+     * an open snapshot can still see.
+     */
+    public int getKeyCount() {
+        return entries.size();
+    }
+    
+    /**
+     * Gets the number of versions of all keys, which is the key count unless
+     * open snapshots hold older versions.
+     */
+    public long getVersionCount() {
+        long versions = 0;
+        for (VersionNode head : entries.values()) {
+            for (VersionNode node = head; node != null; node = node.older) {
+                versions++;
+            }
+        }
+        return versions;
+    }
+    
+    public int getOpenSnapshotCount() {
+        return openSnapshots.size();
+    }
+    
+    /**
+     * Gets the direct memory allocated for values, or 0 when values are on the heap.
+     */
+    public long getOffHeapBytes() {
+        return offHeapValues != null ? offHeapValues.getAllocatedBytes() : 0;
+    }
+    
+    public MemoryStorageConfig getConfig() {
+        return config;
+    }
+}
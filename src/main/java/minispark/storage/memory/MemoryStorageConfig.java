@@ -0,0 +1,74 @@
+package minispark.storage.memory;
+
+import minispark.storage.table.TableSchema;
+
+/**
+ * Configuration for a MemoryStorage instance.
+ *
+ * By default values live on the Java heap as byte arrays, which is the
+ * fastest option for small tables. Large reference tables can keep their
+ * values off-heap instead, so they add nothing to garbage collection work.
+ */
+public class MemoryStorageConfig {
+    static final int DEFAULT_SLAB_BYTES = 1024 * 1024;
+    
+    private final boolean offHeapValues;
+    private final int slabBytes;
+    private final TableSchema rowSchema;
+    
+    private MemoryStorageConfig(Builder builder) {
+        this.offHeapValues = builder.offHeapValues;
+        this.slabBytes = builder.slabBytes;
+        this.rowSchema = builder.rowSchema;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static MemoryStorageConfig defaults() {
+        return builder().build();
+    }
+    
+    public static class Builder {
+        private boolean offHeapValues = false;
+        private int slabBytes = DEFAULT_SLAB_BYTES;
+        private TableSchema rowSchema = null;
+        
+        /**
+         * Store serialized values in direct memory slabs instead of heap arrays.
+         * Keys and the skip list itself stay on the heap.
+         */
+        public Builder offHeapValues(boolean offHeapValues) {
+            this.offHeapValues = offHeapValues;
+            return this;
+        }
+        
+        /**
+         * Size of each direct memory slab that off-heap values are packed into.
+         */
+        public Builder slabBytes(int slabBytes) {
+            this.slabBytes = slabBytes;
+            return this;
+        }
+        
+        /**
+         * Store values in the compact row format of this schema (see ValueSerializer).
+         */
+        public Builder rowSchema(TableSchema rowSchema) {
+            this.rowSchema = rowSchema;
+            return this;
+        }
+        
+        public MemoryStorageConfig build() {
+            if (slabBytes < 1024) {
+                throw new IllegalArgumentException("Slab size must be at least 1024 bytes: " + slabBytes);
+            }
+            return new MemoryStorageConfig(this);
+        }
+    }
+    
+    public boolean isOffHeapValues() { return offHeapValues; }
+    public int getSlabBytes() { return slabBytes; }
+    public TableSchema getRowSchema() { return rowSchema; }
+}
@@ -0,0 +1,112 @@
+package minispark.storage.memory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Packs serialized values into large direct memory slabs.
+ *
+ * Allocating one direct buffer per value would be slow and would leave the
+ * garbage collector a small object per value anyway, so values are appended
+ * to the current slab with a lock-free bump pointer; only starting a new
+ * slab takes a lock. Nothing is freed value by value: a slab's memory is
+ * released when no stored value refers to it any more, so a slab full of
+ * overwritten values is reclaimed as a whole. Values larger than a quarter
+ * of a slab get a buffer of their own.
+ */
+final class OffHeapValues {
+    private final int slabBytes;
+    private volatile Slab current;
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    
+    /**
+     * A value stored in a slab.
+     */
+    static final class Ref {
+        private final ByteBuffer slab;
+        private final int offset;
+        private final int length;
+        
+        private Ref(ByteBuffer slab, int offset, int length) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+        
+        /**
+         * Copies the value back onto the heap.
+         */
+        byte[] read() {
+            byte[] value = new byte[length];
+            slab.get(offset, value, 0, length);
+            return value;
+        }
+    }
+    
+    private static final class Slab {
+        final ByteBuffer buffer;
+        final AtomicInteger used = new AtomicInteger();
+        
+        Slab(int bytes) {
+            this.buffer = ByteBuffer.allocateDirect(bytes);
+        }
+        
+        // Offset of a fresh region of the given length, or -1 if the slab is full
+        int reserve(int length) {
+            while (true) {
+                int offset = used.get();
+                if (offset + length > buffer.capacity()) {
+                    return -1;
+                }
+                if (used.compareAndSet(offset, offset + length)) {
+                    return offset;
+                }
+            }
+        }
+    }
+    
+    OffHeapValues(int slabBytes) {
+        this.slabBytes = slabBytes;
+        this.current = newSlab();
+    }
+    
+    /**
+     * Copies a value into direct memory.
+     */
+    Ref store(byte[] value) {
+        if (value.length > slabBytes / 4) {
+            ByteBuffer own = ByteBuffer.allocateDirect(value.length);
+            allocatedBytes.addAndGet(value.length);
+            own.put(0, value);
+            return new Ref(own, 0, value.length);
+        }
+        
+        while (true) {
+            Slab slab = current;
+            int offset = slab.reserve(value.length);
+            if (offset >= 0) {
+                // Absolute puts leave the buffer's position alone, so writers to disjoint regions do not interfere
+                slab.buffer.put(offset, value);
+                return new Ref(slab.buffer, offset, value.length);
+            }
+            synchronized (this) {
+                if (current == slab) {
+                    current = newSlab();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Gets the direct memory allocated so far, including slabs already released.
+     */
+    long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+    
+    private Slab newSlab() {
+        allocatedBytes.addAndGet(slabBytes);
+        return new Slab(slabBytes);
+    }
+}
@@ -38,6 +38,12 @@ public class ParquetLogHelper {
         System.out.println("   ⚠️ Trade-off: Slower point lookups vs excellent scans");
     }
     
+    public static void logMultiGet(int keyCount) {
+        System.out.println("🔍 ParquetStorage.multiGet()");
+        System.out.println("   🔑 Keys: " + keyCount);
+        System.out.println("   ✅ Each file and row group is read at most once per batch");
+    }
+    
     public static void logRangeScan(byte[] startKey, byte[] endKey, List<String> columns) {
         System.out.println("🔍 ParquetStorage.scan()");
         System.out.println("   📊 Range: [" + new String(startKey) + ", " + 
@@ -57,6 +57,28 @@ public class ParquetOperations {
         }
     }
     
+    /**
+     * Searches a Parquet file for a batch of keys. The file is opened once,
+     * and every row group that might hold one of the keys is read once,
+     * however many of the keys it holds.
+     * 
+     * @return The first record found for each key the file holds, by key
+     */
+    public Map<String, Map<String, Object>> searchKeysInFile(String filename, NavigableSet<String> keys) throws IOException {
+        try {
+            Path parquetPath = new Path(filename);
+            Configuration conf = new Configuration();
+            
+            try (ParquetFileReader fileReader = ParquetFileReader.open(HadoopInputFile.fromPath(parquetPath, conf))) {
+                return performKeysSearch(fileReader, keys);
+            }
+        
+        } catch (IOException e) {
+            ParquetLogHelper.logParquetScanError(filename, e);
+            throw new IOException("Failed to search Parquet file: " + filename, e);
+        }
+    }
+    
     /**
      * Scans a Parquet file for records within a key range.
      * Uses row group filtering and column projection.
@@ -181,6 +203,46 @@ public class ParquetOperations {
         return Optional.empty();
     }
     
+    private Map<String, Map<String, Object>> performKeysSearch(ParquetFileReader fileReader,
+                                                               NavigableSet<String> keys) throws IOException {
+        Map<String, Map<String, Object>> found = new HashMap<>();
+        MessageType parquetSchema = fileReader.getFooter().getFileMetaData().getSchema();
+        String primaryKeyField = schema.getPrimaryKeyColumn();
+        List<org.apache.parquet.hadoop.metadata.BlockMetaData> rowGroups = fileReader.getFooter().getBlocks();
+        
+        List<Integer> candidateRowGroups = ParquetRowGroupFilter.filterRowGroupsForKeys(
+            rowGroups, primaryKeyField, keys);
+        
+        for (Integer rowGroupIndex : candidateRowGroups) {
+            collectKeysFromRowGroup(fileReader, parquetSchema, rowGroupIndex, keys, found);
+            if (found.size() == keys.size()) {
+                break;
+            }
+        }
+        
+        return found;
+    }
+    
+    private void collectKeysFromRowGroup(ParquetFileReader fileReader, MessageType parquetSchema, int rowGroupIndex,
+                                         NavigableSet<String> keys, Map<String, Map<String, Object>> found) throws IOException {
+        String primaryKeyField = schema.getPrimaryKeyColumn();
+        org.apache.parquet.column.page.PageReadStore pageStore = fileReader.readRowGroup(rowGroupIndex);
+        MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(parquetSchema);
+        RecordReader<Group> recordReader = columnIO.getRecordReader(pageStore, new GroupRecordConverter(parquetSchema));
+        long rowCount = fileReader.getFooter().getBlocks().get(rowGroupIndex).getRowCount();
+        
+        for (long i = 0; i < rowCount; i++) {
+            Group group = recordReader.read();
+            if (group != null) {
+                // The first row with a key wins, as in a single-key search
+                String recordKey = group.getString(primaryKeyField, 0);
+                if (keys.contains(recordKey) && !found.containsKey(recordKey)) {
+                    found.put(recordKey, convertGroupToMap(group, parquetSchema));
+                }
+            }
+        }
+    }
+    
     private List<Record> performRangeScan(ParquetFileReader fileReader, byte[] startKey, byte[] endKey, List<String> columns) throws IOException {
         List<Record> results = new ArrayList<>();
         MessageType parquetSchema = fileReader.getFooter().getFileMetaData().getSchema();
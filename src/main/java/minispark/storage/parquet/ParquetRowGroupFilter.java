@@ -6,6 +6,7 @@ import org.apache.parquet.column.statistics.Statistics;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.NavigableSet;
 
 /**
  * EDUCATIONAL: Demonstrates Parquet row group filtering using metadata statistics.
@@ -52,6 +53,33 @@ public class ParquetRowGroupFilter {
         return candidateRowGroups;
     }
     
+    /**
+     * Filters row groups for a batch of point lookups: a row group is kept
+     * if any of the keys falls within its min/max statistics. Finding that
+     * key is one ceiling lookup in the sorted keys per row group.
+     * 
+     * @param rowGroups All row groups in the file
+     * @param primaryKeyColumn Name of the primary key column
+     * @param searchKeys Keys to search for, sorted
+     * @return List of row group indices that might contain one of the keys
+     */
+    public static List<Integer> filterRowGroupsForKeys(List<BlockMetaData> rowGroups,
+                                                       String primaryKeyColumn,
+                                                       NavigableSet<String> searchKeys) {
+        List<Integer> candidateRowGroups = new ArrayList<>();
+        
+        System.out.println("   🔍 ROW GROUP FILTERING: Batch lookup of " + searchKeys.size() + " keys");
+        
+        for (int i = 0; i < rowGroups.size(); i++) {
+            if (rowGroupMightContainAnyKey(rowGroups.get(i), primaryKeyColumn, searchKeys)) {
+                candidateRowGroups.add(i);
+            }
+        }
+        
+        logFilteringComplete(candidateRowGroups.size(), rowGroups.size());
+        return candidateRowGroups;
+    }
+    
     /**
      * Filters row groups based on a range scan.
      * Uses min/max statistics to eliminate row groups outside the range.
@@ -116,6 +144,29 @@ public class ParquetRowGroupFilter {
         return searchKey.compareTo(minValue) >= 0 && searchKey.compareTo(maxValue) <= 0;
     }
     
+    /**
+     * Checks if the smallest search key not below the row group's min is
+     * still within its max.
+     */
+    private static boolean rowGroupMightContainAnyKey(BlockMetaData rowGroup,
+                                                      String primaryKeyColumn,
+                                                      NavigableSet<String> searchKeys) {
+        ColumnChunkMetaData keyColumn = findColumnChunk(rowGroup, primaryKeyColumn);
+        if (keyColumn == null) {
+            return true; // Include if no statistics
+        }
+        
+        Statistics<?> stats = keyColumn.getStatistics();
+        if (stats == null || !stats.hasNonNullValue()) {
+            return true; // Include if no statistics
+        }
+        
+        String minValue = convertStatisticToString(stats.minAsString());
+        String maxValue = convertStatisticToString(stats.maxAsString());
+        String candidate = searchKeys.ceiling(minValue);
+        return candidate != null && candidate.compareTo(maxValue) <= 0;
+    }
+    
     /**
      * Checks if a row group overlaps with the given range.
      * Uses min/max statistics for efficient range filtering.
@@ -96,6 +96,38 @@ public class ParquetStorage implements StorageInterface {
         return Optional.empty();
     }
     
+    /**
+     * Looks up a batch of keys with one pass over the files: each file is
+     * opened once, and each row group that might hold any of the keys still
+     * missing is read once. Files are searched in the same order as read()
+     * does, so every key resolves to the same record.
+     */
+    @Override
+    public List<Optional<Map<String, Object>>> multiGet(List<byte[]> keys) throws IOException {
+        ParquetLogHelper.logMultiGet(keys.size());
+        
+        NavigableSet<String> remaining = new TreeSet<>();
+        for (byte[] key : keys) {
+            remaining.add(new String(key));
+        }
+        
+        Map<String, Map<String, Object>> found = new HashMap<>();
+        for (String filename : fileManager.getAllParquetFiles()) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            Map<String, Map<String, Object>> fileResults = operations.searchKeysInFile(filename, remaining);
+            found.putAll(fileResults);
+            remaining.removeAll(fileResults.keySet());
+        }
+        
+        List<Optional<Map<String, Object>>> results = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            results.add(Optional.ofNullable(found.get(new String(key))));
+        }
+        return results;
+    }
+    
     @Override
     public List<Record> scan(byte[] startKey, byte[] endKey, List<String> columns) throws IOException {
         ParquetLogHelper.logRangeScan(startKey, endKey, columns);
@@ -1,10 +1,17 @@
 package minispark.storage.table;
 
 import minispark.storage.Record;
+import minispark.storage.RecordCursor;
 import minispark.storage.StorageInterface;
+import minispark.storage.index.IndexManager;
+import minispark.storage.index.PostingListIndex;
+import minispark.storage.index.SecondaryIndex;
+import minispark.storage.index.TableIndex;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -12,13 +19,27 @@ import java.util.stream.Collectors;
  * Demonstrates how database tables work with different storage backends:
  * - B+Tree for transactional workloads and row-based storage
  * - Parquet for analytical workloads and columnar storage
+ * - LSM tree for write-heavy ingest with sequential disk writes
+ * - In-memory skip list for hot reference tables and test fixtures
  * - Any other StorageInterface implementation
+ * 
+ * With an IndexManager attached (setIndexManager), every insert and delete
+ * also updates the manager's secondary indexes, so index lookups always see
+ * the current rows. Such a write reads the row it replaces, writes the new
+ * one and then moves the index entries, so writes to an indexed table are
+ * serialized by the table; unindexed writes still run concurrently.
  */
 public class Table {
     private final String tableName;
     private final TableSchema schema;
     private final StorageInterface storage;
     
+    // Secondary indexes maintained on every write, or null when the table has none
+    private volatile IndexManager indexManager;
+    
+    // Held from reading the replaced row until its index entries are moved, so two writers of one key cannot interleave
+    private final ReentrantLock indexedWriteLock = new ReentrantLock();
+    
     /**
      * Creates a new table with the specified schema and storage backend.
      *
@@ -49,9 +70,26 @@ public class Table {
         // Convert to storage format
         byte[] key = record.getPrimaryKey().getBytes();
         Map<String, Object> value = record.getValues();
-
-        // Insert into primary storage
-        storage.write(key, value);
+        
+        // The row being replaced still has index entries that must go
+        IndexManager indexes = indexManager;
+        boolean indexed = indexes != null && indexes.hasSecondaryIndexes();
+        if (indexed) {
+            indexedWriteLock.lock();
+        }
+        try {
+            TableRecord previous = indexed ? readRow(record.getPrimaryKey()) : null;
+            
+            // Insert into primary storage
+            storage.write(key, value);
+            if (indexed) {
+                indexes.indexRecord(previous, record);
+            }
+        } finally {
+            if (indexed) {
+                indexedWriteLock.unlock();
+            }
+        }
         
         System.out.println("   ✅ Record inserted successfully");
     }
@@ -75,15 +113,132 @@ public class Table {
             .map(r -> new Record(r.getPrimaryKey().getBytes(), r.getValues()))
             .collect(Collectors.toList());
         
-        // Batch insert into primary storage
-        storage.writeBatch(storageRecords);
+        // Rows the batch replaces, by primary key, read before they are overwritten
+        IndexManager indexes = indexManager;
+        boolean indexed = indexes != null && indexes.hasSecondaryIndexes();
+        Map<String, TableRecord> replaced = new HashMap<>();
+        if (indexed) {
+            indexedWriteLock.lock();
+        }
+        try {
+            if (indexed) {
+                List<String> primaryKeys = records.stream()
+                    .map(TableRecord::getPrimaryKey)
+                    .distinct()
+                    .collect(Collectors.toList());
+                List<Optional<TableRecord>> oldRows = multiGet(primaryKeys);
+                for (int i = 0; i < primaryKeys.size(); i++) {
+                    replaced.put(primaryKeys.get(i), oldRows.get(i).orElse(null));
+                }
+            }
+            
+            // Batch insert into primary storage
+            storage.writeBatch(storageRecords);
+            if (indexed) {
+                // A key written twice in the batch replaces its own earlier row
+                for (TableRecord record : records) {
+                    indexes.indexRecord(replaced.put(record.getPrimaryKey(), record), record);
+                }
+            }
+        } finally {
+            if (indexed) {
+                indexedWriteLock.unlock();
+            }
+        }
         
         System.out.println("   ✅ Batch insert completed successfully");
     }
-
-    public void createIndex(String indexName) throws IOException {
-        //TODO:
+    
+    /**
+     * Attaches the index manager whose secondary indexes this table keeps up
+     * to date. Writes made before it was attached are only indexed by
+     * createIndex. From then on the table serializes its writes, since each
+     * one reads the row it replaces to remove that row's index entries.
+     *
+     * @param indexManager The index manager
+     */
+    public void setIndexManager(IndexManager indexManager) {
+        this.indexManager = indexManager;
+    }
+    
+    /**
+     * Creates a secondary index on a column and indexes the rows already in
+     * the table. From then on, inserts and deletes keep it up to date.
+     *
+     * @param indexName Name of the index
+     * @param column The column to index
+     * @return The index
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalStateException If no index manager is attached
+     */
+    public SecondaryIndex createIndex(String indexName, String column) throws IOException {
+        return createIndex(indexName, column, UnaryOperator.identity());
+    }
+    
+    /**
+     * Creates a secondary index on a column, normalizing its values (and lookup
+     * keys) first, and indexes the rows already in the table. Rows deleted
+     * while the existing rows are being indexed may leave a stale entry, so
+     * create indexes before concurrent writers start.
+     *
+     * @param indexName Name of the index
+     * @param column The column to index
+     * @param normalizer Applied to column values and lookup keys alike
+     * @return The index
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalStateException If no index manager is attached
+     */
+    public SecondaryIndex createIndex(String indexName, String column, UnaryOperator<String> normalizer) throws IOException {
+        return createIndex(indexName, column, normalizer, List.of());
     }
+    
+    /**
+     * Creates a covering secondary index: besides the primary key, every entry
+     * stores the included columns, so findByIndex can answer queries needing
+     * only those columns from the index alone. Indexes the rows already in
+     * the table.
+     *
+     * @param indexName Name of the index
+     * @param column The column to index
+     * @param normalizer Applied to column values and lookup keys alike
+     * @param includedColumns Columns stored in the index entries
+     * @return The index
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalStateException If no index manager is attached
+     */
+    public SecondaryIndex createIndex(String indexName, String column, UnaryOperator<String> normalizer,
+                                      List<String> includedColumns) throws IOException {
+        System.out.println("🗂️ Table.createIndex() - Indexing column '" + column + "' as " + indexName
+            + (includedColumns.isEmpty() ? "" : " including " + includedColumns));
+        
+        validateColumns(List.of(column));
+        validateColumns(includedColumns);
+        SecondaryIndex index = requireIndexManager().registerIndex(indexName, column, normalizer, includedColumns);
+        indexExistingRows(index);
+        return index;
+    }
+    
+    /**
+     * Creates a posting list index on a low-cardinality column (row IDs kept
+     * as compressed bitmaps, see PostingListIndex) and indexes the rows
+     * already in the table. From then on, inserts and deletes keep it up to date.
+     *
+     * @param indexName Name of the index
+     * @param column The column to index
+     * @param normalizer Applied to column values and lookup keys alike
+     * @return The index
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalStateException If no index manager is attached
+     */
+    public PostingListIndex createPostingListIndex(String indexName, String column, UnaryOperator<String> normalizer) throws IOException {
+        System.out.println("🗂️ Table.createPostingListIndex() - Indexing column '" + column + "' as " + indexName);
+        
+        validateColumns(List.of(column));
+        PostingListIndex index = requireIndexManager().registerPostingListIndex(indexName, column, normalizer);
+        indexExistingRows(index);
+        return index;
+    }
+    
     /**
      * Finds a record by its primary key.
      *
@@ -106,6 +261,69 @@ public class Table {
         }
     }
     
+    /**
+     * Finds the records whose indexed column matches a key, returning only
+     * the given columns. When the index includes all of them, the records come
+     * from the index entries alone; otherwise the matches are read from the table in one multiGet.
+     *
+     * @param indexName Name of a secondary index of this table
+     * @param key The index key
+     * @param columns Columns to return
+     * @return The matching records, in primary key order
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If there is no secondary index with that name
+     */
+    public List<TableRecord> findByIndex(String indexName, String key, List<String> columns) throws IOException {
+        System.out.println("🔍 Table.findByIndex() - " + indexName + " = " + key + ", columns " + columns);
+        
+        validateColumns(columns);
+        SecondaryIndex index = requireIndexManager().getSecondaryIndex(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException("No secondary index named '" + indexName + "'");
+        }
+        if (index.covers(columns)) {
+            List<TableRecord> rows = index.lookupCovering(key, columns);
+            System.out.println("   ✅ Answered from the covering index: " + rows.size() + " records");
+            return rows;
+        }
+        
+        List<TableRecord> rows = new ArrayList<>();
+        for (Optional<TableRecord> row : multiGet(index.lookup(key))) {
+            row.ifPresent(found -> rows.add(project(found, columns)));
+        }
+        System.out.println("   ✅ Read " + rows.size() + " records from the table");
+        return rows;
+    }
+    
+    /**
+     * Finds the records for a batch of primary keys with one storage call
+     * (StorageInterface.multiGet), e.g. to resolve the primary keys an index
+     * lookup returned in one ordered sweep rather than one lookup per key.
+     *
+     * @param primaryKeys The primary key values, in any order
+     * @return One result per primary key, in the same order
+     * @throws IOException If an I/O error occurs
+     */
+    public List<Optional<TableRecord>> multiGet(List<String> primaryKeys) throws IOException {
+        System.out.println("🔍 Table.multiGet() - Looking for " + primaryKeys.size() + " keys");
+        
+        List<byte[]> keys = primaryKeys.stream()
+            .map(String::getBytes)
+            .collect(Collectors.toList());
+        List<Optional<Map<String, Object>>> values = storage.multiGet(keys);
+        
+        List<Optional<TableRecord>> records = new ArrayList<>(primaryKeys.size());
+        int found = 0;
+        for (int i = 0; i < primaryKeys.size(); i++) {
+            String primaryKey = primaryKeys.get(i);
+            Optional<TableRecord> record = values.get(i).map(value -> new TableRecord(primaryKey, value));
+            found += record.isPresent() ? 1 : 0;
+            records.add(record);
+        }
+        System.out.println("   ✅ Found " + found + " of " + primaryKeys.size() + " records");
+        return records;
+    }
+    
     /**
      * Scans records within a primary key range.
      *
@@ -137,6 +355,58 @@ public class Table {
         return tableRecords;
     }
     
+    /**
+     * Opens a cursor over a primary key range. Unlike scan(), records are
+     * produced one at a time, so a range of any size can be processed in
+     * constant memory and the caller can stop early. Keys are the primary
+     * key bytes; the caller must close the cursor.
+     *
+     * @param startKey Start of the key range (inclusive)
+     * @param endKey End of the key range (exclusive), or null for open-ended
+     * @param columns Specific columns to retrieve, or null for all columns
+     * @return A cursor over the matching records
+     * @throws IOException If an I/O error occurs
+     */
+    public RecordCursor openCursor(String startKey, String endKey, List<String> columns) throws IOException {
+        System.out.println("🔍 Table.openCursor() - Range: [" + startKey + ", " + 
+                          (endKey != null ? endKey : "END") + "]");
+        
+        return openCursor(startKey.getBytes(), endKey != null ? endKey.getBytes() : null, columns);
+    }
+    
+    /**
+     * Opens a cursor over a range of primary key bytes, e.g. between keys
+     * from splitKeys, which are not always valid strings.
+     *
+     * @param startKey Start of the key range (inclusive)
+     * @param endKey End of the key range (exclusive), or null for open-ended
+     * @param columns Specific columns to retrieve, or null for all columns
+     * @return A cursor over the matching records
+     * @throws IOException If an I/O error occurs
+     */
+    public RecordCursor openCursor(byte[] startKey, byte[] endKey, List<String> columns) throws IOException {
+        if (columns != null) {
+            validateColumns(columns);
+        }
+        
+        return storage.openCursor(startKey, endKey, columns);
+    }
+    
+    /**
+     * Suggests primary keys that split the table into up to the given number
+     * of ranges of similar size, for scanning them in parallel (see
+     * StorageInterface.splitKeys). The keys are kept as bytes: a separator
+     * can end in the middle of a multi-byte character, so it does not survive
+     * a round trip through String. Pass them to openCursor(byte[], ...).
+     *
+     * @param partitions The number of ranges wanted
+     * @return Up to partitions - 1 primary key bytes in ascending order
+     * @throws IOException If an I/O error occurs
+     */
+    public List<byte[]> splitKeys(int partitions) throws IOException {
+        return storage.splitKeys(partitions);
+    }
+    
     /**
      * Deletes a record by its primary key.
      *
@@ -146,15 +416,29 @@ public class Table {
     public void delete(String primaryKey) throws IOException {
         System.out.println("🗑️ Table.delete() - Deleting record with key: " + primaryKey);
         
-        // Check if record exists first
-        Optional<TableRecord> record = findByPrimaryKey(primaryKey);
-        
-        if (record.isPresent()) {
-            // Delete from primary storage
-            storage.delete(primaryKey.getBytes());
-            System.out.println("   ✅ Record deleted successfully");
-        } else {
-            System.out.println("   ⚠️ Record not found, nothing to delete");
+        IndexManager indexes = indexManager;
+        boolean indexed = indexes != null && indexes.hasSecondaryIndexes();
+        if (indexed) {
+            indexedWriteLock.lock();
+        }
+        try {
+            // Check if record exists first
+            Optional<TableRecord> record = findByPrimaryKey(primaryKey);
+            
+            if (record.isPresent()) {
+                // Delete from primary storage
+                storage.delete(primaryKey.getBytes());
+                if (indexed) {
+                    indexes.indexRecord(record.get(), null);
+                }
+                System.out.println("   ✅ Record deleted successfully");
+            } else {
+                System.out.println("   ⚠️ Record not found, nothing to delete");
+            }
+        } finally {
+            if (indexed) {
+                indexedWriteLock.unlock();
+            }
         }
     }
     
@@ -198,6 +482,44 @@ public class Table {
     
     // Helper methods
     
+    private IndexManager requireIndexManager() {
+        IndexManager indexes = indexManager;
+        if (indexes == null) {
+            throw new IllegalStateException("Table '" + tableName + "' has no index manager");
+        }
+        return indexes;
+    }
+    
+    // Called after the index is registered, so writes made meanwhile are indexed too
+    private void indexExistingRows(TableIndex index) throws IOException {
+        long rows = 0;
+        try (RecordCursor cursor = storage.openCursor(new byte[0], null, null)) {
+            while (cursor.hasNext()) {
+                Record record = cursor.next();
+                index.add(new TableRecord(new String(record.getKey()), record.getValue()));
+                rows++;
+            }
+        }
+        System.out.println("   ✅ Indexed " + rows + " existing records");
+    }
+    
+    private TableRecord readRow(String primaryKey) throws IOException {
+        return storage.read(primaryKey.getBytes())
+            .map(values -> new TableRecord(primaryKey, values))
+            .orElse(null);
+    }
+    
+    private static TableRecord project(TableRecord row, List<String> columns) {
+        Map<String, Object> values = new HashMap<>();
+        for (String column : columns) {
+            Object value = row.getValue(column);
+            if (value != null) {
+                values.put(column, value);
+            }
+        }
+        return new TableRecord(row.getPrimaryKey(), values);
+    }
+    
     private void validateRecord(TableRecord record) {
         schema.validate(record);
     }
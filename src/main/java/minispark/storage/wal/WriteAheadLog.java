@@ -0,0 +1,266 @@
+package minispark.storage.wal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Sequential, append-only write-ahead log with group commit.
+ *
+ * Records are opaque byte arrays framed as |length|crc32|payload|. Appending
+ * only copies the record into an in-memory buffer and returns its log sequence
+ * number (LSN): the logical log position just past the record. Durability is
+ * requested separately with sync(lsn).
+ *
+ * GROUP COMMIT
+ * ------------
+ * The first thread that needs durability becomes the leader: it takes every
+ * record buffered so far, writes them with one sequential write and issues a
+ * single force(). Threads arriving while the leader is busy wait, and are
+ * released together if the leader's batch already covers their LSN. N
+ * concurrent committers therefore share one fsync instead of paying N.
+ *
+ * LSNs keep increasing across truncate(), so an LSN handed out before a
+ * checkpoint never looks newer than the log.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final int RECORD_HEADER_SIZE = 8;
+    
+    private final Path logPath;
+    private final FileChannel channel;
+    
+    // Records appended but not yet written to the file
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    
+    // LSN of file offset 0; advances when the log is truncated
+    private long baseLsn;
+    private long appendedLsn;
+    private long durableLsn;
+    
+    private boolean syncInProgress;
+    private IOException failure;
+    
+    private long syncCount;
+    private long recordCount;
+    
+    /**
+     * Opens (or creates) a write-ahead log.
+     *
+     * @param logPath Path to the log file
+     * @throws IOException If an I/O error occurs
+     */
+    public WriteAheadLog(Path logPath) throws IOException {
+        this.logPath = logPath;
+        this.channel = FileChannel.open(logPath,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.appendedLsn = channel.size();
+        this.durableLsn = appendedLsn;
+        
+        System.out.println("📜 WriteAheadLog opened: " + logPath.getFileName() + " (" + appendedLsn + " bytes)");
+    }
+    
+    /**
+     * Buffers a record for the log. The record is not durable until sync() covers its LSN.
+     *
+     * @param payload The record bytes
+     * @return The LSN just past this record
+     * @throws IOException If the log failed earlier and can no longer be used
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        checkUsable();
+        
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        header.putInt(payload.length);
+        header.putInt((int) crc.getValue());
+        
+        pending.write(header.array(), 0, RECORD_HEADER_SIZE);
+        pending.write(payload, 0, payload.length);
+        
+        appendedLsn += RECORD_HEADER_SIZE + payload.length;
+        recordCount++;
+        return appendedLsn;
+    }
+    
+    /**
+     * Makes every record up to the given LSN durable, sharing the fsync with
+     * any other threads committing at the same time.
+     *
+     * @param lsn The LSN returned by append()
+     * @throws IOException If writing or forcing the log fails
+     */
+    public void sync(long lsn) throws IOException {
+        byte[] batch;
+        long batchEndLsn;
+        long filePosition;
+        
+        synchronized (this) {
+            while (true) {
+                checkUsable();
+                if (durableLsn >= Math.min(lsn, appendedLsn)) {
+                    return;
+                }
+                if (!syncInProgress) {
+                    break;
+                }
+                waitForLeader();
+            }
+            
+            // This thread is the leader for everything buffered so far
+            syncInProgress = true;
+            batch = pending.toByteArray();
+            pending.reset();
+            batchEndLsn = appendedLsn;
+            filePosition = batchEndLsn - batch.length - baseLsn;
+        }
+        
+        IOException error = null;
+        try {
+            writeFully(batch, filePosition);
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        
+        synchronized (this) {
+            syncInProgress = false;
+            if (error != null) {
+                failure = error;
+            } else {
+                durableLsn = batchEndLsn;
+                syncCount++;
+            }
+            notifyAll();
+        }
+        
+        if (error != null) {
+            throw error;
+        }
+    }
+    
+    /**
+     * Reads every intact record in the log, in order. Reading stops at the
+     * first torn or corrupt record, which is what a crash mid-write leaves behind.
+     *
+     * @return The record payloads
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized List<byte[]> readRecords() throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        long size = channel.size();
+        long position = 0;
+        
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int expectedCrc = header.getInt();
+            
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + RECORD_HEADER_SIZE);
+            
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+            
+            records.add(payload.array());
+            position += RECORD_HEADER_SIZE + length;
+        }
+        
+        return records;
+    }
+    
+    /**
+     * Discards the whole log. Only call this once everything the log protects
+     * has been made durable elsewhere (i.e. after a checkpoint).
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized void truncate() throws IOException {
+        checkUsable();
+        while (syncInProgress) {
+            waitForLeader();
+        }
+        
+        pending.reset();
+        channel.truncate(0);
+        channel.force(false);
+        
+        baseLsn = appendedLsn;
+        durableLsn = appendedLsn;
+    }
+    
+    /**
+     * Gets the size of the log file plus any buffered records, in bytes.
+     */
+    public synchronized long size() {
+        return appendedLsn - baseLsn;
+    }
+    
+    /**
+     * Gets the number of fsyncs issued on the log.
+     */
+    public synchronized long getSyncCount() {
+        return syncCount;
+    }
+    
+    /**
+     * Gets the number of records appended since the log was opened.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+    
+    /**
+     * Gets the path of the log file.
+     */
+    public Path getLogPath() {
+        return logPath;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (failure == null) {
+            sync(Long.MAX_VALUE);
+        }
+        channel.close();
+    }
+    
+    private void writeFully(byte[] batch, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(batch);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+    
+    private void waitForLeader() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for log sync", e);
+        }
+    }
+    
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log " + logPath.getFileName() + " is unusable after a failed sync", failure);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that the per-file Bloom filter answers lookups of absent keys
+ * without reading pages, and never hides a key that is in the tree.
+ */
+public class BTreeBloomFilterTest {
+    private static final int KEYS = 2_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFilterHasNoFalseNegativesAndFewFalsePositives() {
+        BloomFilter filter = BloomFilter.create(10_000, 10);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(key(i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(key(i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 10_000; i < 20_000; i++) {
+            if (filter.mightContain(key(i))) {
+                falsePositives++;
+            }
+        }
+        // About 1% expected with 10 bits per key
+        assertTrue(falsePositives < 250, falsePositives + " false positives in 10000 lookups");
+    }
+
+    @Test
+    void testAbsentKeysReadNoPages() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("absent.btree"), BTreeConfig.builder().pageSize(512).build());
+        try {
+            bulkLoad(btree);
+
+            btree.resetPageAccessCounters();
+            for (int i = KEYS; i < 2 * KEYS; i++) {
+                assertTrue(btree.read(key(i)).isEmpty());
+            }
+            // Only false positives descend the tree
+            assertTrue(btree.getBloomFilterNegativeCount() > KEYS * 95L / 100);
+            assertTrue(btree.getPageReadsCount() < KEYS / 10,
+                "Read " + btree.getPageReadsCount() + " pages for " + KEYS + " absent keys");
+
+            for (int i = 0; i < KEYS; i++) {
+                assertEquals(i, btree.read(key(i)).orElseThrow().get("id"));
+            }
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testFilterGrowsWithWrites() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("grow.btree"), BTreeConfig.builder().pageSize(512).build());
+        try {
+            // Well past the smallest filter size, so it is rebuilt along the way
+            List<Record> batch = new ArrayList<>();
+            for (int i = 0; i < 3 * KEYS; i++) {
+                batch.add(new Record(key(i), Map.of("id", i)));
+            }
+            btree.writeBatch(batch);
+
+            for (int i = 0; i < 3 * KEYS; i++) {
+                assertTrue(btree.read(key(i)).isPresent(), "Lost key " + i);
+            }
+            btree.resetPageAccessCounters();
+            for (int i = 3 * KEYS; i < 4 * KEYS; i++) {
+                btree.read(key(i));
+            }
+            assertTrue(btree.getPageReadsCount() < KEYS / 5);
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testFilterIsSavedOnCloseAndRebuiltWhenMissing() throws IOException {
+        Path dbPath = tempDir.resolve("reopen.btree");
+        Path filterPath = tempDir.resolve("reopen.btree.bloom");
+        BTreeConfig config = BTreeConfig.builder().pageSize(512).build();
+
+        BTree btree = new BTree(dbPath, config);
+        bulkLoad(btree);
+        btree.write(key(KEYS), Map.of("id", KEYS));
+        btree.close();
+        assertTrue(Files.exists(filterPath));
+
+        // Loaded without reading the leaves, and deleted until the next clean close
+        btree = new BTree(dbPath, config);
+        try {
+            assertFalse(Files.exists(filterPath));
+            assertTrue(btree.read(key(KEYS)).isPresent());
+            btree.resetPageAccessCounters();
+            assertTrue(btree.read(key(KEYS + 1)).isEmpty());
+            assertEquals(0, btree.getPageReadsCount());
+        } finally {
+            btree.close();
+        }
+
+        // As after a crash: the filter is rebuilt from the leaves
+        Files.delete(filterPath);
+        btree = new BTree(dbPath, config);
+        try {
+            for (int i = 0; i <= KEYS; i++) {
+                assertTrue(btree.read(key(i)).isPresent(), "Lost key " + i);
+            }
+            assertTrue(btree.read(key(KEYS + 1)).isEmpty());
+            assertEquals(1, btree.getBloomFilterNegativeCount());
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testFilterCanBeDisabled() throws IOException {
+        Path dbPath = tempDir.resolve("disabled.btree");
+        BTree btree = new BTree(dbPath, BTreeConfig.builder().pageSize(512).bloomFilterBitsPerKey(0).build());
+        try {
+            bulkLoad(btree);
+            assertTrue(btree.read(key(KEYS)).isEmpty());
+            assertEquals(0, btree.getBloomFilterNegativeCount());
+            assertTrue(btree.getPageReadsCount() > 0);
+        } finally {
+            btree.close();
+        }
+        assertFalse(Files.exists(tempDir.resolve("disabled.btree.bloom")));
+    }
+
+    private static void bulkLoad(BTree btree) throws IOException {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < KEYS; i++) {
+            records.add(new Record(key(i), Map.of("id", i)));
+        }
+        btree.bulkLoad(records.iterator());
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%06d", i).getBytes();
+    }
+}
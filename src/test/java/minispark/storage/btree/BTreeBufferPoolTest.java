@@ -0,0 +1,78 @@
+package minispark.storage.btree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that a B+Tree configured with a buffer pool keeps hot pages resident.
+ */
+public class BTreeBufferPoolTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWarmPointLookupsDoNotTouchDisk() throws IOException {
+        BTreeConfig config = BTreeConfig.builder().bufferPoolPages(64).build();
+        BTree btree = new BTree(tempDir.resolve("cached.btree"), config);
+        try {
+            for (int i = 0; i < 200; i++) {
+                btree.write(String.format("key%04d", i).getBytes(), row(i));
+            }
+
+            btree.read("key0100".getBytes());
+            btree.resetPageAccessCounters();
+
+            for (int i = 0; i < 200; i += 10) {
+                Optional<Map<String, Object>> result = btree.read(String.format("key%04d", i).getBytes());
+                assertTrue(result.isPresent());
+                assertEquals(i, result.get().get("id"));
+            }
+
+            assertEquals(0, btree.getPageReadsCount(), "Whole tree fits in the pool, so no disk reads");
+            assertEquals(0, btree.getCacheMissCount());
+            assertTrue(btree.getCacheHitCount() >= 20);
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testSmallPoolStillReturnsCorrectData() throws IOException {
+        BTreeConfig config = BTreeConfig.builder().bufferPoolPages(2).build();
+        Path dbPath = tempDir.resolve("small_pool.btree");
+        BTree btree = new BTree(dbPath, config);
+        for (int i = 0; i < 200; i++) {
+            btree.write(String.format("key%04d", i).getBytes(), row(i));
+        }
+        assertTrue(btree.getCacheEvictionCount() > 0);
+        btree.close();
+
+        // Dirty pages are written back on close, so a fresh instance sees everything
+        BTree reopened = new BTree(dbPath);
+        try {
+            for (int i = 0; i < 200; i++) {
+                Optional<Map<String, Object>> result = reopened.read(String.format("key%04d", i).getBytes());
+                assertTrue(result.isPresent(), "Missing key " + i);
+                assertEquals("User" + i, result.get().get("name"));
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private Map<String, Object> row(int i) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("id", i);
+        value.put("name", "User" + i);
+        value.put("city", "City" + (i % 7));
+        return value;
+    }
+}
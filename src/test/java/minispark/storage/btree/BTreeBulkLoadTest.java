@@ -0,0 +1,145 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies bottom-up bulk loading of a B+Tree from sorted records.
+ */
+public class BTreeBulkLoadTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBulkLoadedTreeSupportsLookupsScansAndInserts() throws IOException {
+        Path dbPath = tempDir.resolve("bulk.btree");
+        BTree btree = new BTree(dbPath);
+        btree.bulkLoad(sortedRecords(2000).iterator());
+
+        for (int i = 0; i < 2000; i += 37) {
+            Optional<Map<String, Object>> result = btree.read(key(i));
+            assertTrue(result.isPresent(), "Missing key " + i);
+            assertEquals("User" + i, result.get().get("name"));
+        }
+
+        List<Record> all = btree.scan(key(0), null, null);
+        assertEquals(2000, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertArrayEquals(key(i), all.get(i).getKey());
+        }
+
+        // Regular inserts still work on top of the loaded structure
+        btree.write("key00500x".getBytes(), row(-1));
+        assertTrue(btree.read("key00500x".getBytes()).isPresent());
+        btree.close();
+
+        BTree reopened = new BTree(dbPath);
+        try {
+            assertEquals("User1999", reopened.read(key(1999)).get().get("name"));
+            assertEquals(2001, reopened.scan(key(0), null, null).size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testBulkLoadWritesFewerPagesThanInserts() throws IOException {
+        BTree inserted = new BTree(tempDir.resolve("inserted.btree"));
+        inserted.resetPageAccessCounters();
+        inserted.writeBatch(sortedRecords(1000));
+        long insertWrites = inserted.getPageWritesCount();
+        inserted.close();
+
+        BTree loaded = new BTree(tempDir.resolve("loaded.btree"));
+        loaded.resetPageAccessCounters();
+        loaded.bulkLoad(sortedRecords(1000).iterator());
+        long bulkWrites = loaded.getPageWritesCount();
+        loaded.close();
+
+        System.out.println("Page writes: inserts=" + insertWrites + ", bulk load=" + bulkWrites);
+        assertTrue(bulkWrites * 5 < insertWrites, "Bulk load should write each page about once");
+    }
+
+    @Test
+    void testFillFactorControlsPageCount() throws IOException {
+        Path full = tempDir.resolve("full.btree");
+        Path half = tempDir.resolve("half.btree");
+
+        BTree fullTree = new BTree(full, BTreeConfig.builder().bulkLoadFillFactor(1.0).build());
+        fullTree.bulkLoad(sortedRecords(1000).iterator());
+        fullTree.close();
+
+        BTree halfTree = new BTree(half, BTreeConfig.builder().bulkLoadFillFactor(0.5).build());
+        halfTree.bulkLoad(sortedRecords(1000).iterator());
+        halfTree.close();
+
+        assertTrue(Files.size(half) > Files.size(full) * 3 / 2);
+    }
+
+    @Test
+    void testBulkLoadRejectsUnsortedInputAndNonEmptyTree() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("reject.btree"));
+        try {
+            List<Record> unsorted = new ArrayList<>(sortedRecords(10));
+            unsorted.add(new Record(key(3), row(3)));
+            assertThrows(IllegalArgumentException.class, () -> btree.bulkLoad(unsorted.iterator()));
+        } finally {
+            btree.close();
+        }
+
+        BTree nonEmpty = new BTree(tempDir.resolve("nonempty.btree"));
+        try {
+            nonEmpty.write(key(1), row(1));
+            assertThrows(IllegalStateException.class, () -> nonEmpty.bulkLoad(sortedRecords(10).iterator()));
+        } finally {
+            nonEmpty.close();
+        }
+    }
+
+    @Test
+    void testBulkLoadWithWriteAheadLogSurvivesReopen() throws IOException {
+        Path dbPath = tempDir.resolve("bulk_wal.btree");
+        BTreeConfig config = BTreeConfig.builder().writeAheadLog(true).build();
+        BTree btree = new BTree(dbPath, config);
+        btree.bulkLoad(sortedRecords(3000).iterator());
+        btree.close();
+
+        BTree reopened = new BTree(dbPath, config);
+        try {
+            assertEquals(3000, reopened.scan(key(0), null, null).size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private List<Record> sortedRecords(int count) {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new Record(key(i), row(i)));
+        }
+        return records;
+    }
+
+    private byte[] key(int i) {
+        return String.format("key%05d", i).getBytes();
+    }
+
+    private Map<String, Object> row(int i) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("id", i);
+        value.put("name", "User" + i);
+        return value;
+    }
+}
@@ -0,0 +1,235 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test for concurrent access: several writers insert while readers
+ * look up keys that are known to be committed and scan ranges. Small pages
+ * force frequent leaf, branch and root splits while the readers are running.
+ * Point reads are optimistic unless disabled; scans always crab latches.
+ */
+public class BTreeConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int KEYS_PER_WRITER = 150;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testConcurrentWritersAndReaders() throws Exception {
+        BTreeConfig config = BTreeConfig.builder().pageSize(512).bufferPoolPages(16).build();
+        BTree btree = new BTree(tempDir.resolve("stress.btree"), config);
+        try {
+            runStress(btree);
+            verifyAll(btree);
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testConcurrentWritersAndLatchCrabbingReaders() throws Exception {
+        BTreeConfig config = BTreeConfig.builder().pageSize(512).bufferPoolPages(16).optimisticReads(false).build();
+        BTree btree = new BTree(tempDir.resolve("stress-latched.btree"), config);
+        try {
+            runStress(btree);
+            verifyAll(btree);
+            assertEquals(0, btree.getOptimisticRestartCount());
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testConcurrentWritersAndReadersWithWriteAheadLog() throws Exception {
+        Path dbPath = tempDir.resolve("stress-wal.btree");
+        BTreeConfig config = BTreeConfig.builder()
+            .pageSize(512)
+            .bufferPoolPages(16)
+            .writeAheadLog(true)
+            .checkpointThresholdBytes(64 * 1024)
+            .build();
+        BTree btree = new BTree(dbPath, config);
+        try {
+            runStress(btree);
+        } finally {
+            btree.close();
+        }
+
+        BTree reopened = new BTree(dbPath, config);
+        try {
+            verifyAll(reopened);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testConcurrentDeletesAndReaders() throws Exception {
+        BTreeConfig config = BTreeConfig.builder().pageSize(512).bufferPoolPages(16).build();
+        BTree btree = new BTree(tempDir.resolve("stress-delete.btree"), config);
+        try {
+            int keys = 1_200;
+            for (int i = 0; i < keys; i++) {
+                btree.write(key(0, i), row(0, i));
+            }
+
+            // Deleting the odd keys merges pages and collapses levels under the readers' feet
+            AtomicBoolean deletesDone = new AtomicBoolean();
+            Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+            List<Thread> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                readers.add(new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    try {
+                        while (!deletesDone.get()) {
+                            int i = random.nextInt(keys / 2) * 2;
+                            assertEquals(i, btree.read(key(0, i)).orElseThrow().get("id"));
+
+                            long even = btree.scan(key(0, i), key(0, i + 40), null).stream()
+                                .filter(record -> Integer.parseInt(new String(record.getKey()).substring(3, 8)) % 2 == 0)
+                                .count();
+                            assertEquals(Math.min(20, (keys - i) / 2), even);
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }));
+            }
+            readers.forEach(Thread::start);
+            for (int i = keys - 1; i > 0; i -= 2) {
+                btree.delete(key(0, i));
+            }
+            deletesDone.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+
+            if (!failures.isEmpty()) {
+                fail("Concurrent delete failed: " + failures.peek(), failures.peek());
+            }
+            assertEquals(keys / 2, btree.scan(new byte[0], null, null).size());
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testRejectsKeysLongerThanMaximum() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("long-key.btree"), BTreeConfig.builder().pageSize(512).build());
+        try {
+            byte[] longKey = new byte[200];
+            assertThrows(IllegalArgumentException.class, () -> btree.write(longKey, row(0, 0)));
+        } finally {
+            btree.close();
+        }
+    }
+
+    private void runStress(BTree btree) throws InterruptedException {
+        // Number of keys each writer has committed so far; readers only look those up
+        AtomicIntegerArray committed = new AtomicIntegerArray(WRITERS);
+        AtomicBoolean writersDone = new AtomicBoolean();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            writers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < KEYS_PER_WRITER; i++) {
+                        btree.write(key(writer, i), row(writer, i));
+                        committed.set(writer, i + 1);
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (!writersDone.get()) {
+                        int writer = random.nextInt(WRITERS);
+                        int available = committed.get(writer);
+                        if (available == 0) {
+                            continue;
+                        }
+                        int i = random.nextInt(available);
+                        Optional<Map<String, Object>> value = btree.read(key(writer, i));
+                        assertTrue(value.isPresent(), "Committed key " + new String(key(writer, i)) + " not found");
+                        assertEquals(writer * 1000 + i, value.get().get("id"));
+
+                        // Every committed key of this writer up to i must show up in a range scan
+                        String suffix = "-w" + writer;
+                        long found = btree.scan(key(writer, 0), key(writer, i + 1), null).stream()
+                            .filter(record -> new String(record.getKey()).endsWith(suffix))
+                            .count();
+                        assertEquals(i + 1, found);
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+
+        readers.forEach(Thread::start);
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        writersDone.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        if (!failures.isEmpty()) {
+            fail("Concurrent access failed: " + failures.peek(), failures.peek());
+        }
+    }
+
+    private void verifyAll(BTree btree) throws IOException {
+        List<Record> all = btree.scan(new byte[0], null, null);
+        assertEquals(WRITERS * KEYS_PER_WRITER, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(new String(all.get(i - 1).getKey()).compareTo(new String(all.get(i).getKey())) < 0);
+        }
+        for (int w = 0; w < WRITERS; w++) {
+            for (int i = 0; i < KEYS_PER_WRITER; i++) {
+                assertEquals(w * 1000 + i, btree.read(key(w, i)).orElseThrow().get("id"));
+            }
+        }
+    }
+
+    // Writers interleave their keys, so all of them keep splitting the same pages
+    private static byte[] key(int writer, int i) {
+        return String.format("key%05d-w%d", i, writer).getBytes();
+    }
+
+    private static Map<String, Object> row(int writer, int i) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", writer * 1000 + i);
+        row.put("name", "Name" + i);
+        return row;
+    }
+}
@@ -0,0 +1,154 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import minispark.storage.RecordCursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the streaming cursor: records are produced lazily leaf by leaf,
+ * and the cursor stays correct while the tree changes between calls.
+ */
+public class BTreeCursorTest {
+    private static final int KEYS = 1_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCursorReturnsRangeInOrder() throws IOException {
+        BTree btree = loadedTree("range.btree");
+        try (RecordCursor cursor = btree.openCursor(key(100), key(300), List.of("id"))) {
+            for (int i = 100; i < 300; i++) {
+                assertTrue(cursor.hasNext());
+                Record record = cursor.next();
+                assertArrayEquals(key(i), record.getKey());
+                assertEquals(Map.of("id", i), record.getValue());
+            }
+            assertFalse(cursor.hasNext());
+            assertThrows(NoSuchElementException.class, cursor::next);
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testLimitReadsOnlyTheLeavesItNeeds() throws IOException {
+        BTree btree = loadedTree("limit.btree");
+        try {
+            btree.resetPageAccessCounters();
+            List<Record> firstFive = new ArrayList<>();
+            try (RecordCursor cursor = btree.openCursor(key(500), null, null).limit(5)) {
+                while (cursor.hasNext()) {
+                    firstFive.add(cursor.next());
+                }
+            }
+
+            assertEquals(5, firstFive.size());
+            assertArrayEquals(key(504), firstFive.get(4).getKey());
+            // A root-to-leaf descent plus at most one step along the leaf chain
+            assertTrue(btree.getPageReadsCount() <= btree.getTreeHeight() + 1,
+                "Read " + btree.getPageReadsCount() + " pages for five records");
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testSeekRepositionsTheCursor() throws IOException {
+        BTree btree = loadedTree("seek.btree");
+        try (RecordCursor cursor = btree.openCursor(key(0), key(900), null)) {
+            assertArrayEquals(key(0), cursor.next().getKey());
+
+            cursor.seek(key(700));
+            assertArrayEquals(key(700), cursor.next().getKey());
+
+            // Backwards, and to a key that is not in the tree
+            cursor.seek("key00123x".getBytes());
+            assertArrayEquals(key(124), cursor.next().getKey());
+
+            cursor.seek(key(950));
+            assertFalse(cursor.hasNext());
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testCursorSurvivesChangesBetweenCalls() throws IOException {
+        BTree btree = loadedTree("changes.btree");
+        try (RecordCursor cursor = btree.openCursor(new byte[0], null, null)) {
+            List<Integer> seen = new ArrayList<>();
+            while (cursor.hasNext()) {
+                int id = (Integer) cursor.next().getValue().get("id");
+                seen.add(id);
+
+                // The cursor holds no latch, so the same thread can change the tree under it;
+                // only keys beyond the leaf being read are touched
+                if (id % 100 == 0 && id + 100 < KEYS) {
+                    for (int k = id + 110; k < id + 170; k++) {
+                        btree.delete(key(k));
+                    }
+                    btree.write(key(id + 180), row(-(id + 180)));
+                }
+            }
+
+            // Deleted keys are skipped and rewritten keys are seen with their new value, each exactly once
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < KEYS; i++) {
+                int offset = i % 100;
+                if (i < 100 || offset < 10 || offset >= 70) {
+                    expected.add(i >= 100 && offset == 80 ? -i : i);
+                }
+            }
+            assertEquals(expected, seen);
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testClosedCursorRejectsUse() throws IOException {
+        BTree btree = loadedTree("closed.btree");
+        try {
+            RecordCursor cursor = btree.openCursor(key(0), null, null);
+            cursor.next();
+            cursor.close();
+            cursor.close();
+            assertThrows(IllegalStateException.class, cursor::hasNext);
+        } finally {
+            btree.close();
+        }
+    }
+
+    private BTree loadedTree(String fileName) throws IOException {
+        BTree btree = new BTree(tempDir.resolve(fileName), BTreeConfig.builder().pageSize(512).bufferPoolPages(16).build());
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < KEYS; i++) {
+            records.add(new Record(key(i), row(i)));
+        }
+        btree.bulkLoad(records.iterator());
+        return btree;
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%05d", i).getBytes();
+    }
+
+    private static Map<String, Object> row(int id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", "Name" + id);
+        return row;
+    }
+}
@@ -0,0 +1,195 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that deletes remove keys and keep the tree balanced: underfull
+ * pages are merged or refilled from a sibling and the root collapses as the
+ * tree shrinks.
+ */
+public class BTreeDeleteTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDeleteRemovesOnlyTheGivenKey() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("delete.btree"));
+        try {
+            btree.write("a".getBytes(), row("a", 1));
+            btree.write("b".getBytes(), row("b", 2));
+
+            btree.delete("a".getBytes());
+            btree.delete("missing".getBytes());
+
+            assertTrue(btree.read("a".getBytes()).isEmpty());
+            assertEquals("b", btree.read("b".getBytes()).orElseThrow().get("name"));
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testMassDeleteShrinksTheTree() throws IOException {
+        Path dbPath = tempDir.resolve("shrink.btree");
+        BTree btree = new BTree(dbPath, BTreeConfig.builder().pageSize(512).bufferPoolPages(64).build());
+        try {
+            for (int i = 0; i < 2_000; i++) {
+                btree.write(key(i), row("name" + i, i));
+            }
+            int fullHeight = btree.getTreeHeight();
+            assertTrue(fullHeight >= 3, "Expected at least three levels, got " + fullHeight);
+
+            // Delete all but every 50th key, in an order that empties pages from both ends
+            for (int i = 0; i < 2_000; i++) {
+                int k = i % 2 == 0 ? i / 2 : 1_999 - i / 2;
+                if (k % 50 != 0) {
+                    btree.delete(key(k));
+                }
+            }
+            assertTrue(btree.getTreeHeight() < fullHeight, "Tree height should shrink after deletes");
+
+            List<Record> remaining = btree.scan(new byte[0], null, null);
+            assertEquals(40, remaining.size());
+            for (int i = 0; i < remaining.size(); i++) {
+                assertArrayEquals(key(i * 50), remaining.get(i).getKey());
+            }
+        } finally {
+            btree.close();
+        }
+
+        BTree reopened = new BTree(dbPath, BTreeConfig.builder().pageSize(512).build());
+        try {
+            assertEquals(1_950, reopened.read(key(1_950)).orElseThrow().get("id"));
+            assertTrue(reopened.read(key(1_951)).isEmpty());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testDeletingEverythingLeavesAnEmptyUsableTree() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("empty.btree"), BTreeConfig.builder().pageSize(512).build());
+        try {
+            for (int i = 0; i < 500; i++) {
+                btree.write(key(i), row("name" + i, i));
+            }
+            for (int i = 0; i < 500; i++) {
+                btree.delete(key(i));
+            }
+
+            assertEquals(1, btree.getTreeHeight());
+            assertTrue(btree.scan(new byte[0], null, null).isEmpty());
+
+            btree.write(key(7), row("again", 7));
+            assertEquals("again", btree.read(key(7)).orElseThrow().get("name"));
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testDeleteFreesOverflowedValue() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("overflow.btree"), BTreeConfig.builder().bufferPoolPages(16).build());
+        try {
+            btree.write("doc".getBytes(), row("x".repeat(20_000), 1));
+            btree.write("small".getBytes(), row("y", 2));
+
+            btree.delete("doc".getBytes());
+
+            assertTrue(btree.read("doc".getBytes()).isEmpty());
+            List<Record> all = btree.scan(new byte[0], null, null);
+            assertEquals(1, all.size());
+            assertEquals("y", all.get(0).getValue().get("name"));
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testFreedPagesAreReusedAfterReopen() throws IOException {
+        Path dbPath = tempDir.resolve("reuse.btree");
+        BTreeConfig config = BTreeConfig.builder().pageSize(512).bufferPoolPages(32).build();
+        BTree btree = new BTree(dbPath, config);
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                btree.write(key(i), row("name" + i, i));
+            }
+            btree.write("doc".getBytes(), row("x".repeat(5_000), 0));
+            for (int i = 0; i < 1_000; i++) {
+                btree.delete(key(i));
+            }
+            btree.delete("doc".getBytes());
+        } finally {
+            btree.close();
+        }
+        long sizeAfterDeletes = Files.size(dbPath);
+
+        // The free list survives the restart, so refilling the tree does not grow the file
+        BTree reopened = new BTree(dbPath, config);
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                reopened.write(key(i), row("again" + i, i));
+            }
+            assertEquals("again999", reopened.read(key(999)).orElseThrow().get("name"));
+        } finally {
+            reopened.close();
+        }
+        assertTrue(Files.size(dbPath) <= sizeAfterDeletes,
+            "File grew from " + sizeAfterDeletes + " to " + Files.size(dbPath) + " bytes");
+    }
+
+    @Test
+    void testInterleavedInsertsAndDeletesMatchAReferenceMap() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("mixed.btree"), BTreeConfig.builder().pageSize(512).bufferPoolPages(32).build());
+        try {
+            Map<Integer, Integer> expected = new HashMap<>();
+            Random random = new Random(42);
+            for (int step = 0; step < 5_000; step++) {
+                int k = random.nextInt(800);
+                if (random.nextInt(3) == 0) {
+                    btree.delete(key(k));
+                    expected.remove(k);
+                } else {
+                    btree.write(key(k), row("name" + step, step));
+                    expected.put(k, step);
+                }
+            }
+
+            List<Record> all = btree.scan(new byte[0], null, null);
+            assertEquals(expected.size(), all.size());
+            List<Integer> sortedKeys = new ArrayList<>(expected.keySet());
+            sortedKeys.sort(null);
+            for (int i = 0; i < all.size(); i++) {
+                int k = sortedKeys.get(i);
+                assertArrayEquals(key(k), all.get(i).getKey());
+                assertEquals(expected.get(k), all.get(i).getValue().get("id"));
+            }
+        } finally {
+            btree.close();
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%05d", i).getBytes();
+    }
+
+    private static Map<String, Object> row(String name, int id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("name", name);
+        row.put("id", id);
+        return row;
+    }
+}
@@ -0,0 +1,99 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies key prefix truncation in pages and shortest separators in branch
+ * pages: keys with a long shared prefix take less space, and the tree still
+ * finds every key.
+ */
+public class BTreeKeyCompressionTest {
+    private static final int KEYS = 5_000;
+    private static final BTreeConfig CONFIG = BTreeConfig.builder().pageSize(512).bufferPoolPages(128).build();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testShortestSeparator() {
+        assertArrayEquals("customer_0002".getBytes(),
+            BTree.shortestSeparator("customer_000199".getBytes(), "customer_000200".getBytes()));
+        assertArrayEquals("b".getBytes(), BTree.shortestSeparator("apple".getBytes(), "banana".getBytes()));
+        // The left key is a prefix of the right key
+        assertArrayEquals("abc".getBytes(), BTree.shortestSeparator("ab".getBytes(), "abcd".getBytes()));
+        assertArrayEquals("ab".getBytes(), BTree.shortestSeparator("a".getBytes(), "ab".getBytes()));
+    }
+
+    @Test
+    void testSharedPrefixesMakeTheTreeSmaller() throws IOException {
+        // Same key length and values; only the position of the varying digits differs
+        long sharedPrefixSize = loadAndVerify("shared.btree", i -> String.format("customer_%06d", i));
+        long noPrefixSize = loadAndVerify("unshared.btree", i -> String.format("%06d_customer", i));
+
+        assertTrue(sharedPrefixSize < noPrefixSize * 0.8,
+            "Shared-prefix tree takes " + sharedPrefixSize + " bytes, unshared tree " + noPrefixSize);
+    }
+
+    @Test
+    void testTruncatedKeysSurviveDeletesAndReopen() throws IOException {
+        Path dbPath = tempDir.resolve("reopen.btree");
+        BTree btree = new BTree(dbPath, CONFIG);
+        try {
+            for (int i = 0; i < KEYS; i++) {
+                btree.write(String.format("customer_%06d", i).getBytes(), Map.of("id", i));
+            }
+            for (int i = 0; i < KEYS; i += 3) {
+                btree.delete(String.format("customer_%06d", i).getBytes());
+            }
+            // Keys outside the shared prefix land in the same pages
+            btree.write("customer".getBytes(), Map.of("id", -1));
+            btree.write("customer_1".getBytes(), Map.of("id", -2));
+        } finally {
+            btree.close();
+        }
+
+        BTree reopened = new BTree(dbPath, CONFIG);
+        try {
+            List<Record> all = reopened.scan(new byte[0], null, null);
+            assertEquals(KEYS - (KEYS + 2) / 3 + 2, all.size());
+            assertArrayEquals("customer".getBytes(), all.get(0).getKey());
+            assertArrayEquals("customer_1".getBytes(), all.get(all.size() - 1).getKey());
+            for (int i = 0; i < KEYS; i++) {
+                assertEquals(i % 3 != 0, reopened.read(String.format("customer_%06d", i).getBytes()).isPresent(),
+                    "Wrong lookup result for key " + i);
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private long loadAndVerify(String fileName, IntFunction<String> keyFormat) throws IOException {
+        Path dbPath = tempDir.resolve(fileName);
+        BTree btree = new BTree(dbPath, CONFIG);
+        try {
+            for (int i = 0; i < KEYS; i++) {
+                btree.write(keyFormat.apply(i).getBytes(), Map.of("id", i));
+            }
+            for (int i = 0; i < KEYS; i++) {
+                assertEquals(i, btree.read(keyFormat.apply(i).getBytes()).orElseThrow().get("id"));
+            }
+            List<Record> all = btree.scan(new byte[0], null, null);
+            assertEquals(KEYS, all.size());
+            assertArrayEquals(keyFormat.apply(KEYS - 1).getBytes(), all.get(KEYS - 1).getKey());
+        } finally {
+            btree.close();
+        }
+        return Files.size(dbPath);
+    }
+}
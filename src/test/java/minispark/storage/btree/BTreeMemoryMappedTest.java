@@ -0,0 +1,70 @@
+package minispark.storage.btree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the B+Tree on top of the memory-mapped page manager and checks that
+ * its file stays readable through the FileChannel path. BTreeMemoryMappedBenchmark
+ * compares the speed of the two.
+ */
+public class BTreeMemoryMappedTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMappedTreeSurvivesReopenInEitherMode() throws IOException {
+        Path dbPath = tempDir.resolve("mapped.btree");
+        BTreeConfig mapped = BTreeConfig.builder().memoryMapped(true).build();
+
+        BTree btree = new BTree(dbPath, mapped);
+        for (int i = 0; i < 300; i++) {
+            btree.write(key(i), row(i));
+        }
+        btree.close();
+
+        BTree reopened = new BTree(dbPath, mapped);
+        try {
+            for (int i = 0; i < 300; i += 7) {
+                Optional<Map<String, Object>> result = reopened.read(key(i));
+                assertTrue(result.isPresent(), "Missing key " + i);
+                assertEquals("User" + i, result.get().get("name"));
+            }
+            assertEquals(300, reopened.scan(key(0), null, null).size());
+        } finally {
+            reopened.close();
+        }
+
+        BTree fileChannel = new BTree(dbPath);
+        try {
+            assertEquals("User299", fileChannel.read(key(299)).get().get("name"));
+        } finally {
+            fileChannel.close();
+        }
+    }
+
+    @Test
+    void testMappedModeRejectsWriteAheadLog() {
+        assertThrows(IllegalArgumentException.class,
+            () -> BTreeConfig.builder().memoryMapped(true).writeAheadLog(true).build());
+    }
+
+    private byte[] key(int i) {
+        return String.format("key%05d", i).getBytes();
+    }
+
+    private Map<String, Object> row(int i) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("id", i);
+        value.put("name", "User" + i);
+        return value;
+    }
+}
@@ -0,0 +1,104 @@
+package minispark.storage.btree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies BTree.multiGet: a batch of keys in any order returns what one
+ * read() per key would, while every page on the way is visited only once.
+ */
+public class BTreeMultiGetTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMultiGetMatchesSingleReads() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("multiget.btree"), BTreeConfig.builder().pageSize(512).build());
+        try {
+            for (int i = 0; i < 1_000; i += 2) {
+                btree.write(key(i), row("name" + i, i));
+            }
+            btree.write(key(500), row("x".repeat(2_000), 500));
+
+            // Present, absent, overflowed and repeated keys, shuffled
+            List<byte[]> keys = new ArrayList<>();
+            for (int i = 0; i < 1_000; i += 7) {
+                keys.add(key(i));
+            }
+            keys.add(key(500));
+            keys.add(key(42));
+            keys.add(key(5_000));
+            keys.add(new byte[0]);
+            Collections.shuffle(keys, new Random(7));
+
+            List<Optional<Map<String, Object>>> results = btree.multiGet(keys);
+            assertEquals(keys.size(), results.size());
+            for (int i = 0; i < keys.size(); i++) {
+                assertEquals(btree.read(keys.get(i)), results.get(i), new String(keys.get(i)));
+            }
+            assertEquals("x".repeat(2_000), btree.multiGet(List.of(key(500))).get(0).orElseThrow().get("name"));
+            assertEquals(List.of(), btree.multiGet(List.of()));
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testEveryPageIsVisitedOncePerBatch() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("visits.btree"), BTreeConfig.builder()
+            .pageSize(512)
+            .bufferPoolPages(1_024)
+            .build());
+        try {
+            for (int i = 0; i < 2_000; i++) {
+                btree.write(key(i), row("name" + i, i));
+            }
+
+            // 200 adjacent keys span a handful of leaves under a few branch pages
+            List<byte[]> keys = new ArrayList<>();
+            for (int i = 1_000; i < 1_200; i++) {
+                keys.add(key(i));
+            }
+            Collections.reverse(keys);
+
+            btree.resetPageAccessCounters();
+            assertTrue(btree.multiGet(keys).stream().allMatch(Optional::isPresent));
+            long batchAccesses = btree.getCacheHitCount() + btree.getCacheMissCount();
+
+            btree.resetPageAccessCounters();
+            for (byte[] key : keys) {
+                btree.read(key);
+            }
+            long singleAccesses = btree.getCacheHitCount() + btree.getCacheMissCount();
+
+            // One descent per key touches every level each time; the batch shares them
+            assertTrue(singleAccesses >= 3 * 200, "Single reads touched " + singleAccesses + " pages");
+            assertTrue(batchAccesses < 200 / 4, "The batch touched " + batchAccesses + " pages");
+        } finally {
+            btree.close();
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%05d", i).getBytes();
+    }
+
+    private static Map<String, Object> row(String name, int id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("name", name);
+        row.put("id", id);
+        return row;
+    }
+}
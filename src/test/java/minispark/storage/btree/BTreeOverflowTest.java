@@ -0,0 +1,157 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that values too large for a leaf are stored in overflow page
+ * chains and only read when the value itself is requested.
+ */
+public class BTreeOverflowTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLargeValueSurvivesReopen() throws IOException {
+        Path dbPath = tempDir.resolve("large.btree");
+        BTree btree = new BTree(dbPath);
+        try {
+            btree.write("doc".getBytes(), row('x', 20_000));
+            assertEquals(text('x', 20_000), btree.read("doc".getBytes()).orElseThrow().get("body"));
+        } finally {
+            btree.close();
+        }
+
+        BTree reopened = new BTree(dbPath);
+        try {
+            assertEquals(text('x', 20_000), reopened.read("doc".getBytes()).orElseThrow().get("body"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testOverflowPagesAreReadOnlyForTheRequestedValue() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("lazy.btree"));
+        try {
+            // 50 wide rows; the leaf only holds pointers, so they all fit in the root leaf
+            for (int i = 0; i < 50; i++) {
+                btree.write(String.format("key%02d", i).getBytes(), row((char) ('a' + i % 26), 10_000));
+            }
+
+            btree.resetPageAccessCounters();
+            Map<String, Object> value = btree.read("key07".getBytes()).orElseThrow();
+
+            assertEquals(text('h', 10_000), value.get("body"));
+            // One leaf plus the three overflow pages of this value, none of the other 147
+            assertEquals(4, btree.getPageReadsCount());
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testReplacingValuesSwitchesBetweenInlineAndOverflow() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("replace.btree"), BTreeConfig.builder().bufferPoolPages(16).build());
+        try {
+            byte[] key = "doc".getBytes();
+            btree.write(key, row('a', 10));
+            btree.write(key, row('b', 9_000));
+            assertEquals(text('b', 9_000), btree.read(key).orElseThrow().get("body"));
+
+            btree.write(key, row('c', 12_000));
+            assertEquals(text('c', 12_000), btree.read(key).orElseThrow().get("body"));
+
+            btree.write(key, row('d', 10));
+            assertEquals(text('d', 10), btree.read(key).orElseThrow().get("body"));
+
+            List<Record> all = btree.scan(new byte[0], null, null);
+            assertEquals(1, all.size());
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testScanAndBulkLoadWithOverflowedValues() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("bulk.btree"), BTreeConfig.builder().pageSize(1024).build());
+        try {
+            List<Record> records = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                records.add(new Record(String.format("key%02d", i).getBytes(), row('z', i % 2 == 0 ? 3_000 : 20)));
+            }
+            btree.bulkLoad(records.iterator());
+
+            List<Record> scanned = btree.scan("key10".getBytes(), "key20".getBytes(), List.of("body"));
+            assertEquals(10, scanned.size());
+            for (int i = 0; i < scanned.size(); i++) {
+                assertEquals(text('z', (10 + i) % 2 == 0 ? 3_000 : 20), scanned.get(i).getValue().get("body"));
+            }
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testOptimisticReadersNeverSeeATornOverflowValue() throws Exception {
+        BTree btree = new BTree(tempDir.resolve("torn.btree"), BTreeConfig.builder().bufferPoolPages(64).build());
+        try {
+            byte[] key = "doc".getBytes();
+            btree.write(key, row('a', 9_000));
+
+            AtomicBoolean done = new AtomicBoolean();
+            Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+            List<Thread> readers = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                readers.add(new Thread(() -> {
+                    try {
+                        while (!done.get()) {
+                            String body = (String) btree.read(key).orElseThrow().get("body");
+                            // Every version is a single repeated character
+                            assertEquals(text(body.charAt(0), body.length()), body);
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }));
+            }
+            readers.forEach(Thread::start);
+            for (int i = 0; i < 100; i++) {
+                btree.write(key, row((char) ('a' + i % 26), 5_000 + (i % 3) * 2_000));
+            }
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+
+            if (!failures.isEmpty()) {
+                fail("Reader saw an inconsistent value: " + failures.peek(), failures.peek());
+            }
+        } finally {
+            btree.close();
+        }
+    }
+
+    private static Map<String, Object> row(char fill, int length) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("body", text(fill, length));
+        return row;
+    }
+
+    private static String text(char fill, int length) {
+        return String.valueOf(fill).repeat(length);
+    }
+}
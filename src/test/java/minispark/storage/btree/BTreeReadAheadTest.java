@@ -0,0 +1,112 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that sequential scans prefetch leaves in the background and that
+ * prefetching never changes what a scan returns.
+ */
+public class BTreeReadAheadTest {
+    private static final int KEYS = 5_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testColdSequentialScanPrefetchesLeaves() throws IOException {
+        Path dbPath = tempDir.resolve("cold.btree");
+        BTreeConfig config = BTreeConfig.builder().pageSize(512).bufferPoolPages(64).readAheadPages(8).build();
+        load(dbPath, config);
+
+        // Reopen so the scan starts with an empty buffer pool
+        BTree btree = new BTree(dbPath, config);
+        try {
+            assertScansEverything(btree);
+            assertTrue(btree.getPrefetchCount() > 0, "Expected the scan to prefetch leaves");
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testReadAheadCanBeDisabled() throws IOException {
+        Path dbPath = tempDir.resolve("disabled.btree");
+        BTreeConfig config = BTreeConfig.builder().pageSize(512).bufferPoolPages(64).readAheadPages(0).build();
+        load(dbPath, config);
+
+        BTree btree = new BTree(dbPath, config);
+        try {
+            assertScansEverything(btree);
+            assertEquals(0, btree.getPrefetchCount());
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testScanWithReadAheadWhileWriting() throws Exception {
+        BTreeConfig config = BTreeConfig.builder().pageSize(512).bufferPoolPages(16).readAheadPages(4).build();
+        BTree btree = new BTree(tempDir.resolve("writes.btree"), config);
+        try {
+            for (int i = 0; i < KEYS; i += 2) {
+                btree.write(key(i), Map.of("id", i));
+            }
+
+            // Odd keys are inserted while the scans run; even keys must always be seen exactly once
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = 1; i < KEYS; i += 2) {
+                        btree.write(key(i), Map.of("id", i));
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.start();
+            while (writer.isAlive()) {
+                List<Record> all = btree.scan(new byte[0], null, null);
+                long even = all.stream().filter(record -> (Integer) record.getValue().get("id") % 2 == 0).count();
+                assertEquals(KEYS / 2, even);
+            }
+            writer.join();
+            assertScansEverything(btree);
+        } finally {
+            btree.close();
+        }
+    }
+
+    private void load(Path dbPath, BTreeConfig config) throws IOException {
+        BTree btree = new BTree(dbPath, config);
+        try {
+            List<Record> records = new ArrayList<>();
+            for (int i = 0; i < KEYS; i++) {
+                records.add(new Record(key(i), Map.of("id", i)));
+            }
+            btree.bulkLoad(records.iterator());
+        } finally {
+            btree.close();
+        }
+    }
+
+    private void assertScansEverything(BTree btree) throws IOException {
+        List<Record> all = btree.scan(new byte[0], null, null);
+        assertEquals(KEYS, all.size());
+        for (int i = 0; i < KEYS; i++) {
+            assertArrayEquals(key(i), all.get(i).getKey());
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%05d", i).getBytes();
+    }
+}
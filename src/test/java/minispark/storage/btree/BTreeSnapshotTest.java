@@ -0,0 +1,188 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import minispark.storage.RecordCursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies BTree snapshots: a snapshot keeps reading the tree as it was when
+ * it was taken through splits, merges and overflow changes, and the page
+ * images kept for it go away once it is closed.
+ */
+public class BTreeSnapshotTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSnapshotSeesThePastThroughSplitsAndMerges() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("snapshot.btree"), BTreeConfig.builder().pageSize(512).bufferPoolPages(64).build());
+        try {
+            for (int i = 0; i < 500; i += 2) {
+                btree.write(key(i), row("name" + i, i));
+            }
+            btree.write(key(1), row("x".repeat(2_000), 1));
+
+            BTree.Snapshot snapshot = btree.snapshot();
+            assertEquals(0, btree.getSnapshotPageImageCount());
+
+            // Odd keys split leaves, deletes merge them, and the overflowed value is replaced
+            for (int i = 3; i < 500; i += 2) {
+                btree.write(key(i), row("name" + i, i));
+            }
+            for (int i = 0; i < 400; i += 2) {
+                btree.delete(key(i));
+            }
+            btree.write(key(1), row("small", 1));
+            assertTrue(btree.getSnapshotPageImageCount() > 0);
+
+            assertEquals("name0", snapshot.read(key(0)).orElseThrow().get("name"));
+            assertTrue(snapshot.read(key(3)).isEmpty());
+            assertEquals("x".repeat(2_000), snapshot.read(key(1)).orElseThrow().get("name"));
+
+            List<Record> records = snapshot.scan(key(0), null, List.of("id"));
+            assertEquals(251, records.size());
+            assertArrayEquals(key(1), records.get(1).getKey());
+            assertEquals(Map.of("id", 498), records.get(250).getValue());
+
+            // Seeking a snapshot cursor stays within the snapshot
+            try (RecordCursor cursor = snapshot.openCursor(key(0), key(10), null)) {
+                cursor.seek(key(5));
+                assertArrayEquals(key(6), cursor.next().getKey());
+                assertArrayEquals(key(8), cursor.next().getKey());
+                assertFalse(cursor.hasNext());
+            }
+
+            assertEquals("small", btree.read(key(1)).orElseThrow().get("name"));
+            assertTrue(btree.read(key(0)).isEmpty());
+            assertEquals(50 + 250, btree.scan(key(0), null, null).size());
+
+            snapshot.close();
+            assertEquals(0, btree.getSnapshotPageImageCount());
+            assertEquals(0, btree.getOpenSnapshotCount());
+            assertThrows(IllegalStateException.class, () -> snapshot.read(key(0)));
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testImagesAreKeptOnlyForOpenSnapshots() throws IOException {
+        BTree btree = new BTree(tempDir.resolve("images.btree"));
+        try {
+            btree.write(key(0), row("v0", 0));
+            BTree.Snapshot first = btree.snapshot();
+            btree.write(key(0), row("v1", 1));
+            BTree.Snapshot second = btree.snapshot();
+            btree.write(key(0), row("v2", 2));
+            btree.write(key(0), row("v3", 3));
+
+            assertEquals("v0", first.read(key(0)).orElseThrow().get("name"));
+            assertEquals("v1", second.read(key(0)).orElseThrow().get("name"));
+            // One image per snapshot, however often the page changes after it
+            assertEquals(2, btree.getSnapshotPageImageCount());
+
+            first.close();
+            assertEquals(1, btree.getSnapshotPageImageCount());
+            assertEquals("v1", second.read(key(0)).orElseThrow().get("name"));
+            second.close();
+            assertEquals(0, btree.getSnapshotPageImageCount());
+
+            btree.write(key(0), row("v4", 4));
+            assertEquals(0, btree.getSnapshotPageImageCount());
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testSnapshotScansSeeConsistentTotalsUnderConcurrentWrites() throws Exception {
+        int accounts = 300;
+        BTree btree = new BTree(tempDir.resolve("transfers.btree"), BTreeConfig.builder()
+            .pageSize(512)
+            .bufferPoolPages(128)
+            .snapshotScans(true)
+            .build());
+        try {
+            for (int i = 0; i < accounts; i++) {
+                btree.write(key(i), row("account" + i, 100));
+            }
+
+            // A transfer is two writes; only a point-in-time scan sees the total unchanged
+            AtomicBoolean stop = new AtomicBoolean();
+            List<Throwable> failures = new ArrayList<>();
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int n = 0; n < 3_000; n++) {
+                        int from = (n * 7) % accounts;
+                        int to = (n * 13 + 1) % accounts;
+                        if (from == to) {
+                            continue;
+                        }
+                        Map<String, Object> fromRow = btree.read(key(from)).orElseThrow();
+                        btree.write(key(from), row("account" + from, (Integer) fromRow.get("id") - 1));
+                        Map<String, Object> toRow = btree.read(key(to)).orElseThrow();
+                        btree.write(key(to), row("account" + to, (Integer) toRow.get("id") + 1));
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        int total = 0;
+                        int count = 0;
+                        try (RecordCursor cursor = btree.openCursor(key(0), null, List.of("id"))) {
+                            while (cursor.hasNext()) {
+                                total += (Integer) cursor.next().getValue().get("id");
+                                count++;
+                            }
+                        }
+                        assertEquals(accounts, count);
+                        // A transfer's first write may be in the snapshot without its second
+                        assertTrue(total == accounts * 100 || total == accounts * 100 - 1, "Total was " + total);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            reader.start();
+            writer.start();
+            writer.join();
+            stop.set(true);
+            reader.join();
+
+            assertEquals(List.of(), failures);
+            assertEquals(0, btree.getOpenSnapshotCount());
+            assertEquals(0, btree.getSnapshotPageImageCount());
+        } finally {
+            btree.close();
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%05d", i).getBytes();
+    }
+
+    private static Map<String, Object> row(String name, int id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("name", name);
+        row.put("id", id);
+        return row;
+    }
+}
@@ -0,0 +1,102 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that a B+Tree with a write-ahead log commits through the log and
+ * recovers committed writes after a crash.
+ */
+public class BTreeWriteAheadLogTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBatchIsOneLogFsyncAndNoDataFsyncs() throws IOException {
+        BTreeConfig config = BTreeConfig.builder().bufferPoolPages(64).writeAheadLog(true).build();
+        BTree btree = new BTree(tempDir.resolve("batch.btree"), config);
+        try {
+            long logSyncsBefore = btree.getLogSyncCount();
+            long dataSyncsBefore = btree.getDataSyncCount();
+
+            List<Record> records = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                records.add(new Record(String.format("key%04d", i).getBytes(), row(i)));
+            }
+            btree.writeBatch(records);
+
+            assertEquals(1, btree.getLogSyncCount() - logSyncsBefore);
+            assertEquals(0, btree.getDataSyncCount() - dataSyncsBefore);
+        } finally {
+            btree.close();
+        }
+    }
+
+    @Test
+    void testCommittedWritesAreRecoveredAfterCrash() throws IOException {
+        Path dbPath = tempDir.resolve("crash.btree");
+        BTreeConfig config = BTreeConfig.builder().bufferPoolPages(64).writeAheadLog(true).build();
+
+        // Pages stay dirty in the pool, so only the log holds the data; never closed = crash
+        BTree crashed = new BTree(dbPath, config);
+        for (int i = 0; i < 50; i++) {
+            crashed.write(String.format("key%04d", i).getBytes(), row(i));
+        }
+        assertTrue(Files.size(tempDir.resolve("crash.btree.wal")) > 0);
+
+        BTree recovered = new BTree(dbPath, config);
+        try {
+            for (int i = 0; i < 50; i++) {
+                Optional<Map<String, Object>> result = recovered.read(String.format("key%04d", i).getBytes());
+                assertTrue(result.isPresent(), "Missing key " + i);
+                assertEquals("User" + i, result.get().get("name"));
+            }
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    void testCheckpointTruncatesLog() throws IOException {
+        Path dbPath = tempDir.resolve("checkpoint.btree");
+        BTreeConfig config = BTreeConfig.builder()
+            .writeAheadLog(true)
+            .checkpointThresholdBytes(16 * 1024)
+            .build();
+
+        BTree btree = new BTree(dbPath, config);
+        for (int i = 0; i < 100; i++) {
+            btree.write(String.format("key%04d", i).getBytes(), row(i));
+            assertTrue(Files.size(tempDir.resolve("checkpoint.btree.wal")) < 16 * 1024 + 2 * 4096 * 4);
+        }
+        assertTrue(btree.getDataSyncCount() > 0, "Checkpoints force the data file");
+        btree.close();
+        assertEquals(0, Files.size(tempDir.resolve("checkpoint.btree.wal")));
+
+        BTree reopened = new BTree(dbPath);
+        try {
+            assertEquals("User99", reopened.read("key0099".getBytes()).get().get("name"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private Map<String, Object> row(int i) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("id", i);
+        value.put("name", "User" + i);
+        return value;
+    }
+}
@@ -0,0 +1,110 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import minispark.storage.btree.page.Page;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that files written with the version 1 page layout are upgraded on open.
+ */
+public class PageFormatMigratorTest {
+    private static final int PAGE_SIZE = 4096;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testVersionOneFileIsMigratedOnOpen() throws IOException {
+        Path dbPath = tempDir.resolve("legacy.btree");
+        writeVersionOneTree(dbPath);
+
+        BTree btree = new BTree(dbPath);
+        try {
+            for (int i = 0; i < 40; i++) {
+                Optional<Map<String, Object>> result = btree.read(String.format("key%03d", i).getBytes());
+                assertTrue(result.isPresent(), "Missing key " + i);
+                assertEquals("User" + i, result.get().get("name"));
+            }
+            List<Record> all = btree.scan("key000".getBytes(), null, null);
+            assertEquals(40, all.size());
+        } finally {
+            btree.close();
+        }
+
+        // Second open sees the current format and does not migrate again
+        assertFalse(PageFormatMigrator.migrateIfNeeded(dbPath, PAGE_SIZE));
+    }
+
+    @Test
+    void testCurrentFormatIsLeftAlone() throws IOException {
+        Path dbPath = tempDir.resolve("current.btree");
+        BTree btree = new BTree(dbPath);
+        btree.write("key".getBytes(), row(1));
+        btree.close();
+
+        assertFalse(PageFormatMigrator.migrateIfNeeded(dbPath, PAGE_SIZE));
+    }
+
+    /**
+     * Page 0: metadata, page 1 and 2: linked leaves, page 3: branch root.
+     */
+    private void writeVersionOneTree(Path dbPath) throws IOException {
+        ValueSerializer serializer = new ValueSerializer();
+        ByteBuffer[] pages = new ByteBuffer[4];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = ByteBuffer.allocate(PAGE_SIZE);
+        }
+
+        appendV1Element(pages[0], "BTREE_ROOT_ID".getBytes(), ByteBuffer.allocate(8).putLong(3).array());
+
+        pages[1].putInt(0, Page.FLAG_LEAF).putLong(8, 2);
+        pages[2].putInt(0, Page.FLAG_LEAF);
+        for (int i = 0; i < 40; i++) {
+            ByteBuffer leaf = i < 20 ? pages[1] : pages[2];
+            appendV1Element(leaf, String.format("key%03d", i).getBytes(), serializer.serialize(row(i)));
+        }
+
+        pages[3].putInt(0, Page.FLAG_BRANCH);
+        appendV1Element(pages[3], new byte[0], ByteBuffer.allocate(8).putLong(1).array());
+        appendV1Element(pages[3], "key020".getBytes(), ByteBuffer.allocate(8).putLong(2).array());
+
+        try (FileChannel channel = FileChannel.open(dbPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < pages.length; i++) {
+                channel.write(ByteBuffer.wrap(pages[i].array()), (long) i * PAGE_SIZE);
+            }
+        }
+    }
+
+    private void appendV1Element(ByteBuffer page, byte[] key, byte[] value) {
+        int count = page.getInt(4);
+        int offset = 16;
+        for (int i = 0; i < count; i++) {
+            offset += Page.ELEM_HEADER_SIZE + page.getShort(offset) + page.getShort(offset + 2);
+        }
+        page.putShort(offset, (short) key.length);
+        page.putShort(offset + 2, (short) value.length);
+        page.put(offset + Page.ELEM_HEADER_SIZE, key);
+        page.put(offset + Page.ELEM_HEADER_SIZE + key.length, value);
+        page.putInt(4, count + 1);
+    }
+
+    private Map<String, Object> row(int i) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("id", i);
+        value.put("name", "User" + i);
+        return value;
+    }
+}
@@ -0,0 +1,138 @@
+package minispark.storage.btree;
+
+import minispark.storage.Record;
+import minispark.storage.table.TableSchema;
+import minispark.storage.table.TableSchema.ColumnDefinition;
+import minispark.storage.table.TableSchema.ColumnType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the schema row format against the self-describing map format:
+ * values round-trip, projections decode only the requested columns, and
+ * both formats can be read by one serializer.
+ */
+public class ValueSerializerTest {
+    private static final TableSchema SCHEMA = new TableSchema("id", List.of(
+        new ColumnDefinition("id", ColumnType.STRING, true),
+        new ColumnDefinition("name", ColumnType.STRING, true),
+        new ColumnDefinition("age", ColumnType.INTEGER, false),
+        new ColumnDefinition("balance", ColumnType.LONG, false),
+        new ColumnDefinition("score", ColumnType.DOUBLE, false),
+        new ColumnDefinition("active", ColumnType.BOOLEAN, false),
+        new ColumnDefinition("city", ColumnType.STRING, false)));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSchemaRowRoundTripsEveryType() {
+        ValueSerializer serializer = new ValueSerializer(SCHEMA);
+        Map<String, Object> row = customer(7);
+
+        byte[] rowBytes = serializer.serialize(row);
+        assertEquals(row, serializer.deserialize(rowBytes));
+        assertTrue(rowBytes.length < new ValueSerializer().serialize(row).length / 2,
+            "Schema row takes " + rowBytes.length + " bytes");
+
+        // Absent columns stay absent, including strings between present ones
+        row.remove("name");
+        row.remove("balance");
+        assertEquals(row, serializer.deserialize(serializer.serialize(row)));
+    }
+
+    @Test
+    void testProjectionDecodesOnlyRequestedColumns() {
+        ValueSerializer serializer = new ValueSerializer(SCHEMA);
+        byte[] rowBytes = serializer.serialize(customer(3));
+
+        assertEquals(Map.of("city", "City3", "age", 23), serializer.deserialize(rowBytes, List.of("city", "age")));
+        assertEquals(Map.of("name", "Customer3"), serializer.deserialize(rowBytes, List.of("name", "unknown")));
+
+        // Map-encoded values honour the projection too
+        byte[] mapBytes = new ValueSerializer().serialize(customer(3));
+        assertEquals(Map.of("city", "City3", "age", 23), serializer.deserialize(mapBytes, List.of("city", "age")));
+    }
+
+    @Test
+    void testValuesOutsideTheSchemaUseTheMapFormat() {
+        ValueSerializer serializer = new ValueSerializer(SCHEMA);
+
+        Map<String, Object> extraColumn = customer(1);
+        extraColumn.put("nickname", "Nick");
+        Map<String, Object> wrongType = customer(2);
+        wrongType.put("age", "twenty");
+        Map<String, Object> explicitNull = customer(3);
+        explicitNull.put("city", null);
+
+        for (Map<String, Object> value : List.of(extraColumn, wrongType, explicitNull)) {
+            assertEquals(value, serializer.deserialize(serializer.serialize(value)));
+        }
+        assertTrue(serializer.deserialize(serializer.serialize(explicitNull)).containsKey("city"));
+    }
+
+    @Test
+    void testRowsWrittenBeforeAColumnWasAddedStayReadable() {
+        List<ColumnDefinition> columns = new ArrayList<>();
+        columns.add(new ColumnDefinition("id", ColumnType.STRING, true));
+        columns.add(new ColumnDefinition("name", ColumnType.STRING, true));
+        byte[] oldRow = new ValueSerializer(new TableSchema("id", columns)).serialize(Map.of("id", "c1", "name", "Old"));
+
+        columns.add(new ColumnDefinition("email", ColumnType.STRING, false));
+        ValueSerializer widened = new ValueSerializer(new TableSchema("id", columns));
+
+        assertEquals(Map.of("id", "c1", "name", "Old"), widened.deserialize(oldRow));
+        assertEquals(Map.of(), widened.deserialize(oldRow, List.of("email")));
+    }
+
+    @Test
+    void testBTreeWithRowSchemaStoresDenserPages() throws IOException {
+        long mapFormatSize = loadCustomers("map.btree", BTreeConfig.builder().pageSize(1024).build());
+        long rowFormatSize = loadCustomers("rows.btree", BTreeConfig.builder().pageSize(1024).rowSchema(SCHEMA).build());
+
+        assertTrue(rowFormatSize < mapFormatSize * 0.6,
+            "Row format file is " + rowFormatSize + " bytes, map format " + mapFormatSize);
+    }
+
+    private long loadCustomers(String fileName, BTreeConfig config) throws IOException {
+        Path dbPath = tempDir.resolve(fileName);
+        BTree btree = new BTree(dbPath, config);
+        try {
+            List<Record> records = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                records.add(new Record(String.format("customer_%06d", i).getBytes(), customer(i)));
+            }
+            btree.bulkLoad(records.iterator());
+
+            List<Record> projected = btree.scan("customer_000100".getBytes(), "customer_000200".getBytes(), List.of("age"));
+            assertEquals(100, projected.size());
+            assertEquals(Map.of("age", 120), projected.get(0).getValue());
+            assertEquals(customer(1_999), btree.read("customer_001999".getBytes()).orElseThrow());
+        } finally {
+            btree.close();
+        }
+        return Files.size(dbPath);
+    }
+
+    private static Map<String, Object> customer(int i) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", "customer_" + i);
+        row.put("name", "Customer" + i);
+        row.put("age", 20 + i);
+        row.put("balance", 1_000L * i);
+        row.put("score", i / 4.0);
+        row.put("active", i % 2 == 0);
+        row.put("city", "City" + i);
+        return row;
+    }
+}
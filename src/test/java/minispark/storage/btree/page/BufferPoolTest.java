@@ -0,0 +1,203 @@
+package minispark.storage.btree.page;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import minispark.storage.wal.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferPoolTest {
+    private static final int PAGE_SIZE = 4096;
+
+    @TempDir
+    Path tempDir;
+
+    private Path dbPath;
+    private PageManager pageManager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dbPath = tempDir.resolve("pool.btree");
+        pageManager = new PageManager(dbPath, PAGE_SIZE);
+        for (int i = 0; i < 4; i++) {
+            pageManager.allocatePage();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        pageManager.close();
+    }
+
+    @Test
+    void testRepeatedPinIsServedFromMemory() throws IOException {
+        BufferPool pool = new BufferPool(pageManager, 4);
+        pageManager.resetAccessCounters();
+
+        Page first = pool.pin(1);
+        pool.unpin(first);
+        Page second = pool.pin(1);
+        pool.unpin(second);
+
+        assertSame(first, second);
+        assertEquals(1, pool.getMissCount());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pageManager.getPageReadsCount());
+    }
+
+    @Test
+    void testPrefetchedPageIsServedFromMemoryWithoutAPin() throws IOException {
+        BufferPool pool = new BufferPool(pageManager, 4);
+
+        Page prefetched = pool.prefetch(2);
+        assertEquals(1, pool.getPrefetchCount());
+        assertSame(prefetched, pool.prefetch(2));
+        assertEquals(1, pool.getPrefetchCount());
+
+        // Not pinned: pinning it is a hit, and unpinning it once is all that is needed
+        Page pinned = pool.pin(2);
+        assertSame(prefetched, pinned);
+        assertEquals(0, pool.getMissCount());
+        pool.unpin(pinned);
+        assertThrows(IllegalStateException.class, () -> pool.unpin(pinned));
+    }
+
+    @Test
+    void testPrefetchNeedsCapacity() throws IOException {
+        BufferPool pool = new BufferPool(pageManager, 0);
+        assertNull(pool.prefetch(2));
+        assertEquals(0, pageManager.getPageReadsCount());
+    }
+
+    @Test
+    void testClockEvictsUnreferencedPageAndWritesItBack() throws IOException {
+        BufferPool pool = new BufferPool(pageManager, 2);
+
+        Page page1 = pool.pin(1);
+        page1.setFlags(Page.FLAG_LEAF);
+        pool.markDirty(page1);
+        pool.unpin(page1);
+
+        pool.unpin(pool.pin(2));
+        pool.unpin(pool.pin(3));
+
+        assertEquals(1, pool.getEvictionCount());
+        assertEquals(2, pool.getResidentCount());
+
+        // The dirty page must have been written back on eviction
+        pageManager.resetAccessCounters();
+        Page reread = pool.pin(1);
+        assertEquals(Page.FLAG_LEAF, reread.flags());
+        assertEquals(1, pageManager.getPageReadsCount());
+        pool.unpin(reread);
+    }
+
+    @Test
+    void testPinnedPagesAreNeverEvicted() throws IOException {
+        BufferPool pool = new BufferPool(pageManager, 1);
+
+        Page pinned = pool.pin(1);
+        Page overflow = pool.pin(2);
+
+        assertEquals(0, pool.getEvictionCount());
+        assertSame(pinned, pool.pin(1));
+
+        // The second page did not fit, so it is written back as soon as it is released
+        overflow.setFlags(Page.FLAG_BRANCH);
+        pool.markDirty(overflow);
+        long writesBefore = pageManager.getPageWritesCount();
+        pool.unpin(overflow);
+        assertEquals(writesBefore + 1, pageManager.getPageWritesCount());
+
+        pool.unpin(pinned);
+        pool.unpin(pinned);
+    }
+
+    @Test
+    void testFlushWritesDirtyPagesOnce() throws IOException {
+        BufferPool pool = new BufferPool(pageManager, 4);
+        Page page = pool.pin(2);
+        page.setFlags(Page.FLAG_LEAF);
+        pool.markDirty(page);
+        pool.unpin(page);
+
+        pageManager.resetAccessCounters();
+        pool.flush();
+        pool.flush();
+
+        assertEquals(1, pageManager.getPageWritesCount());
+    }
+
+    @Test
+    void testUnpinWithoutPinFails() throws IOException {
+        BufferPool pool = new BufferPool(pageManager, 4);
+        Page page = pool.pin(1);
+        pool.unpin(page);
+
+        assertThrows(IllegalStateException.class, () -> pool.unpin(page));
+    }
+
+    @Test
+    void testRecoveryReplaysOnlyCommittedPages() throws IOException {
+        Path logPath = tempDir.resolve("pool.wal");
+        try (WriteAheadLog log = new WriteAheadLog(logPath)) {
+            BufferPool pool = new BufferPool(pageManager, 4, log);
+
+            Page page = pool.pin(1);
+            page.insert("k1".getBytes(), "v1".getBytes());
+            pool.markDirty(page);
+            pool.unpin(page);
+            log.sync(pool.commit());
+
+            // A page image whose commit record never made it to the log
+            Page torn = new Page(PAGE_SIZE, 2);
+            torn.insert("k2".getBytes(), "v2".getBytes());
+            ByteBuffer image = ByteBuffer.allocate(1 + Long.BYTES + PAGE_SIZE);
+            image.put((byte) 1).putLong(2).put(torn.getData());
+            log.sync(log.append(image.array()));
+        }
+
+        // Crash: nothing was written back to the data file
+        assertEquals(0, pageManager.readPage(1).count());
+
+        try (WriteAheadLog log = new WriteAheadLog(logPath)) {
+            BufferPool pool = new BufferPool(pageManager, 4, log);
+            assertEquals(1, pool.recover());
+            assertEquals(0, log.size());
+        }
+        assertEquals(1, pageManager.readPage(1).count());
+        assertEquals(0, pageManager.readPage(2).count());
+    }
+
+    @Test
+    void testUncommittedPagesAreNeverEvicted() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(tempDir.resolve("nosteal.wal"))) {
+            BufferPool pool = new BufferPool(pageManager, 1, log);
+
+            Page page = pool.pin(1);
+            page.insert("k1".getBytes(), "v1".getBytes());
+            pool.markDirty(page);
+            pool.unpin(page);
+
+            // Needs the only slot, but page 1 is uncommitted and must stay in memory
+            Page other = pool.pin(2);
+            pool.unpin(other);
+            assertEquals(0, pool.getEvictionCount());
+            assertEquals(0, pageManager.readPage(1).count());
+
+            // After commit the page may leave, but only once the log is durable
+            long lsn = pool.commit();
+            pool.checkpoint();
+            assertTrue(log.getSyncCount() >= 1);
+            assertTrue(lsn > 0);
+            assertEquals(1, pageManager.readPage(1).count());
+        }
+    }
+}
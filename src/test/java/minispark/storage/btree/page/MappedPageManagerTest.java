@@ -0,0 +1,88 @@
+package minispark.storage.btree.page;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedPageManagerTest {
+    private static final int PAGE_SIZE = 4096;
+    private static final int CHUNK_SIZE = 4 * PAGE_SIZE;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadReturnsViewOfMapping() throws IOException {
+        try (MappedPageManager pageManager = new MappedPageManager(tempDir.resolve("view.btree"), PAGE_SIZE, false, CHUNK_SIZE)) {
+            long pageId = pageManager.allocatePage();
+
+            Page first = pageManager.readPage(pageId);
+            first.insert("key".getBytes(), "value".getBytes());
+
+            // No writePage needed: both pages wrap the same mapped bytes
+            Page second = pageManager.readPage(pageId);
+            assertEquals(1, second.count());
+            assertArrayEquals("value".getBytes(), second.element(0).value());
+        }
+    }
+
+    @Test
+    void testFileGrowsInChunks() throws IOException {
+        Path dbPath = tempDir.resolve("chunks.btree");
+        try (MappedPageManager pageManager = new MappedPageManager(dbPath, PAGE_SIZE, false, CHUNK_SIZE)) {
+            pageManager.allocatePage();
+            assertEquals(1, pageManager.getMappedRegionCount());
+            assertEquals(CHUNK_SIZE, Files.size(dbPath));
+
+            for (int i = 0; i < 4; i++) {
+                pageManager.allocatePage();
+            }
+            assertEquals(2, pageManager.getMappedRegionCount());
+            assertEquals(2 * CHUNK_SIZE, Files.size(dbPath));
+            assertEquals(5 * PAGE_SIZE, pageManager.getFileSize());
+        }
+    }
+
+    @Test
+    void testReopenRecoversPageCountAndData() throws IOException {
+        Path dbPath = tempDir.resolve("reopen.btree");
+        try (MappedPageManager pageManager = new MappedPageManager(dbPath, PAGE_SIZE, false, CHUNK_SIZE)) {
+            for (int i = 0; i < 3; i++) {
+                Page page = pageManager.readPage(pageManager.allocatePage());
+                page.setFlags(Page.FLAG_LEAF);
+                page.insert(("key" + i).getBytes(), ("value" + i).getBytes());
+                pageManager.writePage(page);
+            }
+        }
+
+        try (MappedPageManager pageManager = new MappedPageManager(dbPath, PAGE_SIZE, false, CHUNK_SIZE)) {
+            assertEquals(3 * PAGE_SIZE, pageManager.getFileSize());
+            assertArrayEquals("value2".getBytes(), pageManager.readPage(2).element(0).value());
+            assertThrows(IOException.class, () -> pageManager.readPage(3));
+        }
+
+        // The regular page manager reads the same file
+        try (PageManager pageManager = new PageManager(dbPath, PAGE_SIZE)) {
+            assertArrayEquals("value1".getBytes(), pageManager.readPage(1).element(0).value());
+        }
+    }
+
+    @Test
+    void testHeapPagesAreCopiedIn() throws IOException {
+        Path dbPath = tempDir.resolve("copy.btree");
+        try (MappedPageManager pageManager = new MappedPageManager(dbPath, PAGE_SIZE, true, CHUNK_SIZE)) {
+            long pageId = pageManager.allocatePage();
+            Page heapPage = new Page(PAGE_SIZE, pageId);
+            heapPage.insert("a".getBytes(), "b".getBytes());
+            pageManager.writePage(heapPage);
+
+            assertEquals(1, pageManager.readPage(pageId).count());
+            assertEquals(1, pageManager.getSyncCount());
+        }
+    }
+}
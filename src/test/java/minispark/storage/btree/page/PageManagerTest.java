@@ -0,0 +1,96 @@
+package minispark.storage.btree.page;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageManagerTest {
+    private static final int PAGE_SIZE = 4096;
+    private static final int EXTENT_SIZE = 16 * PAGE_SIZE;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFileGrowsInExtents() throws IOException {
+        Path dbPath = tempDir.resolve("extents.btree");
+        try (PageManager pageManager = new PageManager(dbPath, PAGE_SIZE, false, EXTENT_SIZE)) {
+            for (int i = 0; i < 40; i++) {
+                pageManager.allocatePage();
+            }
+
+            assertEquals(3, pageManager.getFileExtensionCount());
+            assertEquals(3 * EXTENT_SIZE, Files.size(dbPath));
+            assertEquals(40 * PAGE_SIZE, pageManager.getFileSize());
+            assertEquals(0, pageManager.getPageWritesCount());
+
+            // Allocated pages read back as empty pages
+            assertEquals(0, pageManager.readPage(39).count());
+            assertThrows(IOException.class, () -> pageManager.readPage(40));
+        }
+
+        // Closing gives back the unused part of the last extent
+        assertEquals(40 * PAGE_SIZE, Files.size(dbPath));
+    }
+
+    @Test
+    void testReopenSkipsPreallocatedSpaceLeftByACrash() throws IOException {
+        Path dbPath = tempDir.resolve("crash.btree");
+        try (PageManager pageManager = new PageManager(dbPath, PAGE_SIZE, false, EXTENT_SIZE)) {
+            for (int i = 0; i < 3; i++) {
+                Page page = pageManager.emptyPage(pageManager.allocatePage());
+                page.setFlags(Page.FLAG_LEAF);
+                page.insert(("key" + i).getBytes(), ("value" + i).getBytes());
+                pageManager.writePage(page);
+            }
+        }
+
+        // A crash leaves the preallocated extent behind
+        try (RandomAccessFile file = new RandomAccessFile(dbPath.toFile(), "rw")) {
+            file.setLength(EXTENT_SIZE);
+        }
+
+        try (PageManager pageManager = new PageManager(dbPath, PAGE_SIZE, false, EXTENT_SIZE)) {
+            assertEquals(3 * PAGE_SIZE, pageManager.getFileSize());
+            assertArrayEquals("value2".getBytes(), pageManager.readPage(2).element(0).value());
+            assertEquals(3, pageManager.allocatePage());
+            assertEquals(0, pageManager.getFileExtensionCount());
+        }
+    }
+
+    @Test
+    void testPooledFramesAreReusedAcrossReads() throws IOException {
+        Path dbPath = tempDir.resolve("frames.btree");
+        PageFramePool framePool = new PageFramePool(PAGE_SIZE);
+        try (PageManager pageManager = new PageManager(dbPath, PAGE_SIZE, false, EXTENT_SIZE, framePool)) {
+            for (int i = 0; i < 10; i++) {
+                Page page = pageManager.emptyPage(pageManager.allocatePage());
+                page.setFlags(Page.FLAG_LEAF);
+                page.insert(("key" + i).getBytes(), ("value" + i).getBytes());
+                pageManager.writePage(page);
+                pageManager.releasePage(page);
+            }
+
+            // Without caching every pin reads the page and every unpin hands its frame back
+            BufferPool pool = new BufferPool(pageManager, 0);
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < 10; i++) {
+                    Page page = pool.pin(i);
+                    assertArrayEquals(("value" + i).getBytes(), page.element(0).value());
+                    pool.unpin(page);
+                }
+            }
+            assertEquals(1, framePool.getAllocatedCount());
+            assertEquals(39, framePool.getReuseCount());
+
+            // A reused frame holding old page bytes comes back zeroed as a new page
+            assertEquals(0, pageManager.emptyPage(pageManager.allocatePage()).count());
+        }
+    }
+}
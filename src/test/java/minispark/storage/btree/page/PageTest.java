@@ -0,0 +1,194 @@
+package minispark.storage.btree.page;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageTest {
+    private static final int PAGE_SIZE = 4096;
+
+    @Test
+    void testZeroedPageIsEmpty() {
+        Page page = new Page(PAGE_SIZE, 1);
+        assertEquals(0, page.count());
+        assertEquals(PAGE_SIZE - Page.PAGE_HEADER_SIZE, page.freeSpace());
+        assertEquals(-1, page.search("anything".getBytes()));
+    }
+
+    @Test
+    void testRandomInsertsStaySortedAndSearchable() {
+        Page page = new Page(PAGE_SIZE, 1);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add(String.format("key%03d", i));
+        }
+        Collections.shuffle(keys, new Random(42));
+
+        for (String key : keys) {
+            assertTrue(page.insert(key.getBytes(), ("value-" + key).getBytes()));
+        }
+
+        assertEquals(100, page.count());
+        for (int i = 0; i < 100; i++) {
+            String key = String.format("key%03d", i);
+            assertArrayEquals(key.getBytes(), page.keyAt(i));
+            assertEquals(i, page.search(key.getBytes()));
+            assertArrayEquals(("value-" + key).getBytes(), page.element(i).value());
+        }
+        assertEquals(-1, page.search("a".getBytes()));
+        assertEquals(-101, page.search("zzz".getBytes()));
+        assertEquals(-(5 + 1) - 1, page.search("key005x".getBytes()));
+    }
+
+    @Test
+    void testFloorIndexFindsCoveringChild() {
+        Page branch = new Page(PAGE_SIZE, 1);
+        branch.setFlags(Page.FLAG_BRANCH);
+        branch.insert(new byte[0], new byte[8]);
+        branch.insert("m".getBytes(), new byte[8]);
+        branch.insert("t".getBytes(), new byte[8]);
+
+        assertEquals(0, branch.floorIndex("a".getBytes()));
+        assertEquals(1, branch.floorIndex("m".getBytes()));
+        assertEquals(1, branch.floorIndex("p".getBytes()));
+        assertEquals(2, branch.floorIndex("z".getBytes()));
+    }
+
+    @Test
+    void testInsertWithExistingKeyReplacesValue() {
+        Page page = new Page(PAGE_SIZE, 1);
+        page.insert("a".getBytes(), "1".getBytes());
+        page.insert("b".getBytes(), "2".getBytes());
+        page.insert("a".getBytes(), "updated".getBytes());
+
+        assertEquals(2, page.count());
+        assertArrayEquals("updated".getBytes(), page.element(page.search("a".getBytes())).value());
+        assertArrayEquals("2".getBytes(), page.element(1).value());
+    }
+
+    @Test
+    void testReplacedCellsAreReclaimedByCompaction() {
+        Page page = new Page(PAGE_SIZE, 1);
+        byte[] value = new byte[1000];
+        Arrays.fill(value, (byte) 7);
+        page.insert("a".getBytes(), value);
+        page.insert("b".getBytes(), value);
+        page.insert("c".getBytes(), value);
+
+        // Replacing rewrites the cell; the old copy must not leak space
+        for (int round = 0; round < 20; round++) {
+            value[0] = (byte) round;
+            assertTrue(page.insert("b".getBytes(), value), "Replacement " + round + " should fit");
+        }
+
+        assertEquals(3, page.count());
+        assertEquals(19, page.element(1).value()[0]);
+        assertFalse(page.insert("d".getBytes(), new byte[PAGE_SIZE]), "Oversized element must be rejected");
+        assertEquals(3, page.count());
+    }
+
+    @Test
+    void testInsertFailsWhenPageIsFull() {
+        Page page = new Page(512, 1);
+        int inserted = 0;
+        // Keys share no prefix, so none can be truncated
+        while (page.insert(String.format("%c%06d", 'A' + inserted, inserted).getBytes(), new byte[20])) {
+            inserted++;
+        }
+        int elementSize = Page.SLOT_SIZE + Page.ELEM_HEADER_SIZE + 7 + 20;
+        assertEquals((512 - Page.PAGE_HEADER_SIZE) / elementSize, inserted);
+        assertTrue(page.freeSpace() < elementSize);
+    }
+
+    @Test
+    void testSharedKeyPrefixIsStoredOnce() {
+        Page page = new Page(512, 1);
+        int inserted = 0;
+        while (page.insert(String.format("customer_%06d", inserted).getBytes(), new byte[8])) {
+            inserted++;
+        }
+
+        // Without truncation each element takes 2 + 8 + 15 + 8 bytes
+        int fullElementSize = Page.SLOT_SIZE + Page.ELEM_HEADER_SIZE + 15 + 8;
+        assertTrue(inserted > (512 - Page.PAGE_HEADER_SIZE) / fullElementSize, "Only " + inserted + " keys fit");
+        assertEquals("customer_0000".length(), page.keyPrefixLength());
+        for (int i = 0; i < inserted; i++) {
+            byte[] key = String.format("customer_%06d", i).getBytes();
+            assertArrayEquals(key, page.keyAt(i));
+            assertEquals(i, page.search(key));
+        }
+        assertEquals(-1, page.search("customer".getBytes()));
+        assertEquals(-(inserted + 1), page.search("customer_1".getBytes()));
+    }
+
+    @Test
+    void testKeysOutsideThePrefixStayInOrder() {
+        Page page = new Page(PAGE_SIZE, 1);
+        page.setFlags(Page.FLAG_BRANCH);
+        for (int i = 0; i < 50; i++) {
+            page.insert(String.format("customer_%06d", i).getBytes(), new byte[8]);
+        }
+        assertTrue(page.compressKeys());
+        assertTrue(page.keyPrefixLength() > 0);
+
+        // The empty first key of a branch and keys on either side of the prefix are stored in full
+        page.insert(new byte[0], new byte[8]);
+        page.insert("apple".getBytes(), new byte[8]);
+        page.insert("customer_1".getBytes(), new byte[8]);
+        page.insert("customer_0000".getBytes(), new byte[8]);
+
+        assertEquals(54, page.count());
+        assertArrayEquals(new byte[0], page.keyAt(0));
+        assertArrayEquals("apple".getBytes(), page.keyAt(1));
+        assertArrayEquals("customer_0000".getBytes(), page.keyAt(2));
+        assertArrayEquals("customer_000000".getBytes(), page.keyAt(3));
+        assertArrayEquals("customer_1".getBytes(), page.keyAt(53));
+        assertEquals(2, page.floorIndex("customer_0000!".getBytes()));
+        assertEquals(52, page.floorIndex("customer_0999".getBytes()));
+
+        // Truncating the page again keeps every key
+        page.setCount(53);
+        assertArrayEquals("customer_000049".getBytes(), page.keyAt(52));
+        assertEquals(1, page.search("apple".getBytes()));
+    }
+
+    @Test
+    void testClearKeepsFlagsAndNextPage() {
+        Page page = new Page(PAGE_SIZE, 1);
+        page.setFlags(Page.FLAG_LEAF);
+        page.setNextPageId(9);
+        page.insert("a".getBytes(), "1".getBytes());
+
+        page.clear();
+
+        assertEquals(0, page.count());
+        assertTrue(page.isLeaf());
+        assertEquals(9, page.nextPageId());
+        assertEquals(PAGE_SIZE - Page.PAGE_HEADER_SIZE, page.freeSpace());
+    }
+
+    @Test
+    void testExclusiveLatchInvalidatesOptimisticVersion() {
+        Page page = new Page(PAGE_SIZE, 1);
+        long version = page.optimisticVersion();
+        assertTrue(page.validate(version));
+
+        // Shared latches do not change the version
+        page.latchShared();
+        page.unlatchShared();
+        assertTrue(page.validate(version));
+
+        page.latchExclusive();
+        assertEquals(0, page.optimisticVersion(), "No optimistic read while a writer holds the page");
+        page.unlatchExclusive();
+
+        assertFalse(page.validate(version));
+        assertTrue(page.validate(page.optimisticVersion()));
+    }
+}
@@ -65,14 +65,13 @@ public class CityIndexLookupTest {
     public void shouldDemonstrateCompleteGenericArchitectureWorkflow() throws IOException {
         System.out.println("=== Generic Architecture Integration Test ===");
         
-        // Phase 1: Insert customer data and manually collect city mappings
+        // Phase 1: Insert customer data; the table indexes each city as it goes
         System.out.println("\n1. Inserting customer data...");
         insertCustomerData();
         
-        // Phase 2: Build city index using generic architecture
-        System.out.println("\n2. Building city index...");
-        boolean built = cityIndex.buildCityIndex();
-        assertTrue(built, "City index should be built successfully");
+        // Phase 2: The city index is already up to date, no build step needed
+        System.out.println("\n2. Checking the city index...");
+        assertEquals(List.of("3", "6"), cityIndex.getCustomerIdsByCity("Chicago"));
         
         // Phase 3: Demonstrate city-based lookups
         System.out.println("\n3. Performing city-based lookups...");
@@ -92,8 +91,43 @@ public class CityIndexLookupTest {
         System.out.println("\n✅ Generic architecture integration test completed successfully!");
     }
     
+    @Test
+    public void shouldDetachCityIndexFromTableOnClose() throws IOException {
+        insertCustomerData();
+        cityIndex.close();
+        cityIndex = null;
+        
+        // Writes after close no longer reach the closed index files
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", "9");
+        values.put("name", "Ivy Chen");
+        values.put("email", "ivy@example.com");
+        values.put("age", 26);
+        values.put("city", "Chicago");
+        customerTable.insert(new TableRecord("9", values));
+        customerTable.delete("1");
+        
+        assertTrue(customerTable.findByPrimaryKey("9").isPresent());
+        assertTrue(customerTable.findByPrimaryKey("1").isEmpty());
+    }
+    
+    @Test
+    public void shouldListCustomersByCityFromCoveringIndex() throws IOException {
+        insertCustomerData();
+        
+        // Name and email are included in the city index; age is read from the table
+        List<TableRecord> customers = cityIndex.getCustomersByCity(" new york ", List.of("name", "email"));
+        assertEquals(List.of("1", "4", "7"), customers.stream().map(TableRecord::getPrimaryKey).toList());
+        assertEquals(Map.of("name", "Diana Prince", "email", "diana@example.com"), customers.get(1).getValues());
+        
+        List<TableRecord> ages = cityIndex.getCustomersByCity("Chicago", List.of("age"));
+        assertEquals(List.of(Map.of("age", 22), Map.of("age", 27)),
+            ages.stream().map(TableRecord::getValues).toList());
+        assertEquals(List.of(), cityIndex.getCustomersByCity(" ", List.of("email")));
+    }
+    
     /**
-     * Inserts customer data and manually collects city mappings using the generic architecture.
+     * Inserts customer data; the city index follows every insert.
      */
     private void insertCustomerData() throws IOException {
         // Sample customer data
@@ -121,11 +155,8 @@ public class CityIndexLookupTest {
             
             TableRecord record = new TableRecord(customer[0], values);
             
-            // Insert into table (generic operation)
+            // Insert into table (generic operation), which also updates the city index
             customerTable.insert(record);
-            
-            // Manually collect city mapping (domain-specific operation)
-            cityIndex.addCityMapping(city, customer[0]);
         }
         
         System.out.println("   Inserted " + customers.length + " customers");
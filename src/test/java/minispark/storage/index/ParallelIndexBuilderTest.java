@@ -0,0 +1,201 @@
+package minispark.storage.index;
+
+import minispark.storage.RecordCursor;
+import minispark.storage.btree.BTree;
+import minispark.storage.btree.BTreeConfig;
+import minispark.storage.table.Table;
+import minispark.storage.table.TableRecord;
+import minispark.storage.table.TableSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the parallel index rebuild: the table is split into balanced key
+ * ranges, and indexes rebuilt from spilled, merged runs answer lookups
+ * exactly like incrementally maintained ones.
+ */
+public class ParallelIndexBuilderTest {
+    private static final int ROWS = 3_000;
+
+    @TempDir
+    Path tempDir;
+
+    private BTree storage;
+    private Table table;
+    private IndexManager indexManager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        storage = new BTree(tempDir.resolve("customers.btree"),
+            BTreeConfig.builder().pageSize(512).bufferPoolPages(64).build());
+        table = new Table("customers", TableSchema.createCustomerSchema(), storage);
+        indexManager = new IndexManager("customers_indexes", tempDir.resolve("indexes"));
+        table.setIndexManager(indexManager);
+
+        List<TableRecord> customers = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            customers.add(customer(i));
+        }
+        table.insertBatch(customers);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        indexManager.close();
+        table.close();
+    }
+
+    @Test
+    void testSplitKeysAreSortedAndBalanced() throws IOException {
+        List<byte[]> splitKeys = table.splitKeys(8);
+        assertEquals(7, splitKeys.size());
+        for (int i = 1; i < splitKeys.size(); i++) {
+            assertTrue(Arrays.compare(splitKeys.get(i - 1), splitKeys.get(i)) < 0);
+        }
+
+        // No range holds more than a few times its fair share
+        byte[] previous = new byte[0];
+        for (int i = 0; i <= splitKeys.size(); i++) {
+            byte[] next = i < splitKeys.size() ? splitKeys.get(i) : null;
+            int rows = countRows(previous, next);
+            assertTrue(rows < 3 * ROWS / 8, "Range " + i + " has " + rows + " rows");
+            previous = next;
+        }
+        assertEquals(List.of(), table.splitKeys(1));
+    }
+
+    @Test
+    void testMultiByteKeysArePartitionedWithoutOverlap() throws IOException {
+        // Neighbouring keys differ within a 3-byte UTF-8 character, so leaf separators cut it
+        for (int i = 0; i < 800; i++) {
+            String id = "c" + (char) (0x0800 + 64 * i) + String.format("%04d", i);
+            storage.write(id.getBytes(StandardCharsets.UTF_8), customer(i).getValues());
+        }
+        table.createIndex("city_index", "city");
+        Map<String, List<String>> expected = new HashMap<>();
+        for (int c = 0; c < 7; c++) {
+            expected.put("city" + c, indexManager.lookup("city_index", "city" + c));
+        }
+
+        List<byte[]> splitKeys = table.splitKeys(32);
+        assertTrue(splitKeys.stream().anyMatch(key ->
+            !Arrays.equals(key, new String(key, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8))));
+        int total = 0;
+        byte[] previous = new byte[0];
+        for (int i = 0; i <= splitKeys.size(); i++) {
+            byte[] next = i < splitKeys.size() ? splitKeys.get(i) : null;
+            total += countRows(previous, next);
+            previous = next;
+        }
+        assertEquals(ROWS + 800, total);
+
+        // Overlapping partitions would index rows twice or feed the bulk load out of order
+        indexManager.rebuildIndexes(table, 4, 16 * 1024);
+        for (int c = 0; c < 7; c++) {
+            assertEquals(expected.get("city" + c), indexManager.lookup("city_index", "city" + c));
+        }
+    }
+
+    @Test
+    void testRebuildWithSpilledRunsMatchesIncrementalIndexes() throws IOException {
+        table.createIndex("city_index", "city");
+        table.createIndex("email_index", "email", UnaryOperator.identity(), List.of("name"));
+        Map<String, List<String>> expected = new HashMap<>();
+        for (int c = 0; c < 7; c++) {
+            expected.put("city" + c, indexManager.lookup("city_index", "city" + c));
+        }
+
+        // A tiny budget forces every partition to spill several runs
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelIndexBuilder builder = new ParallelIndexBuilder(pool, 8, 16 * 1024, tempDir.resolve("spill"));
+        try {
+            builder.build(table, List.of(
+                indexManager.getSecondaryIndex("city_index"),
+                indexManager.getSecondaryIndex("email_index")));
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(builder.getSpilledRunCount() > 8, "Spilled " + builder.getSpilledRunCount() + " runs");
+        try (Stream<Path> leftovers = Files.list(tempDir.resolve("spill"))) {
+            assertEquals(0, leftovers.count());
+        }
+        for (int c = 0; c < 7; c++) {
+            assertEquals(expected.get("city" + c), indexManager.lookup("city_index", "city" + c));
+            assertEquals(ROWS / 7, expected.get("city" + c).size(), 1);
+        }
+        assertEquals(List.of("c001234"), indexManager.lookup("email_index", "c001234@example.com"));
+        assertEquals(List.of(new TableRecord("c001234", Map.of("name", "Customer 1234"))),
+            indexManager.getSecondaryIndex("email_index").lookupCovering("c001234@example.com", List.of("name")));
+
+        // The rebuilt indexes keep following writes
+        table.delete("c000007");
+        table.insert(customer(ROWS));
+        assertFalse(indexManager.lookup("city_index", "city0").contains("c000007"));
+        assertEquals(List.of("c003000"), indexManager.lookup("email_index", "c003000@example.com"));
+
+        // The default rebuild goes through the same builder
+        indexManager.rebuildIndexes(table);
+        assertEquals(List.of("c003000"), indexManager.lookup("email_index", "c003000@example.com"));
+    }
+
+    @Test
+    void testIncludedColumnsCountAgainstTheMemoryBudget() throws IOException {
+        SecondaryIndex narrow = table.createIndex("city_index", "city");
+        SecondaryIndex covering = table.createIndex("city_covering", "city", UnaryOperator.identity(),
+            List.of("name", "email"));
+
+        assertTrue(spilledRuns(covering) > spilledRuns(narrow) * 3 / 2,
+            "Included values must fill the budget sooner");
+        assertEquals(indexManager.lookup("city_index", "city2"), indexManager.lookup("city_covering", "city2"));
+    }
+
+    private long spilledRuns(SecondaryIndex index) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ParallelIndexBuilder builder = new ParallelIndexBuilder(pool, 2, 32 * 1024, tempDir.resolve("spill"));
+            builder.build(table, List.of(index));
+            return builder.getSpilledRunCount();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private int countRows(byte[] startKey, byte[] endKey) throws IOException {
+        int rows = 0;
+        try (RecordCursor cursor = table.openCursor(startKey, endKey, List.of("id"))) {
+            while (cursor.hasNext()) {
+                cursor.next();
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static TableRecord customer(int i) {
+        String id = String.format("c%06d", i);
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", id);
+        values.put("name", "Customer " + i);
+        values.put("email", id + "@example.com");
+        values.put("city", "city" + (i % 7));
+        return new TableRecord(id, values);
+    }
+}
@@ -0,0 +1,112 @@
+package minispark.storage.index;
+
+import minispark.storage.btree.BTree;
+import minispark.storage.table.Table;
+import minispark.storage.table.TableRecord;
+import minispark.storage.table.TableSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies posting list indexes: they follow table writes like any secondary
+ * index, and lookups on several of them combine with bitmap AND / OR.
+ */
+public class PostingListIndexTest {
+    private static final String[] CITIES = {"Paris", "London", "Berlin"};
+    private static final String[] STATUSES = {"active", "churned"};
+
+    @TempDir
+    Path tempDir;
+
+    private Table table;
+    private IndexManager indexManager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        TableSchema schema = new TableSchema("id", List.of(
+            new TableSchema.ColumnDefinition("id", TableSchema.ColumnType.STRING, true),
+            new TableSchema.ColumnDefinition("city", TableSchema.ColumnType.STRING, false),
+            new TableSchema.ColumnDefinition("status", TableSchema.ColumnType.STRING, false)));
+        table = new Table("customers", schema, new BTree(tempDir.resolve("customers.btree")));
+        indexManager = new IndexManager("customers_indexes", tempDir.resolve("indexes"));
+        table.setIndexManager(indexManager);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        indexManager.close();
+        table.close();
+    }
+
+    @Test
+    void testAndOrAcrossIndexes() throws IOException {
+        List<TableRecord> customers = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            customers.add(customer(i, CITIES[i % 3], STATUSES[i % 2]));
+        }
+        table.insertBatch(customers.subList(0, 300));
+        table.createPostingListIndex("city_index", "city", String::toLowerCase);
+        table.createPostingListIndex("status_index", "status", String::toLowerCase);
+        table.insertBatch(customers.subList(300, 600));
+
+        assertEquals(200, indexManager.lookup("city_index", "paris").size());
+        assertEquals(200, indexManager.getPostingListIndex("city_index").lookupRowIds("PARIS").cardinality());
+
+        // Paris is i % 3 == 0, active is i % 2 == 0: every 6th customer
+        Map<String, String> parisAndActive = new LinkedHashMap<>();
+        parisAndActive.put("city_index", "Paris");
+        parisAndActive.put("status_index", "active");
+        List<String> both = indexManager.lookupAll(parisAndActive);
+        assertEquals(100, both.size());
+        for (String id : both) {
+            assertEquals(0, Integer.parseInt(id.substring(1)) % 6);
+        }
+
+        Map<String, String> parisOrChurned = new LinkedHashMap<>();
+        parisOrChurned.put("city_index", "Paris");
+        parisOrChurned.put("status_index", "churned");
+        assertEquals(200 + 300 - 100, indexManager.lookupAny(parisOrChurned).size());
+    }
+
+    @Test
+    void testPostingListsFollowUpdatesAndDeletes() throws IOException {
+        table.createPostingListIndex("status_index", "status", String::toLowerCase);
+        table.insert(customer(1, "Paris", "active"));
+        table.insert(customer(2, "Paris", "active"));
+        table.insert(customer(3, "Paris", "churned"));
+
+        table.insert(customer(1, "Paris", "churned"));
+        table.delete("c000002");
+        assertEquals(List.of(), indexManager.lookup("status_index", "active"));
+        assertEquals(List.of("c000001", "c000003"), indexManager.lookup("status_index", "churned"));
+
+        // A re-inserted row keeps its row ID
+        table.insert(customer(2, "Paris", "churned"));
+        assertEquals(List.of("c000001", "c000002", "c000003"), indexManager.lookup("status_index", "churned"));
+
+        Map<String, String> missing = Map.of("status_index", "unknown");
+        assertEquals(List.of(), indexManager.lookupAll(missing));
+        assertThrows(IllegalArgumentException.class, () -> indexManager.lookupAll(Map.of("nope", "x")));
+    }
+
+    private static TableRecord customer(int i, String city, String status) {
+        String id = String.format("c%06d", i);
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", id);
+        values.put("city", city);
+        values.put("status", status);
+        return new TableRecord(id, values);
+    }
+}
@@ -0,0 +1,87 @@
+package minispark.storage.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies RowIdSet against a plain sorted set, across array and bitmap
+ * containers and through the container encoding.
+ */
+public class RowIdSetTest {
+
+    @Test
+    void testAddRemoveAcrossContainerKinds() {
+        RowIdSet set = new RowIdSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(42);
+        // Dense enough in the first container to turn it into a bitmap, sparse elsewhere
+        for (int i = 0; i < 20_000; i++) {
+            int rowId = i % 2 == 0 ? random.nextInt(10_000) : random.nextInt(1_000_000);
+            assertEquals(expected.add(rowId), set.add(rowId));
+        }
+        for (int i = 0; i < 15_000; i++) {
+            int rowId = random.nextInt(10_000);
+            assertEquals(expected.remove(rowId), set.remove(rowId));
+        }
+
+        assertEquals(expected.size(), set.cardinality());
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), set.toArray());
+        assertTrue(set.contains(expected.first()));
+        assertThrows(IllegalArgumentException.class, () -> set.add(-1));
+    }
+
+    @Test
+    void testAndOrMatchSetAlgebra() {
+        Random random = new Random(7);
+        RowIdSet a = new RowIdSet();
+        RowIdSet b = new RowIdSet();
+        TreeSet<Integer> expectedA = new TreeSet<>();
+        TreeSet<Integer> expectedB = new TreeSet<>();
+        for (int i = 0; i < 30_000; i++) {
+            // a is dense in [0, 65536) (bitmap), b is sparse there (array) and both share other containers
+            int rowIdA = i < 20_000 ? random.nextInt(1 << 16) : (1 << 16) + random.nextInt(3_000);
+            int rowIdB = i < 2_000 ? random.nextInt(1 << 16) : (1 << 16) + random.nextInt(3_000);
+            a.add(rowIdA);
+            expectedA.add(rowIdA);
+            b.add(rowIdB);
+            expectedB.add(rowIdB);
+        }
+
+        TreeSet<Integer> expectedAnd = new TreeSet<>(expectedA);
+        expectedAnd.retainAll(expectedB);
+        TreeSet<Integer> expectedOr = new TreeSet<>(expectedA);
+        expectedOr.addAll(expectedB);
+
+        assertArrayEquals(expectedAnd.stream().mapToInt(Integer::intValue).toArray(), a.and(b).toArray());
+        assertArrayEquals(expectedOr.stream().mapToInt(Integer::intValue).toArray(), a.or(b).toArray());
+        assertEquals(a.and(b), b.and(a));
+
+        // The operands are left alone
+        assertEquals(expectedA.size(), a.cardinality());
+        RowIdSet union = a.or(b);
+        union.add(5_000_000);
+        assertFalse(a.contains(5_000_000));
+    }
+
+    @Test
+    void testContainerEncodingRoundTrips() {
+        RowIdSet sparse = RowIdSet.of(3, 4, 5, 1_000, 65_535);
+        RowIdSet dense = new RowIdSet();
+        for (int i = 0; i < 60_000; i += 3) {
+            dense.add(i);
+        }
+
+        for (RowIdSet set : new RowIdSet[] {sparse, dense}) {
+            RowIdSet decoded = new RowIdSet();
+            decoded.putContainer(0, set.encodeContainer(0));
+            assertEquals(set, decoded);
+        }
+        // Clustered IDs take about a byte each as varint deltas
+        assertTrue(sparse.encodeContainer(0).length < 12);
+        assertNull(sparse.encodeContainer(1));
+    }
+}
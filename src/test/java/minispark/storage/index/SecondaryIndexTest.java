@@ -0,0 +1,187 @@
+package minispark.storage.index;
+
+import minispark.storage.btree.BTree;
+import minispark.storage.table.Table;
+import minispark.storage.table.TableRecord;
+import minispark.storage.table.TableSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that secondary indexes follow every table write: inserts, updates
+ * that move a row to another index key, batches and deletes are visible to
+ * the next lookup without any rebuild.
+ */
+public class SecondaryIndexTest {
+    @TempDir
+    Path tempDir;
+
+    private Table table;
+    private IndexManager indexManager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        table = new Table("customers", TableSchema.createCustomerSchema(), new BTree(tempDir.resolve("customers.btree")));
+        indexManager = new IndexManager("customers_indexes", tempDir.resolve("indexes"));
+        table.setIndexManager(indexManager);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        indexManager.close();
+        table.close();
+    }
+
+    @Test
+    void testIndexFollowsInsertsUpdatesAndDeletes() throws IOException {
+        table.insert(customer("1", "Paris"));
+        table.insert(customer("2", "London"));
+
+        // Existing rows are indexed when the index is created
+        table.createIndex("city_index", "city");
+        assertEquals(List.of("1"), indexManager.lookup("city_index", "Paris"));
+
+        table.insert(customer("3", "Paris"));
+        assertEquals(List.of("1", "3"), indexManager.lookup("city_index", "Paris"));
+
+        // Moving a customer removes the old entry
+        table.insert(customer("1", "London"));
+        assertEquals(List.of("3"), indexManager.lookup("city_index", "Paris"));
+        assertEquals(List.of("1", "2"), indexManager.lookup("city_index", "London"));
+
+        table.delete("2");
+        assertEquals(List.of("1"), indexManager.lookup("city_index", "London"));
+        assertEquals(List.of(), indexManager.lookup("city_index", "Berlin"));
+    }
+
+    @Test
+    void testLookupOnlyMatchesTheWholeIndexKey() throws IOException {
+        table.createIndex("city_index", "city");
+        table.insert(customer("1", "York"));
+        table.insert(customer("2", "York City"));
+        table.insert(customer("3", "York\0City"));
+        table.insert(customer("4", "Yor"));
+
+        assertEquals(List.of("1"), indexManager.lookup("city_index", "York"));
+        assertEquals(List.of("2"), indexManager.lookup("city_index", "York City"));
+        assertEquals(List.of("3"), indexManager.lookup("city_index", "York\0City"));
+        assertEquals(List.of("4"), indexManager.lookup("city_index", "Yor"));
+    }
+
+    @Test
+    void testBatchInsertsAndNormalizedKeys() throws IOException {
+        table.createIndex("city_index", "city", city -> city.trim().toLowerCase());
+        table.insert(customer("1", "Rome"));
+
+        // Customer 1 moves twice within the batch; only the last city counts
+        table.insertBatch(List.of(
+            customer("1", "Oslo"),
+            customer("2", " ROME "),
+            customer("1", "Lima")));
+
+        assertEquals(List.of("2"), indexManager.lookup("city_index", "rome"));
+        assertEquals(List.of(), indexManager.lookup("city_index", "Oslo"));
+        assertEquals(List.of("1"), indexManager.lookup("city_index", "LIMA"));
+    }
+
+    @Test
+    void testCoveringIndexAnswersFromIncludedColumns() throws IOException {
+        table.insert(customer("1", "Paris"));
+        SecondaryIndex index = table.createIndex("city_index", "city", UnaryOperator.identity(), List.of("name", "email"));
+        table.insert(customer("2", "Paris"));
+        assertTrue(index.covers(List.of("email")));
+        assertFalse(index.covers(List.of("email", "city")));
+
+        List<TableRecord> rows = table.findByIndex("city_index", "Paris", List.of("name", "email"));
+        assertEquals(List.of(
+            new TableRecord("1", Map.of("name", "Customer 1", "email", "customer1@example.com")),
+            new TableRecord("2", Map.of("name", "Customer 2", "email", "customer2@example.com"))), rows);
+
+        // A changed included column rewrites the entry even though the city stayed
+        Map<String, Object> renamed = customer("1", "Paris").getValues();
+        renamed.put("name", "Renamed");
+        table.insert(new TableRecord("1", renamed));
+        assertEquals(Map.of("name", "Renamed"), index.lookupCovering("Paris", List.of("name")).get(0).getValues());
+
+        // Columns the index does not include are read from the table instead
+        assertEquals(List.of(
+            new TableRecord("1", Map.of("city", "Paris")),
+            new TableRecord("2", Map.of("city", "Paris"))), table.findByIndex("city_index", "Paris", List.of("city")));
+        assertThrows(IllegalArgumentException.class, () -> index.lookupCovering("Paris", List.of("city")));
+        assertThrows(IllegalArgumentException.class, () -> indexManager.registerIndex("city_index", "city",
+            UnaryOperator.identity(), List.of("name")));
+    }
+
+    @Test
+    void testReRegisteringAnIndexUnderAnotherColumnIsRejected() throws IOException {
+        table.insert(customer("1", "Paris"));
+        SecondaryIndex index = table.createIndex("city_index", "city");
+        assertSame(index, table.createIndex("city_index", "city"));
+
+        assertThrows(IllegalArgumentException.class, () -> table.createIndex("city_index", "name"));
+        assertThrows(IllegalArgumentException.class, () -> table.createPostingListIndex("city_index", "name",
+            UnaryOperator.identity()));
+        // The rejected calls left the city entries alone
+        assertEquals(List.of("1"), indexManager.lookup("city_index", "Paris"));
+        assertEquals(List.of(), indexManager.lookup("city_index", "Customer 1"));
+
+        table.createPostingListIndex("city_bitmap", "city", UnaryOperator.identity());
+        assertThrows(IllegalArgumentException.class, () -> table.createPostingListIndex("city_bitmap", "name",
+            UnaryOperator.identity()));
+    }
+
+    @Test
+    void testConcurrentWritersOfOneKeyLeaveOneIndexEntry() throws Exception {
+        table.createIndex("city_index", "city");
+        List<String> cities = List.of("Paris", "London", "Lima", "Oslo");
+        List<Thread> writers = new ArrayList<>();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        for (String city : cities) {
+            writers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        table.insert(customer("1", city));
+                        if (i % 50 == 49) {
+                            table.delete("1");
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(List.of(), failures);
+
+        // Only the city the row ended up in may list it
+        String finalCity = table.findByPrimaryKey("1").map(row -> (String) row.getValue("city")).orElse(null);
+        for (String city : cities) {
+            assertEquals(city.equals(finalCity) ? List.of("1") : List.of(), indexManager.lookup("city_index", city), city);
+        }
+    }
+
+    private static TableRecord customer(String id, String city) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", id);
+        values.put("name", "Customer " + id);
+        values.put("email", "customer" + id + "@example.com");
+        values.put("city", city);
+        return new TableRecord(id, values);
+    }
+}
@@ -0,0 +1,253 @@
+package minispark.storage.lsm;
+
+import minispark.storage.Record;
+import minispark.storage.table.Table;
+import minispark.storage.table.TableRecord;
+import minispark.storage.table.TableSchema;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the LSM tree: reads merge memtables and sorted runs correctly,
+ * compaction pushes data down the levels without changing what is read, and
+ * writes survive a crash through the memtable logs.
+ */
+public class LSMTreeTest {
+    private static final int KEYS = 3_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWriteReadOverwriteAndDelete() throws IOException {
+        LSMTree lsm = new LSMTree(tempDir.resolve("basic"));
+        try {
+            lsm.write(key(1), row(1));
+            lsm.write(key(2), row(2));
+            lsm.write(key(1), row(100));
+            lsm.delete(key(2));
+
+            assertEquals(100, lsm.read(key(1)).orElseThrow().get("id"));
+            assertTrue(lsm.read(key(2)).isEmpty());
+            assertTrue(lsm.read(key(3)).isEmpty());
+
+            // The same answers once everything is in a sorted run
+            lsm.flush();
+            assertEquals(List.of(1), lsm.getRunCounts());
+            assertEquals(100, lsm.read(key(1)).orElseThrow().get("id"));
+            assertTrue(lsm.read(key(2)).isEmpty());
+        } finally {
+            lsm.close();
+        }
+    }
+
+    @Test
+    void testCompactionKeepsNewestVersions() throws IOException {
+        LSMTree lsm = new LSMTree(tempDir.resolve("compaction"), smallConfig());
+        try {
+            writeRange(lsm, 0, KEYS, 0);
+            // Overwrite every third key and delete every fifth, so versions span levels
+            for (int i = 0; i < KEYS; i += 3) {
+                lsm.write(key(i), row(i + 1_000_000));
+            }
+            for (int i = 0; i < KEYS; i += 5) {
+                lsm.delete(key(i));
+            }
+            lsm.flush();
+
+            assertTrue(lsm.getFlushCount() > 4);
+            assertTrue(lsm.getCompactionCount() > 0);
+            assertTrue(lsm.getRunCounts().get(0) < 4, "Level 0 was not compacted: " + lsm.getRunCounts());
+            assertTrue(lsm.getRunCounts().size() > 2, "Expected data below level 1: " + lsm.getRunCounts());
+
+            for (int i = 0; i < KEYS; i++) {
+                assertEquals(expectedRow(i), lsm.read(key(i)).map(row -> row.get("id")).orElse(null), "Key " + i);
+            }
+
+            List<Record> scanned = lsm.scan(key(100), key(200), List.of("id"));
+            List<Integer> ids = new ArrayList<>();
+            for (Record record : scanned) {
+                ids.add((Integer) record.getValue().get("id"));
+                assertEquals(1, record.getValue().size());
+            }
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 100; i < 200; i++) {
+                if (expectedRow(i) != null) {
+                    expected.add(expectedRow(i));
+                }
+            }
+            assertEquals(expected, ids);
+        } finally {
+            lsm.close();
+        }
+    }
+
+    @Test
+    void testBloomFiltersSkipRunsWithoutTheKey() throws IOException {
+        LSMTree lsm = new LSMTree(tempDir.resolve("bloom"), smallConfig());
+        try {
+            writeRange(lsm, 0, KEYS, 0);
+            lsm.flush();
+
+            long blockReads = lsm.getBlockReadsCount();
+            for (int i = 0; i < KEYS; i++) {
+                assertTrue(lsm.read(absentKey(i)).isEmpty());
+            }
+            // Absent keys inside the runs' key ranges are ruled out by the filters almost always
+            assertTrue(lsm.getBloomFilterNegativeCount() > KEYS * 9L / 10);
+            assertTrue(lsm.getBlockReadsCount() - blockReads < KEYS / 10,
+                "Read " + (lsm.getBlockReadsCount() - blockReads) + " blocks for " + KEYS + " absent keys");
+        } finally {
+            lsm.close();
+        }
+    }
+
+    @Test
+    void testReopenAfterCleanClose() throws IOException {
+        Path directory = tempDir.resolve("reopen");
+        LSMTree lsm = new LSMTree(directory, smallConfig());
+        writeRange(lsm, 0, KEYS, 0);
+        lsm.close();
+
+        try (Stream<Path> logs = Files.list(directory)) {
+            assertEquals(0, logs.filter(path -> path.toString().endsWith(".log")).count());
+        }
+
+        lsm = new LSMTree(directory, smallConfig());
+        try {
+            for (int i = 0; i < KEYS; i += 7) {
+                assertEquals(i, lsm.read(key(i)).orElseThrow().get("id"));
+            }
+            assertEquals(KEYS, lsm.scan(key(0), null, null).size());
+        } finally {
+            lsm.close();
+        }
+    }
+
+    @Test
+    void testWritesAreRecoveredFromTheLogAfterCrash() throws IOException {
+        Path directory = tempDir.resolve("crash");
+        LSMConfig config = LSMConfig.builder().memtableBytes(1024 * 1024).build();
+
+        // Everything stays in the memtable, so only the log holds the data; never closed = crash
+        LSMTree crashed = new LSMTree(directory, config);
+        writeRange(crashed, 0, 500, 0);
+        crashed.delete(key(10));
+        assertEquals(0, crashed.getFlushCount());
+
+        LSMTree recovered = new LSMTree(directory, config);
+        try {
+            assertEquals(List.of(1), recovered.getRunCounts());
+            assertTrue(recovered.read(key(10)).isEmpty());
+            assertEquals(499, recovered.read(key(499)).orElseThrow().get("id"));
+            assertEquals(499, recovered.scan(key(0), null, null).size());
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    void testConcurrentWritersAndReaders() throws Exception {
+        LSMTree lsm = new LSMTree(tempDir.resolve("concurrent"), smallConfig());
+        try {
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> failures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int writer = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = writer; i < KEYS; i += 4) {
+                            lsm.write(key(i), row(i));
+                            // A key this thread wrote is always visible to it, wherever it now lives
+                            assertEquals(i, lsm.read(key(i)).orElseThrow().get("id"));
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(List.of(), failures);
+            assertEquals(KEYS, lsm.scan(key(0), null, List.of("id")).size());
+        } finally {
+            lsm.close();
+        }
+    }
+
+    @Test
+    void testTableOnLsmStorage() throws IOException {
+        TableSchema schema = new TableSchema("id", List.of(
+            new TableSchema.ColumnDefinition("id", TableSchema.ColumnType.STRING, true),
+            new TableSchema.ColumnDefinition("name", TableSchema.ColumnType.STRING, false)));
+        LSMTree lsm = new LSMTree(tempDir.resolve("table"), LSMConfig.builder().rowSchema(schema).build());
+        try {
+            Table table = new Table("customers", schema, lsm);
+            Map<String, Object> values = new HashMap<>();
+            values.put("id", "c1");
+            values.put("name", "Ada");
+            table.insert(new TableRecord("c1", values));
+
+            assertEquals("Ada", table.findByPrimaryKey("c1").orElseThrow().getValue("name"));
+            assertTrue(table.findByPrimaryKey("c2").isEmpty());
+        } finally {
+            lsm.close();
+        }
+    }
+
+    private static LSMConfig smallConfig() {
+        return LSMConfig.builder()
+            .memtableBytes(8 * 1024)
+            .blockSize(512)
+            .level0CompactionTrigger(2)
+            .level1MaxBytes(16 * 1024)
+            .levelSizeMultiplier(2)
+            .targetFileBytes(8 * 1024)
+            .syncWrites(false)
+            .build();
+    }
+
+    private static Integer expectedRow(int i) {
+        if (i % 5 == 0) {
+            return null;
+        }
+        return i % 3 == 0 ? i + 1_000_000 : i;
+    }
+
+    private static void writeRange(LSMTree lsm, int from, int to, int offset) throws IOException {
+        for (int i = from; i < to; i++) {
+            lsm.write(key(i), row(i + offset));
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%06d", i).getBytes();
+    }
+
+    // Sorts between key(i) and key(i + 1), so it falls inside the runs' key ranges
+    private static byte[] absentKey(int i) {
+        return String.format("key%06dx", i).getBytes();
+    }
+
+    private static Map<String, Object> row(int id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", "Name" + id);
+        return row;
+    }
+}
@@ -0,0 +1,262 @@
+package minispark.storage.memory;
+
+import minispark.storage.Record;
+import minispark.storage.RecordCursor;
+import minispark.storage.table.Table;
+import minispark.storage.table.TableRecord;
+import minispark.storage.table.TableSchema;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the in-memory skip list storage: reads and scans see the latest
+ * writes, snapshots and cursors see one consistent point in time, and old
+ * versions are pruned once no reader needs them.
+ */
+public class MemoryStorageTest {
+    private static final int KEYS = 2_000;
+
+    @Test
+    void testWriteReadScanAndDelete() throws IOException {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            MemoryStorage storage = new MemoryStorage(MemoryStorageConfig.builder().offHeapValues(offHeap).build());
+            try {
+                for (int i = 0; i < KEYS; i++) {
+                    storage.write(key(i), row(i));
+                }
+                storage.write(key(7), row(700));
+                storage.delete(key(8));
+
+                assertEquals(700, storage.read(key(7)).orElseThrow().get("id"));
+                assertTrue(storage.read(key(8)).isEmpty());
+                assertTrue(storage.read(key(KEYS)).isEmpty());
+                assertEquals(KEYS - 1, storage.getKeyCount());
+
+                List<Record> range = storage.scan(key(5), key(10), List.of("name"));
+                assertEquals(4, range.size());
+                assertArrayEquals(key(5), range.get(0).getKey());
+                assertEquals(Map.of("name", "Name700"), range.get(2).getValue());
+                assertEquals(KEYS - 1, storage.scan(key(0), null, null).size());
+                assertEquals(offHeap, storage.getOffHeapBytes() > 0);
+            } finally {
+                storage.close();
+            }
+        }
+    }
+
+    @Test
+    void testSnapshotSeesThePastWhileWritesContinue() throws IOException {
+        MemoryStorage storage = new MemoryStorage();
+        try {
+            for (int i = 0; i < 10; i++) {
+                storage.write(key(i), row(i));
+            }
+
+            MemoryStorage.Snapshot snapshot = storage.snapshot();
+            RecordCursor cursor = storage.openCursor(key(0), null, null);
+            storage.write(key(3), row(300));
+            storage.delete(key(4));
+            storage.write(key(20), row(20));
+
+            assertEquals(3, snapshot.read(key(3)).orElseThrow().get("id"));
+            assertEquals(4, snapshot.read(key(4)).orElseThrow().get("id"));
+            assertTrue(snapshot.read(key(20)).isEmpty());
+            assertEquals(10, snapshot.scan(key(0), null, null).size());
+
+            // The cursor was opened before the writes, so it sees none of them either
+            List<Integer> ids = new ArrayList<>();
+            while (cursor.hasNext()) {
+                ids.add((Integer) cursor.next().getValue().get("id"));
+            }
+            cursor.close();
+            assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), ids);
+
+            assertEquals(300, storage.read(key(3)).orElseThrow().get("id"));
+            assertTrue(storage.read(key(4)).isEmpty());
+            assertEquals(10, storage.scan(key(0), null, null).size());
+
+            // Versions only the snapshot could see go away with the next writes after it closes
+            assertTrue(storage.getVersionCount() > storage.getKeyCount());
+            snapshot.close();
+            assertEquals(0, storage.getOpenSnapshotCount());
+            storage.write(key(3), row(3000));
+            storage.delete(key(4));
+            assertEquals(storage.getKeyCount(), storage.getVersionCount());
+            assertEquals(10, storage.getKeyCount());
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    void testOverwritesDoNotAccumulateVersions() throws IOException {
+        MemoryStorage storage = new MemoryStorage();
+        try {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < KEYS; i++) {
+                    storage.write(key(i), row(i + round));
+                }
+            }
+            assertEquals(KEYS, storage.getKeyCount());
+            assertEquals(KEYS, storage.getVersionCount());
+
+            for (int i = 0; i < KEYS; i++) {
+                storage.delete(key(i));
+            }
+            assertEquals(0, storage.getKeyCount());
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    void testConcurrentBatchesAreSeenWholeBySnapshots() throws Exception {
+        int accounts = 100;
+        MemoryStorage storage = new MemoryStorage();
+        try {
+            List<Record> initial = new ArrayList<>();
+            for (int i = 0; i < accounts; i++) {
+                initial.add(new Record(key(i), row(100)));
+            }
+            storage.writeBatch(initial);
+
+            // Writers move amounts between accounts in batches, so the total never changes
+            AtomicBoolean stop = new AtomicBoolean();
+            List<Throwable> failures = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int writer = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int n = 0; n < 2_000; n++) {
+                            int from = (writer * 31 + n * 7) % accounts;
+                            int to = (from + 1 + n % (accounts - 1)) % accounts;
+                            // Each writer owns the accounts it moves between, so the batches do not race on balances
+                            from = from - from % 4 + writer;
+                            to = to - to % 4 + writer;
+                            if (from == to) {
+                                continue;
+                            }
+                            int fromBalance = (Integer) storage.read(key(from)).orElseThrow().get("id");
+                            int toBalance = (Integer) storage.read(key(to)).orElseThrow().get("id");
+                            storage.writeBatch(List.of(
+                                new Record(key(from), row(fromBalance - 1)),
+                                new Record(key(to), row(toBalance + 1))));
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }));
+            }
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        int total = 0;
+                        for (Record record : storage.scan(key(0), null, List.of("id"))) {
+                            total += (Integer) record.getValue().get("id");
+                        }
+                        assertEquals(accounts * 100, total);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            reader.start();
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            stop.set(true);
+            reader.join();
+
+            assertEquals(List.of(), failures);
+            assertEquals(0, storage.getOpenSnapshotCount());
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    void testPlainReadsNeverMissAKeyBeingOverwritten() throws Exception {
+        MemoryStorage storage = new MemoryStorage();
+        try {
+            storage.write(key(0), row(0));
+
+            // Every overwrite prunes the version the reader may have just been about to see
+            AtomicBoolean stop = new AtomicBoolean();
+            List<Throwable> failures = new ArrayList<>();
+            Thread writer = new Thread(() -> {
+                for (int n = 1; n <= 50_000; n++) {
+                    storage.write(key(0), row(n));
+                }
+                stop.set(true);
+            });
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        assertTrue(storage.read(key(0)).isPresent());
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            reader.start();
+            writer.start();
+            writer.join();
+            reader.join();
+
+            assertEquals(List.of(), failures);
+            assertEquals(50_000, storage.read(key(0)).orElseThrow().get("id"));
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    void testTableOnMemoryStorage() throws IOException {
+        TableSchema schema = new TableSchema("id", List.of(
+            new TableSchema.ColumnDefinition("id", TableSchema.ColumnType.STRING, true),
+            new TableSchema.ColumnDefinition("name", TableSchema.ColumnType.STRING, false)));
+        MemoryStorage storage = new MemoryStorage(MemoryStorageConfig.builder()
+            .rowSchema(schema)
+            .offHeapValues(true)
+            .build());
+        try {
+            Table table = new Table("countries", schema, storage);
+            Map<String, Object> values = new HashMap<>();
+            values.put("id", "nz");
+            values.put("name", "New Zealand");
+            table.insert(new TableRecord("nz", values));
+
+            assertEquals("New Zealand", table.findByPrimaryKey("nz").orElseThrow().getValue("name"));
+            assertTrue(table.findByPrimaryKey("au").isEmpty());
+        } finally {
+            storage.close();
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%06d", i).getBytes();
+    }
+
+    private static Map<String, Object> row(int id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", "Name" + id);
+        return row;
+    }
+}
@@ -174,6 +174,32 @@ public class ParquetTableIntegrationTest {
         System.out.println("✅ Point lookup working with actual Parquet I/O!");
     }
     
+    /**
+     * EDUCATIONAL: Test batched point lookups.
+     * Shows how a batch of keys reads each file and row group only once.
+     */
+    @Test
+    void testBatchedPointLookups() throws IOException {
+        System.out.println("\n🧪 EDUCATIONAL: Batched Point Lookups");
+        System.out.println("=" .repeat(60));
+        System.out.println("🎯 Demonstrating: One pass over the files for many keys");
+        System.out.println();
+        
+        // Two batches, two files
+        parquetTable.insertBatch(sampleCustomers.subList(0, 3));
+        parquetTable.insertBatch(sampleCustomers.subList(3, 5));
+        
+        List<Optional<TableRecord>> customers = parquetTable.multiGet(
+            List.of("CUST005", "CUST999", "CUST001", "CUST005"));
+        
+        assertEquals(4, customers.size());
+        assertEquals("Eve Brown", customers.get(0).orElseThrow().getValue("name"));
+        assertTrue(customers.get(1).isEmpty());
+        assertEquals("Alice Johnson", customers.get(2).orElseThrow().getValue("name"));
+        assertEquals(customers.get(0), customers.get(3));
+        System.out.println("✅ Batched lookups match single-key lookups");
+    }
+    
     /**
      * EDUCATIONAL: Test delete operations with versioning.
      * Shows how immutable formats handle updates.
@@ -0,0 +1,139 @@
+package minispark.storage.perf;
+
+import minispark.storage.Record;
+import minispark.storage.btree.BTree;
+import minispark.storage.btree.BTreeConfig;
+import minispark.util.TestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Assignment: Measure how B+Tree throughput scales with threads.
+ *
+ * Runs a mixed workload (mostly point reads, some writes) against one tree
+ * with 1, 4 and 16 threads, first with latch-crabbing readers and then with
+ * optimistic readers. With latch crabbing, readers only hold latches on the
+ * two pages they are moving between, so read throughput should grow with
+ * the thread count while writes stay serialized. Optimistic readers take no
+ * latches at all, so they never contend with each other on the root page.
+ *
+ * The tree's educational logging is discarded while measuring, otherwise
+ * the benchmark would mostly measure the terminal. Every println still takes
+ * the PrintStream's lock, which limits scaling on its own.
+ *
+ * Try changing READ_PERCENT, or turning on the write-ahead log, to see how
+ * the writer lock and group commit affect the numbers.
+ */
+public class BTreeConcurrencyBenchmark {
+
+    private static final int PRELOADED_KEYS = 20_000;
+    private static final int READ_PERCENT = 90;
+    private static final int DURATION_IN_SECONDS = 5;
+    private static final int[] THREAD_COUNTS = {1, 4, 16};
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        console.println("=== B+Tree Concurrency Benchmark ===");
+        console.println("Preloaded keys: " + PRELOADED_KEYS);
+        console.println("Workload: " + READ_PERCENT + "% reads, " + (100 - READ_PERCENT) + "% writes");
+        console.println("Duration per run: " + DURATION_IN_SECONDS + " seconds");
+        console.println();
+
+        for (boolean optimistic : new boolean[] {false, true}) {
+            console.println(optimistic ? "Optimistic readers:" : "Latch-crabbing readers:");
+            benchmark(console, optimistic);
+            console.println();
+        }
+
+        console.println("=== Assignment Questions ===");
+        console.println("1. Why do reads scale with threads while writes do not?");
+        console.println("2. Which pages do readers and writers contend on the most?");
+        console.println("3. Why do optimistic readers still restart now and then, and what bounds the restarts?");
+    }
+
+    private static void benchmark(PrintStream console, boolean optimisticReads) throws Exception {
+        File dbFile = new File(TestUtils.tempDir("btree-concurrency"), "benchmark.btree");
+        dbFile.delete();
+
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        BTreeConfig config = BTreeConfig.builder().bufferPoolPages(1024).optimisticReads(optimisticReads).build();
+        BTree btree = new BTree(dbFile.toPath(), config);
+        try {
+            preload(btree);
+            for (int threads : THREAD_COUNTS) {
+                double opsPerSecond = run(btree, threads);
+                console.printf("%2d thread(s): %,12.0f ops/s%n", threads, opsPerSecond);
+            }
+            if (optimisticReads) {
+                console.println("Optimistic restarts: " + btree.getOptimisticRestartCount());
+            }
+        } finally {
+            btree.close();
+            System.setOut(console);
+            dbFile.delete();
+        }
+    }
+
+    private static void preload(BTree btree) throws IOException {
+        List<Record> records = new ArrayList<>(PRELOADED_KEYS);
+        for (int i = 0; i < PRELOADED_KEYS; i++) {
+            records.add(new Record(key(i), row(i)));
+        }
+        btree.bulkLoad(records.iterator());
+    }
+
+    private static double run(BTree btree, int threadCount) throws InterruptedException {
+        AtomicLong operations = new AtomicLong();
+        long deadline = System.nanoTime() + DURATION_IN_SECONDS * 1_000_000_000L;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                try {
+                    while (System.nanoTime() < deadline) {
+                        int i = random.nextInt(PRELOADED_KEYS);
+                        if (random.nextInt(100) < READ_PERCENT) {
+                            btree.read(key(i));
+                        } else {
+                            btree.write(key(i), row(i));
+                        }
+                        done++;
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                operations.addAndGet(done);
+            }));
+        }
+
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return operations.get() / seconds;
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%08d", i).getBytes();
+    }
+
+    private static Map<String, Object> row(int i) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", i);
+        row.put("name", "Name" + i);
+        return row;
+    }
+}
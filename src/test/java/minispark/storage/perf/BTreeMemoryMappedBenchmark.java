@@ -0,0 +1,113 @@
+package minispark.storage.perf;
+
+import minispark.storage.Record;
+import minispark.storage.btree.BTree;
+import minispark.storage.btree.BTreeConfig;
+import minispark.util.TestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Assignment: Compare point lookups through the buffer pool with lookups on
+ * a memory-mapped file.
+ *
+ * Loads the same keys into a tree using the FileChannel page manager and
+ * into one using the memory-mapped page manager, then times random point
+ * reads on each. The FileChannel path copies every page it misses into a
+ * buffer pool frame; the mapped path reads the OS page cache in place, so
+ * it saves that copy but leaves eviction to the OS.
+ *
+ * The first rounds warm up the JIT and the page cache and are not reported.
+ * The tree's educational logging is discarded while measuring, otherwise
+ * the benchmark would mostly measure the terminal.
+ *
+ * Try a BUFFER_POOL_PAGES smaller than the tree to see the pool start
+ * evicting while the mapped tree does not notice.
+ */
+public class BTreeMemoryMappedBenchmark {
+
+    private static final int PRELOADED_KEYS = 50_000;
+    private static final int LOOKUPS_PER_ROUND = 100_000;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int BUFFER_POOL_PAGES = 1024;
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        console.println("=== B+Tree Memory-Mapped Benchmark ===");
+        console.println("Preloaded keys: " + PRELOADED_KEYS);
+        console.println("Lookups per round: " + LOOKUPS_PER_ROUND);
+        console.println();
+
+        benchmark(console, "FileChannel", BTreeConfig.builder().bufferPoolPages(BUFFER_POOL_PAGES).build());
+        benchmark(console, "Memory-mapped", BTreeConfig.builder().memoryMapped(true).build());
+        console.println();
+
+        console.println("=== Assignment Questions ===");
+        console.println("1. Which copy does the mapped path avoid, and when does that matter?");
+        console.println("2. What happens to each path once the tree no longer fits in memory?");
+        console.println("3. Why can the mapped path not be combined with the write-ahead log?");
+    }
+
+    private static void benchmark(PrintStream console, String name, BTreeConfig config) throws Exception {
+        File dbFile = new File(TestUtils.tempDir("btree-mmap"), "benchmark.btree");
+        dbFile.delete();
+
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        BTree btree = new BTree(dbFile.toPath(), config);
+        try {
+            preload(btree);
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                lookups(btree);
+            }
+            long nanos = 0;
+            for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                nanos += lookups(btree);
+            }
+            double microsPerLookup = nanos / 1e3 / ((double) MEASURED_ROUNDS * LOOKUPS_PER_ROUND);
+            console.printf("%-14s %8.2f us/lookup%n", name + ":", microsPerLookup);
+        } finally {
+            btree.close();
+            System.setOut(console);
+            dbFile.delete();
+        }
+    }
+
+    private static void preload(BTree btree) throws IOException {
+        List<Record> records = new ArrayList<>(PRELOADED_KEYS);
+        for (int i = 0; i < PRELOADED_KEYS; i++) {
+            records.add(new Record(key(i), row(i)));
+        }
+        btree.bulkLoad(records.iterator());
+    }
+
+    private static long lookups(BTree btree) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+            if (btree.read(key(random.nextInt(PRELOADED_KEYS))).isEmpty()) {
+                throw new IllegalStateException("Preloaded key is missing");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key%08d", i).getBytes();
+    }
+
+    private static Map<String, Object> row(int i) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", i);
+        row.put("name", "Name" + i);
+        return row;
+    }
+}